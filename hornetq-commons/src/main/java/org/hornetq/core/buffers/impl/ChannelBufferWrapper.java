@@ -30,12 +30,22 @@ public class ChannelBufferWrapper implements HornetQBuffer
 {
    protected ByteBuf buffer; // NO_UCD (use final)
    private final boolean releasable;
+   private final boolean releaseOnWrite;
    public ChannelBufferWrapper(final ByteBuf buffer)
    {
       this(buffer, false);
    }
 
    public ChannelBufferWrapper(final ByteBuf buffer, boolean releasable)
+   {
+      this(buffer, releasable, false);
+   }
+
+   /**
+    * @param releaseOnWrite the connection writing the buffer releases it once written, even when it copies it rather
+    * than handing it to Netty. Only for releasable buffers given away to be written.
+    */
+   public ChannelBufferWrapper(final ByteBuf buffer, boolean releasable, boolean releaseOnWrite)
    {
        if (!releasable)
        {
@@ -46,6 +56,18 @@ public class ChannelBufferWrapper implements HornetQBuffer
           this.buffer = buffer;
        }
        this.releasable = releasable;
+       this.releaseOnWrite = releasable && releaseOnWrite;
+   }
+
+   /**
+    * Releases a buffer that was copied to be written, if it was created to be released once written.
+    */
+   public static void releaseWritten(final HornetQBuffer buffer)
+   {
+      if (buffer instanceof ChannelBufferWrapper && ((ChannelBufferWrapper)buffer).releaseOnWrite)
+      {
+         buffer.byteBuf().release();
+      }
    }
    public boolean readBoolean()
    {
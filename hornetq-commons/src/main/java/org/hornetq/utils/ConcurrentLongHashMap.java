@@ -0,0 +1,443 @@
+/*
+ * Copyright 2013 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A concurrent map from primitive <code>long</code> keys to values.
+ * <p>
+ * The keys and values are kept on arrays with open addressing and linear probing, so no entry object and no boxed
+ * key are allocated per mapping, which is a fraction of the memory a {@link java.util.concurrent.ConcurrentHashMap}
+ * uses for the same number of entries. The map is split on segments locked independently of each other, offering
+ * about the same concurrency as a ConcurrentHashMap with the same concurrency level.
+ * <p>
+ * As with ConcurrentHashMap, <code>null</code> values are not accepted. {@link #keys()} and {@link #values()} return
+ * snapshots of the map, which are consistent for each segment but not for the whole map when it is being modified.
+ */
+public class ConcurrentLongHashMap<V>
+{
+   private static final int DEFAULT_EXPECTED_ITEMS = 256;
+
+   private static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+   private static final float FILL_FACTOR = 0.66f;
+
+   private final Segment<V>[] segments;
+
+   private final int segmentShift;
+
+   public ConcurrentLongHashMap()
+   {
+      this(DEFAULT_EXPECTED_ITEMS);
+   }
+
+   public ConcurrentLongHashMap(final int expectedItems)
+   {
+      this(expectedItems, DEFAULT_CONCURRENCY_LEVEL);
+   }
+
+   @SuppressWarnings("unchecked")
+   public ConcurrentLongHashMap(final int expectedItems, final int concurrencyLevel)
+   {
+      if (expectedItems < 0 || concurrencyLevel <= 0)
+      {
+         throw new IllegalArgumentException("Invalid expectedItems=" + expectedItems + " or concurrencyLevel=" +
+                                            concurrencyLevel);
+      }
+
+      int numberOfSegments = 1;
+      while (numberOfSegments < concurrencyLevel)
+      {
+         numberOfSegments <<= 1;
+      }
+
+      segmentShift = 64 - Integer.numberOfTrailingZeros(numberOfSegments);
+
+      int perSegment = Math.max(1, expectedItems / numberOfSegments);
+
+      segments = new Segment[numberOfSegments];
+      for (int i = 0; i < numberOfSegments; i++)
+      {
+         segments[i] = new Segment<V>(perSegment);
+      }
+   }
+
+   public V get(final long key)
+   {
+      long hash = hash(key);
+      return segmentFor(hash).get(key, (int)hash);
+   }
+
+   public boolean containsKey(final long key)
+   {
+      return get(key) != null;
+   }
+
+   /**
+    * @return the previous value mapped to <code>key</code>, or <code>null</code>
+    */
+   public V put(final long key, final V value)
+   {
+      checkValue(value);
+      long hash = hash(key);
+      return segmentFor(hash).put(key, value, (int)hash, false);
+   }
+
+   /**
+    * @return the value already mapped to <code>key</code>, or <code>null</code> if <code>value</code> was added
+    */
+   public V putIfAbsent(final long key, final V value)
+   {
+      checkValue(value);
+      long hash = hash(key);
+      return segmentFor(hash).put(key, value, (int)hash, true);
+   }
+
+   public void putAll(final ConcurrentLongHashMap<V> map)
+   {
+      for (Segment<V> segment : map.segments)
+      {
+         long[] keys;
+         Object[] values;
+
+         // the segment is copied so no two segments are ever locked at the same time
+         synchronized (segment)
+         {
+            keys = segment.keys.clone();
+            values = segment.values.clone();
+         }
+
+         for (int i = 0; i < values.length; i++)
+         {
+            if (values[i] != null)
+            {
+               @SuppressWarnings("unchecked")
+               V value = (V)values[i];
+               put(keys[i], value);
+            }
+         }
+      }
+   }
+
+   /**
+    * @return the value that was mapped to <code>key</code>, or <code>null</code>
+    */
+   public V remove(final long key)
+   {
+      long hash = hash(key);
+      return segmentFor(hash).remove(key, (int)hash);
+   }
+
+   public int size()
+   {
+      int size = 0;
+      for (Segment<V> segment : segments)
+      {
+         size += segment.size();
+      }
+      return size;
+   }
+
+   public boolean isEmpty()
+   {
+      for (Segment<V> segment : segments)
+      {
+         if (segment.size() != 0)
+         {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   public void clear()
+   {
+      for (Segment<V> segment : segments)
+      {
+         segment.clear();
+      }
+   }
+
+   /**
+    * @return a snapshot of the keys on the map
+    */
+   public long[] keys()
+   {
+      long[] keys = new long[size()];
+      int count = 0;
+      for (Segment<V> segment : segments)
+      {
+         synchronized (segment)
+         {
+            if (count + segment.size > keys.length)
+            {
+               keys = Arrays.copyOf(keys, count + segment.size);
+            }
+            for (int i = 0; i < segment.values.length; i++)
+            {
+               if (segment.values[i] != null)
+               {
+                  keys[count++] = segment.keys[i];
+               }
+            }
+         }
+      }
+      return count == keys.length ? keys : Arrays.copyOf(keys, count);
+   }
+
+   /**
+    * @return a snapshot of the values on the map
+    */
+   public List<V> values()
+   {
+      List<V> values = new ArrayList<V>(size());
+      for (Segment<V> segment : segments)
+      {
+         synchronized (segment)
+         {
+            for (Object value : segment.values)
+            {
+               if (value != null)
+               {
+                  @SuppressWarnings("unchecked")
+                  V v = (V)value;
+                  values.add(v);
+               }
+            }
+         }
+      }
+      return values;
+   }
+
+   @Override
+   public String toString()
+   {
+      return "ConcurrentLongHashMap [size=" + size() + "]";
+   }
+
+   private Segment<V> segmentFor(final long hash)
+   {
+      // the high bits choose the segment and the low bits the bucket, so they don't correlate
+      return segments[(int)(hash >>> segmentShift) & segments.length - 1];
+   }
+
+   private static void checkValue(final Object value)
+   {
+      if (value == null)
+      {
+         throw new NullPointerException("null values are not supported");
+      }
+   }
+
+   // the finalizer of MurmurHash3, spreading sequential IDs over the whole table
+   private static long hash(final long key)
+   {
+      long h = key;
+      h ^= h >>> 33;
+      h *= 0xff51afd7ed558ccdL;
+      h ^= h >>> 33;
+      h *= 0xc4ceb9fe1a85ec53L;
+      h ^= h >>> 33;
+      return h;
+   }
+
+   private static int capacityFor(final int expectedItems)
+   {
+      int capacity = 2;
+      while (capacity * FILL_FACTOR < expectedItems)
+      {
+         capacity <<= 1;
+      }
+      return capacity;
+   }
+
+   /**
+    * An open addressing table. A <code>null</code> value marks a free bucket, and removals shift the following
+    * entries back, so there are no tombstones and lookups never scan past the run of entries of a bucket.
+    */
+   private static final class Segment<V>
+   {
+      private final int initialCapacity;
+
+      private long[] keys;
+
+      private Object[] values;
+
+      private int size;
+
+      private int resizeThreshold;
+
+      Segment(final int expectedItems)
+      {
+         initialCapacity = capacityFor(expectedItems);
+         allocate(initialCapacity);
+      }
+
+      synchronized int size()
+      {
+         return size;
+      }
+
+      @SuppressWarnings("unchecked")
+      synchronized V get(final long key, final int hash)
+      {
+         int mask = values.length - 1;
+         int bucket = hash & mask;
+
+         while (true)
+         {
+            Object value = values[bucket];
+            if (value == null)
+            {
+               return null;
+            }
+            if (keys[bucket] == key)
+            {
+               return (V)value;
+            }
+            bucket = bucket + 1 & mask;
+         }
+      }
+
+      @SuppressWarnings("unchecked")
+      synchronized V put(final long key, final V value, final int hash, final boolean onlyIfAbsent)
+      {
+         int mask = values.length - 1;
+         int bucket = hash & mask;
+
+         while (true)
+         {
+            Object current = values[bucket];
+            if (current == null)
+            {
+               keys[bucket] = key;
+               values[bucket] = value;
+               if (++size > resizeThreshold)
+               {
+                  rehash(values.length << 1);
+               }
+               return null;
+            }
+            if (keys[bucket] == key)
+            {
+               if (!onlyIfAbsent)
+               {
+                  values[bucket] = value;
+               }
+               return (V)current;
+            }
+            bucket = bucket + 1 & mask;
+         }
+      }
+
+      @SuppressWarnings("unchecked")
+      synchronized V remove(final long key, final int hash)
+      {
+         int mask = values.length - 1;
+         int bucket = hash & mask;
+
+         while (true)
+         {
+            Object current = values[bucket];
+            if (current == null)
+            {
+               return null;
+            }
+            if (keys[bucket] == key)
+            {
+               size--;
+               shiftBack(bucket, mask);
+               return (V)current;
+            }
+            bucket = bucket + 1 & mask;
+         }
+      }
+
+      synchronized void clear()
+      {
+         if (values.length == initialCapacity)
+         {
+            Arrays.fill(values, null);
+         }
+         else
+         {
+            allocate(initialCapacity);
+         }
+         size = 0;
+      }
+
+      private void shiftBack(int free, final int mask)
+      {
+         int bucket = free;
+
+         while (true)
+         {
+            bucket = bucket + 1 & mask;
+
+            Object value = values[bucket];
+
+            if (value == null)
+            {
+               values[free] = null;
+               return;
+            }
+
+            int ideal = (int)hash(keys[bucket]) & mask;
+
+            // the entry can move back to the free bucket only if that doesn't place it before its ideal bucket
+            if ((bucket - ideal & mask) >= (bucket - free & mask))
+            {
+               keys[free] = keys[bucket];
+               values[free] = value;
+               free = bucket;
+            }
+         }
+      }
+
+      private void rehash(final int newCapacity)
+      {
+         long[] oldKeys = keys;
+         Object[] oldValues = values;
+
+         allocate(newCapacity);
+
+         int mask = newCapacity - 1;
+
+         for (int i = 0; i < oldValues.length; i++)
+         {
+            if (oldValues[i] != null)
+            {
+               int bucket = (int)hash(oldKeys[i]) & mask;
+               while (values[bucket] != null)
+               {
+                  bucket = bucket + 1 & mask;
+               }
+               keys[bucket] = oldKeys[i];
+               values[bucket] = oldValues[i];
+            }
+         }
+      }
+
+      private void allocate(final int capacity)
+      {
+         keys = new long[capacity];
+         values = new Object[capacity];
+         // always keep a free bucket, so probing ends
+         resizeThreshold = Math.min(capacity - 1, (int)(capacity * FILL_FACTOR));
+      }
+   }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2013 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.utils;
+
+/**
+ * A set of primitive <code>long</code>s with the same concurrency and footprint as {@link ConcurrentLongHashMap}.
+ */
+public class ConcurrentLongHashSet
+{
+   private static final Object dummy = Boolean.TRUE;
+
+   private final ConcurrentLongHashMap<Object> theMap;
+
+   public ConcurrentLongHashSet()
+   {
+      theMap = new ConcurrentLongHashMap<Object>();
+   }
+
+   public ConcurrentLongHashSet(final int expectedItems)
+   {
+      theMap = new ConcurrentLongHashMap<Object>(expectedItems);
+   }
+
+   /**
+    * @return <code>true</code> if the set didn't contain <code>value</code>
+    */
+   public boolean add(final long value)
+   {
+      return theMap.putIfAbsent(value, dummy) == null;
+   }
+
+   public void addAll(final long[] values)
+   {
+      for (long value : values)
+      {
+         theMap.put(value, dummy);
+      }
+   }
+
+   public boolean contains(final long value)
+   {
+      return theMap.containsKey(value);
+   }
+
+   public boolean remove(final long value)
+   {
+      return theMap.remove(value) != null;
+   }
+
+   public int size()
+   {
+      return theMap.size();
+   }
+
+   public boolean isEmpty()
+   {
+      return theMap.isEmpty();
+   }
+
+   public void clear()
+   {
+      theMap.clear();
+   }
+
+   /**
+    * @return a snapshot of the values on the set
+    */
+   public long[] values()
+   {
+      return theMap.keys();
+   }
+}
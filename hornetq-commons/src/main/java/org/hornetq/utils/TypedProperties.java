@@ -32,6 +32,7 @@ import java.util.Map.Entry;
 import java.util.Set;
 
 import org.hornetq.api.core.HornetQBuffer;
+import org.hornetq.api.core.HornetQBuffers;
 import org.hornetq.api.core.HornetQPropertyConversionException;
 import org.hornetq.api.core.SimpleString;
 
@@ -43,6 +44,10 @@ import org.hornetq.api.core.SimpleString;
  * (Version 1.1 April 12, 2002).
  * <p>
  * TODO - should have typed property getters and do conversions herein
+ * <p>
+ * Properties decoded lazily keep their encoding instead of a map. Looking a single property up scans the encoding and
+ * decodes only the value found, and encoding them again copies the encoding. The map is only built once the
+ * properties are changed or listed.
  * @author <a href="mailto:tim.fox@jboss.com">Tim Fox</a>
  * @author <a href="mailto:clebert.suconic@jboss.com">Clebert Suconic</a>
  */
@@ -57,6 +62,10 @@ public final class TypedProperties
 
    private boolean internalProperties;
 
+   // the encoding of the properties decoded lazily, from the number of properties on, until the map is built. It is
+   // never changed, so it's shared with copies.
+   private HornetQBuffer encoded;
+
    public TypedProperties()
    {
    }
@@ -67,13 +76,25 @@ public final class TypedProperties
       // Note we don't include the attributes or anything else since they already included in the memory estimate
       // of the ServerMessage
 
+      HornetQBuffer encodedProperties = encoded;
+
+      if (encodedProperties != null)
+      {
+         return encodedProperties.capacity();
+      }
+
       return properties == null ? 0 : size + 2 * DataConstants.SIZE_INT * properties.size();
    }
 
    public TypedProperties(final TypedProperties other)
    {
-      properties = other.properties == null ? null : new HashMap<SimpleString, PropertyValue>(other.properties);
-      size = other.size;
+      synchronized (other)
+      {
+         properties = other.properties == null ? null : new HashMap<SimpleString, PropertyValue>(other.properties);
+         size = other.size;
+         internalProperties = other.internalProperties;
+         encoded = other.encoded;
+      }
    }
 
    public boolean hasInternalProperties()
@@ -149,7 +170,14 @@ public final class TypedProperties
 
    public void putTypedProperties(final TypedProperties otherProps)
    {
-      if (otherProps == null || otherProps.properties == null)
+      if (otherProps == null)
+      {
+         return;
+      }
+
+      otherProps.decodeEncoded();
+
+      if (otherProps.properties == null)
       {
          return;
       }
@@ -167,6 +195,31 @@ public final class TypedProperties
       return doGetProperty(key);
    }
 
+   /**
+    * Passes the value of a property to the visitor in its native type, so primitive values can be read without
+    * boxing them.
+    *
+    * @return false if there is no property with that key, in which case the visitor is not called
+    */
+   public synchronized boolean visitProperty(final SimpleString key, final PropertyVisitor visitor)
+   {
+      if (size == 0)
+      {
+         return false;
+      }
+
+      PropertyValue val = encoded != null ? findEncoded(key) : properties.get(key);
+
+      if (val == null)
+      {
+         return false;
+      }
+
+      val.accept(visitor);
+
+      return true;
+   }
+
    public Boolean getBooleanProperty(final SimpleString key) throws HornetQPropertyConversionException
    {
       Object value = doGetProperty(key);
@@ -425,13 +478,17 @@ public final class TypedProperties
       return doRemoveProperty(key);
    }
 
-   public boolean containsProperty(final SimpleString key)
+   public synchronized boolean containsProperty(final SimpleString key)
    {
       if (size == 0)
       {
          return false;
 
       }
+      else if (encoded != null)
+      {
+         return findEncodedValue(key) >= 0;
+      }
       else
       {
          return properties.containsKey(key);
@@ -440,6 +497,8 @@ public final class TypedProperties
 
    public Set<SimpleString> getPropertyNames()
    {
+      decodeEncoded();
+
       if (size == 0)
       {
          return Collections.emptySet();
@@ -450,13 +509,63 @@ public final class TypedProperties
       }
    }
 
+   /**
+    * Decodes the properties, keeping their encoding instead of decoding them when <code>lazy</code>.
+    */
+   public synchronized void decode(final HornetQBuffer buffer, final boolean lazy)
+   {
+      if (!lazy || buffer.getByte(buffer.readerIndex()) == DataConstants.NULL)
+      {
+         decode(buffer);
+
+         return;
+      }
+
+      int start = buffer.readerIndex() + DataConstants.SIZE_BYTE;
+
+      int numHeaders = buffer.getInt(start);
+
+      int position = start + DataConstants.SIZE_INT;
+
+      boolean internal = false;
+
+      for (int i = 0; i < numHeaders; i++)
+      {
+         int len = buffer.getInt(position);
+
+         position += DataConstants.SIZE_INT;
+
+         internal |= startsWithInternalName(buffer, position, len);
+
+         position += len;
+
+         byte type = buffer.getByte(position);
+
+         position += DataConstants.SIZE_BYTE + valueSize(type, buffer, position + DataConstants.SIZE_BYTE);
+      }
+
+      byte[] bytes = new byte[position - start];
+
+      buffer.getBytes(start, bytes);
+
+      buffer.readerIndex(position);
+
+      properties = null;
+      encoded = HornetQBuffers.wrappedBuffer(bytes);
+      size = bytes.length - DataConstants.SIZE_INT;
+      internalProperties = internal;
+   }
+
    public synchronized void decode(final HornetQBuffer buffer)
    {
+      encoded = null;
+
       byte b = buffer.readByte();
 
       if (b == DataConstants.NULL)
       {
          properties = null;
+         size = 0;
       }
       else
       {
@@ -474,88 +583,20 @@ public final class TypedProperties
 
             byte type = buffer.readByte();
 
-            PropertyValue val;
-
-            switch (type)
-            {
-               case NULL:
-               {
-                  val = new NullValue();
-                  doPutValue(key, val);
-                  break;
-               }
-               case CHAR:
-               {
-                  val = new CharValue(buffer);
-                  doPutValue(key, val);
-                  break;
-               }
-               case BOOLEAN:
-               {
-                  val = new BooleanValue(buffer);
-                  doPutValue(key, val);
-                  break;
-               }
-               case BYTE:
-               {
-                  val = new ByteValue(buffer);
-                  doPutValue(key, val);
-                  break;
-               }
-               case BYTES:
-               {
-                  val = new BytesValue(buffer);
-                  doPutValue(key, val);
-                  break;
-               }
-               case SHORT:
-               {
-                  val = new ShortValue(buffer);
-                  doPutValue(key, val);
-                  break;
-               }
-               case INT:
-               {
-                  val = new IntValue(buffer);
-                  doPutValue(key, val);
-                  break;
-               }
-               case LONG:
-               {
-                  val = new LongValue(buffer);
-                  doPutValue(key, val);
-                  break;
-               }
-               case FLOAT:
-               {
-                  val = new FloatValue(buffer);
-                  doPutValue(key, val);
-                  break;
-               }
-               case DOUBLE:
-               {
-                  val = new DoubleValue(buffer);
-                  doPutValue(key, val);
-                  break;
-               }
-               case STRING:
-               {
-                  val = new StringValue(buffer);
-                  doPutValue(key, val);
-                  break;
-               }
-               default:
-               {
-                  throw HornetQUtilBundle.BUNDLE.invalidType(type);
-               }
-            }
+            doPutValue(key, readValue(type, buffer));
          }
       }
    }
 
    public synchronized void encode(final HornetQBuffer buffer)
    {
-      if (properties == null)
+      if (encoded != null)
+      {
+         buffer.writeByte(DataConstants.NOT_NULL);
+
+         buffer.writeBytes(encoded, 0, encoded.capacity());
+      }
+      else if (properties == null)
       {
          buffer.writeByte(DataConstants.NULL);
       }
@@ -577,9 +618,9 @@ public final class TypedProperties
       }
    }
 
-   public int getEncodeSize()
+   public synchronized int getEncodeSize()
    {
-      if (properties == null)
+      if (encoded == null && properties == null)
       {
          return DataConstants.SIZE_BYTE;
       }
@@ -591,6 +632,8 @@ public final class TypedProperties
 
    public void clear()
    {
+      decodeEncoded();
+
       if (properties != null)
       {
          properties.clear();
@@ -600,6 +643,8 @@ public final class TypedProperties
    @Override
    public String toString()
    {
+      decodeEncoded();
+
       return "TypedProperties[" + properties + "]";
    }
 
@@ -607,6 +652,8 @@ public final class TypedProperties
 
    private void checkCreateProperties()
    {
+      decodeEncoded();
+
       if (properties == null)
       {
          properties = new HashMap<SimpleString, PropertyValue>();
@@ -633,6 +680,8 @@ public final class TypedProperties
 
    private synchronized Object doRemoveProperty(final SimpleString key)
    {
+      decodeEncoded();
+
       if (properties == null)
       {
          return null;
@@ -659,7 +708,7 @@ public final class TypedProperties
          return null;
       }
 
-      PropertyValue val = properties.get(key);
+      PropertyValue val = encoded != null ? findEncoded(key) : properties.get(key);
 
       if (val == null)
       {
@@ -671,12 +720,213 @@ public final class TypedProperties
       }
    }
 
+   /**
+    * Builds the map of the properties decoded lazily.
+    */
+   private synchronized void decodeEncoded()
+   {
+      if (encoded != null)
+      {
+         HornetQBuffer buffer = encoded.duplicate();
+
+         encoded = null;
+
+         int numHeaders = buffer.readInt();
+
+         properties = new HashMap<SimpleString, PropertyValue>(numHeaders);
+         size = 0;
+
+         for (int i = 0; i < numHeaders; i++)
+         {
+            SimpleString key = buffer.readSimpleString();
+
+            doPutValue(key, readValue(buffer.readByte(), buffer));
+         }
+      }
+   }
+
+   private PropertyValue findEncoded(final Object key)
+   {
+      if (!(key instanceof SimpleString))
+      {
+         return null;
+      }
+
+      int position = findEncodedValue((SimpleString)key);
+
+      if (position < 0)
+      {
+         return null;
+      }
+
+      HornetQBuffer buffer = encoded.duplicate();
+
+      buffer.readerIndex(position + DataConstants.SIZE_BYTE);
+
+      return readValue(encoded.getByte(position), buffer);
+   }
+
+   /**
+    * @return the position of the type of the value of the property on {@link #encoded}, or -1 if it's not there
+    */
+   private int findEncodedValue(final SimpleString key)
+   {
+      byte[] keyData = key.getData();
+
+      int numHeaders = encoded.getInt(0);
+
+      int position = DataConstants.SIZE_INT;
+
+      for (int i = 0; i < numHeaders; i++)
+      {
+         int len = encoded.getInt(position);
+
+         position += DataConstants.SIZE_INT;
+
+         boolean found = len == keyData.length;
+
+         for (int j = 0; found && j < len; j++)
+         {
+            found = encoded.getByte(position + j) == keyData[j];
+         }
+
+         position += len;
+
+         if (found)
+         {
+            return position;
+         }
+
+         position += DataConstants.SIZE_BYTE + valueSize(encoded.getByte(position),
+                                                          encoded,
+                                                          position + DataConstants.SIZE_BYTE);
+      }
+
+      return -1;
+   }
+
+   private static boolean startsWithInternalName(final HornetQBuffer buffer, final int position, final int len)
+   {
+      byte[] prefix = HQ_PROPNAME.getData();
+
+      if (len < prefix.length)
+      {
+         return false;
+      }
+
+      for (int i = 0; i < prefix.length; i++)
+      {
+         if (buffer.getByte(position + i) != prefix[i])
+         {
+            return false;
+         }
+      }
+
+      return true;
+   }
+
+   /**
+    * @return the size of an encoded value of that type, from the position after its type
+    */
+   private static int valueSize(final byte type, final HornetQBuffer buffer, final int position)
+   {
+      switch (type)
+      {
+         case NULL:
+            return 0;
+         case BOOLEAN:
+            return DataConstants.SIZE_BOOLEAN;
+         case BYTE:
+            return DataConstants.SIZE_BYTE;
+         case CHAR:
+            return DataConstants.SIZE_CHAR;
+         case SHORT:
+            return DataConstants.SIZE_SHORT;
+         case INT:
+            return DataConstants.SIZE_INT;
+         case FLOAT:
+            return DataConstants.SIZE_FLOAT;
+         case LONG:
+            return DataConstants.SIZE_LONG;
+         case DOUBLE:
+            return DataConstants.SIZE_DOUBLE;
+         case BYTES:
+         case STRING:
+            return DataConstants.SIZE_INT + buffer.getInt(position);
+         default:
+            throw HornetQUtilBundle.BUNDLE.invalidType(type);
+      }
+   }
+
+   private static PropertyValue readValue(final byte type, final HornetQBuffer buffer)
+   {
+      switch (type)
+      {
+         case NULL:
+            return new NullValue();
+         case CHAR:
+            return new CharValue(buffer);
+         case BOOLEAN:
+            return new BooleanValue(buffer);
+         case BYTE:
+            return new ByteValue(buffer);
+         case BYTES:
+            return new BytesValue(buffer);
+         case SHORT:
+            return new ShortValue(buffer);
+         case INT:
+            return new IntValue(buffer);
+         case LONG:
+            return new LongValue(buffer);
+         case FLOAT:
+            return new FloatValue(buffer);
+         case DOUBLE:
+            return new DoubleValue(buffer);
+         case STRING:
+            return new StringValue(buffer);
+         default:
+            throw HornetQUtilBundle.BUNDLE.invalidType(type);
+      }
+   }
+
    // Inner classes ------------------------------------------------------------------------------
 
+   /**
+    * Receives a property value in its native type.
+    *
+    * @see TypedProperties#visitProperty(SimpleString, PropertyVisitor)
+    */
+   public interface PropertyVisitor
+   {
+      void visitNull();
+
+      void visitBoolean(boolean value);
+
+      void visitByte(byte value);
+
+      void visitBytes(byte[] value);
+
+      void visitShort(short value);
+
+      void visitInt(int value);
+
+      void visitLong(long value);
+
+      void visitFloat(float value);
+
+      void visitDouble(double value);
+
+      void visitChar(char value);
+
+      void visitSimpleString(SimpleString value);
+   }
+
    private static abstract class PropertyValue
    {
       abstract Object getValue();
 
+      abstract void accept(PropertyVisitor visitor);
+
       abstract void write(HornetQBuffer buffer);
 
       abstract int encodeSize();
@@ -700,6 +950,12 @@ public final class TypedProperties
          return null;
       }
 
+      @Override
+      void accept(final PropertyVisitor visitor)
+      {
+         visitor.visitNull();
+      }
+
       @Override
       public void write(final HornetQBuffer buffer)
       {
@@ -734,6 +990,12 @@ public final class TypedProperties
          return val;
       }
 
+      @Override
+      void accept(final PropertyVisitor visitor)
+      {
+         visitor.visitBoolean(val);
+      }
+
       @Override
       public void write(final HornetQBuffer buffer)
       {
@@ -769,6 +1031,12 @@ public final class TypedProperties
          return val;
       }
 
+      @Override
+      void accept(final PropertyVisitor visitor)
+      {
+         visitor.visitByte(val);
+      }
+
       @Override
       public void write(final HornetQBuffer buffer)
       {
@@ -805,6 +1073,12 @@ public final class TypedProperties
          return val;
       }
 
+      @Override
+      void accept(final PropertyVisitor visitor)
+      {
+         visitor.visitBytes(val);
+      }
+
       @Override
       public void write(final HornetQBuffer buffer)
       {
@@ -841,6 +1115,12 @@ public final class TypedProperties
          return val;
       }
 
+      @Override
+      void accept(final PropertyVisitor visitor)
+      {
+         visitor.visitShort(val);
+      }
+
       @Override
       public void write(final HornetQBuffer buffer)
       {
@@ -875,6 +1155,12 @@ public final class TypedProperties
          return val;
       }
 
+      @Override
+      void accept(final PropertyVisitor visitor)
+      {
+         visitor.visitInt(val);
+      }
+
       @Override
       public void write(final HornetQBuffer buffer)
       {
@@ -909,6 +1195,12 @@ public final class TypedProperties
          return val;
       }
 
+      @Override
+      void accept(final PropertyVisitor visitor)
+      {
+         visitor.visitLong(val);
+      }
+
       @Override
       public void write(final HornetQBuffer buffer)
       {
@@ -943,6 +1235,12 @@ public final class TypedProperties
          return val;
       }
 
+      @Override
+      void accept(final PropertyVisitor visitor)
+      {
+         visitor.visitFloat(val);
+      }
+
       @Override
       public void write(final HornetQBuffer buffer)
       {
@@ -978,6 +1276,12 @@ public final class TypedProperties
          return val;
       }
 
+      @Override
+      void accept(final PropertyVisitor visitor)
+      {
+         visitor.visitDouble(val);
+      }
+
       @Override
       public void write(final HornetQBuffer buffer)
       {
@@ -1012,6 +1316,12 @@ public final class TypedProperties
          return val;
       }
 
+      @Override
+      void accept(final PropertyVisitor visitor)
+      {
+         visitor.visitChar(val);
+      }
+
       @Override
       public void write(final HornetQBuffer buffer)
       {
@@ -1046,6 +1356,12 @@ public final class TypedProperties
          return val;
       }
 
+      @Override
+      void accept(final PropertyVisitor visitor)
+      {
+         visitor.visitSimpleString(val);
+      }
+
       @Override
       public void write(final HornetQBuffer buffer)
       {
@@ -1062,11 +1378,15 @@ public final class TypedProperties
 
    public boolean isEmpty()
    {
+      decodeEncoded();
+
       return properties.isEmpty();
    }
 
    public Map<String, Object> getMap()
    {
+      decodeEncoded();
+
       Map<String, Object> m = new HashMap<String, Object>();
       for (Entry<SimpleString,PropertyValue> entry:properties.entrySet()) {
          Object val = entry.getValue().getValue();
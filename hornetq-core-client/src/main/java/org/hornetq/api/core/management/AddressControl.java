@@ -71,6 +71,26 @@ public interface AddressControl
     */
    long getNumberOfBytesPerPage() throws Exception;
 
+   /**
+    * Returns the number of times a paged message of this address was read from the page cache.
+    */
+   long getPageCacheHits() throws Exception;
+
+   /**
+    * Returns the number of times a paged message of this address had to be read from its page file.
+    */
+   long getPageCacheMisses() throws Exception;
+
+   /**
+    * Returns the number of pages evicted from the page cache of this address to keep it within its bounds.
+    */
+   long getPageCacheEvictions() throws Exception;
+
+   /**
+    * Returns the number of bytes the messages held by the page cache of this address are estimated to take in memory.
+    */
+   long getPageCacheMemorySize() throws Exception;
+
    /**
     * Returns the names of all bindings (both queues and diverts) bound to this address
     */
@@ -16,6 +16,7 @@ package org.hornetq.core.client.impl;
 import java.io.File;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
@@ -67,6 +68,11 @@ public final class ClientConsumerImpl implements ClientConsumerInternal
 
    public static final SimpleString FORCED_DELIVERY_MESSAGE = new SimpleString("_hornetq.forced.delivery.seq");
 
+   // Bounds of a batch of individual acknowledgements, besides the ackBatchSize in bytes
+   private static final int INDIVIDUAL_ACK_BATCH_MAX_MESSAGES = 512;
+
+   private static final long INDIVIDUAL_ACK_BATCH_TIMEOUT_MILLISECONDS = 100;
+
    // Attributes
    // -----------------------------------------------------------------------------------
 
@@ -130,6 +136,17 @@ public final class ClientConsumerImpl implements ClientConsumerInternal
 
    private volatile ClientMessageInternal lastAckedMessage;
 
+   // Individual acknowledgements not sent yet, all guarded by individualAcksLock
+   private final Object individualAcksLock = new Object();
+
+   private long[] pendingIndividualAcks;
+
+   private int pendingIndividualAckCount;
+
+   private int pendingIndividualAckBytes;
+
+   private long firstPendingIndividualAckTime;
+
    private boolean stopped = false;
 
    private long forceDeliveryCount;
@@ -213,6 +230,9 @@ public final class ClientConsumerImpl implements ClientConsumerInternal
          startSlowConsumer();
       }
 
+      // receive may block for a while, the acknowledgements held back would wait along with it
+      flushOldIndividualAcks(true);
+
       receiverThread = Thread.currentThread();
 
       // To verify if deliveryForced was already call
@@ -532,6 +552,14 @@ public final class ClientConsumerImpl implements ClientConsumerInternal
 
       lastAckedMessage = null;
 
+      // the session flushed these before failing over (preHandleFailover), any left were taken while it was failing
+      // over and are for messages the new session will deliver again
+      synchronized (individualAcksLock)
+      {
+         pendingIndividualAckCount = 0;
+         pendingIndividualAckBytes = 0;
+      }
+
       creditsToSend = 0;
 
       failedOver = true;
@@ -839,6 +867,13 @@ public final class ClientConsumerImpl implements ClientConsumerInternal
       }
    }
 
+   /**
+    * Individual acknowledgements are coalesced and sent together when there are more messages on the buffer to be
+    * consumed, up to {@link #INDIVIDUAL_ACK_BATCH_MAX_MESSAGES} messages, ackBatchSize bytes or
+    * {@link #INDIVIDUAL_ACK_BATCH_TIMEOUT_MILLISECONDS} since the first one of the batch. The time is also checked
+    * by receive and after each message handed to the MessageHandler. When blocking on acknowledge each
+    * acknowledgement is sent on its own.
+    */
    public void individualAcknowledge(ClientMessage message) throws HornetQException
    {
       if (lastAckedMessage != null)
@@ -846,11 +881,51 @@ public final class ClientConsumerImpl implements ClientConsumerInternal
          flushAcks();
       }
 
-      session.individualAcknowledge(id, message.getMessageID());
+      if (ackBatchSize <= 0 || session.isBlockOnAcknowledge())
+      {
+         session.individualAcknowledge(id, message.getMessageID());
+         return;
+      }
+
+      long[] toSend = null;
+
+      synchronized (individualAcksLock)
+      {
+         long now = System.currentTimeMillis();
+
+         if (pendingIndividualAckCount == 0)
+         {
+            if (pendingIndividualAcks == null)
+            {
+               pendingIndividualAcks = new long[INDIVIDUAL_ACK_BATCH_MAX_MESSAGES];
+            }
+            firstPendingIndividualAckTime = now;
+         }
+
+         pendingIndividualAcks[pendingIndividualAckCount++] = message.getMessageID();
+
+         pendingIndividualAckBytes += message.getEncodeSize();
+
+         // if nothing else is buffered there may be no other acknowledgement to send this one with for a while
+         if (pendingIndividualAckCount == INDIVIDUAL_ACK_BATCH_MAX_MESSAGES ||
+             pendingIndividualAckBytes >= ackBatchSize ||
+             now - firstPendingIndividualAckTime >= INDIVIDUAL_ACK_BATCH_TIMEOUT_MILLISECONDS ||
+             buffer.size() == 0)
+         {
+            toSend = takePendingIndividualAcks();
+         }
+      }
+
+      if (toSend != null)
+      {
+         session.individualAcknowledge(id, toSend);
+      }
    }
 
    public void flushAcks() throws HornetQException
    {
+      flushIndividualAcks();
+
       if (lastAckedMessage != null)
       {
          doAck(lastAckedMessage);
@@ -1142,6 +1217,8 @@ public final class ClientConsumerImpl implements ClientConsumerInternal
                   HornetQClientLogger.LOGGER.trace("Handler.onMessage done");
                }
 
+               flushOldIndividualAcks(false);
+
                if (message.isLargeMessage())
                {
                   message.discardBody();
@@ -1233,6 +1310,9 @@ public final class ClientConsumerImpl implements ClientConsumerInternal
 
    private void doAck(final ClientMessageInternal message) throws HornetQException
    {
+      // the individual acknowledgements are for messages before this one, they must get to the server first
+      flushIndividualAcks();
+
       ackBytes = 0;
 
       lastAckedMessage = null;
@@ -1240,6 +1320,62 @@ public final class ClientConsumerImpl implements ClientConsumerInternal
       session.acknowledge(id, message.getMessageID());
    }
 
+   public void flushIndividualAcks() throws HornetQException
+   {
+      long[] toSend;
+
+      synchronized (individualAcksLock)
+      {
+         toSend = takePendingIndividualAcks();
+      }
+
+      if (toSend != null)
+      {
+         session.individualAcknowledge(id, toSend);
+      }
+   }
+
+   /**
+    * Sends the pending individual acknowledgements if the first one has waited
+    * {@link #INDIVIDUAL_ACK_BATCH_TIMEOUT_MILLISECONDS}, or if there is nothing else on the buffer and
+    * {@code ifBufferEmpty}, so no acknowledgement waits for the next one to be sent.
+    */
+   private void flushOldIndividualAcks(final boolean ifBufferEmpty) throws HornetQException
+   {
+      long[] toSend = null;
+
+      synchronized (individualAcksLock)
+      {
+         if (pendingIndividualAckCount > 0 && (ifBufferEmpty && buffer.size() == 0 ||
+            System.currentTimeMillis() - firstPendingIndividualAckTime >= INDIVIDUAL_ACK_BATCH_TIMEOUT_MILLISECONDS))
+         {
+            toSend = takePendingIndividualAcks();
+         }
+      }
+
+      if (toSend != null)
+      {
+         session.individualAcknowledge(id, toSend);
+      }
+   }
+
+   // must hold individualAcksLock
+   private long[] takePendingIndividualAcks()
+   {
+      if (pendingIndividualAckCount == 0)
+      {
+         return null;
+      }
+
+      long[] messageIDs = Arrays.copyOf(pendingIndividualAcks, pendingIndividualAckCount);
+
+      pendingIndividualAckCount = 0;
+
+      pendingIndividualAckBytes = 0;
+
+      return messageIDs;
+   }
+
    // Inner classes
    // --------------------------------------------------------------------------------
 
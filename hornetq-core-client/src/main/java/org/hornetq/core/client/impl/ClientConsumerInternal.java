@@ -70,6 +70,11 @@ public interface ClientConsumerInternal extends ClientConsumer
 
    void flushAcks() throws HornetQException;
 
+   /**
+    * Sends the individual acknowledgements held to be sent together, leaving any cumulative acknowledgement pending.
+    */
+   void flushIndividualAcks() throws HornetQException;
+
    void stop(boolean waitForOnMessage) throws HornetQException;
 
    void start();
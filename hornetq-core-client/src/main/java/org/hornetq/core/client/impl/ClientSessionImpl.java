@@ -63,6 +63,7 @@ import org.hornetq.core.protocol.core.impl.wireformat.SessionCreateConsumerMessa
 import org.hornetq.core.protocol.core.impl.wireformat.SessionDeleteQueueMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.SessionExpireMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.SessionForceConsumerDelivery;
+import org.hornetq.core.protocol.core.impl.wireformat.SessionIndividualAcknowledgeBatchMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.SessionIndividualAcknowledgeMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.SessionQueueQueryMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.SessionQueueQueryResponseMessage;
@@ -105,6 +106,9 @@ import org.hornetq.utils.XidCodecSupport;
  */
 final class ClientSessionImpl implements ClientSessionInternal, FailureListener, CommandConfirmationHandler
 {
+   // the first server version handling SessionIndividualAcknowledgeBatchMessage
+   private static final int INDIVIDUAL_ACKNOWLEDGE_BATCH_VERSION = 125;
+
    private final Map<String, String> metadata = new HashMap<String, String>();
 
    private final ClientSessionFactoryInternal sessionFactory;
@@ -891,6 +895,48 @@ final class ClientSessionImpl implements ClientSessionInternal, FailureListener,
       }
    }
 
+   public void individualAcknowledge(final long consumerID, final long[] messageIDs) throws HornetQException
+   {
+      // if we're pre-acknowledging then we don't need to do anything
+      if (preAcknowledge)
+      {
+         return;
+      }
+
+      if (version < ClientSessionImpl.INDIVIDUAL_ACKNOWLEDGE_BATCH_VERSION)
+      {
+         // older servers don't know about the batch
+         for (long messageID : messageIDs)
+         {
+            individualAcknowledge(consumerID, messageID);
+         }
+         return;
+      }
+
+      checkClosed();
+
+      SessionIndividualAcknowledgeBatchMessage message = new SessionIndividualAcknowledgeBatchMessage(consumerID,
+                                                                                                      messageIDs,
+                                                                                                      blockOnAcknowledge);
+
+      startCall();
+      try
+      {
+         if (blockOnAcknowledge)
+         {
+            channel.sendBlocking(message, PacketImpl.NULL_RESPONSE);
+         }
+         else
+         {
+            channel.sendBatched(message);
+         }
+      }
+      finally
+      {
+         endCall();
+      }
+   }
+
    public void expire(final long consumerID, final long messageID) throws HornetQException
    {
       checkClosed();
@@ -1055,6 +1101,20 @@ final class ClientSessionImpl implements ClientSessionInternal, FailureListener,
 
    public void preHandleFailover(CoreRemotingConnection connection)
    {
+      // The individual acknowledgements held to be batched go out before the channel is locked, so they are in the
+      // re-send cache and replayed if the session reattaches, as they would be had they been sent one by one
+      for (ClientConsumerInternal consumer : cloneConsumers())
+      {
+         try
+         {
+            consumer.flushIndividualAcks();
+         }
+         catch (HornetQException e)
+         {
+            HornetQClientLogger.LOGGER.debug("Could not send the pending acknowledgements before failover", e);
+         }
+      }
+
       // We lock the channel to prevent any packets to be added to the re-send
       // cache during the failover process
       //we also do this before the connection fails over to give the session a chance to block for failover
@@ -38,6 +38,11 @@ public interface ClientSessionInternal extends ClientSession
 
    void individualAcknowledge(long consumerID, long messageID) throws HornetQException;
 
+   /**
+    * Acknowledges each of the messages individually, on a single packet when the server supports it.
+    */
+   void individualAcknowledge(long consumerID, long[] messageIDs) throws HornetQException;
+
    boolean isCacheLargeMessageClient();
 
    int getMinLargeMessageSize();
@@ -0,0 +1,1075 @@
+/*
+ * Copyright 2013 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.filter.impl;
+
+import java.util.Set;
+
+import org.hornetq.api.core.FilterConstants;
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.message.impl.MessageInternal;
+import org.hornetq.utils.TypedProperties;
+
+/**
+ * Compiles the tree produced by {@link FilterParser} into a {@link FilterEvaluator}.
+ * <p>
+ * The {@link Operator} tree keeps the value of each identifier and of each partial result on the tree itself, so a
+ * filter using it has to be evaluated by one thread at a time. The compiled form is an immutable tree of expressions
+ * which evaluate into a {@link Value} owned by the caller, reading properties straight from the message's
+ * {@link TypedProperties}. Numbers are carried as primitives, so no boxing happens during evaluation.
+ * <p>
+ * The evaluation rules, including how null (unknown) values propagate, are the same as the ones implemented by
+ * {@link Operator}.
+ */
+public final class FilterCompiler
+{
+   static final int NULL = 0;
+
+   static final int DOUBLE = Operator.DOUBLE;
+
+   static final int LONG = Operator.LONG;
+
+   static final int BOOLEAN = Operator.BOOLEAN;
+
+   static final int SIMPLE_STRING = Operator.SIMPLE_STRING;
+
+   private FilterCompiler()
+   {
+   }
+
+   /**
+    * @param parseResult the result of {@link FilterParser#parse(SimpleString, java.util.Map)}
+    */
+   public static FilterEvaluator compile(final Object parseResult) throws Exception
+   {
+      return new RootEvaluator(compileExpression(parseResult));
+   }
+
+   private static Expression compileExpression(final Object node) throws Exception
+   {
+      if (node == null)
+      {
+         return new Constant(null);
+      }
+      else if (node instanceof Identifier)
+      {
+         return compileIdentifier(((Identifier)node).getName());
+      }
+      else if (node instanceof Operator)
+      {
+         return compileOperator((Operator)node);
+      }
+      else
+      {
+         return new Constant(node);
+      }
+   }
+
+   /**
+    * @return true if the identifier refers to a message header (such as <code>HQPriority</code>) rather than to a
+    *         message property
+    */
+   static boolean isHeaderField(final SimpleString name)
+   {
+      return getHeader(name) != null;
+   }
+
+   private static Header getHeader(final SimpleString name)
+   {
+      if (name.startsWith(FilterConstants.HORNETQ_PREFIX))
+      {
+         for (Header header : Header.values())
+         {
+            if (header.name.equals(name))
+            {
+               return header;
+            }
+         }
+      }
+
+      return null;
+   }
+
+   private static Expression compileIdentifier(final SimpleString name)
+   {
+      Header header = getHeader(name);
+
+      return header != null ? new HeaderField(header) : new Property(name);
+   }
+
+   private static Expression compileOperator(final Operator op) throws Exception
+   {
+      int operation = op.getOperation();
+
+      switch (operation)
+      {
+         case Operator.EQUAL:
+            return new Equal(compileExpression(op.getOper1()), compileExpression(op.getOper2()), false);
+         case Operator.DIFFERENT:
+            return new Equal(compileExpression(op.getOper1()), compileExpression(op.getOper2()), true);
+         case Operator.NOT:
+            return new Not(compileExpression(op.getOper1()));
+         case Operator.AND:
+            return new And(compileExpression(op.getOper1()), compileExpression(op.getOper2()));
+         case Operator.OR:
+            return new Or(compileExpression(op.getOper1()), compileExpression(op.getOper2()));
+         case Operator.GT:
+         case Operator.GE:
+         case Operator.LT:
+         case Operator.LE:
+            return new Comparison(operation, compileExpression(op.getOper1()), compileExpression(op.getOper2()));
+         case Operator.ADD:
+         case Operator.SUB:
+         case Operator.MUL:
+         case Operator.DIV:
+            return new Arithmetic(operation, compileExpression(op.getOper1()), compileExpression(op.getOper2()));
+         case Operator.NEG:
+            return new Negate(compileExpression(op.getOper1()));
+         case Operator.BETWEEN:
+         case Operator.NOT_BETWEEN:
+            return new Between(operation == Operator.NOT_BETWEEN,
+                               compileExpression(op.getOper1()),
+                               compileExpression(op.getOper2()),
+                               compileExpression(op.getOper3()));
+         case Operator.LIKE:
+         case Operator.NOT_LIKE:
+         case Operator.LIKE_ESCAPE:
+         case Operator.NOT_LIKE_ESCAPE:
+            return compileLike(op);
+         case Operator.IS_NULL:
+            return new IsNull(compileExpression(op.getOper1()), false);
+         case Operator.IS_NOT_NULL:
+            return new IsNull(compileExpression(op.getOper1()), true);
+         case Operator.IN:
+            return new In(compileExpression(op.getOper1()), (Set<?>)op.getOper2(), false);
+         case Operator.NOT_IN:
+            return new In(compileExpression(op.getOper1()), (Set<?>)op.getOper2(), true);
+         default:
+            throw new Exception("Cannot compile operation " + Operator.operationString(operation));
+      }
+   }
+
+   private static Expression compileLike(final Operator op) throws Exception
+   {
+      int operation = op.getOperation();
+
+      boolean not = operation == Operator.NOT_LIKE || operation == Operator.NOT_LIKE_ESCAPE;
+
+      Character escapeChar = null;
+
+      if (operation == Operator.LIKE_ESCAPE || operation == Operator.NOT_LIKE_ESCAPE)
+      {
+         SimpleString escapeString = (SimpleString)op.getOper3();
+         if (escapeString.length() != 1)
+         {
+            throw new Exception("LIKE ESCAPE: Bad escape character " + escapeString.toString());
+         }
+         escapeChar = Character.valueOf(escapeString.charAt(0));
+      }
+
+      // The grammar only allows a string literal as the pattern, so it is compiled once here
+      RegExp re = new RegExp(op.getOper2().toString(), escapeChar);
+
+      return new Like(compileExpression(op.getOper1()), re, not);
+   }
+
+   private static Exception badObject(final int type, final String operation)
+   {
+      return new Exception("Bad Object: '" + Operator.getClassName(type) + "' for operation: " + operation);
+   }
+
+   private static boolean isNumeric(final int type)
+   {
+      return type == LONG || type == DOUBLE;
+   }
+
+   /**
+    * Holds the result of evaluating an expression. One instance is used for a whole evaluation, binary expressions
+    * keep their left operand in local variables while evaluating the right one.
+    */
+   static final class Value implements TypedProperties.PropertyVisitor
+   {
+      int type;
+
+      long longValue;
+
+      double doubleValue;
+
+      boolean booleanValue;
+
+      SimpleString stringValue;
+
+      // set when a property holds a type that filters can't operate on
+      Class<?> unsupported;
+
+      void setNull()
+      {
+         type = NULL;
+      }
+
+      void setBoolean(final boolean b)
+      {
+         type = BOOLEAN;
+         booleanValue = b;
+      }
+
+      void setLong(final long l)
+      {
+         type = LONG;
+         longValue = l;
+      }
+
+      void setDouble(final double d)
+      {
+         type = DOUBLE;
+         doubleValue = d;
+      }
+
+      void setString(final SimpleString s)
+      {
+         type = SIMPLE_STRING;
+         stringValue = s;
+      }
+
+      double asDouble()
+      {
+         return type == LONG ? longValue : doubleValue;
+      }
+
+      public void visitNull()
+      {
+         setNull();
+      }
+
+      public void visitBoolean(final boolean value)
+      {
+         setBoolean(value);
+      }
+
+      public void visitByte(final byte value)
+      {
+         setLong(value);
+      }
+
+      public void visitBytes(final byte[] value)
+      {
+         unsupported = byte[].class;
+      }
+
+      public void visitShort(final short value)
+      {
+         setLong(value);
+      }
+
+      public void visitInt(final int value)
+      {
+         setLong(value);
+      }
+
+      public void visitLong(final long value)
+      {
+         setLong(value);
+      }
+
+      public void visitFloat(final float value)
+      {
+         setDouble(value);
+      }
+
+      public void visitDouble(final double value)
+      {
+         setDouble(value);
+      }
+
+      public void visitChar(final char value)
+      {
+         unsupported = Character.class;
+      }
+
+      public void visitSimpleString(final SimpleString value)
+      {
+         setString(value);
+      }
+   }
+
+   abstract static class Expression
+   {
+      /**
+       * Evaluates the expression, leaving the result on <code>value</code>.
+       */
+      abstract void evaluate(MessageInternal message, Value value) throws Exception;
+   }
+
+   private static final class RootEvaluator implements FilterEvaluator
+   {
+      private final Expression expression;
+
+      RootEvaluator(final Expression expression)
+      {
+         this.expression = expression;
+      }
+
+      public boolean match(final MessageInternal message) throws Exception
+      {
+         Value value = new Value();
+
+         expression.evaluate(message, value);
+
+         if (value.type == NULL)
+         {
+            return false;
+         }
+         else if (value.type != BOOLEAN)
+         {
+            throw new Exception("Filter result is not a boolean: " + Operator.getClassName(value.type));
+         }
+
+         return value.booleanValue;
+      }
+   }
+
+   private static final class Constant extends Expression
+   {
+      private final int type;
+
+      private final long longValue;
+
+      private final double doubleValue;
+
+      private final boolean booleanValue;
+
+      private final SimpleString stringValue;
+
+      Constant(final Object constant) throws Exception
+      {
+         long l = 0;
+         double d = 0;
+         boolean b = false;
+         SimpleString s = null;
+
+         if (constant == null)
+         {
+            type = NULL;
+         }
+         else if (constant instanceof SimpleString)
+         {
+            type = SIMPLE_STRING;
+            s = (SimpleString)constant;
+         }
+         else if (constant instanceof Boolean)
+         {
+            type = BOOLEAN;
+            b = (Boolean)constant;
+         }
+         else if (constant instanceof Double || constant instanceof Float)
+         {
+            type = DOUBLE;
+            d = ((Number)constant).doubleValue();
+         }
+         else if (constant instanceof Number)
+         {
+            type = LONG;
+            l = ((Number)constant).longValue();
+         }
+         else
+         {
+            throw new Exception("Bad Object: '" + constant.getClass().getName() + "' used as a constant");
+         }
+
+         longValue = l;
+         doubleValue = d;
+         booleanValue = b;
+         stringValue = s;
+      }
+
+      @Override
+      void evaluate(final MessageInternal message, final Value value)
+      {
+         value.type = type;
+         value.longValue = longValue;
+         value.doubleValue = doubleValue;
+         value.booleanValue = booleanValue;
+         value.stringValue = stringValue;
+      }
+   }
+
+   private static final class Property extends Expression
+   {
+      private final SimpleString name;
+
+      Property(final SimpleString name)
+      {
+         this.name = name;
+      }
+
+      @Override
+      void evaluate(final MessageInternal message, final Value value) throws Exception
+      {
+         TypedProperties properties = message.getTypedProperties();
+
+         if (properties == null || !properties.visitProperty(name, value))
+         {
+            value.setNull();
+         }
+         else if (value.unsupported != null)
+         {
+            throw new Exception("Bad Object: '" + value.unsupported.getName() + "' for property: " + name);
+         }
+      }
+   }
+
+   private enum Header
+   {
+      USERID(FilterConstants.HORNETQ_USERID),
+      PRIORITY(FilterConstants.HORNETQ_PRIORITY),
+      TIMESTAMP(FilterConstants.HORNETQ_TIMESTAMP),
+      DURABLE(FilterConstants.HORNETQ_DURABLE),
+      EXPIRATION(FilterConstants.HORNETQ_EXPIRATION),
+      SIZE(FilterConstants.HORNETQ_SIZE);
+
+      final SimpleString name;
+
+      Header(final SimpleString name)
+      {
+         this.name = name;
+      }
+   }
+
+   private static final class HeaderField extends Expression
+   {
+      private final Header header;
+
+      HeaderField(final Header header)
+      {
+         this.header = header;
+      }
+
+      @Override
+      void evaluate(final MessageInternal message, final Value value)
+      {
+         switch (header)
+         {
+            case USERID:
+               // It's the stringified (hex) representation of a user id that can be used in a selector expression
+               value.setString(new SimpleString("ID:" + message.getUserID()));
+               break;
+            case PRIORITY:
+               value.setLong(message.getPriority());
+               break;
+            case TIMESTAMP:
+               value.setLong(message.getTimestamp());
+               break;
+            case DURABLE:
+               value.setString(message.isDurable() ? FilterConstants.DURABLE : FilterConstants.NON_DURABLE);
+               break;
+            case EXPIRATION:
+               value.setLong(message.getExpiration());
+               break;
+            case SIZE:
+               value.setLong(message.getEncodeSize());
+               break;
+            default:
+               value.setNull();
+         }
+      }
+   }
+
+   /**
+    * = and &lt;&gt;
+    */
+   private static final class Equal extends Expression
+   {
+      private final Expression left;
+
+      private final Expression right;
+
+      private final boolean different;
+
+      Equal(final Expression left, final Expression right, final boolean different)
+      {
+         this.left = left;
+         this.right = right;
+         this.different = different;
+      }
+
+      @Override
+      void evaluate(final MessageInternal message, final Value value) throws Exception
+      {
+         left.evaluate(message, value);
+
+         int type1 = value.type;
+
+         if (type1 == NULL)
+         {
+            if (different)
+            {
+               right.evaluate(message, value);
+               value.setBoolean(value.type != NULL);
+            }
+            else
+            {
+               value.setBoolean(false);
+            }
+            return;
+         }
+
+         long long1 = value.longValue;
+         double double1 = value.asDouble();
+         boolean boolean1 = value.booleanValue;
+         SimpleString string1 = value.stringValue;
+
+         right.evaluate(message, value);
+
+         int type2 = value.type;
+
+         if (isNumeric(type1))
+         {
+            if (type2 == NULL)
+            {
+               value.setNull();
+            }
+            else if (!isNumeric(type2))
+            {
+               value.setBoolean(false);
+            }
+            else if (type1 == LONG && type2 == LONG)
+            {
+               value.setBoolean((long1 == value.longValue) != different);
+            }
+            else
+            {
+               value.setBoolean((double1 == value.asDouble()) != different);
+            }
+         }
+         else
+         {
+            if (type2 == NULL)
+            {
+               if (different)
+               {
+                  value.setNull();
+               }
+               else
+               {
+                  value.setBoolean(false);
+               }
+            }
+            else if (type1 != type2)
+            {
+               throw new Exception("Bad Object: expected '" + Operator.getClassName(type1) +
+                                   "' got '" +
+                                   Operator.getClassName(type2) +
+                                   "' for operation: " +
+                                   (different ? "DIFFERENT" : "EQUAL"));
+            }
+            else if (type1 == BOOLEAN)
+            {
+               value.setBoolean((boolean1 == value.booleanValue) != different);
+            }
+            else
+            {
+               value.setBoolean(string1.equals(value.stringValue) != different);
+            }
+         }
+      }
+   }
+
+   private static final class Not extends Expression
+   {
+      private final Expression operand;
+
+      Not(final Expression operand)
+      {
+         this.operand = operand;
+      }
+
+      @Override
+      void evaluate(final MessageInternal message, final Value value) throws Exception
+      {
+         operand.evaluate(message, value);
+
+         if (value.type == NULL)
+         {
+            return;
+         }
+         if (value.type != BOOLEAN)
+         {
+            throw badObject(value.type, "NOT");
+         }
+
+         value.booleanValue = !value.booleanValue;
+      }
+   }
+
+   private static final class And extends Expression
+   {
+      private final Expression left;
+
+      private final Expression right;
+
+      And(final Expression left, final Expression right)
+      {
+         this.left = left;
+         this.right = right;
+      }
+
+      @Override
+      void evaluate(final MessageInternal message, final Value value) throws Exception
+      {
+         left.evaluate(message, value);
+
+         if (value.type == BOOLEAN)
+         {
+            if (!value.booleanValue)
+            {
+               return;
+            }
+         }
+         else if (value.type != NULL)
+         {
+            throw badObject(value.type, "AND");
+         }
+
+         boolean leftUnknown = value.type == NULL;
+
+         right.evaluate(message, value);
+
+         if (value.type == NULL)
+         {
+            return;
+         }
+         if (value.type != BOOLEAN)
+         {
+            throw badObject(value.type, "AND");
+         }
+
+         // unknown AND true is unknown
+         if (leftUnknown && value.booleanValue)
+         {
+            value.setNull();
+         }
+      }
+   }
+
+   private static final class Or extends Expression
+   {
+      private final Expression left;
+
+      private final Expression right;
+
+      Or(final Expression left, final Expression right)
+      {
+         this.left = left;
+         this.right = right;
+      }
+
+      @Override
+      void evaluate(final MessageInternal message, final Value value) throws Exception
+      {
+         left.evaluate(message, value);
+
+         if (value.type == BOOLEAN)
+         {
+            if (value.booleanValue)
+            {
+               return;
+            }
+         }
+         else if (value.type != NULL)
+         {
+            throw badObject(value.type, "OR");
+         }
+
+         boolean leftUnknown = value.type == NULL;
+
+         right.evaluate(message, value);
+
+         if (value.type == NULL)
+         {
+            return;
+         }
+         if (value.type != BOOLEAN)
+         {
+            throw badObject(value.type, "OR");
+         }
+
+         // unknown OR false is unknown
+         if (leftUnknown && !value.booleanValue)
+         {
+            value.setNull();
+         }
+      }
+   }
+
+   /**
+    * &gt;, &gt;=, &lt; and &lt;=. Non numeric operands never match.
+    */
+   private static final class Comparison extends Expression
+   {
+      private final int operation;
+
+      private final Expression left;
+
+      private final Expression right;
+
+      Comparison(final int operation, final Expression left, final Expression right)
+      {
+         this.operation = operation;
+         this.left = left;
+         this.right = right;
+      }
+
+      @Override
+      void evaluate(final MessageInternal message, final Value value) throws Exception
+      {
+         left.evaluate(message, value);
+
+         int type1 = value.type;
+
+         if (type1 == NULL)
+         {
+            return;
+         }
+         if (!isNumeric(type1))
+         {
+            value.setBoolean(false);
+            return;
+         }
+
+         long long1 = value.longValue;
+         double double1 = value.asDouble();
+
+         right.evaluate(message, value);
+
+         compare(operation, type1, long1, double1, value);
+      }
+
+      static void compare(final int operation,
+                          final int type1,
+                          final long long1,
+                          final double double1,
+                          final Value value)
+      {
+         if (value.type == NULL)
+         {
+            return;
+         }
+         if (!isNumeric(value.type))
+         {
+            value.setBoolean(false);
+            return;
+         }
+
+         int cmp;
+
+         if (type1 == LONG && value.type == LONG)
+         {
+            cmp = long1 < value.longValue ? -1 : (long1 == value.longValue ? 0 : 1);
+         }
+         else
+         {
+            double double2 = value.asDouble();
+            if (double1 < double2)
+            {
+               cmp = -1;
+            }
+            else if (double1 > double2)
+            {
+               cmp = 1;
+            }
+            else if (double1 == double2)
+            {
+               cmp = 0;
+            }
+            else
+            {
+               // NaN doesn't compare with anything
+               value.setBoolean(false);
+               return;
+            }
+         }
+
+         switch (operation)
+         {
+            case Operator.GT:
+               value.setBoolean(cmp > 0);
+               break;
+            case Operator.GE:
+               value.setBoolean(cmp >= 0);
+               break;
+            case Operator.LT:
+               value.setBoolean(cmp < 0);
+               break;
+            default:
+               value.setBoolean(cmp <= 0);
+         }
+      }
+   }
+
+   private static final class Between extends Expression
+   {
+      private final boolean not;
+
+      private final Expression operand;
+
+      private final Expression lower;
+
+      private final Expression upper;
+
+      Between(final boolean not, final Expression operand, final Expression lower, final Expression upper)
+      {
+         this.not = not;
+         this.operand = operand;
+         this.lower = lower;
+         this.upper = upper;
+      }
+
+      @Override
+      void evaluate(final MessageInternal message, final Value value) throws Exception
+      {
+         operand.evaluate(message, value);
+
+         int type1 = value.type;
+
+         if (type1 == NULL)
+         {
+            return;
+         }
+         if (!isNumeric(type1))
+         {
+            value.setBoolean(false);
+            return;
+         }
+
+         long long1 = value.longValue;
+         double double1 = value.asDouble();
+
+         lower.evaluate(message, value);
+
+         Comparison.compare(not ? Operator.LT : Operator.GE, type1, long1, double1, value);
+
+         // BETWEEN stops on false, NOT BETWEEN stops on true
+         if (value.type == NULL || value.booleanValue == not)
+         {
+            return;
+         }
+
+         upper.evaluate(message, value);
+
+         Comparison.compare(not ? Operator.GT : Operator.LE, type1, long1, double1, value);
+      }
+   }
+
+   private static final class Arithmetic extends Expression
+   {
+      private final int operation;
+
+      private final Expression left;
+
+      private final Expression right;
+
+      Arithmetic(final int operation, final Expression left, final Expression right)
+      {
+         this.operation = operation;
+         this.left = left;
+         this.right = right;
+      }
+
+      @Override
+      void evaluate(final MessageInternal message, final Value value) throws Exception
+      {
+         left.evaluate(message, value);
+
+         int type1 = value.type;
+         long long1 = value.longValue;
+         double double1 = value.asDouble();
+
+         right.evaluate(message, value);
+
+         int type2 = value.type;
+
+         if (type1 == NULL || type2 == NULL)
+         {
+            value.setNull();
+            return;
+         }
+         if (!isNumeric(type1))
+         {
+            throw badObject(type1, Operator.operationString(operation));
+         }
+         if (!isNumeric(type2))
+         {
+            throw badObject(type2, Operator.operationString(operation));
+         }
+
+         if (type1 == LONG && type2 == LONG)
+         {
+            long long2 = value.longValue;
+            switch (operation)
+            {
+               case Operator.ADD:
+                  value.setLong(long1 + long2);
+                  break;
+               case Operator.SUB:
+                  value.setLong(long1 - long2);
+                  break;
+               case Operator.MUL:
+                  value.setLong(long1 * long2);
+                  break;
+               default:
+                  value.setLong(long1 / long2);
+            }
+         }
+         else
+         {
+            double double2 = value.asDouble();
+            switch (operation)
+            {
+               case Operator.ADD:
+                  value.setDouble(double1 + double2);
+                  break;
+               case Operator.SUB:
+                  value.setDouble(double1 - double2);
+                  break;
+               case Operator.MUL:
+                  value.setDouble(double1 * double2);
+                  break;
+               default:
+                  value.setDouble(double1 / double2);
+            }
+         }
+      }
+   }
+
+   private static final class Negate extends Expression
+   {
+      private final Expression operand;
+
+      Negate(final Expression operand)
+      {
+         this.operand = operand;
+      }
+
+      @Override
+      void evaluate(final MessageInternal message, final Value value) throws Exception
+      {
+         operand.evaluate(message, value);
+
+         switch (value.type)
+         {
+            case NULL:
+               break;
+            case LONG:
+               value.longValue = -value.longValue;
+               break;
+            case DOUBLE:
+               value.doubleValue = -value.doubleValue;
+               break;
+            default:
+               throw badObject(value.type, "NEG");
+         }
+      }
+   }
+
+   private static final class Like extends Expression
+   {
+      private final Expression operand;
+
+      private final RegExp re;
+
+      private final boolean not;
+
+      Like(final Expression operand, final RegExp re, final boolean not)
+      {
+         this.operand = operand;
+         this.re = re;
+         this.not = not;
+      }
+
+      @Override
+      void evaluate(final MessageInternal message, final Value value) throws Exception
+      {
+         operand.evaluate(message, value);
+
+         if (value.type == NULL)
+         {
+            return;
+         }
+         if (value.type != SIMPLE_STRING)
+         {
+            throw badObject(value.type, "LIKE");
+         }
+
+         value.setBoolean(re.isMatch(value.stringValue) != not);
+      }
+   }
+
+   private static final class IsNull extends Expression
+   {
+      private final Expression operand;
+
+      private final boolean not;
+
+      IsNull(final Expression operand, final boolean not)
+      {
+         this.operand = operand;
+         this.not = not;
+      }
+
+      @Override
+      void evaluate(final MessageInternal message, final Value value) throws Exception
+      {
+         operand.evaluate(message, value);
+
+         value.setBoolean((value.type == NULL) != not);
+      }
+   }
+
+   private static final class In extends Expression
+   {
+      private final Expression operand;
+
+      private final Set<?> set;
+
+      private final boolean not;
+
+      In(final Expression operand, final Set<?> set, final boolean not)
+      {
+         this.operand = operand;
+         this.set = set;
+         this.not = not;
+      }
+
+      @Override
+      void evaluate(final MessageInternal message, final Value value) throws Exception
+      {
+         operand.evaluate(message, value);
+
+         if (value.type == NULL)
+         {
+            // a missing property is never IN a set, and NOT IN is unknown
+            if (!not)
+            {
+               value.setBoolean(false);
+            }
+            return;
+         }
+         if (value.type != SIMPLE_STRING)
+         {
+            throw badObject(value.type, not ? "NOT_IN" : "IN");
+         }
+
+         value.setBoolean(set.contains(value.stringValue) != not);
+      }
+   }
+}
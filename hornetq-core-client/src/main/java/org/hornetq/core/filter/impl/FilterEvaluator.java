@@ -0,0 +1,30 @@
+/*
+ * Copyright 2013 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.filter.impl;
+
+import org.hornetq.core.message.impl.MessageInternal;
+
+/**
+ * A filter expression compiled by {@link FilterCompiler}.
+ * <p>
+ * Implementations are immutable and may be used by any number of threads at the same time.
+ */
+public interface FilterEvaluator
+{
+   /**
+    * @return true if the expression evaluates to true for the message. Unknown (null) results don't match.
+    * @throws Exception if the message has a property of a type the expression can't operate on
+    */
+   boolean match(MessageInternal message) throws Exception;
+}
@@ -0,0 +1,317 @@
+/*
+ * Copyright 2013 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.filter.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.message.impl.MessageInternal;
+import org.hornetq.utils.TypedProperties;
+
+/**
+ * A condition on a single message property that must hold for a filter to match.
+ * <p>
+ * Guards are taken from the top level conjuncts of a filter (<code>color = 'red' AND ...</code>,
+ * <code>region IN ('EU', 'US') AND ...</code>, <code>price &gt; 10 AND ...</code>) so they can be used to index
+ * filters by property value. A guard is only a necessary condition: a message that satisfies it must still be
+ * matched against the full filter.
+ * <p>
+ * Equality keys and range bounds are normalised the same way as {@link #getKey(MessageInternal, SimpleString)}
+ * normalises property values: numbers become {@link Double}s, strings stay {@link SimpleString}s and booleans stay
+ * {@link Boolean}s. Range bounds are treated as inclusive.
+ */
+public final class FilterGuard
+{
+   private final SimpleString property;
+
+   private final Collection<Object> keys;
+
+   private final double low;
+
+   private final double high;
+
+   private FilterGuard(final SimpleString property, final Collection<Object> keys, final double low, final double high)
+   {
+      this.property = property;
+      this.keys = keys;
+      this.low = low;
+      this.high = high;
+   }
+
+   /**
+    * @param parseResult the result of {@link FilterParser#parse(SimpleString, java.util.Map)}
+    * @return the most selective guard of the filter or null if none of its top level conjuncts can be used as a guard
+    */
+   public static FilterGuard extract(final Object parseResult)
+   {
+      List<FilterGuard> guards = new ArrayList<FilterGuard>();
+
+      collect(parseResult, guards);
+
+      FilterGuard range = null;
+
+      for (FilterGuard guard : guards)
+      {
+         if (!guard.isRange())
+         {
+            return guard;
+         }
+         if (range == null)
+         {
+            range = guard;
+         }
+      }
+
+      return range;
+   }
+
+   /**
+    * @return the value of <code>property</code> normalised as an index key, or null if the message doesn't have a
+    *         property with that name a filter could match
+    */
+   public static Object getKey(final MessageInternal message, final SimpleString property)
+   {
+      TypedProperties properties = message.getTypedProperties();
+
+      FilterCompiler.Value value = new FilterCompiler.Value();
+
+      if (properties == null || !properties.visitProperty(property, value) || value.unsupported != null)
+      {
+         return null;
+      }
+
+      switch (value.type)
+      {
+         case FilterCompiler.LONG:
+         case FilterCompiler.DOUBLE:
+            return normalise(value.asDouble());
+         case FilterCompiler.BOOLEAN:
+            return Boolean.valueOf(value.booleanValue);
+         case FilterCompiler.SIMPLE_STRING:
+            return value.stringValue;
+         default:
+            return null;
+      }
+   }
+
+   public SimpleString getProperty()
+   {
+      return property;
+   }
+
+   /**
+    * @return true if this guard is a numeric range, false if it is a set of values
+    */
+   public boolean isRange()
+   {
+      return keys == null;
+   }
+
+   /**
+    * @return the values the property must be equal to, or null for a range
+    */
+   public Collection<Object> getKeys()
+   {
+      return keys;
+   }
+
+   /**
+    * @return the lower bound of a range, {@link Double#NEGATIVE_INFINITY} if it has none
+    */
+   public double getLow()
+   {
+      return low;
+   }
+
+   /**
+    * @return the upper bound of a range, {@link Double#POSITIVE_INFINITY} if it has none
+    */
+   public double getHigh()
+   {
+      return high;
+   }
+
+   @Override
+   public String toString()
+   {
+      return "FilterGuard [property=" + property +
+             (isRange() ? ", low=" + low + ", high=" + high : ", keys=" + keys) +
+             "]";
+   }
+
+   private static void collect(final Object node, final List<FilterGuard> guards)
+   {
+      if (!(node instanceof Operator))
+      {
+         return;
+      }
+
+      Operator op = (Operator)node;
+
+      switch (op.getOperation())
+      {
+         case Operator.AND:
+            collect(op.getOper1(), guards);
+            collect(op.getOper2(), guards);
+            break;
+         case Operator.EQUAL:
+            addEqual(op.getOper1(), op.getOper2(), guards);
+            addEqual(op.getOper2(), op.getOper1(), guards);
+            break;
+         case Operator.IN:
+            addIn(op.getOper1(), (Set<?>)op.getOper2(), guards);
+            break;
+         case Operator.GT:
+         case Operator.GE:
+            addRange(op.getOper1(), op.getOper2(), null, guards);
+            addRange(op.getOper2(), null, op.getOper1(), guards);
+            break;
+         case Operator.LT:
+         case Operator.LE:
+            addRange(op.getOper1(), null, op.getOper2(), guards);
+            addRange(op.getOper2(), op.getOper1(), null, guards);
+            break;
+         case Operator.BETWEEN:
+            addRange(op.getOper1(), op.getOper2(), op.getOper3(), guards);
+            break;
+         default:
+            break;
+      }
+   }
+
+   private static void addEqual(final Object identifier, final Object constant, final List<FilterGuard> guards)
+   {
+      SimpleString name = propertyName(identifier);
+
+      Object key = normaliseConstant(constant);
+
+      if (name != null && key != null)
+      {
+         guards.add(new FilterGuard(name, Collections.singletonList(key), 0, 0));
+      }
+   }
+
+   private static void addIn(final Object identifier, final Set<?> set, final List<FilterGuard> guards)
+   {
+      SimpleString name = propertyName(identifier);
+
+      if (name == null)
+      {
+         return;
+      }
+
+      List<Object> keys = new ArrayList<Object>(set.size());
+
+      for (Object element : set)
+      {
+         // IN only ever matches string properties
+         if (element instanceof SimpleString)
+         {
+            keys.add(element);
+         }
+      }
+
+      guards.add(new FilterGuard(name, keys, 0, 0));
+   }
+
+   private static void addRange(final Object identifier,
+                                final Object lowConstant,
+                                final Object highConstant,
+                                final List<FilterGuard> guards)
+   {
+      SimpleString name = propertyName(identifier);
+
+      if (name == null)
+      {
+         return;
+      }
+
+      double low = Double.NEGATIVE_INFINITY;
+      double high = Double.POSITIVE_INFINITY;
+
+      if (lowConstant != null)
+      {
+         Object key = normaliseConstant(lowConstant);
+         if (!(key instanceof Double))
+         {
+            return;
+         }
+         low = (Double)key;
+      }
+
+      if (highConstant != null)
+      {
+         Object key = normaliseConstant(highConstant);
+         if (!(key instanceof Double))
+         {
+            return;
+         }
+         high = (Double)key;
+      }
+
+      if (Double.isNaN(low) || Double.isNaN(high))
+      {
+         return;
+      }
+
+      guards.add(new FilterGuard(name, null, low, high));
+   }
+
+   private static SimpleString propertyName(final Object node)
+   {
+      if (!(node instanceof Identifier))
+      {
+         return null;
+      }
+
+      SimpleString name = ((Identifier)node).getName();
+
+      // header fields are not message properties
+      return FilterCompiler.isHeaderField(name) ? null : name;
+   }
+
+   private static Object normaliseConstant(final Object node)
+   {
+      if (node instanceof Operator && ((Operator)node).getOperation() == Operator.NEG)
+      {
+         Object key = normaliseConstant(((Operator)node).getOper1());
+
+         return key instanceof Double ? normalise(-(Double)key) : null;
+      }
+      if (node instanceof Number)
+      {
+         return normalise(((Number)node).doubleValue());
+      }
+      if (node instanceof SimpleString || node instanceof Boolean)
+      {
+         return node;
+      }
+
+      return null;
+   }
+
+   /**
+    * Numbers are compared as doubles when either side is a double, and two longs that are equal are still equal
+    * once converted, so keying every number by its double value never loses a match.
+    */
+   private static Double normalise(final double d)
+   {
+      // 0.0 == -0.0 but Double.equals tells them apart
+      return d == 0 ? Double.valueOf(0) : Double.valueOf(d);
+   }
+}
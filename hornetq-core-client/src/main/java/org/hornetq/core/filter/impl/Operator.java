@@ -146,6 +146,26 @@ public final class Operator
       oper3 = null;
    }
 
+   public int getOperation()
+   {
+      return operation;
+   }
+
+   public Object getOper1()
+   {
+      return oper1;
+   }
+
+   public Object getOper2()
+   {
+      return oper2;
+   }
+
+   public Object getOper3()
+   {
+      return oper3;
+   }
+
    // --- Print functions ---
 
    @Override
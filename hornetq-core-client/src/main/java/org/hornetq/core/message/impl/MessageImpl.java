@@ -18,12 +18,17 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
 import org.hornetq.api.core.HornetQBuffer;
 import org.hornetq.api.core.HornetQBuffers;
 import org.hornetq.api.core.HornetQException;
 import org.hornetq.api.core.HornetQPropertyConversionException;
 import org.hornetq.api.core.Message;
 import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.buffers.impl.ChannelBufferWrapper;
 import org.hornetq.core.buffers.impl.ResetLimitWrappedHornetQBuffer;
 import org.hornetq.core.message.BodyEncoder;
 import org.hornetq.core.protocol.core.impl.PacketImpl;
@@ -55,6 +60,17 @@ public abstract class MessageImpl implements MessageInternal
 
    public static final int BODY_OFFSET = BUFFER_HEADER_SPACE + DataConstants.SIZE_INT;
 
+   // the room left after the message on a shared encoding, for the fields the packets write after it
+   private static final int ENCODED_TRAILER_SPACE = DataConstants.SIZE_LONG + DataConstants.SIZE_INT;
+
+   // what a message is left with once its buffer is released, reading or writing it fails as it's released already
+   private static final ByteBuf RELEASED_BUFFER = Unpooled.buffer(1);
+
+   static
+   {
+      RELEASED_BUFFER.release();
+   }
+
    protected long messageID;
 
    protected SimpleString address;
@@ -86,6 +102,9 @@ public abstract class MessageImpl implements MessageInternal
 
    private boolean bufferUsed;
 
+   // the capacity of the buffer while it's released once this message isn't used any more, see moveBuffer
+   private int releasableCapacity;
+
    private UUID userID;
 
    // Constructors --------------------------------------------------
@@ -159,15 +178,31 @@ public abstract class MessageImpl implements MessageInternal
          endOfMessagePosition = other.endOfMessagePosition;
          copied = other.copied;
 
-         if (other.buffer != null)
+         if (other.releasableCapacity > 0)
+         {
+            // The memory of the buffer is reused once the other message releases it, so this message can't share it.
+            // Its copy is kept on the heap, as nothing would release it otherwise.
+            buffer = copyToHeap(other.buffer);
+
+            buffer.setIndex(other.buffer.readerIndex(), other.buffer.writerIndex());
+
+            copied = true;
+         }
+         else if (other.buffer != null)
          {
+            // The underlying buffer is shared until either message changes, as the different messages thereafter
+            // might have different properties set on them, making their encoding different. Both messages copy the
+            // buffer before changing it, and neither sends it as its own packet any more. Heap buffers are left to
+            // the garbage collector, pooled ones follow moveBuffer and releaseBuffer, and are not shared this way.
             other.bufferUsed = true;
+            other.copied = false;
 
-            // We need to copy the underlying buffer too, since the different messsages thereafter might have different
-            // properties set on them, making their encoding different
-            buffer = other.buffer.copy(0, other.buffer.writerIndex());
+            bufferUsed = true;
+            copied = false;
 
-            buffer.setIndex(other.buffer.readerIndex(), buffer.capacity());
+            buffer = other.buffer.duplicate();
+
+            buffer.setIndex(other.buffer.readerIndex(), other.buffer.writerIndex());
          }
       }
    }
@@ -240,7 +275,16 @@ public abstract class MessageImpl implements MessageInternal
       expiration = buffer.readLong();
       timestamp = buffer.readLong();
       priority = buffer.readByte();
-      properties.decode(buffer);
+      properties.decode(buffer, isLazyPropertiesDecoding());
+   }
+
+   /**
+    * @return whether the properties are decoded only once they're read, which saves decoding them on messages that are
+    *         only routed and sent on
+    */
+   protected boolean isLazyPropertiesDecoding()
+   {
+      return false;
    }
 
    public void copyHeadersAndProperties(final MessageInternal msg)
@@ -476,6 +520,9 @@ public abstract class MessageImpl implements MessageInternal
    }
 
    // Encode to journal or paging
+   // The bytes are copied on purpose: the journal gathers the records of many messages into one buffer written at
+   // once, replication gathers them into frames, and paging into page files. Only deliveries send the buffer itself,
+   // see getEncodedBuffer.
    public void encode(final HornetQBuffer buff)
    {
       encodeToBuffer();
@@ -507,13 +554,38 @@ public abstract class MessageImpl implements MessageInternal
    {
       HornetQBuffer buff = encodeToBuffer();
 
-      if (bufferUsed)
+      if (releasableCapacity > 0)
+      {
+         // As the composite below, but the encoding holds a reference of its own to the buffer, released once it's
+         // written, so the memory of the message isn't reused while it's still being sent
+         CompositeByteBuf composite = Unpooled.compositeBuffer(3);
+
+         composite.addComponent(Unpooled.buffer(BUFFER_HEADER_SPACE).writerIndex(BUFFER_HEADER_SPACE));
+         composite.addComponent(buff.byteBuf()
+                                    .slice(BUFFER_HEADER_SPACE, endOfMessagePosition - BUFFER_HEADER_SPACE)
+                                    .retain());
+         composite.addComponent(Unpooled.buffer(ENCODED_TRAILER_SPACE).writerIndex(ENCODED_TRAILER_SPACE));
+
+         composite.setIndex(0, endOfMessagePosition);
+
+         bufferUsed = true;
+
+         return new ChannelBufferWrapper(composite, true, true);
+      }
+      else if (bufferUsed)
       {
-         HornetQBuffer copied = buff.copy(0, buff.capacity());
+         // The buffer is being sent already, or shared with a copy of this message. Instead of copying it, the
+         // encoding is composed of packet headers of its own, the message read from the buffer, and room of its own
+         // for what the packet writes after the message.
+         CompositeByteBuf composite = Unpooled.compositeBuffer(3);
+
+         composite.addComponent(Unpooled.buffer(BUFFER_HEADER_SPACE).writerIndex(BUFFER_HEADER_SPACE));
+         composite.addComponent(buff.byteBuf().slice(BUFFER_HEADER_SPACE, endOfMessagePosition - BUFFER_HEADER_SPACE));
+         composite.addComponent(Unpooled.buffer(ENCODED_TRAILER_SPACE).writerIndex(ENCODED_TRAILER_SPACE));
 
-         copied.setIndex(0, endOfMessagePosition);
+         composite.setIndex(0, endOfMessagePosition);
 
-         return copied;
+         return new ChannelBufferWrapper(composite);
       }
       else
       {
@@ -525,6 +597,84 @@ public abstract class MessageImpl implements MessageInternal
       }
    }
 
+   /**
+    * Moves the encoding of this message onto a buffer of the allocator, such as a pooled buffer off the heap, released
+    * by {@link #releaseBuffer()} once the message isn't used any more.
+    * <p>
+    * As the memory of such a buffer is reused once it's released, it's never shared as it is: copies of this message
+    * take a copy of it, the encodings sent hold a reference of their own to it, and it's copied back to the heap before
+    * this message changes while it's being sent.
+    *
+    * @return the capacity of the new buffer, or 0 if the buffer was moved already
+    */
+   protected synchronized int moveBuffer(final ByteBufAllocator allocator)
+   {
+      if (releasableCapacity > 0 || buffer == null)
+      {
+         return 0;
+      }
+
+      HornetQBuffer buff = encodeToBuffer();
+
+      ByteBuf moved = allocator.directBuffer(endOfMessagePosition);
+
+      moved.writeBytes(buff.byteBuf(), 0, endOfMessagePosition);
+
+      buffer = new ChannelBufferWrapper(moved, true);
+
+      buffer.setIndex(Math.min(buff.readerIndex(), endOfMessagePosition), endOfMessagePosition);
+
+      // created again over the new buffer when needed
+      bodyBuffer = null;
+
+      bufferUsed = false;
+
+      copied = true;
+
+      releasableCapacity = moved.capacity();
+
+      return releasableCapacity;
+   }
+
+   /**
+    * Releases a buffer set by {@link #moveBuffer(ByteBufAllocator)}. The encodings still being sent keep their own
+    * references to it.
+    * <p>
+    * The memory of the buffer belongs to other buffers from then on, so this message and its body buffer are left
+    * without one: using them fails with an {@link io.netty.util.IllegalReferenceCountException}.
+    */
+   protected synchronized void releaseBuffer()
+   {
+      if (releasableCapacity > 0)
+      {
+         int capacity = releasableCapacity;
+
+         releasableCapacity = 0;
+
+         ByteBuf released = buffer.byteBuf();
+
+         buffer = new ChannelBufferWrapper(RELEASED_BUFFER, true);
+
+         if (bodyBuffer != null)
+         {
+            bodyBuffer.setBuffer(buffer);
+         }
+
+         released.release();
+
+         bufferReleased(capacity);
+      }
+   }
+
+   /**
+    * Called once a buffer set by {@link #moveBuffer(ByteBufAllocator)} is released.
+    *
+    * @param capacity the capacity returned when the buffer was set
+    */
+   protected void bufferReleased(final int capacity)
+   {
+   }
+
    public void setAddressTransient(final SimpleString address)
    {
       this.address = address;
@@ -985,7 +1135,9 @@ public abstract class MessageImpl implements MessageInternal
    {
       // Must copy buffer before sending it
 
-      buffer = buffer.copy(0, buffer.capacity());
+      HornetQBuffer previous = buffer;
+
+      buffer = releasableCapacity > 0 ? copyToHeap(previous) : previous.copy(0, previous.capacity());
 
       buffer.setIndex(0, getEndOfBodyPosition());
 
@@ -995,6 +1147,26 @@ public abstract class MessageImpl implements MessageInternal
       }
 
       bufferUsed = false;
+
+      if (releasableCapacity > 0)
+      {
+         int capacity = releasableCapacity;
+
+         releasableCapacity = 0;
+
+         previous.byteBuf().release();
+
+         bufferReleased(capacity);
+      }
+   }
+
+   private static HornetQBuffer copyToHeap(final HornetQBuffer source)
+   {
+      HornetQBuffer copy = HornetQBuffers.dynamicBuffer(source.capacity());
+
+      copy.writeBytes(source, 0, source.capacity());
+
+      return copy;
    }
 
    // Inner classes -------------------------------------------------
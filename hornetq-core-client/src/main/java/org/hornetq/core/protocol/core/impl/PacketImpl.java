@@ -156,6 +156,8 @@ public class PacketImpl implements Packet
 
    public static final byte SESS_PRODUCER_FAIL_CREDITS = 82;
 
+   public static final byte SESS_INDIVIDUAL_ACKNOWLEDGE_BATCH = 83;
+
    // Replication
 
    public static final byte REPLICATION_RESPONSE = 90;
@@ -216,6 +218,9 @@ public class PacketImpl implements Packet
 
    public static final byte REPLICATION_START_FINISH_SYNC = 120;
    public static final byte REPLICATION_SCHEDULED_FAILOVER = 121;
+   public static final byte REPLICATION_SYNC_FILE_CHECKSUMS = 122;
+   public static final byte REPLICATION_SYNC_FILE_CHECKSUMS_RESPONSE = 123;
+   public static final byte REPLICATION_BATCH = 124;
 
    // Static --------------------------------------------------------
 
@@ -243,7 +248,7 @@ public class PacketImpl implements Packet
 
    public HornetQBuffer encode(final RemotingConnection connection)
    {
-      HornetQBuffer buffer = connection.createBuffer(PacketImpl.INITIAL_PACKET_SIZE);
+      HornetQBuffer buffer = connection.createBuffer(getInitialEncodeSize());
 
       // The standard header fields
 
@@ -263,6 +268,15 @@ public class PacketImpl implements Packet
       return buffer;
    }
 
+   /**
+    * @return the size of the buffer the packet is encoded on, which grows as needed. Packets carrying large payloads
+    *         may return their exact size, so the buffer isn't copied while it grows
+    */
+   protected int getInitialEncodeSize()
+   {
+      return PacketImpl.INITIAL_PACKET_SIZE;
+   }
+
    public void decode(final HornetQBuffer buffer)
    {
       channelID = buffer.readLong();
@@ -129,6 +129,11 @@ public class NettyConnection implements Connection
       return new ChannelBufferWrapper(channel.alloc().buffer(size));
    }
 
+   public Channel getChannel()
+   {
+      return channel;
+   }
+
    public Object getID()
    {
       // TODO: Think of it
@@ -186,6 +191,9 @@ public class NettyConnection implements Connection
             {
                batchBuffer.writeBytes(buffer, 0, buffer.writerIndex());
 
+               // the buffer is written through the batch, so it's released as Netty would once written
+               ChannelBufferWrapper.releaseWritten(buffer);
+
                if (batchBuffer.writerIndex() >= BATCHING_BUFFER_SIZE || !batched || flush)
                {
                   // If the batch buffer is full or it's flush param or not batched then flush the buffer
@@ -164,6 +164,14 @@ public class TransportConstants
 
    public static final String STOMP_MIN_LARGE_MESSAGE_SIZE = "stomp-min-large-message-size";
 
+   public static final String STOMP_AUTO_ACK_BATCH_SIZE = "stomp-auto-ack-batch-size";
+
+   public static final int DEFAULT_STOMP_AUTO_ACK_BATCH_SIZE = 1;
+
+   public static final String STOMP_AUTO_ACK_BATCH_TIMEOUT = "stomp-auto-ack-batch-timeout";
+
+   public static final long DEFAULT_STOMP_AUTO_ACK_BATCH_TIMEOUT = 10;
+
    public static final String NETTY_CONNECT_TIMEOUT = "connect-timeout-millis";
 
    public static final int DEFAULT_NETTY_CONNECT_TIMEOUT = -1;
@@ -194,6 +202,8 @@ public class TransportConstants
       allowableAcceptorKeys.add(TransportConstants.CLUSTER_CONNECTION);
       allowableAcceptorKeys.add(TransportConstants.STOMP_CONSUMERS_CREDIT);
       allowableAcceptorKeys.add(TransportConstants.STOMP_MIN_LARGE_MESSAGE_SIZE);
+      allowableAcceptorKeys.add(TransportConstants.STOMP_AUTO_ACK_BATCH_SIZE);
+      allowableAcceptorKeys.add(TransportConstants.STOMP_AUTO_ACK_BATCH_TIMEOUT);
       allowableAcceptorKeys.add(TransportConstants.CONNECTION_TTL);
       allowableAcceptorKeys.add(TransportConstants.STOMP_ENABLE_MESSAGE_ID);
       allowableAcceptorKeys.add(HornetQDefaultConfiguration.getPropMaskPassword());
@@ -0,0 +1,758 @@
+/*
+ * Copyright 2013 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.utils;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * A {@link LinkedList} holding its elements on chunks of slots instead of a node per element, for lists holding so
+ * many elements that their nodes would take more memory than the elements themselves.
+ * <p>
+ * Elements are never moved on a chunk: removing one clears its slot, and a chunk is dropped once all its slots are
+ * cleared. A list whose elements are removed here and there rather than from its head may keep chunks holding few
+ * elements.
+ * <p>
+ * Iterators behave as on {@link LinkedListImpl}: many of them can exist at the same time and see the elements added or
+ * removed either directly or through other iterators. An iterator stays on the slot of the element it returned last,
+ * and when that element is removed it moves on to the next element, or else back to the previous one.
+ * <p>
+ * When created with an {@link IDSupplier} the list also keeps an index from element ID to the chunk holding the
+ * element, which is then scanned for it. Elements sharing an ID are indexed by their slot, and as on
+ * {@link LinkedListImpl} a lookup finds the one added first among those still on the list.
+ * <p>
+ * This class is not thread safe.
+ */
+public class ChunkedLinkedListImpl<E> implements LinkedList<E>
+{
+   public static final int DEFAULT_CHUNK_SIZE = 128;
+
+   private static final int INITIAL_ITERATOR_ARRAY_SIZE = 10;
+
+   private final int chunkSize;
+
+   // every chunk on the list holds at least an element, at its start slot
+   private Chunk first;
+
+   private Chunk last;
+
+   private int size;
+
+   private Iterator[] iters;
+
+   private int numIters;
+
+   private final IDSupplier<E> idSupplier;
+
+   // the chunk holding the element with the ID, or one of them. Only used when the list is indexed
+   private final Map<Long, Chunk> chunksByID;
+
+   // the slots of the elements sharing their ID, in the order they were added. Only used when the list is indexed
+   private final Map<Long, List<Slot>> duplicateSlotsByID;
+
+   public ChunkedLinkedListImpl()
+   {
+      this(DEFAULT_CHUNK_SIZE, null);
+   }
+
+   /**
+    * @param idSupplier if not null the list will keep an index of its chunks by element ID
+    */
+   public ChunkedLinkedListImpl(final int chunkSize, final IDSupplier<E> idSupplier)
+   {
+      if (chunkSize <= 0)
+      {
+         throw new IllegalArgumentException("Invalid chunk size " + chunkSize);
+      }
+
+      this.chunkSize = chunkSize;
+
+      iters = createIteratorArray(INITIAL_ITERATOR_ARRAY_SIZE);
+
+      this.idSupplier = idSupplier;
+
+      chunksByID = idSupplier == null ? null : new HashMap<Long, Chunk>();
+
+      duplicateSlotsByID = idSupplier == null ? null : new HashMap<Long, List<Slot>>();
+   }
+
+   public void addHead(final E e)
+   {
+      Chunk chunk = first;
+
+      if (chunk == null || chunk.start == 0)
+      {
+         // filled from its end, so further elements added to the head go on the same chunk
+         chunk = new Chunk(chunkSize);
+
+         chunk.next = first;
+
+         if (first != null)
+         {
+            first.prev = chunk;
+         }
+         else
+         {
+            last = chunk;
+         }
+
+         first = chunk;
+      }
+
+      add(chunk, chunk.start - 1, e);
+
+      chunk.start--;
+   }
+
+   public void addTail(final E e)
+   {
+      Chunk chunk = last;
+
+      if (chunk == null || chunk.end == chunkSize)
+      {
+         chunk = new Chunk(0);
+
+         chunk.prev = last;
+
+         if (last != null)
+         {
+            last.next = chunk;
+         }
+         else
+         {
+            first = chunk;
+         }
+
+         last = chunk;
+      }
+
+      add(chunk, chunk.end, e);
+
+      chunk.end++;
+   }
+
+   public E poll()
+   {
+      Chunk chunk = first;
+
+      if (chunk == null)
+      {
+         return null;
+      }
+
+      return removeAt(chunk, chunk.start);
+   }
+
+   public void clear()
+   {
+      first = last = null;
+
+      size = 0;
+
+      if (chunksByID != null)
+      {
+         chunksByID.clear();
+
+         duplicateSlotsByID.clear();
+      }
+
+      resetIterators();
+   }
+
+   public int size()
+   {
+      return size;
+   }
+
+   public boolean isIndexed()
+   {
+      return chunksByID != null;
+   }
+
+   public E getWithID(final long id)
+   {
+      Slot slot = lookup(id);
+
+      return slot == null ? null : slot.chunk.get(slot.index);
+   }
+
+   public E removeWithID(final long id)
+   {
+      Slot slot = lookup(id);
+
+      return slot == null ? null : removeAt(slot.chunk, slot.index);
+   }
+
+   public LinkedListIterator<E> iterator()
+   {
+      return new Iterator();
+   }
+
+   @Override
+   public String toString()
+   {
+      StringBuilder str = new StringBuilder("ChunkedLinkedListImpl [ ");
+
+      for (Chunk chunk = first; chunk != null; chunk = chunk.next)
+      {
+         str.append(chunk.toString());
+
+         if (chunk.next != null)
+         {
+            str.append(", ");
+         }
+      }
+
+      return str.append(" ]").toString();
+   }
+
+   public int numIters()
+   {
+      return numIters;
+   }
+
+   private Iterator[] createIteratorArray(final int size)
+   {
+      return (Iterator[])Array.newInstance(Iterator.class, size);
+   }
+
+   private void add(final Chunk chunk, final int index, final E e)
+   {
+      if (chunksByID != null)
+      {
+         // before the element is on its slot, so a scan of the chunk only finds the elements already there
+         index(chunk, index, idSupplier.getID(e));
+      }
+
+      chunk.values[index] = e;
+
+      chunk.count++;
+
+      size++;
+   }
+
+   private void index(final Chunk chunk, final int index, final Long id)
+   {
+      Chunk indexed = chunksByID.get(id);
+
+      if (indexed == null)
+      {
+         chunksByID.put(id, chunk);
+
+         return;
+      }
+
+      // Elements sharing an ID are kept by slot, as a chunk may hold several of them in any order
+      List<Slot> duplicates = duplicateSlotsByID.get(id);
+
+      if (duplicates == null)
+      {
+         duplicates = new ArrayList<Slot>(2);
+
+         duplicates.add(new Slot(indexed, indexed.indexOf(id)));
+
+         duplicateSlotsByID.put(id, duplicates);
+      }
+
+      duplicates.add(new Slot(chunk, index));
+   }
+
+   private void unindex(final Chunk chunk, final int index, final Long id)
+   {
+      List<Slot> duplicates = duplicateSlotsByID.get(id);
+
+      if (duplicates == null)
+      {
+         chunksByID.remove(id);
+
+         return;
+      }
+
+      for (int i = 0; i < duplicates.size(); i++)
+      {
+         Slot slot = duplicates.get(i);
+
+         if (slot.chunk == chunk && slot.index == index)
+         {
+            duplicates.remove(i);
+
+            break;
+         }
+      }
+
+      chunksByID.put(id, duplicates.get(0).chunk);
+
+      if (duplicates.size() == 1)
+      {
+         // the one left can be found by scanning its chunk again
+         duplicateSlotsByID.remove(id);
+      }
+   }
+
+   private Slot lookup(final long id)
+   {
+      if (chunksByID == null)
+      {
+         throw new IllegalStateException("List is not indexed");
+      }
+
+      Chunk chunk = chunksByID.get(id);
+
+      if (chunk == null)
+      {
+         return null;
+      }
+
+      List<Slot> duplicates = duplicateSlotsByID.get(id);
+
+      if (duplicates != null)
+      {
+         return duplicates.get(0);
+      }
+
+      int index = chunk.indexOf(id);
+
+      return index < 0 ? null : new Slot(chunk, index);
+   }
+
+   private E removeAt(final Chunk chunk, final int index)
+   {
+      if (chunk.iterCount != 0)
+      {
+         // while the element is still there, so the iterators on it find the elements around it
+         nudgeIterators(chunk, index);
+      }
+
+      E e = chunk.get(index);
+
+      chunk.values[index] = null;
+
+      if (chunksByID != null)
+      {
+         unindex(chunk, index, idSupplier.getID(e));
+      }
+
+      chunk.count--;
+
+      size--;
+
+      if (chunk.count == 0)
+      {
+         unlink(chunk);
+      }
+      else if (index == chunk.start)
+      {
+         while (chunk.values[chunk.start] == null)
+         {
+            chunk.start++;
+         }
+      }
+
+      return e;
+   }
+
+   private void unlink(final Chunk chunk)
+   {
+      if (chunk.prev != null)
+      {
+         chunk.prev.next = chunk.next;
+      }
+      else
+      {
+         first = chunk.next;
+      }
+
+      if (chunk.next != null)
+      {
+         chunk.next.prev = chunk.prev;
+      }
+      else
+      {
+         last = chunk.prev;
+      }
+
+      // Help GC, as on LinkedListImpl
+      chunk.next = chunk.prev = null;
+   }
+
+   private synchronized void nudgeIterators(final Chunk chunk, final int index)
+   {
+      for (int i = 0; i < numIters; i++)
+      {
+         iters[i].nudged(chunk, index);
+      }
+   }
+
+   private synchronized void resetIterators()
+   {
+      for (int i = 0; i < numIters; i++)
+      {
+         iters[i].reset();
+      }
+   }
+
+   private synchronized void addIter(final Iterator iter)
+   {
+      if (numIters == iters.length)
+      {
+         resize(2 * numIters);
+      }
+
+      iters[numIters++] = iter;
+   }
+
+   private synchronized void resize(final int newSize)
+   {
+      Iterator[] newIters = createIteratorArray(newSize);
+
+      System.arraycopy(iters, 0, newIters, 0, numIters);
+
+      iters = newIters;
+   }
+
+   private synchronized void removeIter(final Iterator iter)
+   {
+      for (int i = 0; i < numIters; i++)
+      {
+         if (iter == iters[i])
+         {
+            System.arraycopy(iters, i + 1, iters, i, numIters - i - 1);
+
+            iters[--numIters] = null;
+
+            if (numIters >= INITIAL_ITERATOR_ARRAY_SIZE && numIters == iters.length / 2)
+            {
+               resize(numIters);
+            }
+
+            return;
+         }
+      }
+
+      throw new IllegalStateException("Cannot find iter to remove");
+   }
+
+   private final class Chunk
+   {
+      final Object[] values = new Object[chunkSize];
+
+      // the slots in use are from start to end, some of them cleared
+      int start;
+
+      int end;
+
+      int count;
+
+      Chunk next;
+
+      Chunk prev;
+
+      int iterCount;
+
+      Chunk(final int position)
+      {
+         start = end = position;
+      }
+
+      @SuppressWarnings("unchecked")
+      E get(final int index)
+      {
+         return (E)values[index];
+      }
+
+      /**
+       * Only meant for an ID held by a single element on the chunk.
+       */
+      int indexOf(final long id)
+      {
+         for (int i = start; i < end; i++)
+         {
+            if (values[i] != null && idSupplier.getID(get(i)) == id)
+            {
+               return i;
+            }
+         }
+
+         return -1;
+      }
+
+      /**
+       * @return the slot of the element following the one at <code>index</code> on this chunk, or -1
+       */
+      int nextIndex(final int index)
+      {
+         for (int i = index + 1; i < end; i++)
+         {
+            if (values[i] != null)
+            {
+               return i;
+            }
+         }
+
+         return -1;
+      }
+
+      /**
+       * @return the slot of the element preceding the one at <code>index</code> on this chunk, or -1
+       */
+      int previousIndex(final int index)
+      {
+         for (int i = index - 1; i >= start; i--)
+         {
+            if (values[i] != null)
+            {
+               return i;
+            }
+         }
+
+         return -1;
+      }
+
+      @Override
+      public String toString()
+      {
+         return "Chunk, count = " + count;
+      }
+   }
+
+   private final class Slot
+   {
+      final Chunk chunk;
+
+      final int index;
+
+      Slot(final Chunk chunk, final int index)
+      {
+         this.chunk = chunk;
+         this.index = index;
+      }
+   }
+
+   private final class Iterator implements LinkedListIterator<E>
+   {
+      // the slot of the element the iterator is on, or none when chunk is null. As the node of an iterator on
+      // LinkedListImpl, it always holds an element: the iterator is moved when that element is removed
+      Chunk chunk;
+
+      int pos = -1;
+
+      // whether the element the iterator is on is the one next returned last
+      boolean onLast;
+
+      // whether next returned an element which wasn't removed through this iterator since
+      boolean hasLast;
+
+      boolean repeat;
+
+      Iterator()
+      {
+         if (first != null)
+         {
+            moveTo(first, first.start);
+         }
+
+         addIter(this);
+      }
+
+      public void repeat()
+      {
+         repeat = true;
+      }
+
+      public boolean hasNext()
+      {
+         if (isOnElement() && (!onLast || repeat))
+         {
+            return true;
+         }
+
+         return canAdvance();
+      }
+
+      public E next()
+      {
+         boolean onElement = isOnElement();
+
+         if (repeat)
+         {
+            repeat = false;
+
+            if (onElement)
+            {
+               return chunk.get(pos);
+            }
+            else if (canAdvance())
+            {
+               advance();
+
+               return chunk.get(pos);
+            }
+            else
+            {
+               throw new NoSuchElementException();
+            }
+         }
+
+         if (!onElement || onLast)
+         {
+            if (canAdvance())
+            {
+               advance();
+            }
+            else
+            {
+               throw new NoSuchElementException();
+            }
+         }
+
+         onLast = true;
+
+         hasLast = true;
+
+         return chunk.get(pos);
+      }
+
+      public void remove()
+      {
+         if (!hasLast)
+         {
+            throw new NoSuchElementException();
+         }
+
+         if (chunk == null)
+         {
+            throw new NoSuchElementException();
+         }
+
+         removeAt(chunk, pos);
+
+         hasLast = false;
+      }
+
+      public void close()
+      {
+         // may be called from a finalizer, so it only touches the synchronized registry of iterators
+         removeIter(this);
+      }
+
+      /**
+       * Called before the element at the slot is removed.
+       */
+      void nudged(final Chunk removed, final int index)
+      {
+         if (chunk != removed || pos != index)
+         {
+            return;
+         }
+
+         if (canAdvance())
+         {
+            advance();
+
+            return;
+         }
+
+         int i = chunk.previousIndex(pos);
+
+         if (i >= 0)
+         {
+            moveTo(chunk, i);
+         }
+         else if (chunk.prev != null)
+         {
+            moveTo(chunk.prev, chunk.prev.previousIndex(chunk.prev.end));
+         }
+         else
+         {
+            leave();
+         }
+      }
+
+      void reset()
+      {
+         leave();
+
+         hasLast = false;
+      }
+
+      /**
+       * Puts the iterator on the first element if it is on none.
+       */
+      private boolean isOnElement()
+      {
+         if (chunk == null && first != null)
+         {
+            moveTo(first, first.start);
+         }
+
+         return chunk != null;
+      }
+
+      private boolean canAdvance()
+      {
+         return isOnElement() && (chunk.nextIndex(pos) >= 0 || chunk.next != null);
+      }
+
+      private void advance()
+      {
+         int i = chunk.nextIndex(pos);
+
+         if (i >= 0)
+         {
+            moveTo(chunk, i);
+         }
+         else
+         {
+            moveTo(chunk.next, chunk.next.start);
+         }
+      }
+
+      private void moveTo(final Chunk c, final int i)
+      {
+         if (c != chunk)
+         {
+            if (chunk != null)
+            {
+               chunk.iterCount--;
+            }
+
+            c.iterCount++;
+
+            chunk = c;
+         }
+
+         pos = i;
+
+         onLast = false;
+      }
+
+      private void leave()
+      {
+         if (chunk != null)
+         {
+            chunk.iterCount--;
+         }
+
+         chunk = null;
+
+         pos = -1;
+
+         onLast = false;
+      }
+   }
+}
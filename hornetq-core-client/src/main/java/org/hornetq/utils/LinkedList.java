@@ -33,4 +33,20 @@ public interface LinkedList<E>
    void clear();
 
    int size();
+
+   boolean isIndexed();
+
+   /**
+    * Returns the element with the given ID, or null if there is none.
+    * Only valid on indexed lists.
+    */
+   E getWithID(long id);
+
+   /**
+    * Removes the element with the given ID, moving on any iterator currently positioned on it.
+    * Only valid on indexed lists.
+    *
+    * @return the removed element, or null if there is none
+    */
+   E removeWithID(long id);
 }
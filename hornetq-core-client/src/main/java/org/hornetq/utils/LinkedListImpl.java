@@ -14,6 +14,10 @@
 package org.hornetq.utils;
 
 import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 
 
@@ -21,6 +25,10 @@ import java.util.NoSuchElementException;
  * A linked list implementation which allows multiple iterators to exist at the same time on the queue, and which see any
  * elements added or removed from the queue either directly or via iterators.
  *
+ * When created with an {@link IDSupplier} the list also keeps an index from element ID to list node, so elements can be
+ * looked up and removed by ID in constant time. Elements sharing an ID are all indexed, a lookup finds the one added
+ * first among those still on the list.
+ *
  * This class is not thread safe.
  *
  * @author Tim Fox
@@ -44,15 +52,39 @@ public class LinkedListImpl<E> implements LinkedList<E>
 
    private int nextIndex;
 
+   private final IDSupplier<E> idSupplier;
+
+   // only used when the list is indexed
+   private final Map<Long, Node<E>> nodesByID;
+
+   // the nodes sharing their ID with the indexed one, in the order they were added. Only used when the list is indexed
+   private final Map<Long, List<Node<E>>> duplicateNodesByID;
+
    public LinkedListImpl()
+   {
+      this(null);
+   }
+
+   /**
+    * @param idSupplier if not null the list will keep an index of its nodes by ID
+    */
+   public LinkedListImpl(final IDSupplier<E> idSupplier)
    {
       iters = createIteratorArray(INITIAL_ITERATOR_ARRAY_SIZE);
+
+      this.idSupplier = idSupplier;
+
+      nodesByID = idSupplier == null ? null : new HashMap<Long, Node<E>>();
+
+      duplicateNodesByID = idSupplier == null ? null : new HashMap<Long, List<Node<E>>>();
    }
 
    public void addHead(E e)
    {
       Node<E> node = new Node<E>(e);
 
+      indexNode(node);
+
       node.next = head.next;
 
       node.prev = head;
@@ -82,6 +114,8 @@ public class LinkedListImpl<E> implements LinkedList<E>
       {
          Node<E> node = new Node<E>(e);
 
+         indexNode(node);
+
          node.prev = tail;
 
          tail.next = node;
@@ -113,6 +147,49 @@ public class LinkedListImpl<E> implements LinkedList<E>
       tail = head.next = null;
 
       size = 0;
+
+      if (nodesByID != null)
+      {
+         nodesByID.clear();
+
+         duplicateNodesByID.clear();
+      }
+   }
+
+   public boolean isIndexed()
+   {
+      return nodesByID != null;
+   }
+
+   /**
+    * Returns the element with the given ID, or null if there is none.
+    * Only valid on indexed lists.
+    */
+   public E getWithID(final long id)
+   {
+      Node<E> node = lookupNode(id);
+
+      return node == null ? null : node.val;
+   }
+
+   /**
+    * Removes the element with the given ID, moving on any iterator currently positioned on it.
+    * Only valid on indexed lists.
+    *
+    * @return the removed element, or null if there is none
+    */
+   public E removeWithID(final long id)
+   {
+      Node<E> node = lookupNode(id);
+
+      if (node == null)
+      {
+         return null;
+      }
+
+      removeAfter(node.prev);
+
+      return node.val;
    }
 
    public int size()
@@ -156,10 +233,80 @@ public class LinkedListImpl<E> implements LinkedList<E>
       return (Iterator[])Array.newInstance(Iterator.class, size);
    }
 
+   private Node<E> lookupNode(final long id)
+   {
+      if (nodesByID == null)
+      {
+         throw new IllegalStateException("List is not indexed");
+      }
+
+      return nodesByID.get(id);
+   }
+
+   private void indexNode(final Node<E> node)
+   {
+      if (nodesByID != null)
+      {
+         Long id = idSupplier.getID(node.val);
+
+         if (!nodesByID.containsKey(id))
+         {
+            nodesByID.put(id, node);
+
+            return;
+         }
+
+         // Duplicates keep the first node indexed, and take its place once it's removed
+         List<Node<E>> duplicates = duplicateNodesByID.get(id);
+
+         if (duplicates == null)
+         {
+            duplicates = new ArrayList<Node<E>>(1);
+
+            duplicateNodesByID.put(id, duplicates);
+         }
+
+         duplicates.add(node);
+      }
+   }
+
+   private void unindexNode(final Node<E> node)
+   {
+      if (nodesByID != null)
+      {
+         Long id = idSupplier.getID(node.val);
+
+         List<Node<E>> duplicates = duplicateNodesByID.get(id);
+
+         if (duplicates == null)
+         {
+            nodesByID.remove(id);
+
+            return;
+         }
+
+         if (nodesByID.get(id) == node)
+         {
+            nodesByID.put(id, duplicates.remove(0));
+         }
+         else
+         {
+            duplicates.remove(node);
+         }
+
+         if (duplicates.isEmpty())
+         {
+            duplicateNodesByID.remove(id);
+         }
+      }
+   }
+
    private void removeAfter(Node<E> node)
    {
       Node<E> toRemove = node.next;
 
+      unindexNode(toRemove);
+
       node.next = toRemove.next;
 
       if (toRemove.next != null)
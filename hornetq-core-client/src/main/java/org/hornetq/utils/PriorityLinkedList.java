@@ -30,6 +30,18 @@ public interface PriorityLinkedList<T>
 
    T poll();
 
+   /**
+    * Returns the element with the given ID without removing it. Only supported on indexed lists.
+    */
+   T getWithID(long id);
+
+   /**
+    * Removes the element with the given ID. Only supported on indexed lists.
+    */
+   T removeWithID(long id);
+
+   boolean isIndexed();
+
    void clear();
 
    int size();
@@ -28,7 +28,7 @@ import java.util.NoSuchElementException;
  */
 public class PriorityLinkedListImpl<T> implements PriorityLinkedList<T>
 {
-   protected LinkedListImpl<T>[] levels;
+   protected LinkedList<T>[] levels;
 
    private int size;
 
@@ -40,11 +40,36 @@ public class PriorityLinkedListImpl<T> implements PriorityLinkedList<T>
 
    public PriorityLinkedListImpl(final int priorities)
    {
-      levels = (LinkedListImpl<T>[])Array.newInstance(LinkedListImpl.class, priorities);
+      this(priorities, null);
+   }
+
+   /**
+    * @param idSupplier if not null every level will be indexed by the supplied ID
+    */
+   public PriorityLinkedListImpl(final int priorities, final IDSupplier<T> idSupplier)
+   {
+      this(priorities, idSupplier, false);
+   }
+
+   /**
+    * @param idSupplier if not null every level will be indexed by the supplied ID
+    * @param chunked whether the levels hold their elements on a {@link ChunkedLinkedListImpl}, taking less memory per
+    *           element than the nodes of a {@link LinkedListImpl}
+    */
+   public PriorityLinkedListImpl(final int priorities, final IDSupplier<T> idSupplier, final boolean chunked)
+   {
+      levels = (LinkedList<T>[])Array.newInstance(LinkedList.class, priorities);
 
       for (int i = 0; i < priorities; i++)
       {
-         levels[i] = new LinkedListImpl<T>();
+         if (chunked)
+         {
+            levels[i] = new ChunkedLinkedListImpl<T>(ChunkedLinkedListImpl.DEFAULT_CHUNK_SIZE, idSupplier);
+         }
+         else
+         {
+            levels[i] = new LinkedListImpl<T>(idSupplier);
+         }
       }
    }
 
@@ -99,7 +124,7 @@ public class PriorityLinkedListImpl<T> implements PriorityLinkedList<T>
 
       for (int i = highestPriority; i >= 0; i--)
       {
-         LinkedListImpl<T> ll = levels[i];
+         LinkedList<T> ll = levels[i];
 
          if (ll.size() != 0)
          {
@@ -125,9 +150,64 @@ public class PriorityLinkedListImpl<T> implements PriorityLinkedList<T>
       return t;
    }
 
+   public T getWithID(final long id)
+   {
+      for (int i = levels.length - 1; i >= 0; i--)
+      {
+         LinkedList<T> ll = levels[i];
+
+         if (ll.size() != 0)
+         {
+            T t = ll.getWithID(id);
+
+            if (t != null)
+            {
+               return t;
+            }
+         }
+      }
+
+      return null;
+   }
+
+   public T removeWithID(final long id)
+   {
+      for (int i = levels.length - 1; i >= 0; i--)
+      {
+         LinkedList<T> ll = levels[i];
+
+         if (ll.size() != 0)
+         {
+            T t = ll.removeWithID(id);
+
+            if (t != null)
+            {
+               size--;
+
+               if (i == highestPriority && ll.size() == 0)
+               {
+                  while (highestPriority >= 0 && levels[highestPriority].size() == 0)
+                  {
+                     highestPriority--;
+                  }
+               }
+
+               return t;
+            }
+         }
+      }
+
+      return null;
+   }
+
+   public boolean isIndexed()
+   {
+      return levels[0].isIndexed();
+   }
+
    public void clear()
    {
-      for (LinkedListImpl<T> list : levels)
+      for (LinkedList<T> list : levels)
       {
          list.clear();
       }
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2013 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.util;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hornetq.utils.ConcurrentLongHashMap;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ConcurrentLongHashMapTest extends Assert
+{
+   @Test
+   public void testPutGetRemove() throws Exception
+   {
+      ConcurrentLongHashMap<String> map = new ConcurrentLongHashMap<String>(4, 1);
+
+      assertTrue(map.isEmpty());
+      assertNull(map.put(1, "one"));
+      assertNull(map.put(0, "zero"));
+      assertNull(map.put(-1, "minus one"));
+      assertEquals("one", map.put(1, "uno"));
+      assertEquals("uno", map.putIfAbsent(1, "one"));
+      assertNull(map.putIfAbsent(Long.MAX_VALUE, "max"));
+
+      assertEquals(4, map.size());
+      assertEquals("uno", map.get(1));
+      assertEquals("zero", map.get(0));
+      assertEquals("minus one", map.get(-1));
+      assertEquals("max", map.get(Long.MAX_VALUE));
+      assertNull(map.get(2));
+      assertTrue(map.containsKey(0));
+      assertFalse(map.containsKey(Long.MIN_VALUE));
+
+      assertEquals("zero", map.remove(0));
+      assertNull(map.remove(0));
+      assertEquals(3, map.size());
+
+      long[] keys = map.keys();
+      Arrays.sort(keys);
+      assertArrayEquals(new long[]{-1, 1, Long.MAX_VALUE}, keys);
+
+      map.clear();
+      assertTrue(map.isEmpty());
+      assertNull(map.get(1));
+   }
+
+   @Test(expected = NullPointerException.class)
+   public void testNullValue() throws Exception
+   {
+      new ConcurrentLongHashMap<String>().put(1, null);
+   }
+
+   @Test
+   public void testSameAsHashMap() throws Exception
+   {
+      // a small map with a single segment, so it grows and removals keep shifting entries back
+      ConcurrentLongHashMap<Long> map = new ConcurrentLongHashMap<Long>(2, 1);
+      Map<Long, Long> expected = new HashMap<Long, Long>();
+
+      Random random = new Random(1);
+
+      for (int i = 0; i < 100000; i++)
+      {
+         long key = random.nextInt(2000);
+         if (random.nextBoolean())
+         {
+            assertEquals(expected.put(key, (long)i), map.put(key, (long)i));
+         }
+         else
+         {
+            assertEquals(expected.remove(key), map.remove(key));
+         }
+      }
+
+      assertEquals(expected.size(), map.size());
+      assertEquals(expected.size(), map.keys().length);
+      assertEquals(expected.size(), map.values().size());
+
+      for (long key : map.keys())
+      {
+         assertEquals(expected.get(key), map.get(key));
+      }
+
+      ConcurrentLongHashMap<Long> copy = new ConcurrentLongHashMap<Long>();
+      copy.putAll(map);
+      assertEquals(expected.size(), copy.size());
+      for (Map.Entry<Long, Long> entry : expected.entrySet())
+      {
+         assertEquals(entry.getValue(), copy.get(entry.getKey()));
+      }
+   }
+
+   @Test
+   public void testConcurrentPuts() throws Exception
+   {
+      final ConcurrentLongHashMap<Long> map = new ConcurrentLongHashMap<Long>();
+
+      final int threads = 8;
+      final int perThread = 10000;
+      final CountDownLatch done = new CountDownLatch(threads);
+      final AtomicInteger errors = new AtomicInteger();
+
+      for (int t = 0; t < threads; t++)
+      {
+         final long base = t * perThread;
+         new Thread()
+         {
+            @Override
+            public void run()
+            {
+               try
+               {
+                  for (long id = base; id < base + perThread; id++)
+                  {
+                     map.put(id, id);
+                     if (id % 2 == 0 && map.remove(id) == null)
+                     {
+                        errors.incrementAndGet();
+                     }
+                  }
+               }
+               finally
+               {
+                  done.countDown();
+               }
+            }
+         }.start();
+      }
+
+      done.await();
+
+      assertEquals(0, errors.get());
+      assertEquals(threads * perThread / 2, map.size());
+      for (long id = 1; id < threads * perThread; id += 2)
+      {
+         assertEquals(Long.valueOf(id), map.get(id));
+      }
+   }
+}
@@ -224,6 +224,63 @@ public class TypedPropertiesTest
       Assert.assertEquals(props.getEncodeSize(), buffer.writerIndex());
    }
 
+   @Test
+   public void testEncodeDecodeLazily() throws Exception
+   {
+      props.putByteProperty(RandomUtil.randomSimpleString(), RandomUtil.randomByte());
+      props.putBytesProperty(RandomUtil.randomSimpleString(), RandomUtil.randomBytes());
+      props.putBytesProperty(RandomUtil.randomSimpleString(), null);
+      props.putBooleanProperty(RandomUtil.randomSimpleString(), RandomUtil.randomBoolean());
+      props.putShortProperty(RandomUtil.randomSimpleString(), RandomUtil.randomShort());
+      props.putIntProperty(RandomUtil.randomSimpleString(), RandomUtil.randomInt());
+      props.putLongProperty(RandomUtil.randomSimpleString(), RandomUtil.randomLong());
+      props.putFloatProperty(RandomUtil.randomSimpleString(), RandomUtil.randomFloat());
+      props.putDoubleProperty(RandomUtil.randomSimpleString(), RandomUtil.randomDouble());
+      props.putCharProperty(RandomUtil.randomSimpleString(), RandomUtil.randomChar());
+      props.putSimpleStringProperty(RandomUtil.randomSimpleString(), RandomUtil.randomSimpleString());
+      props.putSimpleStringProperty(new SimpleString("_HQ_internal"), RandomUtil.randomSimpleString());
+
+      HornetQBuffer buffer = HornetQBuffers.dynamicBuffer(1024);
+      props.encode(buffer);
+      buffer.writeInt(1234);
+
+      TypedProperties decodedProps = new TypedProperties();
+      decodedProps.decode(buffer, true);
+
+      Assert.assertEquals(1234, buffer.readInt());
+      Assert.assertEquals(props.getEncodeSize(), decodedProps.getEncodeSize());
+      Assert.assertTrue(decodedProps.hasInternalProperties());
+      Assert.assertFalse(decodedProps.containsProperty(RandomUtil.randomSimpleString()));
+      Assert.assertNull(decodedProps.getProperty(RandomUtil.randomSimpleString()));
+
+      // the properties are looked up one by one before they're decoded
+      for (SimpleString name : props.getPropertyNames())
+      {
+         Assert.assertTrue(decodedProps.containsProperty(name));
+         Object value = props.getProperty(name);
+         if (value instanceof byte[])
+         {
+            Assert.assertArrayEquals((byte[])value, (byte[])decodedProps.getProperty(name));
+         }
+         else
+         {
+            Assert.assertEquals(value, decodedProps.getProperty(name));
+         }
+      }
+
+      // encoding them again copies their encoding
+      HornetQBuffer encoded = HornetQBuffers.dynamicBuffer(1024);
+      decodedProps.encode(encoded);
+      Assert.assertEquals(buffer.byteBuf().slice(0, props.getEncodeSize()), encoded.byteBuf());
+
+      TypedProperties copy = new TypedProperties(decodedProps);
+      copy.putIntProperty(key, 10);
+
+      Assert.assertEquals(10, copy.getIntProperty(key).intValue());
+      Assert.assertFalse(decodedProps.containsProperty(key));
+      TypedPropertiesTest.assertEqualsTypeProperties(props, decodedProps);
+   }
+
    @Test
    public void testEncodeDecodeEmpty() throws Exception
    {
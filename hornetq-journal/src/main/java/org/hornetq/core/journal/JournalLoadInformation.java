@@ -24,6 +24,14 @@ public class JournalLoadInformation
 
    private long maxID = -1;
 
+   // the timings of the load are informative only, they are not part of equals and hashCode
+
+   private long orderTime;
+
+   private long readTime;
+
+   private long replayTime;
+
    public JournalLoadInformation()
    {
       super();
@@ -72,6 +80,54 @@ public class JournalLoadInformation
       this.maxID = maxID;
    }
 
+   /**
+    * @return the time (in milliseconds) spent opening and ordering the journal files
+    */
+   public long getOrderTime()
+   {
+      return orderTime;
+   }
+
+   /**
+    * @param orderTime the orderTime to set
+    */
+   public void setOrderTime(final long orderTime)
+   {
+      this.orderTime = orderTime;
+   }
+
+   /**
+    * @return the time (in milliseconds) spent waiting for the journal files to be read and decoded
+    */
+   public long getReadTime()
+   {
+      return readTime;
+   }
+
+   /**
+    * @param readTime the readTime to set
+    */
+   public void setReadTime(final long readTime)
+   {
+      this.readTime = readTime;
+   }
+
+   /**
+    * @return the time (in milliseconds) spent replaying the records read from the journal files
+    */
+   public long getReplayTime()
+   {
+      return replayTime;
+   }
+
+   /**
+    * @param replayTime the replayTime to set
+    */
+   public void setReplayTime(final long replayTime)
+   {
+      this.replayTime = replayTime;
+   }
+
    @Override
    public int hashCode()
    {
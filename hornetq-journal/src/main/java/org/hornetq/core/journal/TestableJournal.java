@@ -53,6 +53,14 @@ public interface TestableJournal extends Journal
 
    boolean isAutoReclaim();
 
+   void setLoadThreads(int loadThreads);
+
+   int getLoadThreads();
+
+   void setLoadReadAhead(int loadReadAhead);
+
+   int getLoadReadAhead();
+
    void testCompact();
 
    JournalFile getCurrentFile();
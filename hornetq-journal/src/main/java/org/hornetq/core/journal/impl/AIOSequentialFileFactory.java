@@ -85,7 +85,17 @@ public final class AIOSequentialFileFactory extends AbstractSequentialFileFactor
                                    final boolean logRates,
                                    final IOCriticalErrorListener listener)
    {
-      super(journalDir, true, bufferSize, bufferTimeout, logRates, listener);
+      this(journalDir, bufferSize, bufferTimeout, logRates, false, listener);
+   }
+
+   public AIOSequentialFileFactory(final String journalDir,
+                                   final int bufferSize,
+                                   final int bufferTimeout,
+                                   final boolean logRates,
+                                   final boolean adaptiveBuffer,
+                                   final IOCriticalErrorListener listener)
+   {
+      super(journalDir, true, bufferSize, bufferTimeout, logRates, adaptiveBuffer, listener);
    }
 
    public SequentialFile createSequentialFile(final String fileName, final int maxIO)
@@ -69,12 +69,23 @@ abstract class AbstractSequentialFileFactory implements SequentialFileFactory
                                         final int bufferTimeout,
                                         final boolean logRates,
                                         final IOCriticalErrorListener criticalErrorListener)
+   {
+      this(journalDir, buffered, bufferSize, bufferTimeout, logRates, false, criticalErrorListener);
+   }
+
+   AbstractSequentialFileFactory(final String journalDir,
+                                        final boolean buffered,
+                                        final int bufferSize,
+                                        final int bufferTimeout,
+                                        final boolean logRates,
+                                        final boolean adaptiveBuffer,
+                                        final IOCriticalErrorListener criticalErrorListener)
    {
       this.journalDir = journalDir;
 
       if (buffered)
       {
-         timedBuffer = new TimedBuffer(bufferSize, bufferTimeout, logRates);
+         timedBuffer = new TimedBuffer(bufferSize, bufferTimeout, logRates, adaptiveBuffer);
       }
       else
       {
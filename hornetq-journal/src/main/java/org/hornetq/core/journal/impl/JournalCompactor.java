@@ -14,12 +14,8 @@
 package org.hornetq.core.journal.impl;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 
 import org.hornetq.api.core.HornetQBuffer;
 import org.hornetq.api.core.HornetQBuffers;
@@ -36,6 +32,7 @@ import org.hornetq.core.journal.impl.dataformat.JournalDeleteRecordTX;
 import org.hornetq.core.journal.impl.dataformat.JournalInternalRecord;
 import org.hornetq.core.journal.impl.dataformat.JournalRollbackRecordTX;
 import org.hornetq.journal.HornetQJournalLogger;
+import org.hornetq.utils.ConcurrentLongHashMap;
 
 /**
  * A JournalCompactor
@@ -52,11 +49,11 @@ public class JournalCompactor extends AbstractJournalUpdateTask implements Journ
    private static final short COMPACT_SPLIT_LINE = 2;
 
    // Snapshot of transactions that were pending when the compactor started
-   private final Map<Long, PendingTransaction> pendingTransactions = new ConcurrentHashMap<Long, PendingTransaction>();
+   private final ConcurrentLongHashMap<PendingTransaction> pendingTransactions = new ConcurrentLongHashMap<PendingTransaction>();
 
-   private final Map<Long, JournalRecord> newRecords = new HashMap<Long, JournalRecord>();
+   private final ConcurrentLongHashMap<JournalRecord> newRecords = new ConcurrentLongHashMap<JournalRecord>();
 
-   private final Map<Long, JournalTransaction> newTransactions = new HashMap<Long, JournalTransaction>();
+   private final ConcurrentLongHashMap<JournalTransaction> newTransactions = new ConcurrentLongHashMap<JournalTransaction>();
 
    /** Commands that happened during compacting
     *  We can't process any counts during compacting, as we won't know in what files the records are taking place, so
@@ -130,12 +127,12 @@ public class JournalCompactor extends AbstractJournalUpdateTask implements Journ
       return newDataFiles;
    }
 
-   public Map<Long, JournalRecord> getNewRecords()
+   public ConcurrentLongHashMap<JournalRecord> getNewRecords()
    {
       return newRecords;
    }
 
-   public Map<Long, JournalTransaction> getNewTransactions()
+   public ConcurrentLongHashMap<JournalTransaction> getNewTransactions()
    {
       return newTransactions;
    }
@@ -143,7 +140,7 @@ public class JournalCompactor extends AbstractJournalUpdateTask implements Journ
    public JournalCompactor(final SequentialFileFactory fileFactory,
                            final JournalImpl journal,
                            final JournalFilesRepository filesRepository,
-                           final Set<Long> recordsSnapshot,
+                           final ConcurrentLongHashMap<JournalRecord> recordsSnapshot,
                            final long firstFileID)
    {
       super(fileFactory, journal, filesRepository, recordsSnapshot, firstFileID);
@@ -292,6 +289,27 @@ public class JournalCompactor extends AbstractJournalUpdateTask implements Journ
       pendingCommands.clear();
    }
 
+   /**
+    * Replay pending counts that happened during compacting over the records the journal had before compacting, used
+    * when compacting failed and the compacted files are thrown away
+    */
+   public void cancelPendingCommands()
+   {
+      for (CompactCommand command : pendingCommands)
+      {
+         try
+         {
+            command.cancel();
+         }
+         catch (Exception e)
+         {
+            HornetQJournalLogger.LOGGER.errorReplayingCommands(e);
+         }
+      }
+
+      pendingCommands.clear();
+   }
+
    // JournalReaderCallback implementation -------------------------------------------
 
    public void onReadAddRecord(final RecordInfo info) throws Exception
@@ -510,6 +528,12 @@ public class JournalCompactor extends AbstractJournalUpdateTask implements Journ
    private static abstract class CompactCommand
    {
       abstract void execute() throws Exception;
+
+      /** The records are the journal's own records on this case, so updates and deletes are replayed the same way */
+      void cancel() throws Exception
+      {
+         execute();
+      }
    }
 
    private class DeleteCompactCommand extends CompactCommand
@@ -597,6 +621,13 @@ public class JournalCompactor extends AbstractJournalUpdateTask implements Journ
          }
          newTransactions.remove(liveTransaction.getId());
       }
+
+      @Override
+      void cancel() throws Exception
+      {
+         liveTransaction.cancelCompacting();
+         liveTransaction.commit(commitFile);
+      }
    }
 
    private class RollbackCompactCommand extends CompactCommand
@@ -623,6 +654,13 @@ public class JournalCompactor extends AbstractJournalUpdateTask implements Journ
          }
          newTransactions.remove(liveTransaction.getId());
       }
+
+      @Override
+      void cancel() throws Exception
+      {
+         liveTransaction.cancelCompacting();
+         liveTransaction.rollback(rollbackFile);
+      }
    }
 
    @Override
@@ -632,7 +670,7 @@ public class JournalCompactor extends AbstractJournalUpdateTask implements Journ
    }
 
    @Override
-   public Map<Long, JournalRecord> getRecords()
+   public ConcurrentLongHashMap<JournalRecord> getRecords()
    {
       return newRecords;
    }
@@ -0,0 +1,343 @@
+/*
+ * Copyright 2013 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.journal.impl;
+
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.hornetq.core.journal.RecordInfo;
+import org.hornetq.core.journal.SequentialFileFactory;
+import org.hornetq.utils.HornetQThreadFactory;
+
+/**
+ * Reads and decodes the files of a journal on a pool of threads, ahead of the thread loading the journal, which
+ * replays the records of each file in the order of the files. Only a few files are decoded ahead of the file being
+ * replayed, so the records of a large journal are never all held in memory at once.
+ * <p>
+ * Replaying the records goes through the same {@link JournalReaderCallback} as reading a file directly, so the order
+ * of adds, updates, deletes and transaction records seen by the journal is exactly the same.
+ * <p>
+ * This class is not thread safe, it must be used by the thread loading the journal.
+ */
+final class JournalFilesReader
+{
+   private final SequentialFileFactory fileFactory;
+
+   private final List<JournalFile> files;
+
+   private final List<Future<DecodedFile>> decodedFiles;
+
+   // how many files are decoded ahead of the file being replayed
+   private final int readAhead;
+
+   private final ExecutorService executor;
+
+   private int nextFile;
+
+   private long readTime;
+
+   private long replayTime;
+
+   /**
+    * @param threads how many files are read at the same time. With a single thread the files are read by the thread
+    *                calling {@link #read(JournalFile, JournalReaderCallback)}
+    * @param readAhead how many files are decoded ahead of the file being replayed. No more than
+    *                  <code>readAhead + 1</code> threads are used, as many files are held in memory at most
+    */
+   JournalFilesReader(final SequentialFileFactory fileFactory,
+                      final List<JournalFile> files,
+                      final int threads,
+                      final int readAhead)
+   {
+      this.fileFactory = fileFactory;
+      this.files = files;
+
+      if (threads > 1)
+      {
+         decodedFiles = new ArrayList<Future<DecodedFile>>(files.size());
+         this.readAhead = Math.max(0, readAhead);
+         executor = Executors.newFixedThreadPool(Math.min(threads, this.readAhead + 1),
+                                                 new HornetQThreadFactory("HornetQ-journal-loader" +
+                                                                             System.identityHashCode(this),
+                                                                          true,
+                                                                          getThisClassLoader()));
+      }
+      else
+      {
+         decodedFiles = null;
+         this.readAhead = 0;
+         executor = null;
+      }
+   }
+
+   /**
+    * Replays the records of the next file on <code>reader</code>.
+    *
+    * @return the position after the last valid record of the file
+    */
+   int read(final JournalFile file, final JournalReaderCallback reader) throws Exception
+   {
+      if (files.get(nextFile) != file)
+      {
+         throw new IllegalStateException("Journal files must be read in order, expected " + files.get(nextFile) +
+                                         " but was " + file);
+      }
+
+      long start = System.currentTimeMillis();
+
+      DecodedFile decoded;
+
+      if (executor == null)
+      {
+         decoded = decode(file);
+      }
+      else
+      {
+         while (decodedFiles.size() < files.size() && decodedFiles.size() <= nextFile + readAhead)
+         {
+            final JournalFile toDecode = files.get(decodedFiles.size());
+
+            decodedFiles.add(executor.submit(new Callable<DecodedFile>()
+            {
+               public DecodedFile call() throws Exception
+               {
+                  return decode(toDecode);
+               }
+            }));
+         }
+
+         try
+         {
+            decoded = decodedFiles.set(nextFile, null).get();
+         }
+         catch (ExecutionException e)
+         {
+            if (e.getCause() instanceof Exception)
+            {
+               throw (Exception)e.getCause();
+            }
+            throw new Exception(e.getCause().getMessage(), e.getCause());
+         }
+      }
+
+      long decodedTime = System.currentTimeMillis();
+
+      readTime += decodedTime - start;
+
+      nextFile++;
+
+      for (ReadEvent event : decoded.events)
+      {
+         event.replay(reader);
+      }
+
+      replayTime += System.currentTimeMillis() - decodedTime;
+
+      return decoded.lastDataPos;
+   }
+
+   /**
+    * @return the time (in milliseconds) spent waiting for files to be read and decoded
+    */
+   long getReadTime()
+   {
+      return readTime;
+   }
+
+   /**
+    * @return the time (in milliseconds) spent replaying the records of the files
+    */
+   long getReplayTime()
+   {
+      return replayTime;
+   }
+
+   void close()
+   {
+      if (executor != null)
+      {
+         // the files decoded ahead are not needed if loading failed
+         executor.shutdownNow();
+      }
+   }
+
+   private DecodedFile decode(final JournalFile file) throws Exception
+   {
+      final List<ReadEvent> events = new ArrayList<ReadEvent>();
+
+      int lastDataPos = JournalImpl.readJournalFile(fileFactory, file, new JournalReaderCallback()
+      {
+         public void onReadAddRecord(final RecordInfo info)
+         {
+            events.add(new ReadEvent()
+            {
+               @Override
+               void replay(final JournalReaderCallback reader) throws Exception
+               {
+                  reader.onReadAddRecord(info);
+               }
+            });
+         }
+
+         public void onReadUpdateRecord(final RecordInfo info)
+         {
+            events.add(new ReadEvent()
+            {
+               @Override
+               void replay(final JournalReaderCallback reader) throws Exception
+               {
+                  reader.onReadUpdateRecord(info);
+               }
+            });
+         }
+
+         public void onReadDeleteRecord(final long recordID)
+         {
+            events.add(new ReadEvent()
+            {
+               @Override
+               void replay(final JournalReaderCallback reader) throws Exception
+               {
+                  reader.onReadDeleteRecord(recordID);
+               }
+            });
+         }
+
+         public void onReadAddRecordTX(final long transactionID, final RecordInfo info)
+         {
+            events.add(new ReadEvent()
+            {
+               @Override
+               void replay(final JournalReaderCallback reader) throws Exception
+               {
+                  reader.onReadAddRecordTX(transactionID, info);
+               }
+            });
+         }
+
+         public void onReadUpdateRecordTX(final long transactionID, final RecordInfo info)
+         {
+            events.add(new ReadEvent()
+            {
+               @Override
+               void replay(final JournalReaderCallback reader) throws Exception
+               {
+                  reader.onReadUpdateRecordTX(transactionID, info);
+               }
+            });
+         }
+
+         public void onReadDeleteRecordTX(final long transactionID, final RecordInfo info)
+         {
+            events.add(new ReadEvent()
+            {
+               @Override
+               void replay(final JournalReaderCallback reader) throws Exception
+               {
+                  reader.onReadDeleteRecordTX(transactionID, info);
+               }
+            });
+         }
+
+         public void onReadPrepareRecord(final long transactionID, final byte[] extraData, final int numberOfRecords)
+         {
+            events.add(new ReadEvent()
+            {
+               @Override
+               void replay(final JournalReaderCallback reader) throws Exception
+               {
+                  reader.onReadPrepareRecord(transactionID, extraData, numberOfRecords);
+               }
+            });
+         }
+
+         public void onReadCommitRecord(final long transactionID, final int numberOfRecords)
+         {
+            events.add(new ReadEvent()
+            {
+               @Override
+               void replay(final JournalReaderCallback reader) throws Exception
+               {
+                  reader.onReadCommitRecord(transactionID, numberOfRecords);
+               }
+            });
+         }
+
+         public void onReadRollbackRecord(final long transactionID)
+         {
+            events.add(new ReadEvent()
+            {
+               @Override
+               void replay(final JournalReaderCallback reader) throws Exception
+               {
+                  reader.onReadRollbackRecord(transactionID);
+               }
+            });
+         }
+
+         public void markAsDataFile(final JournalFile file)
+         {
+            events.add(new ReadEvent()
+            {
+               @Override
+               void replay(final JournalReaderCallback reader)
+               {
+                  reader.markAsDataFile(file);
+               }
+            });
+         }
+      });
+
+      return new DecodedFile(events, lastDataPos);
+   }
+
+   private static ClassLoader getThisClassLoader()
+   {
+      return AccessController.doPrivileged(new PrivilegedAction<ClassLoader>()
+      {
+         public ClassLoader run()
+         {
+            return JournalFilesReader.class.getClassLoader();
+         }
+      });
+   }
+
+   /**
+    * A call made on the {@link JournalReaderCallback} while decoding a file.
+    */
+   private abstract static class ReadEvent
+   {
+      abstract void replay(JournalReaderCallback reader) throws Exception;
+   }
+
+   private static final class DecodedFile
+   {
+      private final List<ReadEvent> events;
+
+      private final int lastDataPos;
+
+      private DecodedFile(final List<ReadEvent> events, final int lastDataPos)
+      {
+         this.events = events;
+         this.lastDataPos = lastDataPos;
+      }
+   }
+}
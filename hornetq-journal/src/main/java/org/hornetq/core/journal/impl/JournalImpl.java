@@ -26,8 +26,6 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -66,6 +64,7 @@ import org.hornetq.core.journal.impl.dataformat.JournalRollbackRecordTX;
 import org.hornetq.journal.HornetQJournalBundle;
 import org.hornetq.journal.HornetQJournalLogger;
 import org.hornetq.utils.ConcurrentHashSet;
+import org.hornetq.utils.ConcurrentLongHashMap;
 import org.hornetq.utils.DataConstants;
 
 /**
@@ -163,10 +162,20 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
 
    protected static final byte FILL_CHARACTER = (byte)'J';
 
+   public static final int DEFAULT_LOAD_THREADS = 2;
+
+   public static final int DEFAULT_LOAD_READ_AHEAD = 2;
+
    // Attributes ----------------------------------------------------
 
    private volatile boolean autoReclaim = true;
 
+   // how many files are read at the same time while loading
+   private volatile int loadThreads = DEFAULT_LOAD_THREADS;
+
+   // how many decoded files may wait to be replayed while loading
+   private volatile int loadReadAhead = DEFAULT_LOAD_READ_AHEAD;
+
    private final int userVersion;
 
    private final int minFiles;
@@ -180,10 +189,10 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
    private final JournalFilesRepository filesRepository;
 
    // Compacting may replace this structure
-   private final ConcurrentMap<Long, JournalRecord> records = new ConcurrentHashMap<Long, JournalRecord>();
+   private volatile ConcurrentLongHashMap<JournalRecord> records = new ConcurrentLongHashMap<JournalRecord>();
 
    // Compacting may replace this structure
-   private final ConcurrentMap<Long, JournalTransaction> transactions = new ConcurrentHashMap<Long, JournalTransaction>();
+   private final ConcurrentLongHashMap<JournalTransaction> transactions = new ConcurrentLongHashMap<JournalTransaction>();
 
    // This will be set only while the JournalCompactor is being executed
    private volatile JournalCompactor compactor;
@@ -349,7 +358,7 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
       latch.await();
    }
 
-   public Map<Long, JournalRecord> getRecords()
+   public ConcurrentLongHashMap<JournalRecord> getRecords()
    {
       return records;
    }
@@ -1464,6 +1473,9 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
 
          boolean previousReclaimValue = isAutoReclaim();
 
+         // The records the compactor works on, put back if compacting fails
+         ConcurrentLongHashMap<JournalRecord> recordsSnapshot = null;
+
       try
       {
          HornetQJournalLogger.LOGGER.debug("Starting compacting operation on journal");
@@ -1499,21 +1511,25 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
                return;
             }
 
+            // The current records become the snapshot of the compactor, which is not changed any more
+            recordsSnapshot = records;
+
             compactor = new JournalCompactor(fileFactory,
                                              this,
                                              filesRepository,
-                                             records.keySet(),
+                                             recordsSnapshot,
                                              dataFilesToProcess.get(0).getFileID());
 
-            for (Map.Entry<Long, JournalTransaction> entry : transactions.entrySet())
+            for (JournalTransaction transaction : transactions.values())
             {
-               compactor.addPendingTransaction(entry.getKey(), entry.getValue().getPositiveArray());
-               entry.getValue().setCompacting();
+               compactor.addPendingTransaction(transaction.getId(), transaction.getPositiveArray());
+               transaction.setCompacting();
             }
 
             // We will calculate the new records during compacting, what will take the position the records will take
-            // after compacting
-            records.clear();
+            // after compacting. The map is replaced instead of cleared, so the journal is only locked for as long as
+            // it takes to replace it, no matter how many records there are
+            records = new ConcurrentLongHashMap<JournalRecord>();
          }
          finally
          {
@@ -1563,11 +1579,11 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
 
             newDatafiles = localCompactor.getNewDataFiles();
 
-            // Restore newRecords created during compacting
-            for (Map.Entry<Long, JournalRecord> newRecordEntry : localCompactor.getNewRecords().entrySet())
-            {
-               records.put(newRecordEntry.getKey(), newRecordEntry.getValue());
-            }
+            // Restore newRecords created during compacting. Only the records appended while compacting are copied, but
+            // together with the pending commands replayed below this still grows with how long compacting took
+            ConcurrentLongHashMap<JournalRecord> newRecords = localCompactor.getNewRecords();
+            newRecords.putAll(records);
+            records = newRecords;
 
             // Restore compacted dataFiles
             for (int i = newDatafiles.size() - 1; i >= 0; i--)
@@ -1629,18 +1645,10 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
       }
       finally
       {
-         // An Exception was probably thrown, and the compactor was not cleared
+         // An Exception was thrown before the compacted files took the place of the data files
          if (compactor != null)
          {
-            try
-            {
-               compactor.flush();
-            }
-            catch (Throwable ignored)
-            {
-            }
-
-            compactor = null;
+            cancelCompact(dataFilesToProcess, recordsSnapshot);
          }
          setAutoReclaim(previousReclaimValue);
          }
@@ -1652,6 +1660,66 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
 
    }
 
+   /**
+    * Puts the records, the data files and the pending transactions back the way they were before compacting started,
+    * as if the journal had never been compacted, and removes the files the compactor had written.
+    */
+   private void cancelCompact(final List<JournalFile> dataFilesToProcess,
+                              final ConcurrentLongHashMap<JournalRecord> recordsSnapshot)
+   {
+      JournalCompactor localCompactor = compactor;
+
+      try
+      {
+         localCompactor.flush();
+      }
+      catch (Throwable ignored)
+      {
+      }
+
+      journalLock.writeLock().lock();
+      try
+      {
+         // Cleared first, so the transactions and the commands replayed below don't go back to the compactor
+         compactor = null;
+
+         // The snapshot was not changed by the journal while compacting, the records appended since are added back to it
+         recordsSnapshot.putAll(records);
+         records = recordsSnapshot;
+
+         for (int i = dataFilesToProcess.size() - 1; i >= 0; i--)
+         {
+            filesRepository.addDataFileOnTop(dataFilesToProcess.get(i));
+         }
+
+         for (JournalTransaction transaction : transactions.values())
+         {
+            transaction.cancelCompacting();
+         }
+
+         localCompactor.cancelPendingCommands();
+      }
+      finally
+      {
+         journalLock.writeLock().unlock();
+      }
+
+      for (JournalFile newFile : localCompactor.getNewDataFiles())
+      {
+         try
+         {
+            newFile.getFile().delete();
+         }
+         catch (Throwable e)
+         {
+            // it will be removed when the journal is loaded again
+            HornetQJournalLogger.LOGGER.debug("Could not delete " + newFile + " after compacting failed", e);
+         }
+      }
+
+      HornetQJournalLogger.LOGGER.debug("Compacting failed, the journal was put back the way it was before compacting");
+   }
+
    /**
     * <p>Load data accordingly to the record layouts</p>
     *
@@ -1725,8 +1793,12 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
 
       final Map<Long, TransactionHolder> loadTransactions = new LinkedHashMap<Long, TransactionHolder>();
 
+      long orderStart = System.currentTimeMillis();
+
       final List<JournalFile> orderedFiles = orderFiles();
 
+      long orderTime = System.currentTimeMillis() - orderStart;
+
       filesRepository.calculateNextfileID(orderedFiles);
 
       int lastDataPos = JournalImpl.SIZE_HEADER;
@@ -1734,274 +1806,294 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
       // AtomicLong is used only as a reference, not as an Atomic value
       final AtomicLong maxID = new AtomicLong(-1);
 
-      for (final JournalFile file : orderedFiles)
-      {
-         JournalImpl.trace("Loading file " + file.getFile().getFileName());
-
-         final AtomicBoolean hasData = new AtomicBoolean(false);
+      // the files are decoded ahead on other threads, but replayed here in the order of the files
+      final JournalFilesReader filesReader = new JournalFilesReader(fileFactory,
+                                                                            orderedFiles,
+                                                                            loadThreads,
+                                                                            loadReadAhead);
 
-         int resultLastPost = JournalImpl.readJournalFile(fileFactory, file, new JournalReaderCallback()
+      try
+      {
+         for (final JournalFile file : orderedFiles)
          {
+            JournalImpl.trace("Loading file " + file.getFile().getFileName());
 
-            private void checkID(final long id)
-            {
-               if (id > maxID.longValue())
-               {
-                  maxID.set(id);
-               }
-            }
+            final AtomicBoolean hasData = new AtomicBoolean(false);
 
-            public void onReadAddRecord(final RecordInfo info) throws Exception
+            int resultLastPost = filesReader.read(file, new JournalReaderCallback()
             {
-               checkID(info.id);
-
-               hasData.set(true);
 
-               loadManager.addRecord(info);
-
-               records.put(info.id, new JournalRecord(file, info.data.length + JournalImpl.SIZE_ADD_RECORD + 1));
-            }
+               private void checkID(final long id)
+               {
+                  if (id > maxID.longValue())
+                  {
+                     maxID.set(id);
+                  }
+               }
 
-            public void onReadUpdateRecord(final RecordInfo info) throws Exception
-            {
-               checkID(info.id);
+               public void onReadAddRecord(final RecordInfo info) throws Exception
+               {
+                  checkID(info.id);
 
-               hasData.set(true);
+                  hasData.set(true);
 
-               loadManager.updateRecord(info);
+                  loadManager.addRecord(info);
 
-               JournalRecord posFiles = records.get(info.id);
+                  records.put(info.id, new JournalRecord(file, info.data.length + JournalImpl.SIZE_ADD_RECORD + 1));
+               }
 
-               if (posFiles != null)
+               public void onReadUpdateRecord(final RecordInfo info) throws Exception
                {
-                  // It's legal for this to be null. The file(s) with the may
-                  // have been deleted
-                  // just leaving some updates in this file
+                  checkID(info.id);
 
-                  posFiles.addUpdateFile(file, info.data.length + JournalImpl.SIZE_ADD_RECORD + 1); // +1 = compact
-                  // count
-               }
-            }
+                  hasData.set(true);
 
-            public void onReadDeleteRecord(final long recordID) throws Exception
-            {
-               hasData.set(true);
+                  loadManager.updateRecord(info);
 
-               loadManager.deleteRecord(recordID);
+                  JournalRecord posFiles = records.get(info.id);
 
-               JournalRecord posFiles = records.remove(recordID);
+                  if (posFiles != null)
+                  {
+                     // It's legal for this to be null. The file(s) with the may
+                     // have been deleted
+                     // just leaving some updates in this file
 
-               if (posFiles != null)
-               {
-                  posFiles.delete(file);
+                     posFiles.addUpdateFile(file, info.data.length + JournalImpl.SIZE_ADD_RECORD + 1); // +1 = compact
+                     // count
+                  }
                }
-            }
 
-            public void onReadUpdateRecordTX(final long transactionID, final RecordInfo info) throws Exception
-            {
-               onReadAddRecordTX(transactionID, info);
-            }
+               public void onReadDeleteRecord(final long recordID) throws Exception
+               {
+                  hasData.set(true);
 
-            public void onReadAddRecordTX(final long transactionID, final RecordInfo info) throws Exception
-            {
+                  loadManager.deleteRecord(recordID);
 
-               checkID(info.id);
+                  JournalRecord posFiles = records.remove(recordID);
 
-               hasData.set(true);
+                  if (posFiles != null)
+                  {
+                     posFiles.delete(file);
+                  }
+               }
 
-               TransactionHolder tx = loadTransactions.get(transactionID);
+               public void onReadUpdateRecordTX(final long transactionID, final RecordInfo info) throws Exception
+               {
+                  onReadAddRecordTX(transactionID, info);
+               }
 
-               if (tx == null)
+               public void onReadAddRecordTX(final long transactionID, final RecordInfo info) throws Exception
                {
-                  tx = new TransactionHolder(transactionID);
 
-                  loadTransactions.put(transactionID, tx);
-               }
+                  checkID(info.id);
 
-               tx.recordInfos.add(info);
+                  hasData.set(true);
 
-               JournalTransaction tnp = transactions.get(transactionID);
+                  TransactionHolder tx = loadTransactions.get(transactionID);
 
-               if (tnp == null)
-               {
-                  tnp = new JournalTransaction(transactionID, JournalImpl.this);
+                  if (tx == null)
+                  {
+                     tx = new TransactionHolder(transactionID);
 
-                  transactions.put(transactionID, tnp);
-               }
+                     loadTransactions.put(transactionID, tx);
+                  }
 
-               tnp.addPositive(file, info.id, info.data.length + JournalImpl.SIZE_ADD_RECORD_TX + 1); // +1 = compact
-               // count
-            }
+                  tx.recordInfos.add(info);
 
-            public void onReadDeleteRecordTX(final long transactionID, final RecordInfo info) throws Exception
-            {
-               hasData.set(true);
+                  JournalTransaction tnp = transactions.get(transactionID);
 
-               TransactionHolder tx = loadTransactions.get(transactionID);
+                  if (tnp == null)
+                  {
+                     tnp = new JournalTransaction(transactionID, JournalImpl.this);
 
-               if (tx == null)
-               {
-                  tx = new TransactionHolder(transactionID);
+                     transactions.put(transactionID, tnp);
+                  }
 
-                  loadTransactions.put(transactionID, tx);
+                  tnp.addPositive(file, info.id, info.data.length + JournalImpl.SIZE_ADD_RECORD_TX + 1); // +1 = compact
+                  // count
                }
 
-               tx.recordsToDelete.add(info);
+               public void onReadDeleteRecordTX(final long transactionID, final RecordInfo info) throws Exception
+               {
+                  hasData.set(true);
 
-               JournalTransaction tnp = transactions.get(transactionID);
+                  TransactionHolder tx = loadTransactions.get(transactionID);
 
-               if (tnp == null)
-               {
-                  tnp = new JournalTransaction(transactionID, JournalImpl.this);
+                  if (tx == null)
+                  {
+                     tx = new TransactionHolder(transactionID);
 
-                  transactions.put(transactionID, tnp);
-               }
+                     loadTransactions.put(transactionID, tx);
+                  }
 
-               tnp.addNegative(file, info.id);
+                  tx.recordsToDelete.add(info);
 
-            }
+                  JournalTransaction tnp = transactions.get(transactionID);
 
-            public void onReadPrepareRecord(final long transactionID, final byte[] extraData, final int numberOfRecords) throws Exception
-            {
-               hasData.set(true);
+                  if (tnp == null)
+                  {
+                     tnp = new JournalTransaction(transactionID, JournalImpl.this);
 
-               TransactionHolder tx = loadTransactions.get(transactionID);
+                     transactions.put(transactionID, tnp);
+                  }
 
-               if (tx == null)
-               {
-                  // The user could choose to prepare empty transactions
-                  tx = new TransactionHolder(transactionID);
+                  tnp.addNegative(file, info.id);
 
-                  loadTransactions.put(transactionID, tx);
                }
 
-               tx.prepared = true;
+               public void onReadPrepareRecord(final long transactionID, final byte[] extraData, final int numberOfRecords) throws Exception
+               {
+                  hasData.set(true);
 
-               tx.extraData = extraData;
+                  TransactionHolder tx = loadTransactions.get(transactionID);
 
-               JournalTransaction journalTransaction = transactions.get(transactionID);
+                  if (tx == null)
+                  {
+                     // The user could choose to prepare empty transactions
+                     tx = new TransactionHolder(transactionID);
 
-               if (journalTransaction == null)
-               {
-                  journalTransaction = new JournalTransaction(transactionID, JournalImpl.this);
+                     loadTransactions.put(transactionID, tx);
+                  }
 
-                  transactions.put(transactionID, journalTransaction);
-               }
+                  tx.prepared = true;
 
-               boolean healthy = checkTransactionHealth(file, journalTransaction, orderedFiles, numberOfRecords);
+                  tx.extraData = extraData;
 
-               if (healthy)
-               {
-                  journalTransaction.prepare(file);
-               }
-               else
-               {
-                  HornetQJournalLogger.LOGGER.preparedTXIncomplete(transactionID);
-                  tx.invalid = true;
-               }
-            }
-
-            public void onReadCommitRecord(final long transactionID, final int numberOfRecords) throws Exception
-            {
-               TransactionHolder tx = loadTransactions.remove(transactionID);
-
-               // The commit could be alone on its own journal-file and the
-               // whole transaction body was reclaimed but not the
-               // commit-record
-               // So it is completely legal to not find a transaction at this
-               // point
-               // If we can't find it, we assume the TX was reclaimed and we
-               // ignore this
-               if (tx != null)
-               {
-                  JournalTransaction journalTransaction = transactions.remove(transactionID);
+                  JournalTransaction journalTransaction = transactions.get(transactionID);
 
                   if (journalTransaction == null)
                   {
-                     throw new IllegalStateException("Cannot find tx " + transactionID);
+                     journalTransaction = new JournalTransaction(transactionID, JournalImpl.this);
+
+                     transactions.put(transactionID, journalTransaction);
                   }
 
                   boolean healthy = checkTransactionHealth(file, journalTransaction, orderedFiles, numberOfRecords);
 
                   if (healthy)
                   {
-                     for (RecordInfo txRecord : tx.recordInfos)
+                     journalTransaction.prepare(file);
+                  }
+                  else
+                  {
+                     HornetQJournalLogger.LOGGER.preparedTXIncomplete(transactionID);
+                     tx.invalid = true;
+                  }
+               }
+
+               public void onReadCommitRecord(final long transactionID, final int numberOfRecords) throws Exception
+               {
+                  TransactionHolder tx = loadTransactions.remove(transactionID);
+
+                  // The commit could be alone on its own journal-file and the
+                  // whole transaction body was reclaimed but not the
+                  // commit-record
+                  // So it is completely legal to not find a transaction at this
+                  // point
+                  // If we can't find it, we assume the TX was reclaimed and we
+                  // ignore this
+                  if (tx != null)
+                  {
+                     JournalTransaction journalTransaction = transactions.remove(transactionID);
+
+                     if (journalTransaction == null)
+                     {
+                        throw new IllegalStateException("Cannot find tx " + transactionID);
+                     }
+
+                     boolean healthy = checkTransactionHealth(file, journalTransaction, orderedFiles, numberOfRecords);
+
+                     if (healthy)
                      {
-                        if (txRecord.isUpdate)
+                        for (RecordInfo txRecord : tx.recordInfos)
                         {
-                           loadManager.updateRecord(txRecord);
+                           if (txRecord.isUpdate)
+                           {
+                              loadManager.updateRecord(txRecord);
+                           }
+                           else
+                           {
+                              loadManager.addRecord(txRecord);
+                           }
                         }
-                        else
+
+                        for (RecordInfo deleteValue : tx.recordsToDelete)
                         {
-                           loadManager.addRecord(txRecord);
+                           loadManager.deleteRecord(deleteValue.id);
                         }
-                     }
 
-                     for (RecordInfo deleteValue : tx.recordsToDelete)
-                     {
-                        loadManager.deleteRecord(deleteValue.id);
+                        journalTransaction.commit(file);
                      }
+                     else
+                     {
+                        HornetQJournalLogger.LOGGER.txMissingElements(transactionID);
 
-                     journalTransaction.commit(file);
-                  }
-                  else
-                  {
-                     HornetQJournalLogger.LOGGER.txMissingElements(transactionID);
+                        journalTransaction.forget();
+                     }
 
-                     journalTransaction.forget();
+                     hasData.set(true);
                   }
 
-                  hasData.set(true);
                }
 
-            }
-
-            public void onReadRollbackRecord(final long transactionID) throws Exception
-            {
-               TransactionHolder tx = loadTransactions.remove(transactionID);
-
-               // The rollback could be alone on its own journal-file and the
-               // whole transaction body was reclaimed but the commit-record
-               // So it is completely legal to not find a transaction at this
-               // point
-               if (tx != null)
+               public void onReadRollbackRecord(final long transactionID) throws Exception
                {
-                  JournalTransaction tnp = transactions.remove(transactionID);
+                  TransactionHolder tx = loadTransactions.remove(transactionID);
 
-                  if (tnp == null)
+                  // The rollback could be alone on its own journal-file and the
+                  // whole transaction body was reclaimed but the commit-record
+                  // So it is completely legal to not find a transaction at this
+                  // point
+                  if (tx != null)
                   {
-                     throw new IllegalStateException("Cannot find tx " + transactionID);
-                  }
+                     JournalTransaction tnp = transactions.remove(transactionID);
+
+                     if (tnp == null)
+                     {
+                        throw new IllegalStateException("Cannot find tx " + transactionID);
+                     }
+
+                     // There is no need to validate summaries/holes on
+                     // Rollbacks.. We will ignore the data anyway.
+                     tnp.rollback(file);
 
-                  // There is no need to validate summaries/holes on
-                  // Rollbacks.. We will ignore the data anyway.
-                  tnp.rollback(file);
+                     hasData.set(true);
+                  }
+               }
 
+               public void markAsDataFile(final JournalFile file)
+               {
                   hasData.set(true);
                }
-            }
 
-            public void markAsDataFile(final JournalFile file)
+            });
+
+            if (hasData.get())
             {
-               hasData.set(true);
+               lastDataPos = resultLastPost;
+               filesRepository.addDataFileOnBottom(file);
             }
-
-         });
-
-         if (hasData.get())
-         {
-            lastDataPos = resultLastPost;
-            filesRepository.addDataFileOnBottom(file);
-         }
-         else
-         {
-            if (changeData)
+            else
             {
-               // Empty dataFiles with no data
-               filesRepository.addFreeFile(file, false, false);
+               if (changeData)
+               {
+                  // Empty dataFiles with no data
+                  filesRepository.addFreeFile(file, false, false);
+               }
             }
          }
       }
+      finally
+      {
+         filesReader.close();
+      }
+
+      if (HornetQJournalLogger.LOGGER.isDebugEnabled())
+      {
+         HornetQJournalLogger.LOGGER.debug("Loaded " + orderedFiles.size() + " files on " + this + ", ordering took " +
+                  orderTime + " ms, waiting for files to be read took " + filesReader.getReadTime() +
+                  " ms and replaying the records took " + filesReader.getReplayTime() + " ms");
+      }
 
       if (replicationSync == JournalState.SYNCING)
       {
@@ -2052,7 +2144,11 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
 
       checkReclaimStatus();
 
-      return new JournalLoadInformation(records.size(), maxID.longValue());
+      JournalLoadInformation loadInformation = new JournalLoadInformation(records.size(), maxID.longValue());
+      loadInformation.setOrderTime(orderTime);
+      loadInformation.setReadTime(filesReader.getReadTime());
+      loadInformation.setReplayTime(filesReader.getReplayTime());
+      return loadInformation;
    }
 
    /**
@@ -2187,6 +2283,35 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
       return autoReclaim;
    }
 
+   /**
+    * Sets how many journal files are read and decoded at the same time by {@link #load(LoaderCallback)}. The
+    * records are still replayed in the order of the files, so this doesn't change the result of loading.
+    * @param loadThreads 1 to read the files on the thread loading the journal
+    */
+   public final void setLoadThreads(final int loadThreads)
+   {
+      this.loadThreads = loadThreads;
+   }
+
+   public final int getLoadThreads()
+   {
+      return loadThreads;
+   }
+
+   /**
+    * Sets how many files {@link #load(LoaderCallback)} decodes ahead of the file being replayed. Each of them is held
+    * in memory as a whole, so this bounds the memory taken by loading whatever the number of threads.
+    */
+   public final void setLoadReadAhead(final int loadReadAhead)
+   {
+      this.loadReadAhead = loadReadAhead;
+   }
+
+   public final int getLoadReadAhead()
+   {
+      return loadReadAhead;
+   }
+
    /* Only meant to be used in tests. */
    @Override
    public String debug() throws Exception
@@ -50,6 +50,9 @@ public class JournalTransaction
 
    private boolean compacting = false;
 
+   // What setCompacting cleared, put back if compacting fails
+   private JournalTransaction beforeCompacting;
+
    private Map<JournalFile, TransactionCallback> callbackList;
 
    private JournalFile lastFile = null;
@@ -107,11 +110,31 @@ public class JournalTransaction
    {
       compacting = true;
 
+      beforeCompacting = new JournalTransaction(id, journal);
+      beforeCompacting.merge(this);
+
       // Everything is cleared on the transaction...
       // since we are compacting, everything is at the compactor's level
       clear();
    }
 
+   /** This is used when compacting failed, to put back what {@link #setCompacting()} cleared */
+   public void cancelCompacting()
+   {
+      if (compacting)
+      {
+         // what happened during compacting goes after what was there before
+         beforeCompacting.merge(this);
+
+         pos = beforeCompacting.pos;
+         neg = beforeCompacting.neg;
+         pendingFiles = beforeCompacting.pendingFiles;
+
+         beforeCompacting = null;
+         compacting = false;
+      }
+   }
+
    /** This is used to merge transactions from compacting */
    public void merge(final JournalTransaction other)
    {
@@ -146,6 +169,8 @@ public class JournalTransaction
       }
 
       compacting = false;
+
+      beforeCompacting = null;
    }
 
    /**
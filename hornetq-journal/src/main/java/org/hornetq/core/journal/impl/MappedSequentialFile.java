@@ -0,0 +1,603 @@
+/*
+ * Copyright 2013 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.journal.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.hornetq.api.core.HornetQException;
+import org.hornetq.api.core.HornetQExceptionType;
+import org.hornetq.api.core.HornetQIOErrorException;
+import org.hornetq.api.core.HornetQIllegalStateException;
+import org.hornetq.core.journal.IOAsyncTask;
+import org.hornetq.core.journal.SequentialFile;
+import org.hornetq.core.journal.SequentialFileFactory;
+import org.hornetq.journal.HornetQJournalBundle;
+import org.hornetq.journal.HornetQJournalLogger;
+
+/**
+ * A SequentialFile that reads and writes through a {@link MappedByteBuffer} over the whole file, so reads and writes
+ * are plain memory copies and a sync forces the mapped pages.
+ * <p>
+ * The mapping never extends the file: writes past the end of the file, such as appending to a page or to a large
+ * message, go through the {@link FileChannel} and the file is mapped again once it is read past the mapped region.
+ * Journal files are filled up front, so every journal write is a memory copy.
+ */
+public final class MappedSequentialFile extends AbstractSequentialFile
+{
+   // files bigger than this are only mapped up to it, and accessed through the channel beyond it
+   private static final long MAX_MAPPED_SIZE = Integer.MAX_VALUE;
+
+   // guards the channel, the mapping and filePosition. Not the lock on this, as close() holds that while waiting for
+   // the pending writes
+   private final Object lock = new Object();
+
+   private FileChannel channel;
+
+   private RandomAccessFile rfile;
+
+   private MappedByteBuffer mappedBuffer;
+
+   // where the next read or write happens, like the position of a FileChannel
+   private long filePosition;
+
+   private boolean mappedDirty;
+
+   private boolean channelDirty;
+
+   /** The write semaphore here is only used when writing asynchronously */
+   private Semaphore maxIOSemaphore;
+
+   private final int defaultMaxIO;
+
+   private int maxIO;
+
+   public MappedSequentialFile(final SequentialFileFactory factory,
+                               final String directory,
+                               final String fileName,
+                               final int maxIO,
+                               final Executor writerExecutor)
+   {
+      super(directory, new File(directory + "/" + fileName), factory, writerExecutor);
+      defaultMaxIO = maxIO;
+   }
+
+   public MappedSequentialFile(final SequentialFileFactory factory,
+                               final File file,
+                               final int maxIO,
+                               final Executor writerExecutor)
+   {
+      super(file.getParent(), new File(file.getPath()), factory, writerExecutor);
+      defaultMaxIO = maxIO;
+   }
+
+   public int getAlignment()
+   {
+      return 1;
+   }
+
+   public int calculateBlockStart(final int position)
+   {
+      return position;
+   }
+
+   public boolean isOpen()
+   {
+      synchronized (lock)
+      {
+         return channel != null;
+      }
+   }
+
+   public synchronized void open() throws IOException
+   {
+      open(defaultMaxIO, true);
+   }
+
+   public void open(final int maxIO, final boolean useExecutor) throws IOException
+   {
+      synchronized (lock)
+      {
+         try
+         {
+            rfile = new RandomAccessFile(getFile(), "rw");
+
+            channel = rfile.getChannel();
+
+            fileSize = channel.size();
+
+            filePosition = 0;
+
+            map();
+         }
+         catch (IOException e)
+         {
+            factory.onIOError(new HornetQIOErrorException(e.getMessage(), e), e.getMessage(), this);
+            throw e;
+         }
+      }
+
+      if (writerExecutor != null && useExecutor)
+      {
+         maxIOSemaphore = new Semaphore(maxIO);
+         this.maxIO = maxIO;
+      }
+   }
+
+   public void fill(final int position, final int size, final byte fillCharacter) throws IOException
+   {
+      ByteBuffer bb = ByteBuffer.allocate(size);
+
+      for (int i = 0; i < size; i++)
+      {
+         bb.put(fillCharacter);
+      }
+
+      bb.flip();
+
+      synchronized (lock)
+      {
+         try
+         {
+            channel.write(bb, position);
+            channel.force(false);
+
+            fileSize = channel.size();
+
+            map();
+         }
+         catch (IOException e)
+         {
+            factory.onIOError(new HornetQIOErrorException(e.getMessage(), e), e.getMessage(), this);
+            throw e;
+         }
+
+         filePosition = 0;
+      }
+   }
+
+   public synchronized void waitForClose() throws InterruptedException
+   {
+      while (isOpen())
+      {
+         wait();
+      }
+   }
+
+   @Override
+   public synchronized void close() throws IOException, InterruptedException, HornetQException
+   {
+      super.close();
+
+      if (maxIOSemaphore != null)
+      {
+         while (!maxIOSemaphore.tryAcquire(maxIO, 60, TimeUnit.SECONDS))
+         {
+            HornetQJournalLogger.LOGGER.errorClosingFile(getFileName());
+         }
+      }
+
+      maxIOSemaphore = null;
+
+      synchronized (lock)
+      {
+         unmap();
+
+         try
+         {
+            if (channel != null)
+            {
+               channel.close();
+            }
+
+            if (rfile != null)
+            {
+               rfile.close();
+            }
+         }
+         catch (IOException e)
+         {
+            factory.onIOError(new HornetQIOErrorException(e.getMessage(), e), e.getMessage(), this);
+            throw e;
+         }
+         channel = null;
+
+         rfile = null;
+      }
+
+      notifyAll();
+   }
+
+   public int read(final ByteBuffer bytes) throws Exception
+   {
+      return read(bytes, null);
+   }
+
+   public int read(final ByteBuffer bytes, final IOAsyncTask callback) throws IOException,
+                                                                      HornetQIllegalStateException
+   {
+      synchronized (lock)
+      {
+         try
+         {
+            if (channel == null)
+            {
+               throw new HornetQIllegalStateException("File " + this.getFileName() + " has a null channel");
+            }
+
+            int bytesRead;
+
+            int length = (int)Math.min(bytes.remaining(), Math.max(0, fileSize - filePosition));
+
+            if (length == 0)
+            {
+               // like FileChannel.read at the end of the file
+               bytesRead = bytes.hasRemaining() ? -1 : 0;
+            }
+            else if (isMapped(filePosition + length))
+            {
+               ByteBuffer source = mappedBuffer.duplicate();
+
+               source.position((int)filePosition).limit((int)filePosition + length);
+
+               bytes.put(source);
+
+               bytesRead = length;
+            }
+            else
+            {
+               bytesRead = channel.read(bytes, filePosition);
+            }
+
+            if (bytesRead > 0)
+            {
+               filePosition += bytesRead;
+            }
+
+            if (callback != null)
+            {
+               callback.done();
+            }
+
+            bytes.flip();
+
+            return bytesRead;
+         }
+         catch (IOException e)
+         {
+            if (callback != null)
+            {
+               callback.onError(HornetQExceptionType.IO_ERROR.getCode(), e.getLocalizedMessage());
+            }
+
+            factory.onIOError(new HornetQIOErrorException(e.getMessage(), e), e.getMessage(), this);
+
+            throw e;
+         }
+      }
+   }
+
+   public void sync() throws IOException
+   {
+      synchronized (lock)
+      {
+         if (channel != null)
+         {
+            try
+            {
+               if (mappedDirty)
+               {
+                  // the kernel only writes back the pages that have been written to
+                  mappedBuffer.force();
+
+                  mappedDirty = false;
+               }
+
+               if (channelDirty)
+               {
+                  channel.force(false);
+
+                  channelDirty = false;
+               }
+            }
+            catch (IOException e)
+            {
+               factory.onIOError(new HornetQIOErrorException(e.getMessage(), e), e.getMessage(), this);
+               throw e;
+            }
+         }
+      }
+   }
+
+   public long size() throws IOException
+   {
+      synchronized (lock)
+      {
+         if (channel == null)
+         {
+            return getFile().length();
+         }
+
+         try
+         {
+            return channel.size();
+         }
+         catch (IOException e)
+         {
+            factory.onIOError(new HornetQIOErrorException(e.getMessage(), e), e.getMessage(), this);
+            throw e;
+         }
+      }
+   }
+
+   @Override
+   public void position(final long pos) throws IOException
+   {
+      synchronized (lock)
+      {
+         super.position(pos);
+         filePosition = pos;
+      }
+   }
+
+   @Override
+   public String toString()
+   {
+      return "MappedSequentialFile " + getFile();
+   }
+
+   public SequentialFile cloneFile()
+   {
+      return new MappedSequentialFile(factory, getFile(), maxIO, writerExecutor);
+   }
+
+   public void writeDirect(final ByteBuffer bytes, final boolean sync, final IOAsyncTask callback)
+   {
+      if (callback == null)
+      {
+         throw new NullPointerException("callback parameter need to be set");
+      }
+
+      try
+      {
+         internalWrite(bytes, sync, callback);
+      }
+      catch (Exception e)
+      {
+         callback.onError(HornetQExceptionType.GENERIC_EXCEPTION.getCode(), e.getMessage());
+      }
+   }
+
+   public void writeDirect(final ByteBuffer bytes, final boolean sync) throws Exception
+   {
+      internalWrite(bytes, sync, null);
+   }
+
+   public void writeInternal(final ByteBuffer bytes) throws Exception
+   {
+      internalWrite(bytes, true, null);
+   }
+
+   @Override
+   protected ByteBuffer newBuffer(int size, final int limit)
+   {
+      // As with NIO, we don't need to allocate a buffer the entire size of the timed buffer
+
+      size = limit;
+
+      return super.newBuffer(size, limit);
+   }
+
+   private void internalWrite(final ByteBuffer bytes, final boolean sync, final IOAsyncTask callback) throws IOException,
+                                                                                                          HornetQIOErrorException,
+                                                                                                          InterruptedException
+   {
+      if (!isOpen())
+      {
+         if (callback != null)
+         {
+            callback.onError(HornetQExceptionType.IO_ERROR.getCode(), "File not opened");
+         }
+         else
+         {
+            throw HornetQJournalBundle.BUNDLE.fileNotOpened();
+         }
+         return;
+      }
+
+      position.addAndGet(bytes.limit());
+
+      if (maxIOSemaphore == null || callback == null)
+      {
+         // if maxIOSemaphore == null, that means we are not using executors and the writes are synchronous
+         try
+         {
+            doInternalWrite(bytes, sync, callback);
+         }
+         catch (IOException e)
+         {
+            factory.onIOError(new HornetQIOErrorException(e.getMessage(), e), e.getMessage(), this);
+         }
+      }
+      else
+      {
+         // This is a flow control on writing, just like maxAIO on libaio
+         maxIOSemaphore.acquire();
+
+         writerExecutor.execute(new Runnable()
+         {
+            public void run()
+            {
+               try
+               {
+                  try
+                  {
+                     doInternalWrite(bytes, sync, callback);
+                  }
+                  catch (IOException e)
+                  {
+                     HornetQJournalLogger.LOGGER.errorSubmittingWrite(e);
+                     factory.onIOError(new HornetQIOErrorException(e.getMessage(), e), e.getMessage(), MappedSequentialFile.this);
+                     callback.onError(HornetQExceptionType.IO_ERROR.getCode(), e.getMessage());
+                  }
+                  catch (Throwable e)
+                  {
+                     HornetQJournalLogger.LOGGER.errorSubmittingWrite(e);
+                     callback.onError(HornetQExceptionType.IO_ERROR.getCode(), e.getMessage());
+                  }
+               }
+               finally
+               {
+                  maxIOSemaphore.release();
+               }
+            }
+         });
+      }
+   }
+
+   private void doInternalWrite(final ByteBuffer bytes, final boolean sync, final IOAsyncTask callback) throws IOException
+   {
+      synchronized (lock)
+      {
+         if (channel == null)
+         {
+            // as NIO would do when writing to a closed channel
+            throw new ClosedChannelException();
+         }
+
+         int length = bytes.remaining();
+
+         if (isMapped(filePosition + length))
+         {
+            ByteBuffer target = mappedBuffer.duplicate();
+
+            target.position((int)filePosition);
+
+            target.put(bytes);
+
+            mappedDirty = true;
+         }
+         else
+         {
+            long writePosition = filePosition;
+
+            while (bytes.hasRemaining())
+            {
+               writePosition += channel.write(bytes, writePosition);
+            }
+
+            fileSize = Math.max(fileSize, writePosition);
+
+            channelDirty = true;
+         }
+
+         filePosition += length;
+      }
+
+      if (sync)
+      {
+         sync();
+      }
+
+      if (callback != null)
+      {
+         callback.done();
+      }
+   }
+
+   /**
+    * The lock must be held.
+    *
+    * @return true if the mapping covers the file up to <code>end</code>, mapping the file again if it has grown
+    */
+   private boolean isMapped(final long end) throws IOException
+   {
+      if (mappedBuffer != null && end <= mappedBuffer.capacity())
+      {
+         return true;
+      }
+
+      if (end > Math.min(fileSize, MAX_MAPPED_SIZE))
+      {
+         return false;
+      }
+
+      map();
+
+      return true;
+   }
+
+   /**
+    * The lock must be held.
+    */
+   private void map() throws IOException
+   {
+      unmap();
+
+      long size = Math.min(fileSize, MAX_MAPPED_SIZE);
+
+      if (size > 0)
+      {
+         mappedBuffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+      }
+   }
+
+   /**
+    * The lock must be held.
+    */
+   private void unmap() throws IOException
+   {
+      if (mappedBuffer == null)
+      {
+         return;
+      }
+
+      if (mappedDirty)
+      {
+         mappedBuffer.force();
+
+         mappedDirty = false;
+      }
+
+      MappedByteBuffer buffer = mappedBuffer;
+
+      mappedBuffer = null;
+
+      try
+      {
+         // releases the mapping right away instead of waiting for the buffer to be garbage collected, which matters
+         // on platforms that don't allow deleting or renaming a mapped file
+         Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+         cleanerMethod.setAccessible(true);
+         Object cleaner = cleanerMethod.invoke(buffer);
+         if (cleaner != null)
+         {
+            cleaner.getClass().getMethod("clean").invoke(cleaner);
+         }
+      }
+      catch (Throwable e)
+      {
+         // not available on this JVM, the mapping is released once the buffer is garbage collected
+      }
+   }
+}
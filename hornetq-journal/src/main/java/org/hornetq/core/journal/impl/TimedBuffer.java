@@ -21,6 +21,7 @@ import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 import org.hornetq.api.core.HornetQBuffer;
 import org.hornetq.api.core.HornetQBuffers;
@@ -43,6 +44,9 @@ public class TimedBuffer
    // The number of tries on sleep before switching to spin
    public static final int MAX_CHECKS_ON_SLEEP = 20;
 
+   // The weight of a new sample on the adaptive averages is 1 / 2^AVERAGE_SHIFT
+   private static final int AVERAGE_SHIFT = 3;
+
    // Attributes ----------------------------------------------------
 
    private TimedBufferObserver bufferObserver;
@@ -52,7 +56,7 @@ public class TimedBuffer
    // prevent that
    private final Semaphore spinLimiter = new Semaphore(1);
 
-   private CheckTimer timerRunnable = new CheckTimer();
+   private CheckTimer timerRunnable;
 
    private final int bufferSize;
 
@@ -93,6 +97,22 @@ public class TimedBuffer
    // no need to be volatile as every access is synchronized
    private boolean spinning = false;
 
+   // When adaptive, the flush point is calculated from the measured sync latency and the interval between sync
+   // requests instead of always waiting for the timeout, and the timer thread is parked while there is nothing to sync
+   private final boolean adaptive;
+
+   // when the oldest pending sync was requested
+   private volatile long pendingSince;
+
+   // moving average of the time between a sync flush and the completion of its write, in nanoseconds.
+   // Updated from the IO completion threads, a lost update only makes the average a bit less accurate
+   private volatile long syncLatency;
+
+   // moving average of the time between two sync requests, in nanoseconds
+   private volatile long syncInterval;
+
+   private long lastSyncRequest;
+
    // Static --------------------------------------------------------
 
    // Constructors --------------------------------------------------
@@ -100,9 +120,21 @@ public class TimedBuffer
    // Public --------------------------------------------------------
 
    public TimedBuffer(final int size, final int timeout, final boolean logRates)
+   {
+      this(size, timeout, logRates, false);
+   }
+
+   /**
+    * @param timeout  the maximum time (in nanoseconds) a pending sync waits for the buffer to be flushed
+    * @param adaptive if true, a pending sync is flushed as soon as waiting for more records is not expected to pay
+    *                 off, see {@link #getFlushDelay()}
+    */
+   public TimedBuffer(final int size, final int timeout, final boolean logRates, final boolean adaptive)
    {
       bufferSize = size;
 
+      this.adaptive = adaptive;
+
       this.logRates = logRates;
 
       if (logRates)
@@ -133,6 +165,27 @@ public class TimedBuffer
       this.useSleep = useSleep;
    }
 
+   public boolean isAdaptive()
+   {
+      return adaptive;
+   }
+
+   /**
+    * @return the average time (in nanoseconds) it takes for a sync flush to be completed, as measured in adaptive mode
+    */
+   public long getSyncLatency()
+   {
+      return syncLatency;
+   }
+
+   /**
+    * @return the average time (in nanoseconds) between two sync requests, as measured in adaptive mode
+    */
+   public long getSyncInterval()
+   {
+      return syncInterval;
+   }
+
    public synchronized void start()
    {
       if (started)
@@ -150,7 +203,7 @@ public class TimedBuffer
          throw new HornetQInterruptedException(e);
       }
 
-      timerRunnable = new CheckTimer();
+      timerRunnable = adaptive ? new AdaptiveCheckTimer() : new CheckTimer();
 
       timerThread = new Thread(timerRunnable, "hornetq-buffer-timeout");
 
@@ -181,6 +234,8 @@ public class TimedBuffer
 
       spinLimiter.release();
 
+      LockSupport.unpark(timerThread);
+
       if (logRates)
       {
          logRatesTimerTask.cancel();
@@ -283,9 +338,16 @@ public class TimedBuffer
 
       if (sync)
       {
-         pendingSync = true;
+         if (adaptive)
+         {
+            requestSync();
+         }
+         else
+         {
+            pendingSync = true;
 
-         startSpin();
+            startSpin();
+         }
       }
 
    }
@@ -325,6 +387,12 @@ public class TimedBuffer
 
             bufferToFlush.put(buffer.toByteBuffer().array(), 0, pos);
 
+            if (adaptive && pendingSync)
+            {
+               // first on the list so the latency doesn't include the time spent on the other callbacks
+               callbacks.add(0, new SyncLatencyTask());
+            }
+
             bufferObserver.flushBuffer(bufferToFlush, pendingSync, callbacks);
 
             stopSpin();
@@ -349,6 +417,55 @@ public class TimedBuffer
 
    // Private -------------------------------------------------------
 
+   /**
+    * The lock on this must be held.
+    */
+   private void requestSync()
+   {
+      long now = System.nanoTime();
+
+      if (lastSyncRequest != 0)
+      {
+         // an idle period counts as a long interval, but not so long that the average ignores a burst of syncs
+         long interval = Math.min(now - lastSyncRequest, 2 * Math.max(timeout, syncLatency));
+
+         syncInterval += (interval - syncInterval) >> AVERAGE_SHIFT;
+      }
+
+      lastSyncRequest = now;
+
+      if (!pendingSync)
+      {
+         pendingSince = now;
+
+         pendingSync = true;
+
+         // wakes up the timer thread without any lock, a permit is kept if it isn't parked yet
+         LockSupport.unpark(timerThread);
+      }
+   }
+
+   /**
+    * If sync requests arrive less often than a sync takes to complete there is nobody to share the sync with, so the
+    * buffer is flushed right away. Otherwise it waits for the requests expected to arrive while the previous sync
+    * would have been completing, up to the timeout.
+    *
+    * @return how long (in nanoseconds) a pending sync waits before the buffer is flushed
+    */
+   private long getFlushDelay()
+   {
+      long latency = syncLatency;
+
+      long interval = syncInterval;
+
+      if (interval >= latency)
+      {
+         return 0;
+      }
+
+      return Math.min(latency - interval, timeout);
+   }
+
    // Inner classes -------------------------------------------------
 
    private class LogRatesTimerTask extends TimerTask
@@ -396,6 +513,60 @@ public class TimedBuffer
       }
    }
 
+   private final class SyncLatencyTask implements IOAsyncTask
+   {
+      private final long start = System.nanoTime();
+
+      public void done()
+      {
+         long latency = System.nanoTime() - start;
+
+         syncLatency += (latency - syncLatency) >> AVERAGE_SHIFT;
+      }
+
+      public void onError(final int errorCode, final String errorMessage)
+      {
+      }
+   }
+
+   /**
+    * Used in adaptive mode. Parks while there is no pending sync and flushes once the delay calculated for the
+    * oldest pending sync has expired.
+    */
+   private final class AdaptiveCheckTimer extends CheckTimer
+   {
+      @Override
+      public void run()
+      {
+         while (!isClosed())
+         {
+            if (!pendingSync)
+            {
+               LockSupport.park(this);
+
+               continue;
+            }
+
+            long wait = pendingSince + getFlushDelay() - System.nanoTime();
+
+            if (wait > 0)
+            {
+               LockSupport.parkNanos(this, wait);
+            }
+            else
+            {
+               flush();
+
+               if (pendingSync)
+               {
+                  // a record is being added between checkSize and addBytes
+                  Thread.yield();
+               }
+            }
+         }
+      }
+   }
+
    private class CheckTimer implements Runnable
    {
       private volatile boolean closed = false;
@@ -508,6 +679,11 @@ public class TimedBuffer
       {
          closed = true;
       }
+
+      protected boolean isClosed()
+      {
+         return closed;
+      }
    }
 
    /**
@@ -171,6 +171,18 @@ public class ProtonSession implements SessionCallback
       //To change body of implemented methods use File | Settings | File Templates.
    }
 
+   @Override
+   public boolean isWritable(ReadyListener listener)
+   {
+      return true;
+   }
+
+   @Override
+   public boolean isReadyForDelivery(ReadyListener listener)
+   {
+      return true;
+   }
+
    @Override
    public void disconnect(long consumerId, String queueName)
    {
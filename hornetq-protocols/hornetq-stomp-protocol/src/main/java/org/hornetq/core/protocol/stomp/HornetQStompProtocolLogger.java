@@ -38,6 +38,26 @@ public interface HornetQStompProtocolLogger
    @Message(id = 222068, value = "connection closed {0}", format = Message.Format.MESSAGE_FORMAT)
    void connectionClosed(StompConnection connection);
 
+   @LogMessage(level = Logger.Level.WARN)
+   @Message(id = 222170, value = "Unable to acknowledge auto-ack deliveries, they will be redelivered", format = Message.Format.MESSAGE_FORMAT)
+   void errorAcknowledgingAutoAcks(@Cause Exception e);
+
+   @LogMessage(level = Logger.Level.WARN)
+   @Message(id = 222171, value = "Closing connection {0} as a consumer closed while streaming a message to it", format = Message.Format.MESSAGE_FORMAT)
+   void streamedFrameInterrupted(StompConnection connection);
+
+   @LogMessage(level = Logger.Level.WARN)
+   @Message(id = 222172, value = "Closing connection {0} as a message could not be streamed to it", format = Message.Format.MESSAGE_FORMAT)
+   void errorStreamingMessage(@Cause Exception e, StompConnection connection);
+
+   @LogMessage(level = Logger.Level.WARN)
+   @Message(id = 222173, value = "Unable to start streaming message {0} to connection {1}, it goes back to its queue", format = Message.Format.MESSAGE_FORMAT)
+   void errorStartingStreamedMessage(@Cause Exception e, long messageID, StompConnection connection);
+
+   @LogMessage(level = Logger.Level.WARN)
+   @Message(id = 222174, value = "Unable to cancel message {0} back to its queue", format = Message.Format.MESSAGE_FORMAT)
+   void errorCancellingMessage(@Cause Exception e, long messageID);
+
 
 
    @LogMessage(level = Logger.Level.ERROR)
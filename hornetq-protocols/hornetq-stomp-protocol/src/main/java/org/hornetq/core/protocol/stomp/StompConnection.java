@@ -21,6 +21,7 @@ import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.concurrent.CopyOnWriteArrayList;
 
+import io.netty.channel.ChannelPipeline;
 import org.hornetq.api.core.HornetQBuffer;
 import org.hornetq.api.core.HornetQBuffers;
 import org.hornetq.api.core.HornetQException;
@@ -29,6 +30,7 @@ import org.hornetq.core.protocol.stomp.v10.StompFrameHandlerV10;
 import org.hornetq.core.protocol.stomp.v12.StompFrameHandlerV12;
 import org.hornetq.core.remoting.CloseListener;
 import org.hornetq.core.remoting.FailureListener;
+import org.hornetq.core.remoting.impl.netty.NettyConnection;
 import org.hornetq.core.remoting.impl.netty.TransportConstants;
 import org.hornetq.core.server.HornetQServerLogger;
 import org.hornetq.core.server.ServerMessage;
@@ -36,6 +38,7 @@ import org.hornetq.core.server.impl.ServerMessageImpl;
 import org.hornetq.spi.core.protocol.RemotingConnection;
 import org.hornetq.spi.core.remoting.Acceptor;
 import org.hornetq.spi.core.remoting.Connection;
+import org.hornetq.spi.core.remoting.ReadyListener;
 import org.hornetq.utils.ConfigurationHelper;
 import org.hornetq.utils.VersionLoader;
 
@@ -93,6 +96,41 @@ public final class StompConnection implements RemotingConnection
 
    private int minLargeMessageSize;
 
+   // Streamed MESSAGE frames are written one at a time, by the consumer owning the stream. The fields below are
+   // guarded by sendLock
+
+   private ReadyListener streamOwner;
+
+   // not null while a streamed frame is partly written, for the frames sent meanwhile. The other consumers don't
+   // take messages until it ends, so it only holds the few frames already on their way
+   private List<StompFrame> deferredFrames;
+
+   private boolean writable = true;
+
+   private final Set<ReadyListener> waitingListeners = new HashSet<ReadyListener>();
+
+   private final ReadyListener transportListener = new ReadyListener()
+   {
+      public void readyForWriting(final boolean ready)
+      {
+         List<ReadyListener> listeners;
+
+         synchronized (sendLock)
+         {
+            writable = ready;
+
+            if (!ready)
+            {
+               return;
+            }
+
+            listeners = drainWaitingListeners();
+         }
+
+         wake(listeners);
+      }
+   };
+
    public StompFrame decode(HornetQBuffer buffer) throws HornetQStompException
    {
       StompFrame frame = null;
@@ -143,6 +181,8 @@ public final class StompConnection implements RemotingConnection
       this.minLargeMessageSize = ConfigurationHelper.getIntProperty(TransportConstants.STOMP_MIN_LARGE_MESSAGE_SIZE,
                                                                                  HornetQClient.DEFAULT_MIN_LARGE_MESSAGE_SIZE,
                                                                                  acceptorUsed.getConfiguration());
+
+      transportConnection.addReadyListener(transportListener);
    }
 
    @Override
@@ -521,6 +561,11 @@ public final class StompConnection implements RemotingConnection
             //decide version
             negotiateVersion(request);
          }
+         else if (Stomp.Commands.DISCONNECT.equals(cmd))
+         {
+            // before the receipt is sent, the client doesn't expect the messages it received to come back
+            manager.flushAutoAcks(this);
+         }
          
          reply = frameHandler.handleFrame(request);
       }
@@ -768,6 +813,244 @@ public final class StompConnection implements RemotingConnection
       return frameHandler.createMessageFrame(serverMessage, subscription, deliveryCount);
    }
 
+   public StompFrame createStreamedStompMessage(ServerMessage serverMessage,
+         StompSubscription subscription, int deliveryCount, long contentLength) throws Exception
+   {
+      return frameHandler.createStreamedMessageFrame(serverMessage, subscription, deliveryCount, contentLength);
+   }
+
+   /**
+    * @return whether a frame can be written in parts. Web sockets and HTTP would turn each part into a message of its own
+    */
+   public boolean isStreamingSupported()
+   {
+      if (!(transportConnection instanceof NettyConnection))
+      {
+         return false;
+      }
+
+      ChannelPipeline pipeline = ((NettyConnection)transportConnection).getChannel().pipeline();
+
+      return pipeline.get("websocket-handler") == null && pipeline.get("http-encoder") == null;
+   }
+
+   /**
+    * Whether the consumer behind the listener may write the next part of a streamed MESSAGE frame. The first consumer
+    * asking while no frame is streamed owns the stream until it ends its frame or closes. The others are told
+    * through their listener once it's worth asking again.
+    */
+   public boolean isWritable(final ReadyListener listener)
+   {
+      synchronized (sendLock)
+      {
+         if (streamOwner == null)
+         {
+            streamOwner = listener;
+         }
+
+         if (streamOwner == listener && writable)
+         {
+            return true;
+         }
+
+         waitingListeners.add(listener);
+
+         return false;
+      }
+   }
+
+   /**
+    * Whether the consumer behind the listener may take another message. While a frame is streamed by another consumer,
+    * its frames would be held back until that frame ends, so it is told through its listener once it has.
+    */
+   public boolean isReadyForDelivery(final ReadyListener listener)
+   {
+      synchronized (sendLock)
+      {
+         if (deferredFrames == null || streamOwner == listener)
+         {
+            return true;
+         }
+
+         waitingListeners.add(listener);
+
+         return false;
+      }
+   }
+
+   /**
+    * Gives the stream up when the frame the owner was about to stream could not be started.
+    */
+   public void cancelStreamedFrame()
+   {
+      List<ReadyListener> listeners;
+
+      synchronized (sendLock)
+      {
+         if (deferredFrames != null)
+         {
+            return;
+         }
+
+         streamOwner = null;
+
+         listeners = drainWaitingListeners();
+      }
+
+      wake(listeners);
+   }
+
+   /**
+    * Writes the command and headers of a streamed MESSAGE frame. Until the frame ends, frames sent through
+    * {@link #physicalSend(StompFrame)} are held back.
+    */
+   public boolean beginStreamedFrame(final StompFrame frame) throws Exception
+   {
+      HornetQBuffer buffer = frame.toHornetQBufferWithoutBody();
+
+      synchronized (sendLock)
+      {
+         if (isDestroyed())
+         {
+            return false;
+         }
+
+         getTransportConnection().write(buffer, false, false);
+
+         deferredFrames = new ArrayList<StompFrame>();
+      }
+
+      return true;
+   }
+
+   public boolean writeStreamedChunk(final byte[] chunk)
+   {
+      synchronized (sendLock)
+      {
+         if (isDestroyed())
+         {
+            return false;
+         }
+
+         getTransportConnection().write(HornetQBuffers.wrappedBuffer(chunk), false, false);
+      }
+
+      return true;
+   }
+
+   /**
+    * Writes the last chunk of the streamed frame and its end, then the frames held back meanwhile.
+    */
+   public boolean endStreamedFrame(final byte[] chunk) throws Exception
+   {
+      List<StompFrame> frames;
+
+      List<ReadyListener> listeners;
+
+      synchronized (sendLock)
+      {
+         if (isDestroyed())
+         {
+            return false;
+         }
+
+         HornetQBuffer buffer = HornetQBuffers.fixedBuffer(chunk.length + StompFrame.END_OF_FRAME.length);
+         buffer.writeBytes(chunk);
+         buffer.writeBytes(StompFrame.END_OF_FRAME);
+
+         getTransportConnection().write(buffer, false, false);
+
+         frames = deferredFrames;
+
+         for (StompFrame frame : frames)
+         {
+            getTransportConnection().write(frame.toHornetQBuffer(), false, false);
+         }
+
+         deferredFrames = null;
+
+         streamOwner = null;
+
+         listeners = drainWaitingListeners();
+      }
+
+      if (stompListener != null)
+      {
+         for (StompFrame frame : frames)
+         {
+            stompListener.replySent(frame);
+         }
+      }
+
+      wake(listeners);
+
+      return true;
+   }
+
+   /**
+    * Called when the consumer behind the listener closes. If it was streaming a frame, the client can't tell where
+    * that frame ends anymore, so the connection is destroyed.
+    */
+   public void streamClosed(final ReadyListener listener)
+   {
+      List<ReadyListener> listeners;
+
+      synchronized (sendLock)
+      {
+         waitingListeners.remove(listener);
+
+         if (streamOwner != listener)
+         {
+            return;
+         }
+
+         if (deferredFrames != null)
+         {
+            listeners = null;
+         }
+         else
+         {
+            streamOwner = null;
+
+            listeners = drainWaitingListeners();
+         }
+      }
+
+      if (listeners == null)
+      {
+         HornetQStompProtocolLogger.LOGGER.streamedFrameInterrupted(this);
+
+         destroy();
+      }
+      else
+      {
+         wake(listeners);
+      }
+   }
+
+   private List<ReadyListener> drainWaitingListeners()
+   {
+      if (!writable)
+      {
+         // they will be told once the transport is writable again
+         return Collections.emptyList();
+      }
+
+      List<ReadyListener> listeners = new ArrayList<ReadyListener>(waitingListeners);
+
+      waitingListeners.clear();
+
+      return listeners;
+   }
+
+   private static void wake(final List<ReadyListener> listeners)
+   {
+      for (ReadyListener listener : listeners)
+      {
+         listener.readyForWriting(true);
+      }
+   }
+
    public void addStompEventListener(FrameEventListener listener)
    {
       this.stompListener = listener;
@@ -784,6 +1067,14 @@ public final class StompConnection implements RemotingConnection
       HornetQBuffer buffer = frame.toHornetQBuffer();
       synchronized (sendLock)
       {
+         if (deferredFrames != null)
+         {
+            // a streamed frame is being written, this one goes after it
+            deferredFrames.add(frame);
+
+            return;
+         }
+
          getTransportConnection().write(buffer, false, false);
       }
 
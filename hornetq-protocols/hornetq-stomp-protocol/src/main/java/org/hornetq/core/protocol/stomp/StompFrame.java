@@ -34,7 +34,7 @@ import org.hornetq.api.core.HornetQBuffers;
  */
 public class StompFrame
 {
-   private static final byte[] END_OF_FRAME = new byte[] { 0, '\n' };
+   static final byte[] END_OF_FRAME = new byte[] { 0, '\n' };
 
    protected final String command;
 
@@ -152,6 +152,16 @@ public class StompFrame
       return buffer;
    }
 
+   /**
+    * @return the encoding of this frame up to its body, for a frame whose body is streamed after it
+    */
+   public HornetQBuffer toHornetQBufferWithoutBody() throws Exception
+   {
+      HornetQBuffer buffer = toHornetQBuffer();
+      // a frame without body is encoded with its end right after its headers
+      return buffer.copy(0, buffer.writerIndex() - END_OF_FRAME.length);
+   }
+
    public String getHeader(String key)
    {
       return headers.get(key);
@@ -20,6 +20,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
 
 import io.netty.channel.ChannelPipeline;
 import org.hornetq.api.core.HornetQBuffer;
@@ -268,6 +269,19 @@ class StompProtocolManager implements ProtocolManager, NotificationListener
       return stompSession;
    }
 
+   /**
+    * Commits the acknowledgements pending on the auto-ack subscriptions of a connection the client is disconnecting,
+    * so the messages it received are not redelivered once its session is rolled back.
+    */
+   public void flushAutoAcks(final StompConnection connection)
+   {
+      StompSession session = sessions.get(connection.getID());
+      if (session != null)
+      {
+         session.closeAutoAcks(true);
+      }
+   }
+
    public void cleanup(final StompConnection connection)
    {
       connection.setValid(false);
@@ -282,6 +296,8 @@ class StompProtocolManager implements ProtocolManager, NotificationListener
             {
                try
                {
+                  // only drops what a DISCONNECT didn't commit already
+                  session.closeAutoAcks(false);
                   session.getSession().stop();
                   session.getSession().rollback(true);
                   session.getSession().close(false);
@@ -362,6 +378,16 @@ class StompProtocolManager implements ProtocolManager, NotificationListener
       return validated;
    }
 
+   public ScheduledExecutorService getScheduledPool()
+   {
+      return server.getScheduledPool();
+   }
+
+   public Executor getExecutor()
+   {
+      return executor;
+   }
+
    public ServerMessageImpl createServerMessage()
    {
       return new ServerMessageImpl(server.getStorageManager().generateUniqueID(), 512);
@@ -13,10 +13,13 @@
 package org.hornetq.core.protocol.stomp;
 
 import java.io.UnsupportedEncodingException;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.zip.Inflater;
 
 import org.hornetq.api.core.HornetQBuffer;
@@ -63,10 +66,45 @@ public class StompSession implements SessionCallback
    // key = message ID, value = consumer ID
    private final Map<Long, Pair<Long, Integer>> messagesToAck = new ConcurrentHashMap<Long, Pair<Long, Integer>>();
 
+   // key = consumer ID, value = the message being streamed to the consumer
+   private final Map<Long, StompStreamedMessage> streamedMessages = new ConcurrentHashMap<Long, StompStreamedMessage>();
+
    private volatile boolean noLocal = false;
 
    private final int consumerCredits;
 
+   private final int autoAckBatchSize;
+
+   private final long autoAckBatchTimeout;
+
+   // key = consumer ID, value = ID of the last message delivered to an auto-ack subscription and not acknowledged yet
+   private final Map<Long, Long> pendingAutoAcks = new HashMap<Long, Long>();
+
+   // guarded by pendingAutoAcks
+   private int pendingAutoAckCount;
+
+   // guarded by pendingAutoAcks
+   private ScheduledFuture<?> autoAckFlushFuture;
+
+   // guarded by pendingAutoAcks, no more acknowledgements are batched once the connection is closing
+   private boolean autoAcksClosed;
+
+   private final Runnable autoAckFlusher = new Runnable()
+   {
+      public void run()
+      {
+         synchronized (pendingAutoAcks)
+         {
+            autoAckFlushFuture = null;
+
+            if (!autoAcksClosed)
+            {
+               flushAutoAcks();
+            }
+         }
+      }
+   };
+
    StompSession(final StompConnection connection, final StompProtocolManager manager, OperationContext sessionContext)
    {
       this.connection = connection;
@@ -75,6 +113,12 @@ public class StompSession implements SessionCallback
       this.consumerCredits = ConfigurationHelper.getIntProperty(TransportConstants.STOMP_CONSUMERS_CREDIT,
                                                                TransportConstants.STOMP_DEFAULT_CONSUMERS_CREDIT,
                                                                connection.getAcceptorUsed().getConfiguration());
+      this.autoAckBatchSize = ConfigurationHelper.getIntProperty(TransportConstants.STOMP_AUTO_ACK_BATCH_SIZE,
+                                                                 TransportConstants.DEFAULT_STOMP_AUTO_ACK_BATCH_SIZE,
+                                                                 connection.getAcceptorUsed().getConfiguration());
+      this.autoAckBatchTimeout = ConfigurationHelper.getLongProperty(TransportConstants.STOMP_AUTO_ACK_BATCH_TIMEOUT,
+                                                                     TransportConstants.DEFAULT_STOMP_AUTO_ACK_BATCH_TIMEOUT,
+                                                                     connection.getAcceptorUsed().getConfiguration());
    }
 
    void setServerSession(ServerSession session)
@@ -147,8 +191,7 @@ public class StompSession implements SessionCallback
             if (manager.send(connection, frame))
             {
                //we ack and commit only if the send is successful
-               session.acknowledge(consumerID, newServerMessage.getMessageID());
-               session.commit();
+               autoAcknowledge(consumerID, newServerMessage.getMessageID());
             }
          }
          else
@@ -175,18 +218,270 @@ public class StompSession implements SessionCallback
 
    }
 
+   /**
+    * Acknowledges a message delivered to an auto-ack subscription. When batching, the acknowledgement is only committed
+    * once enough deliveries are pending or the batch timeout expires, so deliveries not committed yet when the
+    * connection fails are redelivered.
+    */
+   private void autoAcknowledge(final long consumerID, final long messageID) throws Exception
+   {
+      if (autoAckBatchSize <= 1)
+      {
+         session.acknowledge(consumerID, messageID);
+         session.commit();
+
+         return;
+      }
+
+      synchronized (pendingAutoAcks)
+      {
+         if (autoAcksClosed)
+         {
+            // the session is going away, the delivery is redelivered when it is rolled back
+            return;
+         }
+
+         // acknowledging a message also acknowledges the ones delivered before it to the same consumer
+         pendingAutoAcks.put(consumerID, messageID);
+
+         if (++pendingAutoAckCount >= autoAckBatchSize)
+         {
+            flushAutoAcks();
+         }
+         else if (autoAckFlushFuture == null)
+         {
+            autoAckFlushFuture = manager.getScheduledPool().schedule(autoAckFlusher,
+                                                                     autoAckBatchTimeout,
+                                                                     TimeUnit.MILLISECONDS);
+         }
+      }
+   }
+
+   /**
+    * Commits the acknowledgements of the deliveries pending on auto-ack subscriptions.
+    */
+   void flushAutoAcks()
+   {
+      synchronized (pendingAutoAcks)
+      {
+         if (pendingAutoAcks.isEmpty())
+         {
+            return;
+         }
+
+         try
+         {
+            for (Map.Entry<Long, Long> entry : pendingAutoAcks.entrySet())
+            {
+               session.acknowledge(entry.getKey(), entry.getValue());
+            }
+
+            session.commit();
+         }
+         catch (Exception e)
+         {
+            HornetQStompProtocolLogger.LOGGER.errorAcknowledgingAutoAcks(e);
+         }
+         finally
+         {
+            pendingAutoAcks.clear();
+
+            pendingAutoAckCount = 0;
+         }
+      }
+   }
+
+   /**
+    * Stops batching acknowledgements on auto-ack subscriptions and cancels the pending flush. On a DISCONNECT the
+    * client received the pending deliveries, so they are committed; when the connection fails they are dropped and
+    * redelivered once the session is rolled back.
+    */
+   void closeAutoAcks(final boolean flush)
+   {
+      synchronized (pendingAutoAcks)
+      {
+         if (autoAcksClosed)
+         {
+            return;
+         }
+
+         autoAcksClosed = true;
+
+         if (autoAckFlushFuture != null)
+         {
+            autoAckFlushFuture.cancel(false);
+
+            autoAckFlushFuture = null;
+         }
+
+         if (flush)
+         {
+            flushAutoAcks();
+         }
+         else
+         {
+            pendingAutoAcks.clear();
+
+            pendingAutoAckCount = 0;
+         }
+      }
+   }
+
+   /**
+    * Streams a chunk of the body of a large message. The credits of the whole frame are only taken once its last
+    * chunk is written, when its size is known.
+    */
    public int sendLargeMessageContinuation(long consumerID, byte[] body, boolean continues, boolean requiresResponse)
    {
-      return 0;
+      StompStreamedMessage message = streamedMessages.get(consumerID);
+
+      if (message == null)
+      {
+         // the frame could not be started
+         return 0;
+      }
+
+      try
+      {
+         byte[] chunk = message.encode(body, !continues);
+
+         if (continues)
+         {
+            connection.writeStreamedChunk(chunk);
+
+            return 0;
+         }
+
+         streamedMessages.remove(consumerID);
+
+         message.close();
+
+         int length = message.getFrameSize();
+
+         if (message.isAutoAck())
+         {
+            if (connection.endStreamedFrame(chunk))
+            {
+               //we ack and commit only if the send is successful
+               autoAcknowledge(consumerID, message.getMessageID());
+            }
+         }
+         else
+         {
+            messagesToAck.put(message.getMessageID(), new Pair<Long, Integer>(consumerID, length));
+            // Must send AFTER adding to messagesToAck - or could get acked from client BEFORE it's been added!
+            connection.endStreamedFrame(chunk);
+         }
+
+         return length;
+      }
+      catch (Exception e)
+      {
+         streamedMessages.remove(consumerID);
+
+         message.close();
+
+         // part of the frame is written already, so the client could not tell where it ends
+         HornetQStompProtocolLogger.LOGGER.errorStreamingMessage(e, connection);
+
+         connection.destroy();
+
+         return 0;
+      }
    }
 
+   /**
+    * Starts streaming a large message, writing the headers of its frame. Its body follows through
+    * {@link #sendLargeMessageContinuation(long, byte[], boolean, boolean)}.
+    */
    public int sendLargeMessage(ServerMessage msg, long consumerID, long bodySize, int deliveryCount)
    {
+      StompStreamedMessage message = null;
+
+      try
+      {
+         StompSubscription subscription = subscriptions.get(consumerID);
+
+         boolean compressed = msg.getBooleanProperty(Message.HDR_LARGE_COMPRESSED);
+
+         // as on VersionedStompFrameHandler.createMessageFrame
+         boolean textBody = !msg.containsProperty(Stomp.Headers.CONTENT_LENGTH) && msg.getType() != Message.BYTES_TYPE;
+
+         long contentLength = -1;
+
+         if (!textBody)
+         {
+            contentLength = compressed ? msg.getLongProperty(Message.HDR_LARGE_BODY_SIZE) : bodySize;
+         }
+
+         StompFrame frame = connection.createStreamedStompMessage(msg, subscription, deliveryCount, contentLength);
+
+         boolean autoAck = subscription.getAck().equals(Stomp.Headers.Subscribe.AckModeValues.AUTO);
+
+         message = new StompStreamedMessage(msg.getMessageID(),
+                                            autoAck,
+                                            textBody,
+                                            compressed,
+                                            frame.getEncodedSize());
+
+         if (connection.beginStreamedFrame(frame))
+         {
+            streamedMessages.put(consumerID, message);
+         }
+         else
+         {
+            message.close();
+         }
+      }
+      catch (Exception e)
+      {
+         if (message != null)
+         {
+            message.close();
+         }
+
+         // nothing of the frame is written, so the client doesn't miss it and the message can be delivered again
+         HornetQStompProtocolLogger.LOGGER.errorStartingStreamedMessage(e, msg.getMessageID(), connection);
+
+         connection.cancelStreamedFrame();
+
+         cancelDelivery(consumerID, msg.getMessageID());
+      }
+
       return 0;
    }
 
+   /**
+    * Cancels a delivery back to its queue. The consumer could be holding its lock here while the queue takes its own
+    * lock before the consumer's, so it is done on the executor.
+    */
+   private void cancelDelivery(final long consumerID, final long messageID)
+   {
+      manager.getExecutor().execute(new Runnable()
+      {
+         public void run()
+         {
+            try
+            {
+               // counted as a delivery attempt, so a message that can never be sent ends up on the dead letter address
+               session.individualCancel(consumerID, messageID, true);
+            }
+            catch (Exception e)
+            {
+               HornetQStompProtocolLogger.LOGGER.errorCancellingMessage(e, messageID);
+            }
+         }
+      });
+   }
+
    public void closed()
    {
+      for (StompStreamedMessage message : streamedMessages.values())
+      {
+         message.close();
+      }
+
+      streamedMessages.clear();
    }
 
    public void addReadyListener(final ReadyListener listener)
@@ -197,6 +492,18 @@ public class StompSession implements SessionCallback
    public void removeReadyListener(final ReadyListener listener)
    {
       connection.getTransportConnection().removeReadyListener(listener);
+
+      connection.streamClosed(listener);
+   }
+
+   public boolean isWritable(final ReadyListener listener)
+   {
+      return connection.isWritable(listener);
+   }
+
+   public boolean isReadyForDelivery(final ReadyListener listener)
+   {
+      return connection.isReadyForDelivery(listener);
    }
 
    @Override
@@ -294,11 +601,11 @@ public class StompSession implements SessionCallback
             queue = UUIDGenerator.getInstance().generateSimpleStringUUID();
             session.createQueue(SimpleString.toSimpleString(destination), queue, SimpleString.toSimpleString(selector), true, false);
          }
-        ((ServerSessionImpl)session).createConsumer(consumerID, queue, null, false, false, receiveCredits);
+        ((ServerSessionImpl)session).createConsumer(consumerID, queue, null, false, connection.isStreamingSupported(), receiveCredits);
       } 
       else 
       {
-        ((ServerSessionImpl)session).createConsumer(consumerID, queue, SimpleString.toSimpleString(selector), false, false, receiveCredits);
+        ((ServerSessionImpl)session).createConsumer(consumerID, queue, SimpleString.toSimpleString(selector), false, connection.isStreamingSupported(), receiveCredits);
       }
 
       StompSubscription subscription = new StompSubscription(subscriptionID, ack);
@@ -317,8 +624,15 @@ public class StompSession implements SessionCallback
          StompSubscription sub = entry.getValue();
          if (id != null && id.equals(sub.getID()))
          {
+            // the consumer is about to close, and its deliveries would be redelivered otherwise
+            flushAutoAcks();
             iterator.remove();
             session.closeConsumer(consumerID);
+            StompStreamedMessage message = streamedMessages.remove(consumerID);
+            if (message != null)
+            {
+               message.close();
+            }
             SimpleString queueName;
             if (durableSubscriptionName != null && durableSubscriptionName.trim().length() != 0) {
                 queueName = SimpleString.toSimpleString(id + "." + durableSubscriptionName);
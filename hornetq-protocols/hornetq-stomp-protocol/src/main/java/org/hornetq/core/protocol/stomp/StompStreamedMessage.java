@@ -0,0 +1,197 @@
+/*
+ * Copyright 2013 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.protocol.stomp;
+
+import java.io.ByteArrayOutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.hornetq.utils.DataConstants;
+
+/**
+ * Turns the chunks of a large message body, as stored on the server, into the chunks of the body of the MESSAGE frame
+ * streaming it, so the frame is never held in memory as a whole.
+ * <p>
+ * A compressed body is inflated chunk by chunk. A text body is stored as a nullable {@link org.hornetq.api.core.SimpleString},
+ * which is turned into UTF-8 chunk by chunk as well.
+ */
+final class StompStreamedMessage
+{
+   private static final byte[] EMPTY = new byte[0];
+
+   private static final int INFLATE_BUFFER_SIZE = 64 * 1024;
+
+   private final long messageID;
+
+   private final boolean autoAck;
+
+   private final boolean textBody;
+
+   private final Inflater inflater;
+
+   private long frameSize;
+
+   // the null flag and the length of a text body
+   private final byte[] textHeader = new byte[DataConstants.SIZE_BYTE + DataConstants.SIZE_INT];
+
+   private int textHeaderRead;
+
+   private int textBytesLeft = -1;
+
+   // the first byte of a char split across chunks, or -1
+   private int pendingByte = -1;
+
+   // the first char of a surrogate pair split across chunks, or 0
+   private char pendingHighSurrogate;
+
+   /**
+    * @param frameSize the size of the frame without body
+    */
+   StompStreamedMessage(final long messageID,
+                        final boolean autoAck,
+                        final boolean textBody,
+                        final boolean compressed,
+                        final int frameSize)
+   {
+      this.messageID = messageID;
+      this.autoAck = autoAck;
+      this.textBody = textBody;
+      this.inflater = compressed ? new Inflater() : null;
+      this.frameSize = frameSize;
+   }
+
+   long getMessageID()
+   {
+      return messageID;
+   }
+
+   boolean isAutoAck()
+   {
+      return autoAck;
+   }
+
+   /**
+    * @return the size of the frame with the part of its body encoded so far
+    */
+   int getFrameSize()
+   {
+      return (int)Math.min(frameSize, Integer.MAX_VALUE);
+   }
+
+   /**
+    * @return the part of the frame body for the given chunk of the stored body
+    */
+   byte[] encode(final byte[] chunk, final boolean last) throws Exception
+   {
+      byte[] data = inflater == null ? chunk : inflate(chunk);
+
+      byte[] body = textBody ? decodeText(data, last) : data;
+
+      frameSize += body.length;
+
+      return body;
+   }
+
+   void close()
+   {
+      if (inflater != null)
+      {
+         inflater.end();
+      }
+   }
+
+   private byte[] inflate(final byte[] chunk) throws DataFormatException
+   {
+      inflater.setInput(chunk);
+
+      ByteArrayOutputStream output = new ByteArrayOutputStream(chunk.length);
+
+      byte[] buffer = new byte[INFLATE_BUFFER_SIZE];
+
+      while (!inflater.finished())
+      {
+         int inflated = inflater.inflate(buffer);
+
+         if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+         {
+            break;
+         }
+
+         output.write(buffer, 0, inflated);
+      }
+
+      return output.toByteArray();
+   }
+
+   private byte[] decodeText(final byte[] data, final boolean last) throws Exception
+   {
+      int pos = 0;
+
+      while (textBytesLeft < 0 && pos < data.length)
+      {
+         textHeader[textHeaderRead++] = data[pos++];
+
+         if (textHeaderRead == 1 && textHeader[0] == DataConstants.NULL)
+         {
+            textBytesLeft = 0;
+         }
+         else if (textHeaderRead == textHeader.length)
+         {
+            textBytesLeft = (textHeader[1] & 0xFF) << 24 |
+                            (textHeader[2] & 0xFF) << 16 |
+                            (textHeader[3] & 0xFF) << 8 |
+                            textHeader[4] & 0xFF;
+         }
+      }
+
+      int length = Math.max(0, Math.min(textBytesLeft, data.length - pos));
+
+      textBytesLeft -= length;
+
+      StringBuilder text = new StringBuilder(length / 2 + 1);
+
+      if (pendingHighSurrogate != 0)
+      {
+         text.append(pendingHighSurrogate);
+
+         pendingHighSurrogate = 0;
+      }
+
+      // chars are stored with their low byte first, as on SimpleString
+      for (int i = pos; i < pos + length; i++)
+      {
+         if (pendingByte < 0)
+         {
+            pendingByte = data[i] & 0xFF;
+         }
+         else
+         {
+            text.append((char)((data[i] & 0xFF) << 8 | pendingByte));
+
+            pendingByte = -1;
+         }
+      }
+
+      int end = text.length() - 1;
+
+      if (!last && end >= 0 && Character.isHighSurrogate(text.charAt(end)))
+      {
+         pendingHighSurrogate = text.charAt(end);
+
+         text.setLength(end);
+      }
+
+      return text.length() == 0 ? EMPTY : text.toString().getBytes("UTF-8");
+   }
+}
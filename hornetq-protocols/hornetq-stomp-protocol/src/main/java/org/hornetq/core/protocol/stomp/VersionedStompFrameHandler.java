@@ -380,6 +380,32 @@ public abstract class VersionedStompFrameHandler
       return frame;
    }
 
+   /**
+    * Creates a MESSAGE frame without body, for a large message whose body is streamed after the frame headers.
+    * @param contentLength the length of the body, or -1 for a text body whose UTF-8 length is unknown until it's sent
+    */
+   public StompFrame createStreamedMessageFrame(ServerMessage serverMessage,
+         StompSubscription subscription, int deliveryCount, long contentLength) throws Exception
+   {
+      StompFrame frame = createStompFrame(Stomp.Responses.MESSAGE);
+
+      if (subscription.getID() != null)
+      {
+         frame.addHeader(Stomp.Headers.Message.SUBSCRIPTION,
+               subscription.getID());
+      }
+
+      if (contentLength >= 0)
+      {
+         frame.addHeader(Headers.CONTENT_LENGTH, String.valueOf(contentLength));
+      }
+
+      StompUtils.copyStandardHeadersFromMessageToFrame(serverMessage, frame,
+            deliveryCount);
+
+      return frame;
+   }
+
    /**
     * this method is called when a newer version of handler is created. It should
     * take over the state of the decoder of the existingHandler so that
@@ -53,12 +53,28 @@ public class StompFrameHandlerV12 extends StompFrameHandlerV11 implements FrameE
    {
       StompFrame frame = super.createMessageFrame(serverMessage, subscription, deliveryCount);
 
+      addAckHeader(frame, serverMessage, subscription);
+
+      return frame;
+   }
+
+   @Override
+   public StompFrame createStreamedMessageFrame(ServerMessage serverMessage,
+         StompSubscription subscription, int deliveryCount, long contentLength) throws Exception
+   {
+      StompFrame frame = super.createStreamedMessageFrame(serverMessage, subscription, deliveryCount, contentLength);
+
+      addAckHeader(frame, serverMessage, subscription);
+
+      return frame;
+   }
+
+   private void addAckHeader(StompFrame frame, ServerMessage serverMessage, StompSubscription subscription)
+   {
       if (!subscription.getAck().equals(Stomp.Headers.Subscribe.AckModeValues.AUTO))
       {
          frame.addHeader(Stomp.Headers.Message.ACK, String.valueOf(serverMessage.getMessageID()));
       }
-
-      return frame;
    }
 
    /**
@@ -573,6 +573,28 @@ public interface Configuration extends Serializable
     */
    void setJournalCompactPercentage(int percentage);
 
+   /**
+    * Returns the number of threads reading the journal files at the same time when the server starts. <br>
+    * Default value is {@value HornetQDefaultConfiguration#DEFAULT_JOURNAL_LOAD_THREADS}.
+    */
+   int getJournalLoadThreads();
+
+   /**
+    * Sets the number of threads reading the journal files at the same time when the server starts.
+    */
+   void setJournalLoadThreads(int loadThreads);
+
+   /**
+    * Returns the maximum number of journal files decoded ahead of the file being loaded. <br>
+    * Default value is {@value HornetQDefaultConfiguration#DEFAULT_JOURNAL_LOAD_READ_AHEAD}.
+    */
+   int getJournalLoadReadAhead();
+
+   /**
+    * Sets the maximum number of journal files decoded ahead of the file being loaded.
+    */
+   void setJournalLoadReadAhead(int loadReadAhead);
+
    /**
     * Returns the number of journal files to pre-create. <br>
     * Default value is {@value HornetQDefaultConfiguration#DEFAULT_JOURNAL_MIN_FILES}.
@@ -656,6 +678,20 @@ public interface Configuration extends Serializable
     */
    void setJournalBufferSize_NIO(int journalBufferSize);
 
+   /**
+    * Returns whether the journal buffer calculates when to flush from the measured sync latency and the rate of
+    * sync requests, using the buffer timeout as the maximum time to wait.
+    * <br>
+    * Default value is {@value HornetQDefaultConfiguration#DEFAULT_JOURNAL_BUFFER_ADAPTIVE}.
+    */
+   boolean isJournalBufferAdaptive();
+
+   /**
+    * Sets whether the journal buffer calculates when to flush from the measured sync latency and the rate of
+    * sync requests.
+    */
+   void setJournalBufferAdaptive(boolean adaptive);
+
    /**
     * Returns whether the bindings directory is created on this server startup. <br>
     * Default value is {@value HornetQDefaultConfiguration#DEFAULT_CREATE_BINDINGS_DIR}.
@@ -954,4 +990,31 @@ public interface Configuration extends Serializable
     * @return the number of backup journals to keep after failback has occurred
     */
    int getMaxSavedReplicatedJournalsSize();
+
+   /**
+    * Returns the size in bytes of the frames a live server gathers journal operations on before replicating them to
+    * its backup, or 0 if each operation is replicated on its own.
+    * <br>
+    * Default value is {@value HornetQDefaultConfiguration#DEFAULT_REPLICATION_BATCH_SIZE}.
+    */
+   int getReplicationBatchSize();
+
+   /**
+    * Sets the size in bytes of the frames journal operations are replicated on, 0 to replicate each operation on its
+    * own.
+    */
+   void setReplicationBatchSize(int replicationBatchSize);
+
+   /**
+    * Returns the maximum time in nanoseconds a journal operation waits on a frame for more operations before it's
+    * replicated.
+    * <br>
+    * Default value is {@value HornetQDefaultConfiguration#DEFAULT_REPLICATION_BATCH_TIMEOUT}.
+    */
+   int getReplicationBatchTimeout();
+
+   /**
+    * Sets the maximum time in nanoseconds a journal operation waits on a frame for more operations.
+    */
+   void setReplicationBatchTimeout(int replicationBatchTimeout);
 }
@@ -142,6 +142,10 @@ public class ConfigurationImpl implements Configuration
 
    protected int journalCompactPercentage = HornetQDefaultConfiguration.getDefaultJournalCompactPercentage();
 
+   protected int journalLoadThreads = HornetQDefaultConfiguration.getDefaultJournalLoadThreads();
+
+   protected int journalLoadReadAhead = HornetQDefaultConfiguration.getDefaultJournalLoadReadAhead();
+
    protected int journalFileSize = HornetQDefaultConfiguration.getDefaultJournalFileSize();
 
    protected int journalMinFiles = HornetQDefaultConfiguration.getDefaultJournalMinFiles();
@@ -160,6 +164,8 @@ public class ConfigurationImpl implements Configuration
 
    protected int journalBufferSize_NIO = HornetQDefaultConfiguration.getDefaultJournalBufferSizeNio();
 
+   protected boolean journalBufferAdaptive = HornetQDefaultConfiguration.isDefaultJournalBufferAdaptive();
+
    protected boolean logJournalWriteRate = HornetQDefaultConfiguration.isDefaultJournalLogWriteRate();
 
    protected int journalPerfBlastPages = HornetQDefaultConfiguration.getDefaultJournalPerfBlastPages();
@@ -217,6 +223,10 @@ public class ConfigurationImpl implements Configuration
 
    private int maxSavedReplicatedJournalsSize = HornetQDefaultConfiguration.getDefaultMaxSavedReplicatedJournalsSize();
 
+   private int replicationBatchSize = HornetQDefaultConfiguration.getDefaultReplicationBatchSize();
+
+   private int replicationBatchTimeout = HornetQDefaultConfiguration.getDefaultReplicationBatchTimeout();
+
    // Public -------------------------------------------------------------------------
 
    public boolean isClustered()
@@ -825,6 +835,26 @@ public class ConfigurationImpl implements Configuration
       journalCompactPercentage = percentage;
    }
 
+   public int getJournalLoadThreads()
+   {
+      return journalLoadThreads;
+   }
+
+   public void setJournalLoadThreads(final int loadThreads)
+   {
+      journalLoadThreads = loadThreads;
+   }
+
+   public int getJournalLoadReadAhead()
+   {
+      return journalLoadReadAhead;
+   }
+
+   public void setJournalLoadReadAhead(final int loadReadAhead)
+   {
+      journalLoadReadAhead = loadReadAhead;
+   }
+
    public long getServerDumpInterval()
    {
       return serverDumpInterval;
@@ -915,6 +945,16 @@ public class ConfigurationImpl implements Configuration
       journalBufferSize_NIO = journalBufferSize;
    }
 
+   public boolean isJournalBufferAdaptive()
+   {
+      return journalBufferAdaptive;
+   }
+
+   public void setJournalBufferAdaptive(final boolean adaptive)
+   {
+      journalBufferAdaptive = adaptive;
+   }
+
    @Override
    public Map<String, AddressSettings> getAddressesSettings()
    {
@@ -1050,6 +1090,30 @@ public class ConfigurationImpl implements Configuration
       return maxSavedReplicatedJournalsSize;
    }
 
+   @Override
+   public int getReplicationBatchSize()
+   {
+      return replicationBatchSize;
+   }
+
+   @Override
+   public void setReplicationBatchSize(final int replicationBatchSize)
+   {
+      this.replicationBatchSize = replicationBatchSize;
+   }
+
+   @Override
+   public int getReplicationBatchTimeout()
+   {
+      return replicationBatchTimeout;
+   }
+
+   @Override
+   public void setReplicationBatchTimeout(final int replicationBatchTimeout)
+   {
+      this.replicationBatchTimeout = replicationBatchTimeout;
+   }
+
    @Override
    public void setResolveProtocols(boolean resolveProtocols)
    {
@@ -1101,10 +1165,13 @@ public class ConfigurationImpl implements Configuration
       result = prime * result + (jmxManagementEnabled ? 1231 : 1237);
       result = prime * result + journalBufferSize_AIO;
       result = prime * result + journalBufferSize_NIO;
+      result = prime * result + (journalBufferAdaptive ? 1231 : 1237);
       result = prime * result + journalBufferTimeout_AIO;
       result = prime * result + journalBufferTimeout_NIO;
       result = prime * result + journalCompactMinFiles;
       result = prime * result + journalCompactPercentage;
+      result = prime * result + journalLoadThreads;
+      result = prime * result + journalLoadReadAhead;
       result = prime * result + ((journalDirectory == null) ? 0 : journalDirectory.hashCode());
       result = prime * result + journalFileSize;
       result = prime * result + journalMaxIO_AIO;
@@ -1152,6 +1219,8 @@ public class ConfigurationImpl implements Configuration
       result = prime * result + (int)(transactionTimeoutScanPeriod ^ (transactionTimeoutScanPeriod >>> 32));
       result = prime * result + (wildcardRoutingEnabled ? 1231 : 1237);
       result = prime * result + (resolveProtocols ? 1231 : 1237);
+      result = prime * result + replicationBatchSize;
+      result = prime * result + replicationBatchTimeout;
       return result;
    }
 
@@ -1300,6 +1369,8 @@ public class ConfigurationImpl implements Configuration
          return false;
       if (journalBufferSize_NIO != other.journalBufferSize_NIO)
          return false;
+      if (journalBufferAdaptive != other.journalBufferAdaptive)
+         return false;
       if (journalBufferTimeout_AIO != other.journalBufferTimeout_AIO)
          return false;
       if (journalBufferTimeout_NIO != other.journalBufferTimeout_NIO)
@@ -1308,6 +1379,10 @@ public class ConfigurationImpl implements Configuration
          return false;
       if (journalCompactPercentage != other.journalCompactPercentage)
          return false;
+      if (journalLoadThreads != other.journalLoadThreads)
+         return false;
+      if (journalLoadReadAhead != other.journalLoadReadAhead)
+         return false;
       if (journalDirectory == null)
       {
          if (other.journalDirectory != null)
@@ -1449,6 +1524,10 @@ public class ConfigurationImpl implements Configuration
          return false;
       if (resolveProtocols != other.resolveProtocols)
          return false;
+      if (replicationBatchSize != other.replicationBatchSize)
+         return false;
+      if (replicationBatchTimeout != other.replicationBatchTimeout)
+         return false;
       return true;
    }
 
@@ -133,6 +133,18 @@ public final class FileConfigurationParser extends XMLConfigurationUtil
 
    private static final String SEND_TO_DLA_ON_NO_ROUTE = "send-to-dla-on-no-route";
 
+   private static final String MESSAGE_ID_INDEX_NODE_NAME = "message-id-index";
+
+   private static final String SELECTOR_PARTITIONS_NODE_NAME = "selector-partitions";
+
+   private static final String PAGE_MAX_CACHE_BYTES_NODE_NAME = "page-max-cache-bytes";
+
+   private static final String PAGE_PREFETCH_SIZE_NODE_NAME = "page-prefetch-size";
+
+   private static final String MESSAGE_BODY_OFF_HEAP_NODE_NAME = "message-body-off-heap";
+
+   private static final String COMPACT_QUEUE_STORAGE_NODE_NAME = "compact-queue-storage";
+
    // Attributes ----------------------------------------------------
 
    private boolean validateAIO = false;
@@ -200,6 +212,12 @@ public final class FileConfigurationParser extends XMLConfigurationUtil
       config.setMaxSavedReplicatedJournalSize(getInteger(e, "max-saved-replicated-journals-size",
             config.getMaxSavedReplicatedJournalsSize(), Validators.MINUS_ONE_OR_GE_ZERO));
 
+      config.setReplicationBatchSize(getInteger(e, "replication-batch-size", config.getReplicationBatchSize(),
+                                                Validators.GE_ZERO));
+
+      config.setReplicationBatchTimeout(getInteger(e, "replication-batch-timeout", config.getReplicationBatchTimeout(),
+                                                   Validators.GT_ZERO));
+
       config.setBackup(getBoolean(e, "backup", config.isBackup()));
 
       config.setSharedStore(getBoolean(e, "shared-store", config.isSharedStore()));
@@ -495,6 +513,10 @@ public final class FileConfigurationParser extends XMLConfigurationUtil
       {
          config.setJournalType(JournalType.NIO);
       }
+      else if (s.equals(JournalType.MAPPED.toString()))
+      {
+         config.setJournalType(JournalType.MAPPED);
+      }
       else if (s.equals(JournalType.ASYNCIO.toString()))
       {
          // https://jira.jboss.org/jira/browse/HORNETQ-295
@@ -562,6 +584,8 @@ public final class FileConfigurationParser extends XMLConfigurationUtil
          config.setJournalMaxIO_NIO(journalMaxIO);
       }
 
+      config.setJournalBufferAdaptive(getBoolean(e, "journal-buffer-adaptive", config.isJournalBufferAdaptive()));
+
       config.setJournalMinFiles(getInteger(e, "journal-min-files", config.getJournalMinFiles(), Validators.GT_ZERO));
 
       config.setJournalCompactMinFiles(getInteger(e, "journal-compact-min-files", config.getJournalCompactMinFiles(),
@@ -572,6 +596,12 @@ public final class FileConfigurationParser extends XMLConfigurationUtil
                                                                          config.getJournalCompactPercentage(),
                                                                          Validators.PERCENTAGE));
 
+      config.setJournalLoadThreads(getInteger(e, "journal-load-threads", config.getJournalLoadThreads(),
+                                              Validators.GT_ZERO));
+
+      config.setJournalLoadReadAhead(getInteger(e, "journal-load-read-ahead", config.getJournalLoadReadAhead(),
+                                                Validators.GE_ZERO));
+
       config.setLogJournalWriteRate(getBoolean(e,
                                                                     "log-journal-write-rate",
                                                                     HornetQDefaultConfiguration.isDefaultJournalLogWriteRate()));
@@ -865,6 +895,30 @@ public final class FileConfigurationParser extends XMLConfigurationUtil
          {
             addressSettings.setSendToDLAOnNoRoute(XMLUtil.parseBoolean(child));
          }
+         else if (MESSAGE_ID_INDEX_NODE_NAME.equalsIgnoreCase(name))
+         {
+            addressSettings.setMessageIDIndex(XMLUtil.parseBoolean(child));
+         }
+         else if (SELECTOR_PARTITIONS_NODE_NAME.equalsIgnoreCase(name))
+         {
+            addressSettings.setSelectorPartitions(XMLUtil.parseBoolean(child));
+         }
+         else if (PAGE_MAX_CACHE_BYTES_NODE_NAME.equalsIgnoreCase(name))
+         {
+            addressSettings.setPageCacheMaxBytes(XMLUtil.parseLong(child));
+         }
+         else if (PAGE_PREFETCH_SIZE_NODE_NAME.equalsIgnoreCase(name))
+         {
+            addressSettings.setPagePrefetchSize(XMLUtil.parseInt(child));
+         }
+         else if (MESSAGE_BODY_OFF_HEAP_NODE_NAME.equalsIgnoreCase(name))
+         {
+            addressSettings.setMessageBodyOffHeap(XMLUtil.parseBoolean(child));
+         }
+         else if (COMPACT_QUEUE_STORAGE_NODE_NAME.equalsIgnoreCase(name))
+         {
+            addressSettings.setCompactQueueStorage(XMLUtil.parseBoolean(child));
+         }
       }
       return setting;
    }
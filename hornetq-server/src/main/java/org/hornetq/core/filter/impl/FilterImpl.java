@@ -14,9 +14,7 @@
 package org.hornetq.core.filter.impl;
 
 import java.util.HashMap;
-import java.util.Map;
 
-import org.hornetq.api.core.FilterConstants;
 import org.hornetq.api.core.HornetQException;
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.core.filter.Filter;
@@ -43,6 +41,9 @@ import org.hornetq.core.server.ServerMessage;
 * Any other identifiers that appear in a filter expression represent header values for the message
 *
 * String values must be set as <code>SimpleString</code>, not <code>java.lang.String</code> (see JBMESSAGING-1307).
+*
+* The expression is compiled once by {@link FilterCompiler}, so the same filter can be matched by many threads at the
+* same time without locking.
 * Derived from JBoss MQ version by
 *
 * @author <a href="mailto:Norbert.Lataille@m4x.org">Norbert Lataille</a>
@@ -62,11 +63,9 @@ public class FilterImpl implements Filter
 
    private final SimpleString sfilterString;
 
-   private final Map<SimpleString, Identifier> identifiers;
-
-   private final Object result;
+   private final FilterEvaluator evaluator;
 
-   private final Class<? extends Object> resultType;
+   private final FilterGuard guard;
 
    // Static ---------------------------------------------------------
 
@@ -90,29 +89,29 @@ public class FilterImpl implements Filter
          return null;
       }
 
-      HashMap<SimpleString, Identifier> identifierMap = new HashMap<SimpleString, Identifier>();
-      Object result0;
+      FilterEvaluator evaluator0;
+      FilterGuard guard0;
       try
       {
-         result0 = new FilterParser().parse(filterStr, identifierMap);
+         Object result0 = new FilterParser().parse(filterStr, new HashMap<SimpleString, Identifier>());
+         evaluator0 = FilterCompiler.compile(result0);
+         guard0 = FilterGuard.extract(result0);
       }
       catch (Throwable e)
       {
          HornetQServerLogger.LOGGER.invalidFilter(e, filterStr);
          throw HornetQMessageBundle.BUNDLE.invalidFilter(e, filterStr);
       }
-      return new FilterImpl(filterStr, identifierMap, result0);
+      return new FilterImpl(filterStr, evaluator0, guard0);
    }
 
    // Constructors ---------------------------------------------------
 
-   private FilterImpl(final SimpleString str, final HashMap<SimpleString, Identifier> identifierMap,
-                      final Object result0)
+   private FilterImpl(final SimpleString str, final FilterEvaluator evaluator, final FilterGuard guard)
    {
       sfilterString = str;
-      identifiers = identifierMap;
-      this.result = result0;
-      resultType = result.getClass();
+      this.evaluator = evaluator;
+      this.guard = guard;
    }
 
    // Filter implementation ---------------------------------------------------------------------
@@ -122,55 +121,20 @@ public class FilterImpl implements Filter
       return sfilterString;
    }
 
-   public synchronized boolean match(final ServerMessage message)
+   /**
+    * @return a condition on a single property that every message matching this filter satisfies, or null if the
+    *         filter has none that can be indexed
+    */
+   public FilterGuard getGuard()
+   {
+      return guard;
+   }
+
+   public boolean match(final ServerMessage message)
    {
       try
       {
-         // Set the identifiers values
-
-         for (Identifier id : identifiers.values())
-         {
-            Object val = null;
-
-            if (id.getName().startsWith(FilterConstants.HORNETQ_PREFIX))
-            {
-               // Look it up as header fields
-               val = getHeaderFieldValue(message, id.getName());
-            }
-
-            if (val == null)
-            {
-               val = message.getObjectProperty(id.getName());
-            }
-
-            id.setValue(val);
-
-         }
-
-         if (resultType.equals(Identifier.class))
-         {
-            return (Boolean)((Identifier)result).getValue();
-         }
-         else if (resultType.equals(Operator.class))
-         {
-            Operator op = (Operator)result;
-            Object result = op.apply();
-            if (result == null)
-            {
-               // https://issues.jboss.org/browse/HORNETQ-1188 -
-               // if this was going to NPE anyways, we just return false
-               // invalid properties will just fail the query
-               return false;
-            }
-            else
-            {
-               return (Boolean)result;
-            }
-         }
-         else
-         {
-            throw new Exception("Bad object type: " + result);
-         }
+         return evaluator.match(message);
       }
       catch (Exception e)
       {
@@ -214,39 +178,4 @@ public class FilterImpl implements Filter
    {
       return "FilterImpl [sfilterString=" + sfilterString + "]";
    }
-
-   // Private --------------------------------------------------------------------------
-
-   private Object getHeaderFieldValue(final ServerMessage msg, final SimpleString fieldName)
-   {
-      if (FilterConstants.HORNETQ_USERID.equals(fieldName))
-      {
-         // It's the stringified (hex) representation of a user id that can be used in a selector expression
-         return new SimpleString("ID:" + msg.getUserID());
-      }
-      else if (FilterConstants.HORNETQ_PRIORITY.equals(fieldName))
-      {
-         return Integer.valueOf(msg.getPriority());
-      }
-      else if (FilterConstants.HORNETQ_TIMESTAMP.equals(fieldName))
-      {
-         return msg.getTimestamp();
-      }
-      else if (FilterConstants.HORNETQ_DURABLE.equals(fieldName))
-      {
-         return msg.isDurable() ? FilterConstants.DURABLE : FilterConstants.NON_DURABLE;
-      }
-      else if (FilterConstants.HORNETQ_EXPIRATION.equals(fieldName))
-      {
-         return msg.getExpiration();
-      }
-      else if (FilterConstants.HORNETQ_SIZE.equals(fieldName))
-      {
-         return msg.getEncodeSize();
-      }
-      else
-      {
-         return null;
-      }
-   }
 }
@@ -15,6 +15,7 @@ package org.hornetq.core.paging;
 
 import java.util.Map;
 
+import io.netty.buffer.ByteBufAllocator;
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.core.journal.SequentialFile;
 import org.hornetq.core.paging.impl.Page;
@@ -79,6 +80,23 @@ public interface PagingManager extends HornetQComponent, HierarchicalRepositoryC
 
    void resumeCleanup();
 
+   /**
+    * @return the allocator of the buffers pooled off the heap for the messages held in memory, for the addresses
+    *         configured with <code>message-body-off-heap</code>
+    */
+   ByteBufAllocator getOffHeapAllocator();
+
+   /**
+    * Accounts for the memory taken off the heap by the messages, as they're moved onto the buffers of
+    * {@link #getOffHeapAllocator()} (a positive size) and released (a negative size).
+    */
+   void addOffHeapSize(long size);
+
+   /**
+    * @return the memory taken off the heap by the messages held in memory
+    */
+   long getOffHeapSize();
+
    /**
     * Lock the manager. This method should not be called during normal PagingManager usage.
     */
@@ -65,6 +65,12 @@ public interface PagingStore extends HornetQComponent
 
    boolean isPaging();
 
+   /**
+    * @return whether the messages of this address held in memory keep their encoding off the heap, on the buffers of
+    *         {@link PagingManager#getOffHeapAllocator()}
+    */
+   boolean isMessageBodyOffHeap();
+
    /** Schedules sync to the file storage. */
    void sync() throws Exception;
 
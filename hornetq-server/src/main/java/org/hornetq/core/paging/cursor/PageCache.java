@@ -14,7 +14,6 @@
 package org.hornetq.core.paging.cursor;
 
 import org.hornetq.core.paging.PagedMessage;
-import org.hornetq.utils.SoftValueHashMap;
 
 /**
  * A PageCache
@@ -23,7 +22,7 @@ import org.hornetq.utils.SoftValueHashMap;
  *
  *
  */
-public interface PageCache extends SoftValueHashMap.ValueCache
+public interface PageCache
 {
    long getPageId();
 
@@ -38,6 +37,11 @@ public interface PageCache extends SoftValueHashMap.ValueCache
     */
    boolean isLive();
 
+   /**
+    * @return the memory taken by the messages of this cache, as estimated by {@link org.hornetq.core.server.ServerMessage#getMemoryEstimate()}
+    */
+   long getMemoryEstimate();
+
    /**
     *
     * @param messageNumber The order of the message on the page
@@ -32,6 +32,17 @@ public interface PageCursorProvider
 
    void addPageCache(PageCache cache);
 
+   /**
+    * Reads the pages following a page in the background, so they are cached by the time a subscription reaches them.
+    * Pages already cached or being read ahead are skipped.
+    */
+   void prefetch(long pageNr);
+
+   /**
+    * @param pages the number of pages {@link #prefetch(long)} reads ahead, 0 to read ahead nothing
+    */
+   void setPrefetchSize(int pages);
+
    /**
     * @param queueId The cursorID should be the same as the queueId associated for persistence
     * @return
@@ -42,6 +53,13 @@ public interface PageCursorProvider
 
    PagedMessage getMessage(PagePosition pos);
 
+   /**
+    * Counts the messages of a page without caching it, reading only the index of the page when it isn't cached.
+    *
+    * @return the number of messages, or -1 if the page doesn't exist
+    */
+   int getNumberOfMessages(long pageNr);
+
    void processReload() throws Exception;
 
    void stop();
@@ -66,6 +84,31 @@ public interface PageCursorProvider
 
    void setCacheMaxSize(int size);
 
+   /**
+    * @param bytes the memory the messages of the cached pages may take, <= 0 for no bound
+    */
+   void setCacheMaxBytes(long bytes);
+
+   /**
+    * @return the number of times a message or a page was found on the cache
+    */
+   long getCacheHits();
+
+   /**
+    * @return the number of times a message or a page had to be read from its page file
+    */
+   long getCacheMisses();
+
+   /**
+    * @return the number of pages evicted from the cache to keep it within its bounds
+    */
+   long getCacheEvictions();
+
+   /**
+    * @return the memory taken by the messages of the cached pages
+    */
+   long getCacheMemoryEstimate();
+
    /**
     * @param pageCursorImpl
     */
@@ -14,7 +14,7 @@
 package org.hornetq.core.paging.cursor;
 
 import java.lang.ref.WeakReference;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 import org.hornetq.api.core.Message;
 import org.hornetq.core.paging.PagedMessage;
@@ -35,6 +35,9 @@ public class PagedReferenceImpl implements PagedReference
 {
    private static final boolean isTrace = HornetQServerLogger.LOGGER.isTraceEnabled();
 
+   private static final AtomicIntegerFieldUpdater<PagedReferenceImpl> DELIVERY_COUNT_UPDATER =
+      AtomicIntegerFieldUpdater.newUpdater(PagedReferenceImpl.class, "deliveryCount");
+
    private final PagePosition position;
 
    private WeakReference<PagedMessage> message;
@@ -45,7 +48,8 @@ public class PagedReferenceImpl implements PagedReference
 
    private int messageEstimate;
 
-   private final AtomicInteger deliveryCount = new AtomicInteger(0);
+   // updated through DELIVERY_COUNT_UPDATER, as on MessageReferenceImpl
+   private volatile int deliveryCount;
 
    private final PageSubscription subscription;
 
@@ -154,19 +158,19 @@ public class PagedReferenceImpl implements PagedReference
    @Override
    public int getDeliveryCount()
    {
-      return deliveryCount.get();
+      return deliveryCount;
    }
 
    @Override
    public void setDeliveryCount(final int deliveryCount)
    {
-      this.deliveryCount.set(deliveryCount);
+      this.deliveryCount = deliveryCount;
    }
 
    @Override
    public void incrementDeliveryCount()
    {
-      deliveryCount.incrementAndGet();
+      DELIVERY_COUNT_UPDATER.incrementAndGet(this);
       if (isTrace)
       {
          HornetQServerLogger.LOGGER.trace("++deliveryCount = " + deliveryCount + " for " + this, new Exception ("trace"));
@@ -177,7 +181,7 @@ public class PagedReferenceImpl implements PagedReference
    @Override
    public void decrementDeliveryCount()
    {
-      deliveryCount.decrementAndGet();
+      DELIVERY_COUNT_UPDATER.decrementAndGet(this);
       if (isTrace)
       {
          HornetQServerLogger.LOGGER.trace("--deliveryCount = " + deliveryCount + " for " + this, new Exception ("trace"));
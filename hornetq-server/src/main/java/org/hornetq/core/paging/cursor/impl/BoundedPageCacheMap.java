@@ -0,0 +1,301 @@
+/*
+ * Copyright 2013 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.paging.cursor.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hornetq.core.paging.cursor.PageCache;
+import org.hornetq.core.server.HornetQServerLogger;
+
+/**
+ * The pages cached for the cursors of an address, bounded by a number of pages and by the memory taken by their
+ * messages.
+ * <p>
+ * When a bound is exceeded the page used least recently is evicted. Live pages are never evicted, as their messages
+ * are held by the page being written anyway, and neither is the page used most recently, so a single page larger than
+ * the bound is not read again on every access.
+ * <p>
+ * The pages are spread over stripes locked independently, so subscriptions reading different pages don't contend on
+ * a single lock. The recency of the pages is stamped from a counter shared by all stripes, so the least recently used
+ * page is found across the whole map.
+ */
+final class BoundedPageCacheMap
+{
+   private static final boolean isTrace = HornetQServerLogger.LOGGER.isTraceEnabled();
+
+   private static final int STRIPES = 8;
+
+   private final Stripe[] stripes;
+
+   private final AtomicLong useCounter = new AtomicLong(0);
+
+   private final AtomicLong evictions = new AtomicLong(0);
+
+   // a single thread evicts at a time, so two threads don't evict one page each when one would do
+   private final Object evictionLock = new Object();
+
+   private volatile int maxPages;
+
+   private volatile long maxBytes;
+
+   /**
+    * @param maxPages the number of pages to cache, <= 0 for no bound
+    * @param maxBytes the memory estimate of the cached messages, <= 0 for no bound
+    */
+   BoundedPageCacheMap(final int maxPages, final long maxBytes)
+   {
+      this.maxPages = maxPages;
+      this.maxBytes = maxBytes;
+
+      stripes = new Stripe[STRIPES];
+      for (int i = 0; i < STRIPES; i++)
+      {
+         stripes[i] = new Stripe();
+      }
+   }
+
+   void setMaxPages(final int maxPages)
+   {
+      this.maxPages = maxPages;
+      checkSize();
+   }
+
+   void setMaxBytes(final long maxBytes)
+   {
+      this.maxBytes = maxBytes;
+      checkSize();
+   }
+
+   int getMaxPages()
+   {
+      return maxPages;
+   }
+
+   /**
+    * @return whether the page is cached, without counting it as used
+    */
+   boolean containsKey(final long pageId)
+   {
+      Stripe stripe = stripeFor(pageId);
+      synchronized (stripe)
+      {
+         return stripe.entries.containsKey(pageId);
+      }
+   }
+
+   PageCache get(final long pageId)
+   {
+      Stripe stripe = stripeFor(pageId);
+      synchronized (stripe)
+      {
+         Entry entry = stripe.entries.get(pageId);
+         if (entry == null)
+         {
+            return null;
+         }
+         entry.lastUsed = useCounter.incrementAndGet();
+         return entry.cache;
+      }
+   }
+
+   /**
+    * @return the page already cached with the same ID, or <code>null</code> if <code>cache</code> was added
+    */
+   PageCache putIfAbsent(final PageCache cache)
+   {
+      Stripe stripe = stripeFor(cache.getPageId());
+      synchronized (stripe)
+      {
+         Entry entry = stripe.entries.get(cache.getPageId());
+         if (entry != null)
+         {
+            entry.lastUsed = useCounter.incrementAndGet();
+            return entry.cache;
+         }
+         stripe.entries.put(cache.getPageId(), new Entry(cache, useCounter.incrementAndGet()));
+         return null;
+      }
+   }
+
+   void put(final PageCache cache)
+   {
+      Stripe stripe = stripeFor(cache.getPageId());
+      synchronized (stripe)
+      {
+         stripe.entries.put(cache.getPageId(), new Entry(cache, useCounter.incrementAndGet()));
+      }
+      checkSize();
+   }
+
+   PageCache remove(final long pageId)
+   {
+      Stripe stripe = stripeFor(pageId);
+      synchronized (stripe)
+      {
+         Entry entry = stripe.entries.remove(pageId);
+         return entry == null ? null : entry.cache;
+      }
+   }
+
+   int size()
+   {
+      int size = 0;
+      for (Stripe stripe : stripes)
+      {
+         synchronized (stripe)
+         {
+            size += stripe.entries.size();
+         }
+      }
+      return size;
+   }
+
+   long getMemoryEstimate()
+   {
+      long bytes = 0;
+      for (Stripe stripe : stripes)
+      {
+         synchronized (stripe)
+         {
+            for (Entry entry : stripe.entries.values())
+            {
+               bytes += entry.cache.getMemoryEstimate();
+            }
+         }
+      }
+      return bytes;
+   }
+
+   long getEvictions()
+   {
+      return evictions.get();
+   }
+
+   void clear()
+   {
+      for (Stripe stripe : stripes)
+      {
+         synchronized (stripe)
+         {
+            stripe.entries.clear();
+         }
+      }
+   }
+
+   List<PageCache> values()
+   {
+      List<PageCache> values = new ArrayList<PageCache>();
+      for (Stripe stripe : stripes)
+      {
+         synchronized (stripe)
+         {
+            for (Entry entry : stripe.entries.values())
+            {
+               values.add(entry.cache);
+            }
+         }
+      }
+      return values;
+   }
+
+   /**
+    * Evicts the pages used least recently while a bound is exceeded. To be called once a page is read, as the memory
+    * taken by a page is only known then.
+    */
+   void checkSize()
+   {
+      synchronized (evictionLock)
+      {
+         while (true)
+         {
+            int pages = 0;
+            long bytes = 0;
+            long newest = Long.MIN_VALUE;
+            Entry eldest = null;
+            Stripe eldestStripe = null;
+
+            for (Stripe stripe : stripes)
+            {
+               synchronized (stripe)
+               {
+                  for (Entry entry : stripe.entries.values())
+                  {
+                     pages++;
+                     bytes += entry.cache.getMemoryEstimate();
+                     newest = Math.max(newest, entry.lastUsed);
+                     if (!entry.cache.isLive() && (eldest == null || entry.lastUsed < eldest.lastUsed))
+                     {
+                        eldest = entry;
+                        eldestStripe = stripe;
+                     }
+                  }
+               }
+            }
+
+            int localMaxPages = maxPages;
+            long localMaxBytes = maxBytes;
+
+            if (!(localMaxPages > 0 && pages > localMaxPages || localMaxBytes > 0 && bytes > localMaxBytes) ||
+               eldest == null ||
+               eldest.lastUsed == newest)
+            {
+               return;
+            }
+
+            synchronized (eldestStripe)
+            {
+               long pageId = eldest.cache.getPageId();
+               if (eldestStripe.entries.get(pageId) == eldest)
+               {
+                  eldestStripe.entries.remove(pageId);
+                  evictions.incrementAndGet();
+                  if (isTrace)
+                  {
+                     HornetQServerLogger.LOGGER.trace("Evicting " + eldest.cache + " from the page cache, holding " +
+                        pages + " pages and " + bytes + " bytes");
+                  }
+               }
+            }
+         }
+      }
+   }
+
+   private Stripe stripeFor(final long pageId)
+   {
+      return stripes[(int)(pageId & STRIPES - 1)];
+   }
+
+   private static final class Stripe
+   {
+      private final Map<Long, Entry> entries = new HashMap<Long, Entry>();
+   }
+
+   private static final class Entry
+   {
+      private final PageCache cache;
+
+      // guarded by the stripe holding the entry
+      private long lastUsed;
+
+      private Entry(final PageCache cache, final long lastUsed)
+      {
+         this.cache = cache;
+         this.lastUsed = lastUsed;
+      }
+   }
+}
@@ -38,6 +38,8 @@ class PageCacheImpl implements PageCache
 
    private PagedMessage[] messages;
 
+   private volatile long memoryEstimate;
+
    private final Page page;
 
    // Static --------------------------------------------------------
@@ -90,6 +92,18 @@ class PageCacheImpl implements PageCache
    public void setMessages(final PagedMessage[] messages)
    {
       this.messages = messages;
+
+      long estimate = 0;
+      for (PagedMessage message : messages)
+      {
+         estimate += message.getMessage().getMemoryEstimate();
+      }
+      memoryEstimate = estimate;
+   }
+
+   public long getMemoryEstimate()
+   {
+      return memoryEstimate;
    }
 
    public int getNumberOfMessages()
@@ -20,6 +20,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.hornetq.core.filter.Filter;
 import org.hornetq.core.paging.PagedMessage;
@@ -35,8 +36,8 @@ import org.hornetq.core.persistence.StorageManager;
 import org.hornetq.core.server.HornetQServerLogger;
 import org.hornetq.core.transaction.Transaction;
 import org.hornetq.core.transaction.impl.TransactionImpl;
+import org.hornetq.utils.ConcurrentHashSet;
 import org.hornetq.utils.FutureLatch;
-import org.hornetq.utils.SoftValueHashMap;
 /**
  * A PageProviderIMpl
  *
@@ -69,7 +70,19 @@ public class PageCursorProviderImpl implements PageCursorProvider
    // This is the same executor used at the PageStoreImpl. One Executor per pageStore
    private final Executor executor;
 
-   private final SoftValueHashMap<Long, PageCache> softCache;
+   // pages are read ahead on their own executor, so reading a page never waits on a cleanup
+   private final Executor prefetchExecutor;
+
+   private volatile int prefetchSize;
+
+   // the pages scheduled to be read ahead and not read yet
+   private final ConcurrentHashSet<Long> prefetching = new ConcurrentHashSet<Long>();
+
+   private final BoundedPageCacheMap pageCache;
+
+   private final AtomicLong cacheHits = new AtomicLong(0);
+
+   private final AtomicLong cacheMisses = new AtomicLong(0);
 
    private final ConcurrentMap<Long, PageSubscription> activeCursors = new ConcurrentHashMap<Long, PageSubscription>();
 
@@ -81,11 +94,27 @@ public class PageCursorProviderImpl implements PageCursorProvider
                                  final StorageManager storageManager,
                                  final Executor executor,
                                  final int maxCacheSize)
+   {
+      this(pagingStore, storageManager, executor, executor, maxCacheSize, -1);
+   }
+
+   /**
+    * @param prefetchExecutor the executor reading pages ahead of the subscriptions
+    * @param maxCacheSize the number of pages to cache, <= 0 for no bound
+    * @param maxCacheBytes the memory taken by the messages of the cached pages, <= 0 for no bound
+    */
+   public PageCursorProviderImpl(final PagingStore pagingStore,
+                                 final StorageManager storageManager,
+                                 final Executor executor,
+                                 final Executor prefetchExecutor,
+                                 final int maxCacheSize,
+                                 final long maxCacheBytes)
    {
       this.pagingStore = pagingStore;
       this.storageManager = storageManager;
       this.executor = executor;
-      this.softCache = new SoftValueHashMap<Long, PageCache>(maxCacheSize);
+      this.prefetchExecutor = prefetchExecutor;
+      this.pageCache = new BoundedPageCacheMap(maxCacheSize, maxCacheBytes);
    }
 
    // Public --------------------------------------------------------
@@ -115,9 +144,27 @@ public class PageCursorProviderImpl implements PageCursorProvider
 
    public PagedMessage getMessage(final PagePosition pos)
    {
-      PageCache cache = getPageCache(pos.getPageNr());
+      PageCache cache = pageCache.get(pos.getPageNr());
 
-      if (cache == null || pos.getMessageNr() >= cache.getNumberOfMessages())
+      if (cache == null)
+      {
+         cacheMisses.incrementAndGet();
+
+         // only this message is needed, so it's read on its own instead of caching the whole page
+         PagedMessage message = readMessage(pos);
+
+         if (message == null)
+         {
+            // sanity check, this should never happen unless there's a bug
+            throw new IllegalStateException("Invalid messageNumber passed = " + pos + " on page not cached");
+         }
+
+         return message;
+      }
+
+      cacheHits.incrementAndGet();
+
+      if (pos.getMessageNr() >= cache.getNumberOfMessages())
       {
          // sanity check, this should never happen unless there's a bug
          throw new IllegalStateException("Invalid messageNumber passed = " + pos + " on " + cache);
@@ -126,6 +173,44 @@ public class PageCursorProviderImpl implements PageCursorProvider
       return cache.getMessage(pos.getMessageNr());
    }
 
+   public int getNumberOfMessages(final long pageId)
+   {
+      if (pageId > pagingStore.getCurrentWritingPage())
+      {
+         return -1;
+      }
+
+      PageCache cache = pageCache.get(pageId);
+
+      if (cache != null)
+      {
+         return cache.getNumberOfMessages();
+      }
+
+      try
+      {
+         Page page = openPage(pageId);
+
+         if (page == null)
+         {
+            return -1;
+         }
+
+         try
+         {
+            return page.readNumberOfMessages(storageManager);
+         }
+         finally
+         {
+            closePage(page);
+         }
+      }
+      catch (Exception e)
+      {
+         throw new RuntimeException("Couldn't complete paging due to an IO Exception on Paging - " + e.getMessage(), e);
+      }
+   }
+
    public PagedReference newReference(final PagePosition pos,
                                       final PagedMessage msg,
                                       final PageSubscription subscription)
@@ -137,68 +222,79 @@ public class PageCursorProviderImpl implements PageCursorProvider
    {
       try
       {
-         boolean needToRead = false;
-         PageCache cache = null;
-         synchronized (softCache)
+         if (pageId > pagingStore.getCurrentWritingPage())
          {
-            if (pageId > pagingStore.getCurrentWritingPage())
-            {
-               return null;
-            }
+            return null;
+         }
 
-            cache = softCache.get(pageId);
-            if (cache == null)
-            {
-               if (!pagingStore.checkPageFileExists((int)pageId))
-               {
-                  return null;
-               }
+         PageCache cache = pageCache.get(pageId);
 
-               cache = createPageCache(pageId);
-               needToRead = true;
-               // anyone reading from this cache will have to wait reading to finish first
-               // we also want only one thread reading this cache
-               cache.lock();
-               if (isTrace)
-               {
-                  HornetQServerLogger.LOGGER.trace("adding " + pageId +  " into cursor = " + this.pagingStore.getAddress());
-               }
-               softCache.put(pageId, cache);
-            }
+         if (cache != null)
+         {
+            cacheHits.incrementAndGet();
+            return cache;
          }
 
-         // Reading is done outside of the synchronized block, however
+         if (!pagingStore.checkPageFileExists((int)pageId))
+         {
+            return null;
+         }
+
+         PageCache newCache = createPageCache(pageId);
+         // anyone reading from this cache will have to wait reading to finish first
+         // we also want only one thread reading this cache
+         newCache.lock();
+
+         cache = pageCache.putIfAbsent(newCache);
+
+         if (cache != null)
+         {
+            // another thread is already reading the page
+            newCache.unlock();
+            cacheHits.incrementAndGet();
+            return cache;
+         }
+
+         cache = newCache;
+         cacheMisses.incrementAndGet();
+
+         if (isTrace)
+         {
+            HornetQServerLogger.LOGGER.trace("adding " + pageId +  " into cursor = " + this.pagingStore.getAddress());
+         }
+
+         // Reading is done outside of the lock of the cache map, however
          // the page stays locked until the entire reading is finished
-         if (needToRead)
+         Page page = null;
+         try
          {
-            Page page = null;
-            try
-            {
-               page = pagingStore.createPage((int)pageId);
+            page = pagingStore.createPage((int)pageId);
 
-               storageManager.beforePageRead();
-               page.open();
+            storageManager.beforePageRead();
+            page.open();
 
-               List<PagedMessage> pgdMessages = page.read(storageManager);
-               cache.setMessages(pgdMessages.toArray(new PagedMessage[pgdMessages.size()]));
-            }
-            finally
+            List<PagedMessage> pgdMessages = page.read(storageManager);
+            cache.setMessages(pgdMessages.toArray(new PagedMessage[pgdMessages.size()]));
+         }
+         finally
+         {
+            try
             {
-               try
-               {
-                  if (page != null)
-                  {
-                     page.close();
-                  }
-               }
-               catch (Throwable ignored)
+               if (page != null)
                {
+                  page.close();
                }
-               storageManager.afterPageRead();
-               cache.unlock();
             }
+            catch (Throwable ignored)
+            {
+            }
+            storageManager.afterPageRead();
+            cache.unlock();
          }
 
+         // the size of the page is only known once it's read
+         pageCache.checkSize();
+
          return cache;
       }
       catch (Exception e)
@@ -207,33 +303,81 @@ public class PageCursorProviderImpl implements PageCursorProvider
       }
    }
 
-   public void addPageCache(PageCache cache)
+   public void prefetch(final long pageId)
    {
-      synchronized (softCache)
+      int pages = prefetchSize;
+
+      int maxPages = pageCache.getMaxPages();
+      if (maxPages > 0)
       {
-         softCache.put(cache.getPageId(), cache);
+         // the page being read stays cached with the pages read ahead of it
+         pages = Math.min(pages, maxPages - 1);
+      }
+
+      // the page being written is cached as it's written
+      long lastPage = Math.min(pageId + pages, pagingStore.getCurrentWritingPage() - 1L);
+
+      for (long nextPage = pageId + 1; nextPage <= lastPage; nextPage++)
+      {
+         if (!pageCache.containsKey(nextPage) && prefetching.add(nextPage))
+         {
+            if (isTrace)
+            {
+               HornetQServerLogger.LOGGER.trace("Prefetching page " + nextPage + " on " + pagingStore.getAddress());
+            }
+            prefetchExecutor.execute(new PrefetchRunnable(nextPage));
+         }
       }
    }
 
+   public void setPrefetchSize(final int pages)
+   {
+      prefetchSize = pages;
+   }
+
+   public void addPageCache(PageCache cache)
+   {
+      pageCache.put(cache);
+   }
+
    public void setCacheMaxSize(final int size)
    {
-      softCache.setMaxElements(size);
+      pageCache.setMaxPages(size);
+   }
+
+   public void setCacheMaxBytes(final long bytes)
+   {
+      pageCache.setMaxBytes(bytes);
    }
 
    public int getCacheSize()
    {
-      synchronized (softCache)
-      {
-         return softCache.size();
-      }
+      return pageCache.size();
+   }
+
+   public long getCacheMemoryEstimate()
+   {
+      return pageCache.getMemoryEstimate();
+   }
+
+   public long getCacheHits()
+   {
+      return cacheHits.get();
+   }
+
+   public long getCacheMisses()
+   {
+      return cacheMisses.get();
+   }
+
+   public long getCacheEvictions()
+   {
+      return pageCache.getEvictions();
    }
 
    public void clearCache()
    {
-      synchronized (softCache)
-      {
-         softCache.clear();
-      }
+      pageCache.clear();
    }
 
    public void processReload() throws Exception
@@ -275,10 +419,12 @@ public class PageCursorProviderImpl implements PageCursorProvider
          cursor.stop();
       }
 
-      waitForFuture();
+      waitForFuture(prefetchExecutor);
+
+      waitForFuture(executor);
    }
 
-   private void waitForFuture()
+   private void waitForFuture(final Executor executor)
    {
       FutureLatch future = new FutureLatch();
 
@@ -296,7 +442,8 @@ public class PageCursorProviderImpl implements PageCursorProvider
       {
          cursor.flushExecutors();
       }
-      waitForFuture();
+      waitForFuture(prefetchExecutor);
+      waitForFuture(executor);
    }
 
    public void close(PageSubscription cursor)
@@ -512,12 +659,8 @@ public class PageCursorProviderImpl implements PageCursorProvider
       {
          for (Page depagedPage : depagedPages)
          {
-            PageCache cache;
+            PageCache cache = pageCache.get(depagedPage.getPageId());
             PagedMessage[] pgdMessages;
-            synchronized (softCache)
-            {
-               cache = softCache.get((long)depagedPage.getPageId());
-            }
 
             if (isTrace)
             {
@@ -535,7 +678,7 @@ public class PageCursorProviderImpl implements PageCursorProvider
                try
                {
                   depagedPage.open();
-                  pgdMessagesList = depagedPage.read(storageManager);
+                  pgdMessagesList = depagedPage.readLargeMessages(storageManager);
                }
                finally
                {
@@ -560,10 +703,7 @@ public class PageCursorProviderImpl implements PageCursorProvider
             depagedPage.delete(pgdMessages);
             onDeletePage(depagedPage);
 
-            synchronized (softCache)
-            {
-               softCache.remove((long)depagedPage.getPageId());
-            }
+            pageCache.remove(depagedPage.getPageId());
          }
       }
       catch (Exception ex)
@@ -625,7 +765,7 @@ public class PageCursorProviderImpl implements PageCursorProvider
    public void printDebug()
    {
       System.out.println("Debug information for PageCursorProviderImpl:");
-      for (PageCache cache : softCache.values())
+      for (PageCache cache : pageCache.values())
       {
          System.out.println("Cache " + cache);
       }
@@ -643,6 +783,78 @@ public class PageCursorProviderImpl implements PageCursorProvider
 
    // Private -------------------------------------------------------
 
+   private PagedMessage readMessage(final PagePosition pos)
+   {
+      try
+      {
+         if (pos.getPageNr() > pagingStore.getCurrentWritingPage())
+         {
+            return null;
+         }
+
+         Page page = openPage(pos.getPageNr());
+
+         if (page == null)
+         {
+            return null;
+         }
+
+         try
+         {
+            return page.read(storageManager, pos.getMessageNr());
+         }
+         finally
+         {
+            closePage(page);
+         }
+      }
+      catch (Exception e)
+      {
+         throw new RuntimeException("Couldn't complete paging due to an IO Exception on Paging - " + e.getMessage(), e);
+      }
+   }
+
+   /**
+    * Opens a page to be read, to be closed through {@link #closePage(Page)}.
+    *
+    * @return <code>null</code> if the page doesn't exist
+    */
+   private Page openPage(final long pageId) throws Exception
+   {
+      if (!pagingStore.checkPageFileExists((int)pageId))
+      {
+         return null;
+      }
+
+      Page page = pagingStore.createPage((int)pageId);
+
+      storageManager.beforePageRead();
+
+      try
+      {
+         page.open();
+      }
+      catch (Exception e)
+      {
+         storageManager.afterPageRead();
+         throw e;
+      }
+
+      return page;
+   }
+
+   private void closePage(final Page page) throws Exception
+   {
+      try
+      {
+         page.close();
+      }
+      catch (Throwable ignored)
+      {
+      }
+      storageManager.afterPageRead();
+   }
+
    /**
     * This method is synchronized because we want it to be atomic with the cursors being used
     */
@@ -676,4 +888,30 @@ public class PageCursorProviderImpl implements PageCursorProvider
 
    // Inner classes -------------------------------------------------
 
+   private final class PrefetchRunnable implements Runnable
+   {
+      private final long pageId;
+
+      private PrefetchRunnable(final long pageId)
+      {
+         this.pageId = pageId;
+      }
+
+      public void run()
+      {
+         try
+         {
+            getPageCache(pageId);
+         }
+         catch (Throwable e)
+         {
+            // the page will be read again once a subscription reaches it
+            HornetQServerLogger.LOGGER.debug("Couldn't prefetch page " + pageId + " on " + pagingStore.getAddress(), e);
+         }
+         finally
+         {
+            prefetching.remove(pageId);
+         }
+      }
+   }
 }
@@ -15,14 +15,14 @@ package org.hornetq.core.paging.cursor.impl;
 
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.concurrent.Executor;
@@ -50,7 +50,6 @@ import org.hornetq.core.transaction.Transaction;
 import org.hornetq.core.transaction.TransactionOperationAbstract;
 import org.hornetq.core.transaction.TransactionPropertyIndexes;
 import org.hornetq.core.transaction.impl.TransactionImpl;
-import org.hornetq.utils.ConcurrentHashSet;
 import org.hornetq.utils.FutureLatch;
 import org.hornetq.utils.LinkedListIterator;
 
@@ -61,6 +60,8 @@ import org.hornetq.utils.LinkedListIterator;
  */
 final class PageSubscriptionImpl implements PageSubscription
 {
+   private static final long[] NO_RECORD_IDS = new long[0];
+
    private final boolean isTrace = HornetQServerLogger.LOGGER.isTraceEnabled();
 
    private boolean empty = true;
@@ -96,6 +97,9 @@ final class PageSubscriptionImpl implements PageSubscription
 
    private final AtomicLong deliveredCount = new AtomicLong(0);
 
+   // the last page the following pages were prefetched for
+   private volatile long lastPrefetchedPage = -1;
+
    // We only store the position for redeliveries. They will be read from the SoftCache again during delivery.
    private final java.util.Queue<PagePosition> redeliveries = new LinkedList<PagePosition>();
 
@@ -321,21 +325,16 @@ final class PageSubscriptionImpl implements PageSubscription
          }
 
          // it will delete the page ack records
-         for (PagePosition pos : infoPG.acks)
+         for (long recordID : infoPG.takeAckRecordIDs())
          {
-            if (pos.getRecordID() >= 0)
+            store.deleteCursorAcknowledgeTransactional(tx.getID(), recordID);
+            if (!persist)
             {
-               store.deleteCursorAcknowledgeTransactional(tx.getID(), pos.getRecordID());
-               if (!persist)
-               {
-                  // only need to set it once
-                  tx.setContainsPersistent();
-                  persist = true;
-               }
+               // only need to set it once
+               tx.setContainsPersistent();
+               persist = true;
             }
          }
-
-         infoPG.acks.clear();
       }
 
       tx.addOperation(new TransactionOperationAbstract()
@@ -407,6 +406,8 @@ final class PageSubscriptionImpl implements PageSubscription
       }
       else
       {
+         prefetchAfter(retPos.getPageNr());
+
          PagedMessage serverMessage = cache.getMessage(retPos.getMessageNr());
 
          if (serverMessage != null)
@@ -420,6 +421,19 @@ final class PageSubscriptionImpl implements PageSubscription
       }
    }
 
+   /**
+    * Reads ahead the pages following the page being read, once per page and only while the queue has consumers to
+    * deliver them to.
+    */
+   private void prefetchAfter(final long pageNr)
+   {
+      if (pageNr != lastPrefetchedPage && queue != null && queue.getConsumerCount() > 0)
+      {
+         lastPrefetchedPage = pageNr;
+         cursorProvider.prefetch(pageNr);
+      }
+   }
+
    private PagePosition moveNextPage(final PagePosition pos)
    {
       PagePosition retPos = pos;
@@ -659,13 +673,10 @@ final class PageSubscriptionImpl implements PageSubscription
          {
             for (PageCursorInfo cursor : consumedPages.values())
             {
-               for (PagePosition info : cursor.acks)
+               for (long recordID : cursor.getAckRecordIDs())
                {
-                  if (info.getRecordID() >= 0)
-                  {
-                     isPersistent = true;
-                     store.deleteCursorAcknowledgeTransactional(tx, info.getRecordID());
-                  }
+                  isPersistent = true;
+                  store.deleteCursorAcknowledgeTransactional(tx, recordID);
                }
                PagePosition completeInfo = cursor.getCompleteInfo();
                if (completeInfo != null && completeInfo.getRecordID() >= 0)
@@ -801,21 +812,17 @@ final class PageSubscriptionImpl implements PageSubscription
             }
             info.setCompleteInfo(null);
          }
-         for (PagePosition deleteInfo : info.acks)
+         for (long recordID : info.takeAckRecordIDs())
          {
-            if (deleteInfo.getRecordID() >= 0)
+            try
             {
-               try
-               {
-                  store.deleteCursorAcknowledge(deleteInfo.getRecordID());
-               }
-               catch (Exception e)
-               {
-                  HornetQServerLogger.LOGGER.warn("Error while deleting page-complete-record", e);
-               }
+               store.deleteCursorAcknowledge(recordID);
+            }
+            catch (Exception e)
+            {
+               HornetQServerLogger.LOGGER.warn("Error while deleting page-complete-record", e);
             }
          }
-         info.acks.clear();
       }
    }
 
@@ -843,12 +850,26 @@ final class PageSubscriptionImpl implements PageSubscription
 
          if (create && pageInfo == null)
          {
-            PageCache cache = cursorProvider.getPageCache(pageNr);
-            if (cache == null)
+            if (pageNr == pageStore.getCurrentWritingPage())
+            {
+               // the page is still being written, its number of messages will come from its live cache
+               PageCache cache = cursorProvider.getPageCache(pageNr);
+               if (cache == null)
+               {
+                  return null;
+               }
+               pageInfo = new PageCursorInfo(pageNr, cache.getNumberOfMessages(), cache);
+            }
+            else
             {
-               return null;
+               // only the number of messages is needed, there's no need to read the whole page
+               int numberOfMessages = cursorProvider.getNumberOfMessages(pageNr);
+               if (numberOfMessages < 0)
+               {
+                  return null;
+               }
+               pageInfo = new PageCursorInfo(pageNr, numberOfMessages, null);
             }
-            pageInfo = new PageCursorInfo(pageNr, cache.getNumberOfMessages(), cache);
             consumedPages.put(pageNr, pageInfo);
          }
          return pageInfo;
@@ -973,12 +994,18 @@ final class PageSubscriptionImpl implements PageSubscription
 
       private final long pageId;
 
-      // Confirmed ACKs on this page
-      private final Set<PagePosition> acks = Collections.synchronizedSet(new LinkedHashSet<PagePosition>());
+      // Confirmed ACKs on this page, one bit per message number. This and the fields below are guarded by this
+      private final BitSet acks = new BitSet();
+
+      // The journal records of the confirmed ACKs, to be deleted once the page is complete
+      private long[] ackRecordIDs = PageSubscriptionImpl.NO_RECORD_IDS;
+
+      private int ackRecordCount;
 
       private WeakReference<PageCache> cache;
 
-      private final Set<PagePosition> removedReferences = new ConcurrentHashSet<PagePosition>();
+      // Messages acked or being acked on a transaction, which the iterators must skip
+      private final BitSet removedReferences = new BitSet();
 
       // The page was live at the time of the creation
       private final boolean wasLive;
@@ -1074,14 +1101,14 @@ final class PageSubscriptionImpl implements PageSubscription
          checkDone();
       }
 
-      public boolean isRemoved(final PagePosition pos)
+      public synchronized boolean isRemoved(final PagePosition pos)
       {
-         return removedReferences.contains(pos);
+         return removedReferences.get(bitIndex(pos));
       }
 
-      public void remove(final PagePosition position)
+      public synchronized void remove(final PagePosition position)
       {
-         removedReferences.add(position);
+         removedReferences.set(bitIndex(position));
       }
 
       public void addACK(final PagePosition posACK)
@@ -1116,10 +1143,52 @@ final class PageSubscriptionImpl implements PageSubscription
          }
       }
 
-      private boolean internalAddACK(final PagePosition posACK)
+      private synchronized boolean internalAddACK(final PagePosition posACK)
+      {
+         int bit = bitIndex(posACK);
+
+         removedReferences.set(bit);
+
+         if (acks.get(bit))
+         {
+            return false;
+         }
+
+         acks.set(bit);
+
+         if (posACK.getRecordID() >= 0)
+         {
+            if (ackRecordCount == ackRecordIDs.length)
+            {
+               ackRecordIDs = Arrays.copyOf(ackRecordIDs, Math.max(8, ackRecordCount * 2));
+            }
+            ackRecordIDs[ackRecordCount++] = posACK.getRecordID();
+         }
+
+         return true;
+      }
+
+      public synchronized long[] getAckRecordIDs()
+      {
+         return Arrays.copyOf(ackRecordIDs, ackRecordCount);
+      }
+
+      /**
+       * Returns the journal records of the ACKs, which are forgotten so they are only deleted once. The ACKs are still
+       * remembered.
+       */
+      public synchronized long[] takeAckRecordIDs()
+      {
+         long[] recordIDs = getAckRecordIDs();
+         ackRecordIDs = PageSubscriptionImpl.NO_RECORD_IDS;
+         ackRecordCount = 0;
+         return recordIDs;
+      }
+
+      // A bookmark acks the position before the first message, -1, so everything is shifted by one
+      private int bitIndex(final PagePosition pos)
       {
-         removedReferences.add(posACK);
-         return acks.add(posACK);
+         return Math.max(pos.getMessageNr(), -1) + 1;
       }
 
       /**
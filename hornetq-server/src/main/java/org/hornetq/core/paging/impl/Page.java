@@ -15,10 +15,10 @@ package org.hornetq.core.paging.impl;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
-import io.netty.buffer.ByteBuf;
 import org.hornetq.api.core.HornetQBuffer;
 import org.hornetq.api.core.HornetQBuffers;
 import org.hornetq.api.core.SimpleString;
@@ -45,9 +45,18 @@ public final class Page implements Comparable<Page>
 
    public static final int SIZE_RECORD = DataConstants.SIZE_BYTE + DataConstants.SIZE_INT + DataConstants.SIZE_BYTE;
 
-   private static final byte START_BYTE = (byte)'{';
+   public static final int SIZE_INDEX_ENTRY = DataConstants.SIZE_INT;
 
-   private static final byte END_BYTE = (byte)'}';
+   public static final int SIZE_INDEX_RECORD = DataConstants.SIZE_BYTE + DataConstants.SIZE_INT + DataConstants.SIZE_INT +
+      DataConstants.SIZE_BYTE;
+
+   static final byte START_BYTE = (byte)'{';
+
+   static final byte END_BYTE = (byte)'}';
+
+   static final byte INDEX_START_BYTE = (byte)'[';
+
+   static final byte INDEX_END_BYTE = (byte)']';
 
    // Attributes ----------------------------------------------------
 
@@ -57,6 +66,11 @@ public final class Page implements Comparable<Page>
 
    private final AtomicInteger numberOfMessages = new AtomicInteger(0);
 
+   /**
+    * The position of each message on the file, written as the index of the page when it's complete
+    */
+   private int[] messageOffsets = new int[0];
+
    private final SequentialFile file;
 
    private final SequentialFileFactory fileFactory;
@@ -110,76 +124,119 @@ public final class Page implements Comparable<Page>
       ArrayList<PagedMessage> messages = new ArrayList<PagedMessage>();
 
       size.set((int)file.size());
-      // Using direct buffer, as described on https://jira.jboss.org/browse/HORNETQ-467
-      ByteBuffer directBuffer = storage.allocateDirectBuffer((int)file.size());
-      HornetQBuffer fileBuffer = null;
+
+      PageReader reader = new PageReader(this, file, storage);
       try
       {
+         PagedMessage msg;
+         while ((msg = reader.next()) != null)
+         {
+            if (isTrace)
+            {
+               HornetQServerLogger.LOGGER.trace("Reading message " + msg + " on pageId=" + this.pageId + " for address=" + storeName);
+            }
+            messages.add(msg);
+         }
+
+         // in case this page is written again, its index needs the messages already on it
+         messageOffsets = reader.getOffsets();
+      }
+      finally
+      {
+         reader.close();
+      }
 
-         file.position(0);
-         file.read(directBuffer);
+      // any message written after reading goes at the end of the file
+      file.position(file.size());
 
-         directBuffer.rewind();
+      numberOfMessages.set(messages.size());
 
-         fileBuffer = HornetQBuffers.wrappedBuffer(directBuffer);
-         fileBuffer.writerIndex(fileBuffer.capacity());
+      return messages;
+   }
 
-         while (fileBuffer.readable())
-         {
-            final int position = fileBuffer.readerIndex();
+   /**
+    * Reads a single message, seeking it through the index of the page so the messages before it are not decoded.
+    *
+    * @return the message, or <code>null</code> if the page has no valid message with that number
+    */
+   public synchronized PagedMessage read(StorageManager storage, int messageNumber) throws Exception
+   {
+      if (!file.isOpen())
+      {
+         throw HornetQMessageBundle.BUNDLE.invalidPageIO();
+      }
+
+      PageReader reader = new PageReader(this, file, storage);
+      try
+      {
+         return reader.read(messageNumber);
+      }
+      finally
+      {
+         reader.close();
+      }
+   }
+
+   /**
+    * Counts the messages of the page from its index, without decoding any of them.
+    */
+   public synchronized int readNumberOfMessages(StorageManager storage) throws Exception
+   {
+      if (!file.isOpen())
+      {
+         throw HornetQMessageBundle.BUNDLE.invalidPageIO();
+      }
+
+      PageReader reader = new PageReader(this, file, storage);
+      try
+      {
+         messageOffsets = reader.getOffsets();
+         numberOfMessages.set(messageOffsets.length);
+      }
+      finally
+      {
+         reader.close();
+      }
+
+      return numberOfMessages.get();
+   }
+
+   /**
+    * Reads only the large messages of the page, the only ones that must be released when the page is deleted.
+    *
+    * @see #delete(PagedMessage[])
+    */
+   public synchronized List<PagedMessage> readLargeMessages(StorageManager storage) throws Exception
+   {
+      if (!file.isOpen())
+      {
+         throw HornetQMessageBundle.BUNDLE.invalidPageIO();
+      }
 
-            byte byteRead = fileBuffer.readByte();
+      ArrayList<PagedMessage> messages = new ArrayList<PagedMessage>();
 
-            if (byteRead == Page.START_BYTE)
+      PageReader reader = new PageReader(this, file, storage);
+      try
+      {
+         int count = reader.getNumberOfMessages();
+         for (int i = 0; i < count; i++)
+         {
+            if (reader.isLargeMessage(i))
             {
-               if (fileBuffer.readerIndex() + DataConstants.SIZE_INT < fileBuffer.capacity())
+               PagedMessage msg = reader.read(i);
+               if (msg == null)
                {
-                  int messageSize = fileBuffer.readInt();
-                  int oldPos = fileBuffer.readerIndex();
-                  if (fileBuffer.readerIndex() + messageSize < fileBuffer.capacity() &&
-                           fileBuffer.getByte(oldPos + messageSize) == Page.END_BYTE)
-                  {
-                     PagedMessage msg = new PagedMessageImpl();
-                     msg.decode(fileBuffer);
-                     byte b = fileBuffer.readByte();
-                     if (b != Page.END_BYTE)
-                     {
-                        // Sanity Check: This would only happen if there is a bug on decode or any internal code, as
-                        // this
-                        // constraint was already checked
-                        throw new IllegalStateException("Internal error, it wasn't possible to locate END_BYTE " + b);
-                     }
-                     msg.initMessage(storage);
-                     if (isTrace)
-                     {
-                        HornetQServerLogger.LOGGER.trace("Reading message " + msg + " on pageId=" + this.pageId + " for address=" + storeName);
-                     }
-                     messages.add(msg);
-                  }
-                  else
-                  {
-                     markFileAsSuspect(file.getFileName(), position, messages.size());
-                     break;
-                  }
+                  break;
                }
-            }
-            else
-            {
-               markFileAsSuspect(file.getFileName(), position, messages.size());
-               break;
+               messages.add(msg);
             }
          }
       }
       finally
       {
-         if (fileBuffer != null) {
-             fileBuffer.byteBuf().unwrap().release();
-         }
-         storage.freeDirectBuffer(directBuffer);
+         reader.close();
       }
 
-      numberOfMessages.set(messages.size());
-
       return messages;
    }
 
@@ -208,6 +265,12 @@ public final class Page implements Comparable<Page>
 
       file.writeDirect(buffer, false);
 
+      if (messageOffsets.length == numberOfMessages.get())
+      {
+         messageOffsets = Arrays.copyOf(messageOffsets, Math.max(16, messageOffsets.length << 1));
+      }
+      messageOffsets[numberOfMessages.get()] = size.get();
+
       if (pageCache != null)
       {
          pageCache.addLiveMessage(message);
@@ -219,6 +282,40 @@ public final class Page implements Comparable<Page>
       storageManager.pageWrite(message, pageId);
    }
 
+   /**
+    * Appends the index of the page, with the position of every message written on it, so the page can be read from
+    * any message. It must be called only once the page is complete, as the index is valid only at the end of the file.
+    */
+   public synchronized void writeIndex() throws Exception
+   {
+      int count = numberOfMessages.get();
+
+      if (!file.isOpen() || count == 0)
+      {
+         return;
+      }
+
+      ByteBuffer buffer = fileFactory.newBuffer(Page.SIZE_INDEX_RECORD + count * Page.SIZE_INDEX_ENTRY);
+
+      HornetQBuffer wrap = HornetQBuffers.wrappedBuffer(buffer);
+      wrap.clear();
+
+      wrap.writeByte(Page.INDEX_START_BYTE);
+      wrap.writeInt(count);
+      for (int i = 0; i < count; i++)
+      {
+         wrap.writeInt(messageOffsets[i]);
+      }
+      wrap.writeInt(size.get());
+      wrap.writeByte(Page.INDEX_END_BYTE);
+
+      buffer.rewind();
+
+      file.writeDirect(buffer, true);
+
+      size.addAndGet(buffer.limit());
+   }
+
    public void sync() throws Exception
    {
       file.sync();
@@ -369,7 +466,7 @@ public final class Page implements Comparable<Page>
     * @param position
     * @param msgNumber
     */
-   private void markFileAsSuspect(final String fileName, final int position, final int msgNumber)
+   void markFileAsSuspect(final String fileName, final int position, final int msgNumber)
    {
       HornetQServerLogger.LOGGER.pageSuspectFile(fileName, position, msgNumber);
       suspiciousRecords = true;
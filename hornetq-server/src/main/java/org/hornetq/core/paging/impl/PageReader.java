@@ -0,0 +1,384 @@
+/*
+ * Copyright 2013 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.paging.impl;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.hornetq.api.core.HornetQBuffer;
+import org.hornetq.api.core.HornetQBuffers;
+import org.hornetq.core.journal.SequentialFile;
+import org.hornetq.core.paging.PagedMessage;
+import org.hornetq.core.persistence.StorageManager;
+import org.hornetq.utils.DataConstants;
+
+/**
+ * Reads the messages of a page file through a buffer of bounded size, in sequence or seeking a single message.
+ * <p>
+ * Each message is written on a record between a {@link Page#START_BYTE} and a {@link Page#END_BYTE}. When the page is
+ * complete an index record is appended, holding the position of every message on the page and ending with its own
+ * position, so a message can be found without reading the records before it. Pages without a valid index (the page
+ * being written when the server stopped, or pages written by older versions) are indexed by scanning the headers of
+ * their records, which doesn't decode any message.
+ * <p>
+ * This class is not thread safe, and the page must not be written while it's being read.
+ */
+final class PageReader
+{
+   private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+   // the offset of the large message flag on a record, after the record header and the transaction ID
+   private static final int LARGE_MESSAGE_FLAG_OFFSET = DataConstants.SIZE_BYTE + DataConstants.SIZE_INT +
+      DataConstants.SIZE_LONG;
+
+   private final Page page;
+
+   private final SequentialFile file;
+
+   private final StorageManager storage;
+
+   private final int fileSize;
+
+   private ByteBuffer readBuffer;
+
+   private HornetQBuffer window;
+
+   // the positions of the file held on the window
+   private int windowStart;
+
+   private int windowEnd;
+
+   private int[] offsets = new int[16];
+
+   private int numberOfMessages;
+
+   private boolean indexRead;
+
+   // set once every message of the page is on offsets
+   private boolean complete;
+
+   private int scanPosition;
+
+   private int nextMessage;
+
+   PageReader(final Page page, final SequentialFile file, final StorageManager storage) throws Exception
+   {
+      this.page = page;
+      this.file = file;
+      this.storage = storage;
+      fileSize = (int)file.size();
+      allocate(READ_BUFFER_SIZE);
+   }
+
+   /**
+    * @return the number of valid messages on the page
+    */
+   int getNumberOfMessages() throws Exception
+   {
+      locate(Integer.MAX_VALUE);
+      return numberOfMessages;
+   }
+
+   /**
+    * @return the positions of the messages on the page
+    */
+   int[] getOffsets() throws Exception
+   {
+      return Arrays.copyOf(offsets, getNumberOfMessages());
+   }
+
+   /**
+    * @return the next message on the page, or <code>null</code> after the last valid message
+    */
+   PagedMessage next() throws Exception
+   {
+      PagedMessage message = read(nextMessage);
+      if (message != null)
+      {
+         nextMessage++;
+      }
+      return message;
+   }
+
+   /**
+    * @return the message, or <code>null</code> if the page doesn't have a valid message with that number
+    */
+   PagedMessage read(final int messageNumber) throws Exception
+   {
+      if (!locate(messageNumber))
+      {
+         return null;
+      }
+
+      int position = offsets[messageNumber];
+
+      fill(position, Page.SIZE_RECORD - DataConstants.SIZE_BYTE);
+
+      int messageSize = window.getInt(position + DataConstants.SIZE_BYTE - windowStart);
+
+      if (position + Page.SIZE_RECORD + messageSize > fileSize)
+      {
+         page.markFileAsSuspect(file.getFileName(), position, messageNumber);
+         return null;
+      }
+
+      fill(position, Page.SIZE_RECORD + messageSize);
+
+      int bodyStart = position + DataConstants.SIZE_BYTE + DataConstants.SIZE_INT - windowStart;
+
+      if (window.getByte(position - windowStart) != Page.START_BYTE ||
+         window.getByte(bodyStart + messageSize) != Page.END_BYTE)
+      {
+         // only possible with an index that doesn't match the records
+         page.markFileAsSuspect(file.getFileName(), position, messageNumber);
+         return null;
+      }
+
+      window.setIndex(bodyStart, bodyStart + messageSize + DataConstants.SIZE_BYTE);
+
+      PagedMessage message = new PagedMessageImpl();
+      message.decode(window);
+      byte b = window.readByte();
+      if (b != Page.END_BYTE)
+      {
+         // Sanity Check: This would only happen if there is a bug on decode or any internal code, as
+         // this constraint was already checked
+         throw new IllegalStateException("Internal error, it wasn't possible to locate END_BYTE " + b);
+      }
+      message.initMessage(storage);
+
+      return message;
+   }
+
+   /**
+    * @return whether the message is a large message, checked without decoding it
+    */
+   boolean isLargeMessage(final int messageNumber) throws Exception
+   {
+      if (!locate(messageNumber))
+      {
+         return false;
+      }
+
+      int flagPosition = offsets[messageNumber] + LARGE_MESSAGE_FLAG_OFFSET;
+
+      if (flagPosition >= fileSize)
+      {
+         return false;
+      }
+
+      fill(flagPosition, DataConstants.SIZE_BOOLEAN);
+
+      return window.getByte(flagPosition - windowStart) != 0;
+   }
+
+   void close()
+   {
+      release();
+   }
+
+   /**
+    * Makes sure the position of a message is known, reading the index of the page or scanning its records.
+    */
+   private boolean locate(final int messageNumber) throws Exception
+   {
+      if (messageNumber < numberOfMessages)
+      {
+         return true;
+      }
+
+      if (!indexRead)
+      {
+         indexRead = true;
+
+         if (readIndex())
+         {
+            return messageNumber < numberOfMessages;
+         }
+      }
+
+      while (!complete && numberOfMessages <= messageNumber)
+      {
+         scanRecord();
+      }
+
+      return messageNumber < numberOfMessages;
+   }
+
+   /**
+    * Reads the index record at the end of the file.
+    *
+    * @return <code>false</code> if the page doesn't end with a valid index
+    */
+   private boolean readIndex() throws Exception
+   {
+      if (numberOfMessages > 0 || fileSize < Page.SIZE_INDEX_RECORD)
+      {
+         return false;
+      }
+
+      int trailerStart = fileSize - DataConstants.SIZE_INT - DataConstants.SIZE_BYTE;
+
+      fill(trailerStart, DataConstants.SIZE_INT + DataConstants.SIZE_BYTE);
+
+      int indexPosition = window.getInt(trailerStart - windowStart);
+
+      if (window.getByte(fileSize - DataConstants.SIZE_BYTE - windowStart) != Page.INDEX_END_BYTE ||
+         indexPosition < 0 ||
+         indexPosition > fileSize - Page.SIZE_INDEX_RECORD)
+      {
+         return false;
+      }
+
+      fill(indexPosition, DataConstants.SIZE_BYTE + DataConstants.SIZE_INT);
+
+      int count = window.getInt(indexPosition + DataConstants.SIZE_BYTE - windowStart);
+
+      if (window.getByte(indexPosition - windowStart) != Page.INDEX_START_BYTE || count < 0 ||
+         indexPosition + Page.SIZE_INDEX_RECORD + (long)count * Page.SIZE_INDEX_ENTRY != fileSize)
+      {
+         return false;
+      }
+
+      int[] indexOffsets = new int[count];
+
+      int position = indexPosition + DataConstants.SIZE_BYTE + DataConstants.SIZE_INT;
+
+      for (int i = 0; i < count; i++, position += DataConstants.SIZE_INT)
+      {
+         fill(position, DataConstants.SIZE_INT);
+         indexOffsets[i] = window.getInt(position - windowStart);
+
+         if (indexOffsets[i] < 0 || indexOffsets[i] >= indexPosition || i > 0 && indexOffsets[i] <= indexOffsets[i - 1])
+         {
+            return false;
+         }
+      }
+
+      offsets = indexOffsets;
+      numberOfMessages = count;
+      complete = true;
+
+      return true;
+   }
+
+   /**
+    * Reads the header of the record at {@link #scanPosition}, without decoding the message on it.
+    */
+   private void scanRecord() throws Exception
+   {
+      final int position = scanPosition;
+
+      if (position >= fileSize)
+      {
+         complete = true;
+         return;
+      }
+
+      fill(position, Math.min(Page.SIZE_RECORD - DataConstants.SIZE_BYTE, fileSize - position));
+
+      byte byteRead = window.getByte(position - windowStart);
+
+      if (byteRead == Page.START_BYTE && position + DataConstants.SIZE_BYTE + DataConstants.SIZE_INT < fileSize)
+      {
+         int messageSize = window.getInt(position + DataConstants.SIZE_BYTE - windowStart);
+         int endPosition = position + DataConstants.SIZE_BYTE + DataConstants.SIZE_INT + messageSize;
+
+         if (messageSize >= 0 && endPosition < fileSize)
+         {
+            fill(endPosition, DataConstants.SIZE_BYTE);
+
+            if (window.getByte(endPosition - windowStart) == Page.END_BYTE)
+            {
+               if (numberOfMessages == offsets.length)
+               {
+                  offsets = Arrays.copyOf(offsets, numberOfMessages << 1);
+               }
+               offsets[numberOfMessages++] = position;
+               scanPosition = endPosition + DataConstants.SIZE_BYTE;
+               return;
+            }
+         }
+      }
+      else if (byteRead == Page.INDEX_START_BYTE && position + DataConstants.SIZE_BYTE + DataConstants.SIZE_INT < fileSize)
+      {
+         // an index written before the page was reopened and written again
+         int count = window.getInt(position + DataConstants.SIZE_BYTE - windowStart);
+         long endPosition = position + Page.SIZE_INDEX_RECORD + (long)count * Page.SIZE_INDEX_ENTRY;
+
+         if (count >= 0 && endPosition <= fileSize)
+         {
+            fill((int)endPosition - DataConstants.SIZE_BYTE, DataConstants.SIZE_BYTE);
+
+            if (window.getByte((int)endPosition - DataConstants.SIZE_BYTE - windowStart) == Page.INDEX_END_BYTE)
+            {
+               scanPosition = (int)endPosition;
+               return;
+            }
+         }
+      }
+
+      page.markFileAsSuspect(file.getFileName(), position, numberOfMessages);
+      complete = true;
+   }
+
+   /**
+    * Makes sure the window holds <code>length</code> bytes of the file from <code>position</code>.
+    */
+   private void fill(final int position, final int length) throws Exception
+   {
+      if (position >= windowStart && position + length <= windowEnd)
+      {
+         return;
+      }
+
+      if (length > readBuffer.capacity())
+      {
+         release();
+         allocate(length);
+      }
+
+      int bytes = Math.min(readBuffer.capacity(), fileSize - position);
+
+      readBuffer.clear();
+      readBuffer.limit(bytes);
+
+      file.position(position);
+      file.read(readBuffer);
+
+      windowStart = position;
+      windowEnd = position + bytes;
+   }
+
+   private void allocate(final int size)
+   {
+      // Using direct buffer, as described on https://jira.jboss.org/browse/HORNETQ-467
+      readBuffer = storage.allocateDirectBuffer(size);
+      window = HornetQBuffers.wrappedBuffer(readBuffer);
+      window.writerIndex(window.capacity());
+      windowStart = 0;
+      windowEnd = 0;
+   }
+
+   private void release()
+   {
+      if (readBuffer != null)
+      {
+         window.byteBuf().unwrap().release();
+         storage.freeDirectBuffer(readBuffer);
+         readBuffer = null;
+         window = null;
+      }
+   }
+}
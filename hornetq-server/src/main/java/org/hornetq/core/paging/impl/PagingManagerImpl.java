@@ -18,8 +18,11 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.core.paging.PageTransactionInfo;
 import org.hornetq.core.paging.PagingManager;
@@ -59,6 +62,12 @@ public final class PagingManagerImpl implements PagingManager
    private final ConcurrentMap</*TransactionID*/Long, PageTransactionInfo> transactions =
             new ConcurrentHashMap<Long, PageTransactionInfo>();
 
+   // the messages kept off the heap are allocated on slabs of direct memory pooled by this allocator, so a buffer
+   // released by a message is reused by the next one instead of allocating and freeing direct memory each time
+   private final ByteBufAllocator offHeapAllocator = new PooledByteBufAllocator(true);
+
+   private final AtomicLong offHeapSize = new AtomicLong();
+
    // Static
    // --------------------------------------------------------------------------------------------------------------------------
 
@@ -112,6 +121,21 @@ public final class PagingManagerImpl implements PagingManager
       }
    }
 
+   public ByteBufAllocator getOffHeapAllocator()
+   {
+      return offHeapAllocator;
+   }
+
+   public void addOffHeapSize(final long size)
+   {
+      offHeapSize.addAndGet(size);
+   }
+
+   public long getOffHeapSize()
+   {
+      return offHeapSize.get();
+   }
+
    public void resumeCleanup()
    {
       if (cleanupEnabled)
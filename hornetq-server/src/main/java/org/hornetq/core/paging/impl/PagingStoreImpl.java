@@ -88,6 +88,8 @@ public class PagingStoreImpl implements PagingStore
 
    private volatile AddressFullMessagePolicy addressFullMessagePolicy;
 
+   private volatile boolean messageBodyOffHeap;
+
    private boolean printedDropMessagesWarning;
 
    private final PagingManager pagingManager;
@@ -128,6 +130,37 @@ public class PagingStoreImpl implements PagingStore
                           final AddressSettings addressSettings,
                           final Executor executor,
                           final boolean syncNonTransactional)
+   {
+      this(address,
+           scheduledExecutor,
+           syncTimeout,
+           pagingManager,
+           storageManager,
+           fileFactory,
+           storeFactory,
+           storeName,
+           addressSettings,
+           executor,
+           executor,
+           syncNonTransactional);
+   }
+
+   /**
+    * @param prefetchExecutor the executor reading pages ahead of the queues, which shouldn't be <code>executor</code>
+    *           so a page being read doesn't delay the cleanup and the sync of the store
+    */
+   public PagingStoreImpl(final SimpleString address,
+                          final ScheduledExecutorService scheduledExecutor,
+                          final long syncTimeout,
+                          final PagingManager pagingManager,
+                          final StorageManager storageManager,
+                          final SequentialFileFactory fileFactory,
+                          final PagingStoreFactory storeFactory,
+                          final SimpleString storeName,
+                          final AddressSettings addressSettings,
+                          final Executor executor,
+                          final Executor prefetchExecutor,
+                          final boolean syncNonTransactional)
    {
       if (pagingManager == null)
       {
@@ -174,8 +207,25 @@ public class PagingStoreImpl implements PagingStore
       this.cursorProvider = new PageCursorProviderImpl(this,
          this.storageManager,
          executor,
-         addressSettings.getPageCacheMaxSize());
+         prefetchExecutor,
+         addressSettings.getPageCacheMaxSize(),
+         getPageCacheMaxBytes(addressSettings));
 
+      cursorProvider.setPrefetchSize(addressSettings.getPagePrefetchSize());
+
+   }
+
+   /**
+    * @return the bound on the memory of the page cache, which defaults to as many pages as the page cache holds
+    */
+   private static long getPageCacheMaxBytes(final AddressSettings addressSettings)
+   {
+      long maxBytes = addressSettings.getPageCacheMaxBytes();
+      if (maxBytes < 0)
+      {
+         maxBytes = (long)addressSettings.getPageCacheMaxSize() * addressSettings.getPageSizeBytes();
+      }
+      return maxBytes;
    }
 
    /**
@@ -189,9 +239,13 @@ public class PagingStoreImpl implements PagingStore
 
       addressFullMessagePolicy = addressSettings.getAddressFullMessagePolicy();
 
+      messageBodyOffHeap = addressSettings.isMessageBodyOffHeap();
+
       if (cursorProvider != null)
       {
          cursorProvider.setCacheMaxSize(addressSettings.getPageCacheMaxSize());
+         cursorProvider.setCacheMaxBytes(getPageCacheMaxBytes(addressSettings));
+         cursorProvider.setPrefetchSize(addressSettings.getPagePrefetchSize());
       }
    }
 
@@ -353,6 +407,11 @@ public class PagingStoreImpl implements PagingStore
       return pagingManager;
    }
 
+   public boolean isMessageBodyOffHeap()
+   {
+      return messageBodyOffHeap;
+   }
+
    @Override
    public boolean isStarted()
    {
@@ -465,7 +524,7 @@ public class PagingStoreImpl implements PagingStore
 
                   currentPage.setLiveCache(pageCache);
 
-                  currentPageSize.set(currentPage.getSize());
+                  currentPageSize.set(currentPage.getSize() + messages.size() * Page.SIZE_INDEX_ENTRY);
 
                   cursorProvider.addPageCache(pageCache);
                }
@@ -891,9 +950,11 @@ public class PagingStoreImpl implements PagingStore
                ((LargeServerMessage) message).setPaged();
             }
 
-            int bytesToWrite = pagedMessage.getEncodeSize() + Page.SIZE_RECORD;
+            // the entry of the message on the index of the page is written when the page is complete
+            int bytesToWrite = pagedMessage.getEncodeSize() + Page.SIZE_RECORD + Page.SIZE_INDEX_ENTRY;
 
-            if (currentPageSize.addAndGet(bytesToWrite) > pageSize && currentPage.getNumberOfMessages() > 0)
+            if (currentPageSize.addAndGet(bytesToWrite) > pageSize - Page.SIZE_INDEX_RECORD &&
+               currentPage.getNumberOfMessages() > 0)
             {
                // Make sure nothing is currently validating or using currentPage
                openNewPage();
@@ -1093,6 +1154,8 @@ public class PagingStoreImpl implements PagingStore
 
          if (currentPage != null)
          {
+            // the page is complete, no more messages will be written on it
+            currentPage.writeIndex();
             currentPage.close();
          }
 
@@ -73,6 +73,7 @@ import org.hornetq.core.journal.TransactionFailureCallback;
 import org.hornetq.core.journal.impl.AIOSequentialFileFactory;
 import org.hornetq.core.journal.impl.JournalFile;
 import org.hornetq.core.journal.impl.JournalImpl;
+import org.hornetq.core.journal.impl.MappedSequentialFileFactory;
 import org.hornetq.core.journal.impl.NIOSequentialFileFactory;
 import org.hornetq.core.message.impl.MessageInternal;
 import org.hornetq.core.paging.PageTransactionInfo;
@@ -229,7 +230,8 @@ public class JournalStorageManager implements StorageManager
 
       executor = executorFactory.getExecutor();
 
-      if (config.getJournalType() != JournalType.NIO && config.getJournalType() != JournalType.ASYNCIO)
+      if (config.getJournalType() != JournalType.NIO && config.getJournalType() != JournalType.ASYNCIO &&
+               config.getJournalType() != JournalType.MAPPED)
       {
          throw HornetQMessageBundle.BUNDLE.invalidJournal();
       }
@@ -277,6 +279,7 @@ public class JournalStorageManager implements StorageManager
             config.getJournalBufferSize_AIO(),
             config.getJournalBufferTimeout_AIO(),
             config.isLogJournalWriteRate(),
+            config.isJournalBufferAdaptive(),
             criticalErrorListener);
       }
       else if (config.getJournalType() == JournalType.NIO)
@@ -287,6 +290,18 @@ public class JournalStorageManager implements StorageManager
             config.getJournalBufferSize_NIO(),
             config.getJournalBufferTimeout_NIO(),
             config.isLogJournalWriteRate(),
+            config.isJournalBufferAdaptive(),
+            criticalErrorListener);
+      }
+      else if (config.getJournalType() == JournalType.MAPPED)
+      {
+         HornetQServerLogger.LOGGER.journalUseMapped();
+         journalFF = new MappedSequentialFileFactory(journalDir,
+            true,
+            config.getJournalBufferSize_NIO(),
+            config.getJournalBufferTimeout_NIO(),
+            config.isLogJournalWriteRate(),
+            config.isJournalBufferAdaptive(),
             criticalErrorListener);
       }
       else
@@ -296,7 +311,7 @@ public class JournalStorageManager implements StorageManager
 
       idGenerator = new BatchingIDGenerator(0, JournalStorageManager.CHECKPOINT_BATCH_SIZE, this);
 
-      Journal localMessage = new JournalImpl(config.getJournalFileSize(),
+      JournalImpl localMessage = new JournalImpl(config.getJournalFileSize(),
          config.getJournalMinFiles(),
          config.getJournalCompactMinFiles(),
          config.getJournalCompactPercentage(),
@@ -306,12 +321,23 @@ public class JournalStorageManager implements StorageManager
          config.getJournalType() == JournalType.ASYNCIO ? config.getJournalMaxIO_AIO()
             : config.getJournalMaxIO_NIO());
 
+      localMessage.setLoadThreads(config.getJournalLoadThreads());
+
+      localMessage.setLoadReadAhead(config.getJournalLoadReadAhead());
+
       messageJournal = localMessage;
       originalMessageJournal = localMessage;
 
       largeMessagesDirectory = config.getLargeMessagesDirectory();
 
-      largeMessagesFactory = new NIOSequentialFileFactory(largeMessagesDirectory, false, criticalErrorListener);
+      if (config.getJournalType() == JournalType.MAPPED)
+      {
+         largeMessagesFactory = new MappedSequentialFileFactory(largeMessagesDirectory, false, criticalErrorListener);
+      }
+      else
+      {
+         largeMessagesFactory = new NIOSequentialFileFactory(largeMessagesDirectory, false, criticalErrorListener);
+      }
 
       perfBlastPages = config.getJournalPerfBlastPages();
 
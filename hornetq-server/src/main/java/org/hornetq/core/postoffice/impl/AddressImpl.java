@@ -73,77 +73,52 @@ public class AddressImpl implements Address
       linkedAddresses.remove(actualAddress);
    }
 
+   /**
+    * A <code>*</code> word of the wildcard address matches exactly one word and a <code>#</code> word matches zero
+    * or more words.
+    */
    public boolean matches(final Address add)
    {
       if (containsWildCard == add.containsWildCard())
       {
          return address.equals(add.getAddress());
       }
-      int pos = 0;
-      int matchPos = 0;
 
-      SimpleString nextToMatch;
-      for (; matchPos < add.getAddressParts().length;)
+      return matches(addressParts, 0, add.getAddressParts(), 0);
+   }
+
+   private static boolean matches(final SimpleString[] words,
+                                  int pos,
+                                  final SimpleString[] pattern,
+                                  int matchPos)
+   {
+      for (; matchPos < pattern.length; matchPos++)
       {
-         if (pos >= addressParts.length)
-         {
-            // test for # as last address part
-            return pos + 1 == add.getAddressParts().length && add.getAddressParts()[pos].equals(WildcardAddressManager.ANY_WORDS_SIMPLESTRING);
-         }
-         SimpleString curr = addressParts[pos];
-         SimpleString next = addressParts.length > pos + 1 ? addressParts[pos + 1] : null;
-         SimpleString currMatch = add.getAddressParts()[matchPos];
-         if (currMatch.equals(WildcardAddressManager.SINGLE_WORD_SIMPLESTRING))
-         {
-            pos++;
-            matchPos++;
-         }
-         else if (currMatch.equals(WildcardAddressManager.ANY_WORDS_SIMPLESTRING))
+         SimpleString currMatch = pattern[matchPos];
+
+         if (currMatch.equals(WildcardAddressManager.ANY_WORDS_SIMPLESTRING))
          {
-            if (matchPos == addressParts.length - 1)
+            // try every number of words for # and match the rest of the pattern
+            for (int next = pos; next <= words.length; next++)
             {
-               pos++;
-               matchPos++;
-            }
-            else if (next == null)
-            {
-               return false;
-            }
-            else if (matchPos == add.getAddressParts().length - 1)
-            {
-               return true;
-            }
-            else
-            {
-               nextToMatch = add.getAddressParts()[matchPos + 1];
-               while (curr != null)
-               {
-                  if (curr.equals(nextToMatch))
-                  {
-                     break;
-                  }
-                  pos++;
-                  curr = next;
-                  next = addressParts.length > pos + 1 ? addressParts[pos + 1] : null;
-               }
-               if (curr == null)
+               if (matches(words, next, pattern, matchPos + 1))
                {
-                  return false;
+                  return true;
                }
-               matchPos++;
             }
+            return false;
          }
-         else
+
+         if (pos >= words.length ||
+             !currMatch.equals(WildcardAddressManager.SINGLE_WORD_SIMPLESTRING) && !currMatch.equals(words[pos]))
          {
-            if (!curr.equals(currMatch))
-            {
-               return false;
-            }
-            pos++;
-            matchPos++;
+            return false;
          }
+
+         pos++;
       }
-      return pos == addressParts.length;
+
+      return pos == words.length;
    }
 
    @Override
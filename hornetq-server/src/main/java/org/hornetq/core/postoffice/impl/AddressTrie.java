@@ -0,0 +1,216 @@
+/*
+ * Copyright 2013 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.postoffice.impl;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.postoffice.Address;
+
+/**
+ * Holds addresses in a tree with one level per address word, so matching an address against wildcards costs in
+ * proportion to the depth of the address rather than to the number of addresses.
+ * <p>
+ * A <code>*</code> word matches exactly one word and a <code>#</code> word matches zero or more words. Any other
+ * word, including words that merely contain a wildcard character, only matches itself.
+ * <p>
+ * This class is not thread safe.
+ */
+final class AddressTrie
+{
+   private final Node root = new Node();
+
+   void add(final Address address)
+   {
+      Node node = root;
+
+      for (SimpleString word : address.getAddressParts())
+      {
+         Node child = node.children.get(word);
+
+         if (child == null)
+         {
+            child = new Node();
+
+            node.children.put(word, child);
+         }
+
+         node = child;
+      }
+
+      node.address = address;
+   }
+
+   void remove(final Address address)
+   {
+      SimpleString[] words = address.getAddressParts();
+
+      Node[] path = new Node[words.length + 1];
+
+      path[0] = root;
+
+      for (int i = 0; i < words.length; i++)
+      {
+         path[i + 1] = path[i].children.get(words[i]);
+
+         if (path[i + 1] == null)
+         {
+            return;
+         }
+      }
+
+      path[words.length].address = null;
+
+      // prune the branches that don't lead to any address anymore
+      for (int i = words.length; i > 0 && path[i].isEmpty(); i--)
+      {
+         path[i - 1].children.remove(words[i - 1]);
+      }
+   }
+
+   void clear()
+   {
+      root.children.clear();
+
+      root.address = null;
+   }
+
+   /**
+    * @param address an address without wildcards
+    * @return the addresses in this trie whose wildcards match <code>address</code>
+    */
+   Set<Address> getWildcardsMatching(final Address address)
+   {
+      Set<Address> result = new LinkedHashSet<Address>();
+
+      collectWildcardsMatching(root, address.getAddressParts(), 0, result);
+
+      return result;
+   }
+
+   /**
+    * @param wildcard an address with wildcards
+    * @return the addresses in this trie matched by <code>wildcard</code>
+    */
+   Set<Address> getMatchedBy(final Address wildcard)
+   {
+      Set<Address> result = new LinkedHashSet<Address>();
+
+      collectMatchedBy(root, wildcard.getAddressParts(), 0, result);
+
+      return result;
+   }
+
+   private static void collectWildcardsMatching(final Node node,
+                                                final SimpleString[] words,
+                                                final int pos,
+                                                final Set<Address> result)
+   {
+      Node anyWords = node.children.get(WildcardAddressManager.ANY_WORDS_SIMPLESTRING);
+
+      if (pos == words.length)
+      {
+         if (node.address != null)
+         {
+            result.add(node.address);
+         }
+         if (anyWords != null)
+         {
+            collectWildcardsMatching(anyWords, words, pos, result);
+         }
+         return;
+      }
+
+      Node child = node.children.get(words[pos]);
+
+      if (child != null)
+      {
+         collectWildcardsMatching(child, words, pos + 1, result);
+      }
+
+      Node singleWord = node.children.get(WildcardAddressManager.SINGLE_WORD_SIMPLESTRING);
+
+      if (singleWord != null)
+      {
+         collectWildcardsMatching(singleWord, words, pos + 1, result);
+      }
+
+      if (anyWords != null)
+      {
+         for (int next = pos; next <= words.length; next++)
+         {
+            collectWildcardsMatching(anyWords, words, next, result);
+         }
+      }
+   }
+
+   private static void collectMatchedBy(final Node node,
+                                        final SimpleString[] pattern,
+                                        final int pos,
+                                        final Set<Address> result)
+   {
+      if (pos == pattern.length)
+      {
+         if (node.address != null)
+         {
+            result.add(node.address);
+         }
+         return;
+      }
+
+      SimpleString word = pattern[pos];
+
+      if (word.equals(WildcardAddressManager.SINGLE_WORD_SIMPLESTRING))
+      {
+         for (Node child : node.children.values())
+         {
+            collectMatchedBy(child, pattern, pos + 1, result);
+         }
+      }
+      else if (word.equals(WildcardAddressManager.ANY_WORDS_SIMPLESTRING))
+      {
+         // either # stops matching here or it takes one more word
+         collectMatchedBy(node, pattern, pos + 1, result);
+
+         for (Node child : node.children.values())
+         {
+            collectMatchedBy(child, pattern, pos, result);
+         }
+      }
+      else
+      {
+         Node child = node.children.get(word);
+
+         if (child != null)
+         {
+            collectMatchedBy(child, pattern, pos + 1, result);
+         }
+      }
+   }
+
+   private static final class Node
+   {
+      private final Map<SimpleString, Node> children = new HashMap<SimpleString, Node>();
+
+      private Address address;
+
+      boolean isEmpty()
+      {
+         return address == null && children.isEmpty();
+      }
+   }
+}
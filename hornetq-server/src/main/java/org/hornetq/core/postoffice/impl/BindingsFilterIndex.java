@@ -0,0 +1,479 @@
+/*
+ * Copyright 2013 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.postoffice.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.filter.Filter;
+import org.hornetq.core.filter.impl.FilterGuard;
+import org.hornetq.core.filter.impl.FilterImpl;
+import org.hornetq.core.postoffice.Binding;
+import org.hornetq.core.server.ServerMessage;
+
+/**
+ * Indexes the non exclusive bindings of an address by the {@link FilterGuard} of their filters, so routing only has
+ * to look at the routing names that have a binding which can possibly accept a message.
+ * <p>
+ * Equality and IN guards are kept in hash maps keyed by property value, numeric ranges with a single bound in sorted
+ * maps keyed by that bound and ranges with both bounds in an interval tree. Bindings without a filter, or whose filter
+ * has no guard, are candidates for every message. The candidates are a superset of the matching bindings, routing
+ * still matches every candidate against its full filter.
+ * <p>
+ * Lookups don't lock and can run concurrently with bindings being added or removed, in which case a binding that is
+ * being added or removed may or may not be returned, as when iterating over a {@link ConcurrentHashMap}.
+ */
+final class BindingsFilterIndex
+{
+   // the routing names of the bindings that are candidates for every message, with their number of such bindings
+   private final Map<SimpleString, Integer> unindexedRoutingNames = new ConcurrentHashMap<SimpleString, Integer>();
+
+   private final Map<Binding, FilterGuard> guards = new ConcurrentHashMap<Binding, FilterGuard>();
+
+   private final ConcurrentMap<SimpleString, PropertyIndex> properties = new ConcurrentHashMap<SimpleString, PropertyIndex>();
+
+   /**
+    * @return true if no binding is indexed by a guard, in which case every routing name is a candidate
+    */
+   boolean isEmpty()
+   {
+      return guards.isEmpty();
+   }
+
+   synchronized void addBinding(final Binding binding)
+   {
+      FilterGuard guard = getGuard(binding.getFilter());
+
+      if (guard == null)
+      {
+         Integer count = unindexedRoutingNames.get(binding.getRoutingName());
+
+         unindexedRoutingNames.put(binding.getRoutingName(), count == null ? 1 : count + 1);
+
+         return;
+      }
+
+      PropertyIndex index = properties.get(guard.getProperty());
+
+      if (index == null)
+      {
+         index = new PropertyIndex();
+
+         properties.put(guard.getProperty(), index);
+      }
+
+      guards.put(binding, guard);
+
+      index.add(binding, guard);
+   }
+
+   synchronized void removeBinding(final Binding binding)
+   {
+      FilterGuard guard = guards.remove(binding);
+
+      if (guard == null)
+      {
+         Integer count = unindexedRoutingNames.get(binding.getRoutingName());
+
+         if (count != null && count > 1)
+         {
+            unindexedRoutingNames.put(binding.getRoutingName(), count - 1);
+         }
+         else
+         {
+            unindexedRoutingNames.remove(binding.getRoutingName());
+         }
+
+         return;
+      }
+
+      PropertyIndex index = properties.get(guard.getProperty());
+
+      if (index != null)
+      {
+         index.remove(binding, guard);
+
+         if (index.isEmpty())
+         {
+            properties.remove(guard.getProperty());
+         }
+      }
+   }
+
+   /**
+    * @return the routing names with a binding that is a candidate for every message
+    */
+   Collection<SimpleString> getUnindexedRoutingNames()
+   {
+      return unindexedRoutingNames.keySet();
+   }
+
+   /**
+    * @return the routing names not returned by {@link #getUnindexedRoutingNames()} with at least one binding that may
+    *         accept the message, or null if there are none
+    */
+   Set<SimpleString> getIndexedCandidateRoutingNames(final ServerMessage message)
+   {
+      Set<SimpleString> routingNames = null;
+
+      for (Map.Entry<SimpleString, PropertyIndex> entry : properties.entrySet())
+      {
+         Object key = FilterGuard.getKey(message, entry.getKey());
+
+         if (key != null)
+         {
+            routingNames = entry.getValue().collect(key, routingNames);
+         }
+      }
+
+      return routingNames;
+   }
+
+   /**
+    * @return the set of routing names, created on the first routing name actually added to it
+    */
+   private Set<SimpleString> addRoutingName(final Binding binding, final Set<SimpleString> routingNames)
+   {
+      SimpleString routingName = binding.getRoutingName();
+
+      if (unindexedRoutingNames.containsKey(routingName))
+      {
+         return routingNames;
+      }
+
+      Set<SimpleString> names = routingNames == null ? new HashSet<SimpleString>() : routingNames;
+
+      names.add(routingName);
+
+      return names;
+   }
+
+   private Set<SimpleString> addRoutingNames(final Collection<Set<Binding>> sets, final Set<SimpleString> routingNames)
+   {
+      Set<SimpleString> names = routingNames;
+
+      for (Set<Binding> bindings : sets)
+      {
+         for (Binding binding : bindings)
+         {
+            names = addRoutingName(binding, names);
+         }
+      }
+
+      return names;
+   }
+
+   private static FilterGuard getGuard(final Filter filter)
+   {
+      return filter instanceof FilterImpl ? ((FilterImpl)filter).getGuard() : null;
+   }
+
+   private static Set<Binding> newBindingSet()
+   {
+      return Collections.newSetFromMap(new ConcurrentHashMap<Binding, Boolean>());
+   }
+
+   private static <K> void addToMap(final ConcurrentMap<K, Set<Binding>> map, final K key, final Binding binding)
+   {
+      Set<Binding> bindings = map.get(key);
+
+      if (bindings == null)
+      {
+         bindings = newBindingSet();
+
+         map.put(key, bindings);
+      }
+
+      bindings.add(binding);
+   }
+
+   private static <K> void removeFromMap(final ConcurrentMap<K, Set<Binding>> map, final K key, final Binding binding)
+   {
+      Set<Binding> bindings = map.get(key);
+
+      if (bindings != null)
+      {
+         bindings.remove(binding);
+
+         if (bindings.isEmpty())
+         {
+            map.remove(key);
+         }
+      }
+   }
+
+   /**
+    * The guards on a single property. Mutated only while holding the lock on the enclosing index.
+    */
+   private final class PropertyIndex
+   {
+      private final ConcurrentMap<Object, Set<Binding>> values = new ConcurrentHashMap<Object, Set<Binding>>();
+
+      // ranges with only a lower bound, keyed by that bound
+      private final ConcurrentNavigableMap<Double, Set<Binding>> lowerBounded = new ConcurrentSkipListMap<Double, Set<Binding>>();
+
+      // ranges with only an upper bound, keyed by that bound
+      private final ConcurrentNavigableMap<Double, Set<Binding>> upperBounded = new ConcurrentSkipListMap<Double, Set<Binding>>();
+
+      // ranges with both bounds
+      private final Map<Binding, FilterGuard> boundedGuards = new HashMap<Binding, FilterGuard>();
+
+      // rebuilt from boundedGuards whenever they change, so lookups don't need the lock
+      private volatile RangeTree bounded;
+
+      void add(final Binding binding, final FilterGuard guard)
+      {
+         if (!guard.isRange())
+         {
+            for (Object key : guard.getKeys())
+            {
+               addToMap(values, key, binding);
+            }
+         }
+         else if (guard.getHigh() == Double.POSITIVE_INFINITY)
+         {
+            addToMap(lowerBounded, guard.getLow(), binding);
+         }
+         else if (guard.getLow() == Double.NEGATIVE_INFINITY)
+         {
+            addToMap(upperBounded, guard.getHigh(), binding);
+         }
+         else
+         {
+            boundedGuards.put(binding, guard);
+
+            rebuildRangeTree();
+         }
+      }
+
+      void remove(final Binding binding, final FilterGuard guard)
+      {
+         if (!guard.isRange())
+         {
+            for (Object key : guard.getKeys())
+            {
+               removeFromMap(values, key, binding);
+            }
+         }
+         else if (guard.getHigh() == Double.POSITIVE_INFINITY)
+         {
+            removeFromMap(lowerBounded, guard.getLow(), binding);
+         }
+         else if (guard.getLow() == Double.NEGATIVE_INFINITY)
+         {
+            removeFromMap(upperBounded, guard.getHigh(), binding);
+         }
+         else
+         {
+            boundedGuards.remove(binding);
+
+            rebuildRangeTree();
+         }
+      }
+
+      private void rebuildRangeTree()
+      {
+         if (boundedGuards.isEmpty())
+         {
+            bounded = null;
+         }
+         else
+         {
+            bounded = new RangeTree(new ArrayList<Map.Entry<Binding, FilterGuard>>(boundedGuards.entrySet()));
+         }
+      }
+
+      boolean isEmpty()
+      {
+         return values.isEmpty() && lowerBounded.isEmpty() && upperBounded.isEmpty() && boundedGuards.isEmpty();
+      }
+
+      Set<SimpleString> collect(final Object key, final Set<SimpleString> routingNames)
+      {
+         Set<SimpleString> names = routingNames;
+
+         Set<Binding> matches = values.get(key);
+
+         if (matches != null)
+         {
+            for (Binding binding : matches)
+            {
+               names = addRoutingName(binding, names);
+            }
+         }
+
+         if (!(key instanceof Double) || ((Double)key).isNaN())
+         {
+            return names;
+         }
+
+         Double value = (Double)key;
+
+         // every range visited on the sorted maps contains the value
+         names = addRoutingNames(lowerBounded.headMap(value, true).values(), names);
+
+         names = addRoutingNames(upperBounded.tailMap(value, true).values(), names);
+
+         RangeTree tree = bounded;
+
+         while (tree != null)
+         {
+            names = tree.collect(value, names);
+
+            tree = value < tree.center ? tree.left : value > tree.center ? tree.right : null;
+         }
+
+         return names;
+      }
+
+      /**
+       * An immutable centered interval tree of the ranges with both bounds. Each node holds the ranges containing its
+       * center, the ranges entirely below or above it are on its children, so a lookup only visits a node per level
+       * and the ranges it returns.
+       */
+      private final class RangeTree
+      {
+         final double center;
+
+         // the bindings of the ranges containing the center, sorted by ascending lower bound
+         final Binding[] byLow;
+
+         final double[] lows;
+
+         // the same bindings, sorted by descending upper bound
+         final Binding[] byHigh;
+
+         final double[] highs;
+
+         final RangeTree left;
+
+         final RangeTree right;
+
+         RangeTree(final List<Map.Entry<Binding, FilterGuard>> ranges)
+         {
+            double[] bounds = new double[ranges.size() * 2];
+
+            for (int i = 0; i < ranges.size(); i++)
+            {
+               bounds[2 * i] = ranges.get(i).getValue().getLow();
+               bounds[2 * i + 1] = ranges.get(i).getValue().getHigh();
+            }
+
+            Arrays.sort(bounds);
+
+            center = bounds[ranges.size()];
+
+            List<Map.Entry<Binding, FilterGuard>> below = new ArrayList<Map.Entry<Binding, FilterGuard>>();
+
+            List<Map.Entry<Binding, FilterGuard>> above = new ArrayList<Map.Entry<Binding, FilterGuard>>();
+
+            List<Map.Entry<Binding, FilterGuard>> overlapping = new ArrayList<Map.Entry<Binding, FilterGuard>>();
+
+            for (Map.Entry<Binding, FilterGuard> range : ranges)
+            {
+               if (range.getValue().getHigh() < center)
+               {
+                  below.add(range);
+               }
+               else if (range.getValue().getLow() > center)
+               {
+                  above.add(range);
+               }
+               else
+               {
+                  overlapping.add(range);
+               }
+            }
+
+            byLow = new Binding[overlapping.size()];
+            lows = new double[overlapping.size()];
+
+            Collections.sort(overlapping, new Comparator<Map.Entry<Binding, FilterGuard>>()
+            {
+               public int compare(final Map.Entry<Binding, FilterGuard> e1, final Map.Entry<Binding, FilterGuard> e2)
+               {
+                  return Double.compare(e1.getValue().getLow(), e2.getValue().getLow());
+               }
+            });
+
+            for (int i = 0; i < byLow.length; i++)
+            {
+               byLow[i] = overlapping.get(i).getKey();
+               lows[i] = overlapping.get(i).getValue().getLow();
+            }
+
+            byHigh = new Binding[overlapping.size()];
+            highs = new double[overlapping.size()];
+
+            Collections.sort(overlapping, new Comparator<Map.Entry<Binding, FilterGuard>>()
+            {
+               public int compare(final Map.Entry<Binding, FilterGuard> e1, final Map.Entry<Binding, FilterGuard> e2)
+               {
+                  return Double.compare(e2.getValue().getHigh(), e1.getValue().getHigh());
+               }
+            });
+
+            for (int i = 0; i < byHigh.length; i++)
+            {
+               byHigh[i] = overlapping.get(i).getKey();
+               highs[i] = overlapping.get(i).getValue().getHigh();
+            }
+
+            // the center is a bound of a range kept on this node, so both children hold fewer ranges
+            left = below.isEmpty() ? null : new RangeTree(below);
+
+            right = above.isEmpty() ? null : new RangeTree(above);
+         }
+
+         /**
+          * Adds the routing names of the ranges of this node containing the value.
+          */
+         Set<SimpleString> collect(final double value, final Set<SimpleString> routingNames)
+         {
+            Set<SimpleString> names = routingNames;
+
+            if (value <= center)
+            {
+               // every range here reaches the center, so it contains the value if it starts before it
+               for (int i = 0; i < lows.length && lows[i] <= value; i++)
+               {
+                  names = addRoutingName(byLow[i], names);
+               }
+            }
+            else
+            {
+               for (int i = 0; i < highs.length && highs[i] >= value; i++)
+               {
+                  names = addRoutingName(byHigh[i], names);
+               }
+            }
+
+            return names;
+         }
+      }
+   }
+}
@@ -19,6 +19,7 @@ import java.nio.ByteBuffer;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
@@ -60,6 +61,8 @@ public final class BindingsImpl implements Bindings
 
    private final List<Binding> exclusiveBindings = new CopyOnWriteArrayList<Binding>();
 
+   private final BindingsFilterIndex filterIndex = new BindingsFilterIndex();
+
    private volatile boolean routeWhenNoConsumers;
 
    private final GroupingHandler groupingHandler;
@@ -114,6 +117,8 @@ public final class BindingsImpl implements Bindings
          }
 
          bindings.add(binding);
+
+         filterIndex.addBinding(binding);
       }
 
       bindingsMap.put(binding.getID(), binding);
@@ -146,6 +151,8 @@ public final class BindingsImpl implements Bindings
                routingNameBindingMap.remove(routingName);
             }
          }
+
+         filterIndex.removeBinding(binding);
       }
 
       bindingsMap.remove(binding.getID());
@@ -283,26 +290,47 @@ public final class BindingsImpl implements Bindings
             {
                HornetQServerLogger.LOGGER.trace("Routing message " + message + " on binding=" + this);
             }
-            for (Map.Entry<SimpleString, List<Binding>> entry : routingNameBindingMap.entrySet())
+            // When some filters are indexed only the routing names with a binding that may accept the message
+            // are visited, instead of matching the filters of every routing name
+            if (filterIndex.isEmpty())
             {
-               SimpleString routingName = entry.getKey();
+               routeToRoutingNames(routingNameBindingMap.keySet(), message, context);
+            }
+            else
+            {
+               routeToRoutingNames(filterIndex.getUnindexedRoutingNames(), message, context);
 
-               List<Binding> bindings = entry.getValue();
+               Set<SimpleString> candidates = filterIndex.getIndexedCandidateRoutingNames(message);
 
-               if (bindings == null)
+               if (candidates != null)
                {
-                  // The value can become null if it's concurrently removed while we're iterating - this is expected
-                  // ConcurrentHashMap behaviour!
-                  continue;
+                  routeToRoutingNames(candidates, message, context);
                }
+            }
+         }
+      }
+   }
 
-               Binding theBinding = getNextBinding(message, routingName, bindings);
+   private void routeToRoutingNames(final Collection<SimpleString> routingNames,
+                                    final ServerMessage message,
+                                    final RoutingContext context) throws Exception
+   {
+      for (SimpleString routingName : routingNames)
+      {
+         List<Binding> bindings = routingNameBindingMap.get(routingName);
 
-               if (theBinding != null)
-               {
-                  theBinding.route(message, context);
-               }
-            }
+         if (bindings == null)
+         {
+            // The value can become null if it's concurrently removed while we're iterating - this is expected
+            // ConcurrentHashMap behaviour!
+            continue;
+         }
+
+         Binding theBinding = getNextBinding(message, routingName, bindings);
+
+         if (theBinding != null)
+         {
+            theBinding.route(message, context);
          }
       }
    }
@@ -49,6 +49,14 @@ public class WildcardAddressManager extends SimpleAddressManager
 
    private final Map<SimpleString, Address> wildCardAddresses = new ConcurrentHashMap<SimpleString, Address>();
 
+   /**
+    * The same addresses held word by word, used to find the addresses to link without comparing a new address to
+    * every existing one. Only accessed while holding the lock on this manager.
+    */
+   private final AddressTrie addressTrie = new AddressTrie();
+
+   private final AddressTrie wildCardTrie = new AddressTrie();
+
    public WildcardAddressManager(final BindingsFactory bindingsFactory)
    {
       super(bindingsFactory);
@@ -151,6 +159,11 @@ public class WildcardAddressManager extends SimpleAddressManager
       super.clear();
       addresses.clear();
       wildCardAddresses.clear();
+      synchronized (this)
+      {
+         addressTrie.clear();
+         wildCardTrie.clear();
+      }
    }
 
    private Address getAddress(final SimpleString address)
@@ -185,28 +198,19 @@ public class WildcardAddressManager extends SimpleAddressManager
          actualAddress = add;
          addAddress(address, actualAddress);
       }
+      Collection<Address> matches;
       if (actualAddress.containsWildCard())
       {
-         for (Address destAdd : addresses.values())
-         {
-            if (destAdd.matches(actualAddress))
-            {
-               destAdd.addLinkedAddress(actualAddress);
-               actualAddress.addLinkedAddress(destAdd);
-            }
-         }
+         matches = addressTrie.getMatchedBy(actualAddress);
       }
       else
       {
-         for (Address destAdd : wildCardAddresses.values())
-         {
-            if (actualAddress.matches(destAdd))
-            {
-               destAdd.addLinkedAddress(actualAddress);
-               actualAddress.addLinkedAddress(destAdd);
-
-            }
-         }
+         matches = wildCardTrie.getWildcardsMatching(actualAddress);
+      }
+      for (Address destAdd : matches)
+      {
+         destAdd.addLinkedAddress(actualAddress);
+         actualAddress.addLinkedAddress(destAdd);
       }
       return actualAddress;
    }
@@ -216,10 +220,12 @@ public class WildcardAddressManager extends SimpleAddressManager
       if (actualAddress.containsWildCard())
       {
          wildCardAddresses.put(address, actualAddress);
+         wildCardTrie.add(actualAddress);
       }
       else
       {
          addresses.put(address, actualAddress);
+         addressTrie.add(actualAddress);
       }
    }
 
@@ -247,11 +253,17 @@ public class WildcardAddressManager extends SimpleAddressManager
    {
       if (add.containsWildCard())
       {
-         wildCardAddresses.remove(add.getAddress());
+         if (wildCardAddresses.remove(add.getAddress()) != null)
+         {
+            wildCardTrie.remove(add);
+         }
       }
       else
       {
-         addresses.remove(add.getAddress());
+         if (addresses.remove(add.getAddress()) != null)
+         {
+            addressTrie.remove(add);
+         }
       }
    }
 }
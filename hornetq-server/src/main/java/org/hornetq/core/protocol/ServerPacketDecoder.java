@@ -45,6 +45,7 @@ import org.hornetq.core.protocol.core.impl.wireformat.BackupReplicationStartFail
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationLiveIsStoppingMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationAddMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationAddTXMessage;
+import org.hornetq.core.protocol.core.impl.wireformat.ReplicationBatchMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationCommitMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationDeleteMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationDeleteTXMessage;
@@ -56,6 +57,8 @@ import org.hornetq.core.protocol.core.impl.wireformat.ReplicationPageWriteMessag
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationPrepareMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationResponseMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationStartSyncMessage;
+import org.hornetq.core.protocol.core.impl.wireformat.ReplicationSyncFileChecksumsMessage;
+import org.hornetq.core.protocol.core.impl.wireformat.ReplicationSyncFileChecksumsResponseMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationSyncFileMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.SessionSendLargeMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.SessionSendMessage;
@@ -175,6 +178,21 @@ public class ServerPacketDecoder extends PacketDecoder
             packet = new ReplicationLiveIsStoppingMessage();
             break;
          }
+         case PacketImpl.REPLICATION_SYNC_FILE_CHECKSUMS:
+         {
+            packet = new ReplicationSyncFileChecksumsMessage();
+            break;
+         }
+         case PacketImpl.REPLICATION_SYNC_FILE_CHECKSUMS_RESPONSE:
+         {
+            packet = new ReplicationSyncFileChecksumsResponseMessage();
+            break;
+         }
+         case PacketImpl.REPLICATION_BATCH:
+         {
+            packet = new ReplicationBatchMessage();
+            break;
+         }
          default:
          {
             packet = super.decode(packetType);
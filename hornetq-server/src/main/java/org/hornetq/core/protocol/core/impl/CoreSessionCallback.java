@@ -113,6 +113,17 @@ public final class CoreSessionCallback implements SessionCallback
       channel.getConnection().getTransportConnection().removeReadyListener(listener);
    }
 
+   public boolean isWritable(final ReadyListener listener)
+   {
+      // large message chunks are separate packets, flow controlled by credits
+      return true;
+   }
+
+   public boolean isReadyForDelivery(final ReadyListener listener)
+   {
+      return true;
+   }
+
    @Override
    public void disconnect(long consumerId, String queueName)
    {
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2013 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.protocol.core.impl.wireformat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hornetq.api.core.HornetQBuffer;
+import org.hornetq.api.core.HornetQBuffers;
+import org.hornetq.core.protocol.ServerPacketDecoder;
+import org.hornetq.core.protocol.core.Packet;
+import org.hornetq.core.protocol.core.impl.PacketImpl;
+import org.hornetq.utils.DataConstants;
+
+/**
+ * A frame carrying several replicated journal operations, which the backup applies in order and answers with a
+ * single {@link ReplicationResponseMessage} for all of them.
+ * <p>
+ * Operations are encoded on the frame as they are added, so whatever they refer to may change once they are.
+ */
+public final class ReplicationBatchMessage extends PacketImpl
+{
+   private int count;
+
+   private HornetQBuffer records;
+
+   private List<Packet> packets;
+
+   public ReplicationBatchMessage()
+   {
+      super(REPLICATION_BATCH);
+   }
+
+   /**
+    * @param initialSize the initial size of the buffer the operations are encoded on
+    */
+   public ReplicationBatchMessage(final int initialSize)
+   {
+      this();
+      records = HornetQBuffers.dynamicBuffer(initialSize);
+   }
+
+   /**
+    * Encodes an operation on the frame, with the same header it would be sent with on its own.
+    */
+   public void addRecord(final PacketImpl packet)
+   {
+      records.writeByte(packet.getType());
+      records.writeLong(packet.getChannelID());
+      packet.encodeRest(records);
+      count++;
+   }
+
+   /**
+    * @return the number of bytes the operations added so far take
+    */
+   public int getRecordsSize()
+   {
+      return records.writerIndex();
+   }
+
+   /**
+    * @return the number of operations on the frame
+    */
+   public int getCount()
+   {
+      return count;
+   }
+
+   /**
+    * @return the operations of a decoded frame, in the order they were added
+    */
+   public List<Packet> getPackets()
+   {
+      return packets;
+   }
+
+   @Override
+   protected int getInitialEncodeSize()
+   {
+      return PACKET_HEADERS_SIZE + DataConstants.SIZE_INT + records.writerIndex();
+   }
+
+   @Override
+   public void encodeRest(final HornetQBuffer buffer)
+   {
+      buffer.writeInt(count);
+      buffer.writeBytes(records, 0, records.writerIndex());
+   }
+
+   @Override
+   public void decodeRest(final HornetQBuffer buffer)
+   {
+      count = buffer.readInt();
+      packets = new ArrayList<Packet>(count);
+      for (int i = 0; i < count; i++)
+      {
+         packets.add(ServerPacketDecoder.INSTANCE.decode(buffer));
+      }
+   }
+
+   @Override
+   public String toString()
+   {
+      return super.toString() + ":" + count + " records";
+   }
+}
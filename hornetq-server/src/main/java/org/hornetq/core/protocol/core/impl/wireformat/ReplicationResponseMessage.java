@@ -13,6 +13,7 @@
 
 package org.hornetq.core.protocol.core.impl.wireformat;
 
+import org.hornetq.api.core.HornetQBuffer;
 import org.hornetq.core.protocol.core.impl.PacketImpl;
 
 /**
@@ -21,8 +22,39 @@ import org.hornetq.core.protocol.core.impl.PacketImpl;
 public final class ReplicationResponseMessage extends PacketImpl
 {
 
+   /**
+    * The number of replicated operations the response is for, more than one for a {@link ReplicationBatchMessage}.
+    */
+   private int count = 1;
+
    public ReplicationResponseMessage()
    {
       super(PacketImpl.REPLICATION_RESPONSE);
    }
+
+   public ReplicationResponseMessage(final int count)
+   {
+      this();
+      this.count = count;
+   }
+
+   @Override
+   public void encodeRest(final HornetQBuffer buffer)
+   {
+      buffer.writeInt(count);
+   }
+
+   @Override
+   public void decodeRest(final HornetQBuffer buffer)
+   {
+      if (buffer.readable())
+      {
+         count = buffer.readInt();
+      }
+   }
+
+   public int getCount()
+   {
+      return count;
+   }
 }
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2013 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.protocol.core.impl.wireformat;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.hornetq.api.core.HornetQBuffer;
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.persistence.impl.journal.JournalStorageManager.JournalContent;
+import org.hornetq.core.protocol.core.impl.PacketImpl;
+
+/**
+ * Asks the backup for the checksums of the blocks of a journal or page file it still holds from a previous
+ * synchronization, so only the blocks it's missing or that changed are sent to it with
+ * {@link ReplicationSyncFileMessage}s.
+ * <p>
+ * The backup answers with a {@link ReplicationSyncFileChecksumsResponseMessage}, after placing its previous copy of
+ * the file where the synchronized file goes.
+ */
+public final class ReplicationSyncFileChecksumsMessage extends PacketImpl
+{
+   /**
+    * The algorithm the checksum of each block is computed with.
+    */
+   public static final String BLOCK_DIGEST_ALGORITHM = "MD5";
+
+   /**
+    * The JournalType, or {@code null} if sync'ing a page.
+    */
+   private JournalContent journalType;
+   private SimpleString pageStoreName;
+   private long fileId;
+   private long fileSize;
+   private int blockSize;
+
+   public ReplicationSyncFileChecksumsMessage()
+   {
+      super(REPLICATION_SYNC_FILE_CHECKSUMS);
+   }
+
+   /**
+    * @param fileSize the size of the file on the live, the backup won't keep any data past it
+    */
+   public ReplicationSyncFileChecksumsMessage(JournalContent content, SimpleString storeName, long id, long fileSize,
+                                              int blockSize)
+   {
+      this();
+      this.journalType = content;
+      this.pageStoreName = storeName;
+      this.fileId = id;
+      this.fileSize = fileSize;
+      this.blockSize = blockSize;
+   }
+
+   public static MessageDigest newBlockDigest()
+   {
+      try
+      {
+         return MessageDigest.getInstance(BLOCK_DIGEST_ALGORITHM);
+      }
+      catch (NoSuchAlgorithmException e)
+      {
+         throw new IllegalStateException(e.getMessage(), e);
+      }
+   }
+
+   @Override
+   public void encodeRest(final HornetQBuffer buffer)
+   {
+      buffer.writeLong(fileId);
+      buffer.writeLong(fileSize);
+      buffer.writeInt(blockSize);
+      if (journalType != null)
+      {
+         buffer.writeByte(journalType.typeByte);
+      }
+      else
+      {
+         buffer.writeByte((byte)-1);
+         buffer.writeSimpleString(pageStoreName);
+      }
+   }
+
+   @Override
+   public void decodeRest(final HornetQBuffer buffer)
+   {
+      fileId = buffer.readLong();
+      fileSize = buffer.readLong();
+      blockSize = buffer.readInt();
+      byte typeByte = buffer.readByte();
+      if (typeByte != -1)
+      {
+         journalType = JournalContent.getType(typeByte);
+      }
+      else
+      {
+         pageStoreName = buffer.readSimpleString();
+      }
+   }
+
+   public JournalContent getJournalContent()
+   {
+      return journalType;
+   }
+
+   public SimpleString getPageStore()
+   {
+      return pageStoreName;
+   }
+
+   public long getId()
+   {
+      return fileId;
+   }
+
+   public long getFileSize()
+   {
+      return fileSize;
+   }
+
+   public int getBlockSize()
+   {
+      return blockSize;
+   }
+
+   @Override
+   public String toString()
+   {
+      return ReplicationSyncFileChecksumsMessage.class.getSimpleName() + "(" +
+               (journalType != null ? journalType : pageStoreName) + ", id=" + fileId + ", size=" + fileSize + ")";
+   }
+}
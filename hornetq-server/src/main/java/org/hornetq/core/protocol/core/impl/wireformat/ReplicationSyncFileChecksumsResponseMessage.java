@@ -0,0 +1,87 @@
+/*
+ * Copyright 2013 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.protocol.core.impl.wireformat;
+
+import org.hornetq.api.core.HornetQBuffer;
+import org.hornetq.core.protocol.core.impl.PacketImpl;
+
+/**
+ * The answer of the backup to a {@link ReplicationSyncFileChecksumsMessage}: the checksums of the blocks it already
+ * holds of the file, from its first block on.
+ * <p>
+ * It stands for the {@link ReplicationResponseMessage} of the request as well.
+ */
+public final class ReplicationSyncFileChecksumsResponseMessage extends PacketImpl
+{
+   private static final byte[][] NO_CHECKSUMS = new byte[0][];
+
+   private boolean previousData;
+   private byte[][] checksums = NO_CHECKSUMS;
+
+   public ReplicationSyncFileChecksumsResponseMessage()
+   {
+      super(REPLICATION_SYNC_FILE_CHECKSUMS_RESPONSE);
+   }
+
+   /**
+    * @param previousData whether the backup holds any data from a previous synchronization, when it doesn't the live
+    *           won't ask for the checksums of further files
+    */
+   public ReplicationSyncFileChecksumsResponseMessage(boolean previousData, byte[][] checksums)
+   {
+      this();
+      this.previousData = previousData;
+      this.checksums = checksums;
+   }
+
+   @Override
+   public void encodeRest(final HornetQBuffer buffer)
+   {
+      buffer.writeBoolean(previousData);
+      buffer.writeInt(checksums.length);
+      for (byte[] checksum : checksums)
+      {
+         buffer.writeInt(checksum.length);
+         buffer.writeBytes(checksum);
+      }
+   }
+
+   @Override
+   public void decodeRest(final HornetQBuffer buffer)
+   {
+      previousData = buffer.readBoolean();
+      checksums = new byte[buffer.readInt()][];
+      for (int i = 0; i < checksums.length; i++)
+      {
+         checksums[i] = new byte[buffer.readInt()];
+         buffer.readBytes(checksums[i]);
+      }
+   }
+
+   public boolean hasPreviousData()
+   {
+      return previousData;
+   }
+
+   public byte[][] getChecksums()
+   {
+      return checksums;
+   }
+
+   @Override
+   public String toString()
+   {
+      return super.toString() + ":" + previousData + ", blocks=" + checksums.length;
+   }
+}
@@ -1,15 +1,18 @@
 package org.hornetq.core.protocol.core.impl.wireformat;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.util.Arrays;
+import java.nio.channels.FileChannel;
 import java.util.EnumSet;
 import java.util.Set;
 
+import io.netty.buffer.ByteBuf;
 import org.hornetq.api.core.HornetQBuffer;
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.core.journal.SequentialFile;
 import org.hornetq.core.persistence.impl.journal.JournalStorageManager.JournalContent;
 import org.hornetq.core.protocol.core.impl.PacketImpl;
+import org.hornetq.utils.DataConstants;
 
 /**
  * Message is used to sync {@link SequentialFile}s to a backup server. The {@link FileType} controls
@@ -28,8 +31,19 @@ public final class ReplicationSyncFileMessage extends PacketImpl
     */
    private long fileId;
    private int dataSize;
+   /**
+    * The file the data is read from when the message is encoded, at {@link #filePosition}.
+    */
+   private FileChannel fileChannel;
+   private long filePosition;
+   /**
+    * The data of a decoded message, a view of the buffer it was received on.
+    */
    private ByteBuffer byteBuffer;
-   private byte[] byteArray;
+   /**
+    * Where the data goes on the file of the backup, or -1 if it's appended to what was sent before.
+    */
+   private long offset = -1;
    private SimpleString pageStoreName;
    private FileType fileType;
    public enum FileType
@@ -64,11 +78,27 @@ public final class ReplicationSyncFileMessage extends PacketImpl
       super(REPLICATION_SYNC_FILE);
    }
 
+   /**
+    * The data is read from the file only when the message is encoded, straight onto the buffer it's sent from, so the
+    * file must be kept open until the message is sent.
+    */
    public ReplicationSyncFileMessage(JournalContent content, SimpleString storeName, long id, int size,
-                                     ByteBuffer buffer)
+                                     FileChannel fileChannel, long position)
+   {
+      this(content, storeName, id, size, fileChannel, position, -1);
+   }
+
+   /**
+    * @param offset where the data goes on the file of the backup, which then keeps what it had everywhere else
+    * @see ReplicationSyncFileChecksumsMessage
+    */
+   public ReplicationSyncFileMessage(JournalContent content, SimpleString storeName, long id, int size,
+                                     FileChannel fileChannel, long position, long offset)
    {
       this();
-      this.byteBuffer = buffer;
+      this.offset = offset;
+      this.fileChannel = fileChannel;
+      this.filePosition = position;
       this.pageStoreName = storeName;
       this.dataSize = size;
       this.fileId = id;
@@ -92,6 +122,22 @@ public final class ReplicationSyncFileMessage extends PacketImpl
       }
    }
 
+   @Override
+   protected int getInitialEncodeSize()
+   {
+      int size = PACKET_HEADERS_SIZE + DataConstants.SIZE_LONG + DataConstants.SIZE_BYTE + DataConstants.SIZE_BYTE +
+         DataConstants.SIZE_INT;
+      if (pageStoreName != null)
+      {
+         size += SimpleString.sizeofString(pageStoreName);
+      }
+      if (offset >= 0)
+      {
+         size += DataConstants.SIZE_LONG;
+      }
+      return size + Math.max(dataSize, 0);
+   }
+
    @Override
    public void encodeRest(final HornetQBuffer buffer)
    {
@@ -123,8 +169,49 @@ public final class ReplicationSyncFileMessage extends PacketImpl
        */
       if (dataSize > 0)
       {
-         buffer.writeBytes(byteBuffer);
+         readData(buffer.byteBuf());
+      }
+      if (offset >= 0)
+      {
+         buffer.writeLong(offset);
+      }
+   }
+
+   /**
+    * Reads the data from the file onto the buffer, without going through the heap when the buffer is direct.
+    */
+   private void readData(final ByteBuf buffer)
+   {
+      buffer.ensureWritable(dataSize);
+
+      int index = buffer.writerIndex();
+
+      ByteBuffer target = buffer.nioBuffer(index, dataSize);
+
+      try
+      {
+         while (target.hasRemaining())
+         {
+            if (fileChannel.read(target, filePosition + target.position()) < 0)
+            {
+               throw new IllegalStateException("Unexpected end of file reading " + dataSize + " bytes at " +
+                  filePosition + " for " + this);
+            }
+         }
       }
+      catch (IOException e)
+      {
+         throw new IllegalStateException(e.getMessage(), e);
+      }
+
+      if (buffer.nioBufferCount() != 1)
+      {
+         // the view was a copy, as the buffer isn't made of a single region
+         target.flip();
+         buffer.setBytes(index, target);
+      }
+
+      buffer.writerIndex(index + dataSize);
    }
 
    @Override
@@ -151,11 +238,16 @@ public final class ReplicationSyncFileMessage extends PacketImpl
             break;
          }
       }
-      int size = buffer.readInt();
-      if (size > 0)
+      dataSize = buffer.readInt();
+      if (dataSize > 0)
       {
-         byteArray = new byte[size];
-         buffer.readBytes(byteArray);
+         // the received buffer isn't reused, so the data is written to the file straight from it
+         byteBuffer = buffer.byteBuf().nioBuffer(buffer.readerIndex(), dataSize);
+         buffer.skipBytes(dataSize);
+      }
+      if (buffer.readable())
+      {
+         offset = buffer.readLong();
       }
    }
 
@@ -169,9 +261,20 @@ public final class ReplicationSyncFileMessage extends PacketImpl
       return journalType;
    }
 
-   public byte[] getData()
+   /**
+    * @return the data of a decoded message, or {@code null} if the message closes the file
+    */
+   public ByteBuffer getData()
+   {
+      return byteBuffer;
+   }
+
+   /**
+    * @return where the data goes on the file, or -1 if it's appended to what was sent before
+    */
+   public long getOffset()
    {
-      return byteArray;
+      return offset;
    }
 
    public FileType getFileType()
@@ -189,10 +292,10 @@ public final class ReplicationSyncFileMessage extends PacketImpl
    {
       final int prime = 31;
       int result = super.hashCode();
-      result = prime * result + Arrays.hashCode(byteArray);
       result = prime * result + ((byteBuffer == null) ? 0 : byteBuffer.hashCode());
       result = prime * result + dataSize;
       result = prime * result + (int)(fileId ^ (fileId >>> 32));
+      result = prime * result + (int)(offset ^ (offset >>> 32));
       result = prime * result + ((fileType == null) ? 0 : fileType.hashCode());
       result = prime * result + ((journalType == null) ? 0 : journalType.hashCode());
       result = prime * result + ((pageStoreName == null) ? 0 : pageStoreName.hashCode());
@@ -215,10 +318,6 @@ public final class ReplicationSyncFileMessage extends PacketImpl
          return false;
       }
       ReplicationSyncFileMessage other = (ReplicationSyncFileMessage)obj;
-      if (!Arrays.equals(byteArray, other.byteArray))
-      {
-         return false;
-      }
       if (byteBuffer == null)
       {
          if (other.byteBuffer != null)
@@ -238,6 +337,10 @@ public final class ReplicationSyncFileMessage extends PacketImpl
       {
          return false;
       }
+      if (offset != other.offset)
+      {
+         return false;
+      }
       if (fileType != other.fileType)
       {
          return false;
@@ -264,6 +367,7 @@ public final class ReplicationSyncFileMessage extends PacketImpl
    public String toString()
    {
       return ReplicationSyncFileMessage.class.getSimpleName() + "(" + fileType +
-               (journalType != null ? ", " + journalType : "") + ", id=" + fileId + ")";
+               (journalType != null ? ", " + journalType : "") + ", id=" + fileId +
+               (offset >= 0 ? ", offset=" + offset : "") + ")";
    }
 }
@@ -23,6 +23,7 @@ import org.hornetq.api.core.HornetQBuffer;
 import org.hornetq.api.core.HornetQBuffers;
 import org.hornetq.api.core.HornetQInterruptedException;
 import org.hornetq.api.core.TransportConfiguration;
+import org.hornetq.core.buffers.impl.ChannelBufferWrapper;
 import org.hornetq.core.security.HornetQPrincipal;
 import org.hornetq.core.server.HornetQServerLogger;
 import org.hornetq.spi.core.remoting.BufferHandler;
@@ -142,6 +143,9 @@ public class InVMConnection implements Connection
 
       copied.setIndex(buffer.readerIndex(), buffer.writerIndex());
 
+      // the buffer is released once written, as it would be by Netty
+      ChannelBufferWrapper.releaseWritten(buffer);
+
       try
       {
          executor.execute(new Runnable()
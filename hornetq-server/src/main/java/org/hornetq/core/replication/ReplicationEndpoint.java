@@ -13,11 +13,15 @@
 
 package org.hornetq.core.replication;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Map;
@@ -54,6 +58,7 @@ import org.hornetq.core.protocol.core.impl.wireformat.BackupReplicationStartFail
 import org.hornetq.core.protocol.core.impl.wireformat.HornetQExceptionMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationAddMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationAddTXMessage;
+import org.hornetq.core.protocol.core.impl.wireformat.ReplicationBatchMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationCommitMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationDeleteMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationDeleteTXMessage;
@@ -67,11 +72,14 @@ import org.hornetq.core.protocol.core.impl.wireformat.ReplicationPrepareMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationResponseMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationStartSyncMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationStartSyncMessage.SyncDataType;
+import org.hornetq.core.protocol.core.impl.wireformat.ReplicationSyncFileChecksumsMessage;
+import org.hornetq.core.protocol.core.impl.wireformat.ReplicationSyncFileChecksumsResponseMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationSyncFileMessage;
 import org.hornetq.core.replication.ReplicationManager.ADD_OPERATION_TYPE;
 import org.hornetq.core.server.HornetQComponent;
 import org.hornetq.core.server.HornetQMessageBundle;
 import org.hornetq.core.server.HornetQServerLogger;
+import org.hornetq.core.server.JournalType;
 import org.hornetq.core.server.ServerMessage;
 import org.hornetq.core.server.impl.HornetQServerImpl;
 import org.hornetq.core.server.impl.QuorumManager;
@@ -164,29 +172,9 @@ public final class ReplicationEndpoint implements ChannelHandler, HornetQCompone
                return;
             }
 
-            if (type == PacketImpl.REPLICATION_APPEND)
+            if (type == PacketImpl.REPLICATION_BATCH)
             {
-               handleAppendAddRecord((ReplicationAddMessage) packet);
-            }
-            else if (type == PacketImpl.REPLICATION_APPEND_TX)
-            {
-               handleAppendAddTXRecord((ReplicationAddTXMessage) packet);
-            }
-            else if (type == PacketImpl.REPLICATION_DELETE)
-            {
-               handleAppendDelete((ReplicationDeleteMessage) packet);
-            }
-            else if (type == PacketImpl.REPLICATION_DELETE_TX)
-            {
-               handleAppendDeleteTX((ReplicationDeleteTXMessage) packet);
-            }
-            else if (type == PacketImpl.REPLICATION_PREPARE)
-            {
-               handlePrepare((ReplicationPrepareMessage) packet);
-            }
-            else if (type == PacketImpl.REPLICATION_COMMIT_ROLLBACK)
-            {
-               handleCommitRollback((ReplicationCommitMessage) packet);
+               response = handleBatch((ReplicationBatchMessage) packet);
             }
             else if (type == PacketImpl.REPLICATION_PAGE_WRITE)
             {
@@ -216,6 +204,10 @@ public final class ReplicationEndpoint implements ChannelHandler, HornetQCompone
             {
                handleReplicationSynchronization((ReplicationSyncFileMessage) packet);
             }
+            else if (type == PacketImpl.REPLICATION_SYNC_FILE_CHECKSUMS)
+            {
+               response = handleSyncFileChecksums((ReplicationSyncFileChecksumsMessage) packet);
+            }
          else if (type == PacketImpl.REPLICATION_SCHEDULED_FAILOVER)
          {
             handleLiveStopping((ReplicationLiveIsStoppingMessage)packet);
@@ -224,7 +216,7 @@ public final class ReplicationEndpoint implements ChannelHandler, HornetQCompone
          {
             handleFatalError((BackupReplicationStartFailedMessage)packet);
          }
-         else
+         else if (!handleJournalOperation(packet))
          {
             HornetQServerLogger.LOGGER.invalidPacketForReplication(packet);
          }
@@ -243,6 +235,52 @@ public final class ReplicationEndpoint implements ChannelHandler, HornetQCompone
       channel.send(response);
    }
 
+   /**
+    * Applies the journal operations of a frame in the order they were gathered on it.
+    * @return a single response for all of them
+    */
+   private ReplicationResponseMessage handleBatch(final ReplicationBatchMessage batch) throws Exception
+   {
+      for (Packet packet : batch.getPackets())
+      {
+         if (!handleJournalOperation(packet))
+         {
+            HornetQServerLogger.LOGGER.invalidPacketForReplication(packet);
+         }
+      }
+      return new ReplicationResponseMessage(batch.getCount());
+   }
+
+   /**
+    * @return {@code false} if the packet isn't a journal operation
+    */
+   private boolean handleJournalOperation(final Packet packet) throws Exception
+   {
+      switch (packet.getType())
+      {
+         case PacketImpl.REPLICATION_APPEND:
+            handleAppendAddRecord((ReplicationAddMessage)packet);
+            return true;
+         case PacketImpl.REPLICATION_APPEND_TX:
+            handleAppendAddTXRecord((ReplicationAddTXMessage)packet);
+            return true;
+         case PacketImpl.REPLICATION_DELETE:
+            handleAppendDelete((ReplicationDeleteMessage)packet);
+            return true;
+         case PacketImpl.REPLICATION_DELETE_TX:
+            handleAppendDeleteTX((ReplicationDeleteTXMessage)packet);
+            return true;
+         case PacketImpl.REPLICATION_PREPARE:
+            handlePrepare((ReplicationPrepareMessage)packet);
+            return true;
+         case PacketImpl.REPLICATION_COMMIT_ROLLBACK:
+            handleCommitRollback((ReplicationCommitMessage)packet);
+            return true;
+         default:
+            return false;
+      }
+   }
+
    /**
     * @param packet
     */
@@ -291,7 +329,9 @@ public final class ReplicationEndpoint implements ChannelHandler, HornetQCompone
                                                                     config.getJournalBufferSize_NIO(),
                                                                     server.getScheduledPool(),
                                                                     server.getExecutorFactory(),
-                                                                    config.isJournalSyncNonTransactional(), criticalErrorListener),
+                                                                    config.isJournalSyncNonTransactional(),
+                                                                    config.getJournalType() == JournalType.MAPPED,
+                                                                    criticalErrorListener),
                                           server.getAddressSettingsRepository());
 
       pageManager.start();
@@ -490,7 +530,7 @@ public final class ReplicationEndpoint implements ChannelHandler, HornetQCompone
    private synchronized void handleReplicationSynchronization(ReplicationSyncFileMessage msg) throws Exception
    {
       Long id = Long.valueOf(msg.getId());
-      byte[] data = msg.getData();
+      ByteBuffer data = msg.getData();
       SequentialFile channel1;
       switch (msg.getFileType())
       {
@@ -521,7 +561,17 @@ public final class ReplicationEndpoint implements ChannelHandler, HornetQCompone
                channel2.close();
                return;
             }
-            channel2.write(ByteBuffer.wrap(data));
+            if (msg.getOffset() >= 0)
+            {
+               while (data.hasRemaining())
+               {
+                  channel2.write(data, msg.getOffset() + data.position());
+               }
+            }
+            else
+            {
+               channel2.write(data);
+            }
             return;
          }
          default:
@@ -538,7 +588,191 @@ public final class ReplicationEndpoint implements ChannelHandler, HornetQCompone
       {
          channel1.open(1, false);
       }
-      channel1.writeDirect(ByteBuffer.wrap(data), true);
+      if (msg.getOffset() >= 0)
+      {
+         channel1.position(msg.getOffset());
+      }
+      channel1.writeDirect(data, true);
+   }
+
+   /**
+    * Places the copy of a journal or page file the backup holds from a previous synchronization where the file is
+    * synchronized to, answering with the checksums of its blocks so the live only sends the blocks that differ.
+    * <p>
+    * Previous copies are looked for on the data directories moved away when the backup was started.
+    * @param msg
+    */
+   private synchronized ReplicationSyncFileChecksumsResponseMessage
+            handleSyncFileChecksums(final ReplicationSyncFileChecksumsMessage msg)
+   {
+      Configuration config = server.getConfiguration();
+      try
+      {
+         if (msg.getJournalContent() != null)
+         {
+            String directory =
+                     msg.getJournalContent() == JournalContent.BINDINGS ? config.getBindingsDirectory()
+                                                                        : config.getJournalDirectory();
+            File movedDirectory = getMovedDirectory(directory);
+            if (movedDirectory == null)
+            {
+               return new ReplicationSyncFileChecksumsResponseMessage(false, new byte[0][]);
+            }
+            JournalSyncFile journalSyncFile = filesReservedForSync.get(msg.getJournalContent()).get(msg.getId());
+            File previous = new File(movedDirectory, journalSyncFile.getJavaFile().getName());
+            return new ReplicationSyncFileChecksumsResponseMessage(true,
+                                                                   copyPreviousData(previous, msg,
+                                                                                    journalSyncFile.getChannel(),
+                                                                                    null));
+         }
+
+         File movedDirectory = getMovedDirectory(config.getPagingDirectory());
+         if (movedDirectory == null)
+         {
+            return new ReplicationSyncFileChecksumsResponseMessage(false, new byte[0][]);
+         }
+         SequentialFile pageFile = getPage(msg.getPageStore(), (int)msg.getId()).getFile();
+         File storeDirectory = getPageStoreDirectory(movedDirectory, msg.getPageStore());
+         if (storeDirectory == null)
+         {
+            return new ReplicationSyncFileChecksumsResponseMessage(true, new byte[0][]);
+         }
+         File previous = new File(storeDirectory, pageFile.getFileName());
+         return new ReplicationSyncFileChecksumsResponseMessage(true, copyPreviousData(previous, msg, null, pageFile));
+      }
+      catch (Exception e)
+      {
+         // the live then sends every block, overwriting whatever was copied
+         HornetQServerLogger.LOGGER.errorHandlingReplicationPacket(e, msg);
+         return new ReplicationSyncFileChecksumsResponseMessage(true, new byte[0][]);
+      }
+   }
+
+   /**
+    * Copies the previous data of a file up to the size the file has on the live, either to the channel of a journal
+    * file or to a page file.
+    * @return the checksums of the blocks copied
+    */
+   private static byte[][] copyPreviousData(final File previous, final ReplicationSyncFileChecksumsMessage msg,
+                                            final FileChannel journalTarget, final SequentialFile pageTarget)
+      throws Exception
+   {
+      if (!previous.isFile())
+      {
+         return new byte[0][];
+      }
+
+      FileInputStream fis = new FileInputStream(previous);
+      try
+      {
+         FileChannel source = fis.getChannel();
+         final int blockSize = msg.getBlockSize();
+         final long size = Math.min(source.size(), msg.getFileSize());
+         final byte[][] checksums = new byte[(int)((size + blockSize - 1) / blockSize)][];
+         final MessageDigest digest = ReplicationSyncFileChecksumsMessage.newBlockDigest();
+         final ByteBuffer block = ByteBuffer.allocate(blockSize);
+         for (int i = 0; i < checksums.length; i++)
+         {
+            block.clear();
+            block.limit((int)Math.min(size - (long)i * blockSize, blockSize));
+            while (block.hasRemaining() && source.read(block) >= 0)
+            {
+               // reads the whole block
+            }
+            block.flip();
+            digest.update(block);
+            checksums[i] = digest.digest();
+            block.rewind();
+            if (journalTarget != null)
+            {
+               while (block.hasRemaining())
+               {
+                  journalTarget.write(block);
+               }
+            }
+            else
+            {
+               pageTarget.writeDirect(block, false);
+            }
+         }
+         return checksums;
+      }
+      finally
+      {
+         fis.close();
+      }
+   }
+
+   /**
+    * @return the latest copy of the given data directory moved away when the backup was started, or {@code null}
+    */
+   private static File getMovedDirectory(final String directory)
+   {
+      File dir = new File(directory).getAbsoluteFile();
+      File parent = dir.getParentFile();
+      String[] names = parent == null ? null : parent.list();
+      if (names == null)
+      {
+         return null;
+      }
+
+      File latest = null;
+      int latestSuffix = 0;
+      for (String name : names)
+      {
+         if (name.length() > dir.getName().length() && name.startsWith(dir.getName()))
+         {
+            try
+            {
+               int suffix = Integer.parseInt(name.substring(dir.getName().length()));
+               if (suffix > latestSuffix)
+               {
+                  latestSuffix = suffix;
+                  latest = new File(parent, name);
+               }
+            }
+            catch (NumberFormatException e)
+            {
+               // not a moved copy of the directory
+            }
+         }
+      }
+      return latest;
+   }
+
+   /**
+    * @return the folder of the given paging directory holding the pages of the given address, or {@code null}
+    */
+   private static File getPageStoreDirectory(final File pagingDirectory, final SimpleString storeName)
+      throws IOException
+   {
+      File[] folders = pagingDirectory.listFiles();
+      if (folders == null)
+      {
+         return null;
+      }
+
+      for (File folder : folders)
+      {
+         File addressFile = new File(folder, PagingStoreFactoryNIO.ADDRESS_FILE);
+         if (!addressFile.isFile())
+         {
+            continue;
+         }
+         BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(addressFile)));
+         try
+         {
+            if (storeName.toString().equals(reader.readLine()))
+            {
+               return folder;
+            }
+         }
+         finally
+         {
+            reader.close();
+         }
+      }
+      return null;
    }
 
    /**
@@ -899,6 +1133,11 @@ public final class ReplicationEndpoint implements ChannelHandler, HornetQCompone
          seqFile.close();
       }
 
+      File getJavaFile()
+      {
+         return file;
+      }
+
       synchronized FileChannel getChannel() throws Exception
       {
          if (channel == null)
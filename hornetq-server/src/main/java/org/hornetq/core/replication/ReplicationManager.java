@@ -16,7 +16,9 @@ package org.hornetq.core.replication;
 import java.io.FileInputStream;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
@@ -24,7 +26,11 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import org.hornetq.api.core.HornetQBuffer;
 import org.hornetq.api.core.HornetQException;
@@ -47,6 +53,7 @@ import org.hornetq.core.protocol.core.impl.ChannelImpl.CHANNEL_ID;
 import org.hornetq.core.protocol.core.impl.PacketImpl;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationAddMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationAddTXMessage;
+import org.hornetq.core.protocol.core.impl.wireformat.ReplicationBatchMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationCommitMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationDeleteMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationDeleteTXMessage;
@@ -58,7 +65,10 @@ import org.hornetq.core.protocol.core.impl.wireformat.ReplicationLiveIsStoppingM
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationPageEventMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationPageWriteMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationPrepareMessage;
+import org.hornetq.core.protocol.core.impl.wireformat.ReplicationResponseMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationStartSyncMessage;
+import org.hornetq.core.protocol.core.impl.wireformat.ReplicationSyncFileChecksumsMessage;
+import org.hornetq.core.protocol.core.impl.wireformat.ReplicationSyncFileChecksumsResponseMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationSyncFileMessage;
 import org.hornetq.core.server.HornetQComponent;
 import org.hornetq.core.server.HornetQServerLogger;
@@ -102,6 +112,21 @@ public final class ReplicationManager implements HornetQComponent
       }
    }
 
+   /**
+    * The bytes of a file sent by each message during synchronization.
+    */
+   private static final int SYNC_FILE_CHUNK_SIZE = 1 << 17;
+
+   /**
+    * How often a thread waiting for the checksums of a file checks whether replication was stopped.
+    */
+   private static final long SYNC_CHECKSUMS_POLL_MILLIS = 1000;
+
+   /**
+    * How long to wait for the checksums of a file before sending it whole. A backup of an older version never answers.
+    */
+   private static final long SYNC_CHECKSUMS_TIMEOUT_MILLIS = 30000;
+
    private final ResponseHandler responseHandler = new ResponseHandler();
 
    private final Channel replicatingChannel;
@@ -124,14 +149,67 @@ public final class ReplicationManager implements HornetQComponent
 
    private volatile boolean inSync = true;
 
+   /**
+    * Whether the backup may hold journal and page files from a previous synchronization, in which case only the blocks
+    * that differ from them are sent.
+    */
+   private volatile boolean backupHasPreviousData = true;
+
+   private final BlockingQueue<ReplicationSyncFileChecksumsResponseMessage> checksumResponses =
+            new LinkedBlockingQueue<ReplicationSyncFileChecksumsResponseMessage>();
+
+   /**
+    * The size of the frames journal operations are gathered on, or 0 if they are replicated on their own.
+    */
+   private final int batchSize;
+
+   private final long batchTimeoutNanos;
+
+   private final ScheduledExecutorService scheduledExecutor;
+
+   // guarded by replicationLock
+   private ReplicationBatchMessage pendingBatch;
+
+   // guarded by replicationLock
+   private boolean batchFlushScheduled;
+
+   private final Runnable batchFlusher = new Runnable()
+   {
+      public void run()
+      {
+         synchronized (replicationLock)
+         {
+            batchFlushScheduled = false;
+            if (enabled)
+            {
+               flushBatch();
+            }
+         }
+      }
+   };
+
    /**
     * @param remotingConnection
     */
    public ReplicationManager(CoreRemotingConnection remotingConnection, final ExecutorFactory executorFactory)
+   {
+      this(remotingConnection, executorFactory, null, 0, 0);
+   }
+
+   /**
+    * @param batchSize the size of the frames journal operations are gathered on, 0 to replicate them on their own
+    * @param batchTimeout the maximum time in nanoseconds an operation waits on a frame for more operations
+    */
+   public ReplicationManager(CoreRemotingConnection remotingConnection, final ExecutorFactory executorFactory,
+                             final ScheduledExecutorService scheduledExecutor, final int batchSize,
+                             final int batchTimeout)
    {
       this.executorFactory = executorFactory;
       this.replicatingChannel = remotingConnection.getChannel(CHANNEL_ID.REPLICATION.id, -1);
       this.remotingConnection = remotingConnection;
+      this.scheduledExecutor = scheduledExecutor;
+      this.batchSize = batchSize;
+      this.batchTimeoutNanos = batchTimeout;
    }
 
    public void appendUpdateRecord(final byte journalID, final ADD_OPERATION_TYPE operation, final long id,
@@ -140,7 +218,7 @@ public final class ReplicationManager implements HornetQComponent
    {
       if (enabled)
       {
-         sendReplicatePacket(new ReplicationAddMessage(journalID, operation, id, recordType, record));
+         sendJournalOperation(new ReplicationAddMessage(journalID, operation, id, recordType, record), true);
       }
    }
 
@@ -148,7 +226,7 @@ public final class ReplicationManager implements HornetQComponent
    {
       if (enabled)
       {
-         sendReplicatePacket(new ReplicationDeleteMessage(journalID, id));
+         sendJournalOperation(new ReplicationDeleteMessage(journalID, id), true);
       }
    }
 
@@ -161,7 +239,7 @@ public final class ReplicationManager implements HornetQComponent
    {
       if (enabled)
       {
-         sendReplicatePacket(new ReplicationAddTXMessage(journalID, operation, txID, id, recordType, record));
+         sendJournalOperation(new ReplicationAddTXMessage(journalID, operation, txID, id, recordType, record), true);
       }
    }
 
@@ -170,7 +248,7 @@ public final class ReplicationManager implements HornetQComponent
    {
       if (enabled)
       {
-         sendReplicatePacket(new ReplicationCommitMessage(journalID, false, txID), lineUp);
+         sendJournalOperation(new ReplicationCommitMessage(journalID, false, txID), lineUp);
       }
    }
 
@@ -181,7 +259,7 @@ public final class ReplicationManager implements HornetQComponent
    {
       if (enabled)
       {
-         sendReplicatePacket(new ReplicationDeleteTXMessage(journalID, txID, id, record));
+         sendJournalOperation(new ReplicationDeleteTXMessage(journalID, txID, id, record), true);
       }
    }
 
@@ -189,7 +267,7 @@ public final class ReplicationManager implements HornetQComponent
    {
       if (enabled)
       {
-         sendReplicatePacket(new ReplicationDeleteTXMessage(journalID, txID, id, NullEncoding.instance));
+         sendJournalOperation(new ReplicationDeleteTXMessage(journalID, txID, id, NullEncoding.instance), true);
       }
    }
 
@@ -200,7 +278,7 @@ public final class ReplicationManager implements HornetQComponent
    {
       if (enabled)
       {
-         sendReplicatePacket(new ReplicationPrepareMessage(journalID, txID, transactionData));
+         sendJournalOperation(new ReplicationPrepareMessage(journalID, txID, transactionData), true);
       }
    }
 
@@ -208,7 +286,7 @@ public final class ReplicationManager implements HornetQComponent
    {
       if (enabled)
       {
-         sendReplicatePacket(new ReplicationCommitMessage(journalID, true, txID));
+         sendJournalOperation(new ReplicationCommitMessage(journalID, true, txID), true);
       }
    }
 
@@ -297,6 +375,7 @@ public final class ReplicationManager implements HornetQComponent
       synchronized (replicationLock)
       {
          enabled = false;
+         pendingBatch = null;
          if (replicatingChannel != null)
          {
             replicatingChannel.close();
@@ -362,6 +441,19 @@ public final class ReplicationManager implements HornetQComponent
    }
 
    private OperationContext sendReplicatePacket(final Packet packet, boolean lineUp)
+   {
+      return sendReplicatePacket(packet, lineUp, false);
+   }
+
+   private OperationContext sendJournalOperation(final PacketImpl packet, boolean lineUp)
+   {
+      return sendReplicatePacket(packet, lineUp, batchSize > 0);
+   }
+
+   /**
+    * @param batch whether the packet is a journal operation to be gathered on a frame with others
+    */
+   private OperationContext sendReplicatePacket(final Packet packet, boolean lineUp, boolean batch)
    {
       if (!enabled)
          return null;
@@ -378,7 +470,16 @@ public final class ReplicationManager implements HornetQComponent
          if (enabled)
          {
             pendingTokens.add(repliToken);
-            replicatingChannel.send(packet);
+            if (batch)
+            {
+               addToBatch((PacketImpl)packet);
+            }
+            else
+            {
+               // packets that aren't gathered keep their order with the ones that are
+               flushBatch();
+               replicatingChannel.send(packet);
+            }
          }
          else
          {
@@ -397,6 +498,43 @@ public final class ReplicationManager implements HornetQComponent
       return repliToken;
    }
 
+   /**
+    * Adds a journal operation to the pending frame, which is sent once it's full or when the batch timeout expires.
+    * Must be called holding the replicationLock, as the tokens of the operations must be queued in the same order
+    * their frames are sent.
+    */
+   private void addToBatch(final PacketImpl packet)
+   {
+      if (pendingBatch == null)
+      {
+         pendingBatch = new ReplicationBatchMessage(batchSize);
+      }
+      pendingBatch.addRecord(packet);
+
+      if (pendingBatch.getRecordsSize() >= batchSize)
+      {
+         flushBatch();
+      }
+      else if (!batchFlushScheduled)
+      {
+         batchFlushScheduled = true;
+         scheduledExecutor.schedule(batchFlusher, batchTimeoutNanos, TimeUnit.NANOSECONDS);
+      }
+   }
+
+   /**
+    * Sends the pending frame, if any. Must be called holding the replicationLock.
+    */
+   private void flushBatch()
+   {
+      if (pendingBatch != null)
+      {
+         ReplicationBatchMessage batch = pendingBatch;
+         pendingBatch = null;
+         replicatingChannel.send(batch);
+      }
+   }
+
    /**
     * @throws IllegalStateException By default, all replicated packets generate a replicated
     *            response. If your packets are triggering this exception, it may be because the
@@ -451,6 +589,15 @@ public final class ReplicationManager implements HornetQComponent
       {
          if (packet.getType() == PacketImpl.REPLICATION_RESPONSE)
          {
+            // a single response answers all the operations of a frame
+            for (int i = ((ReplicationResponseMessage)packet).getCount(); i > 0; i--)
+            {
+               replicated();
+            }
+         }
+         else if (packet.getType() == PacketImpl.REPLICATION_SYNC_FILE_CHECKSUMS_RESPONSE)
+         {
+            checksumResponses.add((ReplicationSyncFileChecksumsResponseMessage)packet);
             replicated();
          }
       }
@@ -555,30 +702,24 @@ public final class ReplicationManager implements HornetQComponent
             final FileChannel channel = fis.getChannel();
             try
             {
-               final ByteBuffer buffer = ByteBuffer.allocate(1 << 17);
+               if ((content != null || pageStore != null) && backupHasPreviousData &&
+                  sendChangedBlocks(content, pageStore, id, channel))
+               {
+                  return;
+               }
+
+               long position = 0;
                while (true)
                {
-                  buffer.clear();
-                  final int bytesRead = channel.read(buffer);
-                  int toSend = bytesRead;
-                  if (bytesRead > 0)
-                  {
-                     if (bytesRead >= maxBytesToSend)
-                     {
-                        toSend = (int)maxBytesToSend;
-                        maxBytesToSend = 0;
-                     }
-                     else
-                     {
-                        maxBytesToSend = maxBytesToSend - bytesRead;
-                     }
-                     buffer.limit(toSend);
-                  }
-                  buffer.rewind();
-
-                  // sending -1 or 0 bytes will close the file at the backup
-                  sendReplicatePacket(new ReplicationSyncFileMessage(content, pageStore, id, toSend, buffer));
-                  if (bytesRead == -1 || bytesRead == 0 || maxBytesToSend == 0)
+                  // the file is read by each message as it's encoded, onto the buffer it's sent from
+                  final long available = Math.max(channel.size() - position, 0);
+                  final int toSend = (int)Math.min(Math.min(available, SYNC_FILE_CHUNK_SIZE), maxBytesToSend);
+                  maxBytesToSend -= toSend;
+
+                  // sending 0 bytes will close the file at the backup
+                  sendReplicatePacket(new ReplicationSyncFileMessage(content, pageStore, id, toSend, channel, position));
+                  position += toSend;
+                  if (toSend == 0 || maxBytesToSend == 0)
                      break;
                }
             }
@@ -599,6 +740,93 @@ public final class ReplicationManager implements HornetQComponent
       }
    }
 
+   /**
+    * Sends the blocks of a journal or page file the backup doesn't hold yet, comparing their checksums with the ones of
+    * the blocks of its copy of the file from a previous synchronization.
+    * @return {@code false} if the backup holds no data from a previous synchronization, so the whole file must be sent
+    */
+   private boolean sendChangedBlocks(JournalContent content, SimpleString pageStore, final long id,
+                                     final FileChannel channel) throws Exception
+   {
+      final long size = channel.size();
+
+      ReplicationSyncFileChecksumsResponseMessage response =
+               requestChecksums(new ReplicationSyncFileChecksumsMessage(content, pageStore, id, size,
+                                                                        SYNC_FILE_CHUNK_SIZE));
+      if (response == null)
+      {
+         if (!enabled)
+         {
+            // replication was stopped
+            return true;
+         }
+         HornetQServerLogger.LOGGER.syncChecksumsTimedOut(content != null ? content : pageStore, id,
+                                                          SYNC_CHECKSUMS_TIMEOUT_MILLIS);
+         // don't wait again for the other files
+         backupHasPreviousData = false;
+         return false;
+      }
+      if (!response.hasPreviousData())
+      {
+         backupHasPreviousData = false;
+         return false;
+      }
+
+      final byte[][] backupChecksums = response.getChecksums();
+      final MessageDigest digest = ReplicationSyncFileChecksumsMessage.newBlockDigest();
+      final ByteBuffer block = ByteBuffer.allocate(SYNC_FILE_CHUNK_SIZE);
+      int index = 0;
+      for (long position = 0; position < size; position += SYNC_FILE_CHUNK_SIZE, index++)
+      {
+         final int toSend = (int)Math.min(size - position, SYNC_FILE_CHUNK_SIZE);
+         if (index < backupChecksums.length)
+         {
+            block.clear();
+            block.limit(toSend);
+            while (block.hasRemaining() && channel.read(block, position + block.position()) >= 0)
+            {
+               // reads the whole block
+            }
+            block.flip();
+            digest.update(block);
+            if (Arrays.equals(digest.digest(), backupChecksums[index]))
+            {
+               continue;
+            }
+         }
+         sendReplicatePacket(new ReplicationSyncFileMessage(content, pageStore, id, toSend, channel, position,
+                                                            position));
+      }
+
+      // sending 0 bytes will close the file at the backup
+      sendReplicatePacket(new ReplicationSyncFileMessage(content, pageStore, id, 0, channel, size, size));
+      return true;
+   }
+
+   /**
+    * @return the checksums of the backup, or {@code null} if replication was stopped or the backup didn't answer within
+    *         {@link #SYNC_CHECKSUMS_TIMEOUT_MILLIS}
+    */
+   private ReplicationSyncFileChecksumsResponseMessage requestChecksums(ReplicationSyncFileChecksumsMessage request)
+      throws InterruptedException
+   {
+      checksumResponses.clear();
+      sendReplicatePacket(request);
+      final long deadline = System.currentTimeMillis() + SYNC_CHECKSUMS_TIMEOUT_MILLIS;
+      long toWait = SYNC_CHECKSUMS_TIMEOUT_MILLIS;
+      while (enabled && toWait > 0)
+      {
+         ReplicationSyncFileChecksumsResponseMessage response =
+                  checksumResponses.poll(Math.min(toWait, SYNC_CHECKSUMS_POLL_MILLIS), TimeUnit.MILLISECONDS);
+         if (response != null)
+         {
+            return response;
+         }
+         toWait = deadline - System.currentTimeMillis();
+      }
+      return null;
+   }
+
    /**
     * Reserve the following fileIDs in the backup server.
     * @param datafiles
@@ -142,6 +142,10 @@ public interface HornetQServerLogger extends BasicLogger
    @Message(id = 221013, value = "Using NIO Journal", format = Message.Format.MESSAGE_FORMAT)
    void journalUseNIO();
 
+   @LogMessage(level = Logger.Level.INFO)
+   @Message(id = 221041, value = "Using memory mapped Journal", format = Message.Format.MESSAGE_FORMAT)
+   void journalUseMapped();
+
    @LogMessage(level = Logger.Level.INFO)
    @Message(id = 221014, value = "{0}% loaded", format = Message.Format.MESSAGE_FORMAT)
    void percentLoaded(Long percent);
@@ -1015,6 +1019,11 @@ public interface HornetQServerLogger extends BasicLogger
          format = Message.Format.MESSAGE_FORMAT)
    void warnDisconnectOldClient(String queueName);
 
+   @LogMessage(level = Logger.Level.WARN)
+   @Message(id = 222175, value = "Backup did not send the checksums of {0} file {1} within {2} ms, sending whole files instead",
+         format = Message.Format.MESSAGE_FORMAT)
+   void syncChecksumsTimedOut(Object content, Object file, long timeout);
+
    @LogMessage(level = Logger.Level.ERROR)
    @Message(id = 224000, value = "Failure in initialisation", format = Message.Format.MESSAGE_FORMAT)
    void initializationError(@Cause Throwable e);
@@ -46,6 +46,12 @@ public interface ServerConsumer extends Consumer
 
    void individualAcknowledge(boolean autoCommitAcks, Transaction tx, long messageID) throws Exception;
 
+   /**
+    * Acknowledges each of the messages, on a single transaction when there's no transaction or acks are auto
+    * committed.
+    */
+   void individualAcknowledge(boolean autoCommitAcks, Transaction tx, long[] messageIDs) throws Exception;
+
    void individualCancel(final long messageID, boolean failed) throws Exception;
 
    void forceDelivery(long sequence);
@@ -53,6 +53,8 @@ public interface ServerSession
 
    void individualAcknowledge(long consumerID, long messageID) throws Exception;
 
+   void individualAcknowledge(long consumerID, long[] messageIDs) throws Exception;
+
    void individualCancel(final long consumerID, final long messageID, boolean failed) throws Exception;
 
    void expire(long consumerID, long messageID) throws Exception;
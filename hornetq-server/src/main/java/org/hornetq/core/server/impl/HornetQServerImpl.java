@@ -1405,6 +1405,7 @@ public class HornetQServerImpl implements HornetQServer
          scheduledPool,
          executorFactory,
          configuration.isJournalSyncNonTransactional(),
+         configuration.getJournalType() == JournalType.MAPPED,
          shutdownOnCriticalIO),
       addressSettingsRepository);
    }
@@ -1481,10 +1482,13 @@ public class HornetQServerImpl implements HornetQServer
       }
 
       executorFactory = new OrderedExecutorFactory(threadPool);
-      scheduledPool = new ScheduledThreadPoolExecutor(configuration.getScheduledThreadPoolMaxSize(),
+      ScheduledThreadPoolExecutor scheduledThreadPool = new ScheduledThreadPoolExecutor(configuration.getScheduledThreadPoolMaxSize(),
          new HornetQThreadFactory("HornetQ-scheduled-threads",
             false,
             getThisClassLoader()));
+      // timers that get replaced before they are due, such as the scheduled delivery ones, are dropped straight away
+      scheduledThreadPool.setRemoveOnCancelPolicy(true);
+      scheduledPool = scheduledThreadPool;
 
       managementService = new ManagementServiceImpl(mbeanServer, configuration);
 
@@ -2871,7 +2875,9 @@ public class HornetQServerImpl implements HornetQServer
          ReplicationFailureListener listener = new ReplicationFailureListener();
          rc.addCloseListener(listener);
          rc.addFailureListener(listener);
-         replicationManager = new ReplicationManager(rc, executorFactory);
+         replicationManager =
+                  new ReplicationManager(rc, executorFactory, scheduledPool, configuration.getReplicationBatchSize(),
+                                         configuration.getReplicationBatchTimeout());
          replicationManager.start();
          Thread t = new Thread(new Runnable()
          {
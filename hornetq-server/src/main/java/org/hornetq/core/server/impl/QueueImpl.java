@@ -61,6 +61,7 @@ import org.hornetq.core.transaction.impl.BindingsTransactionImpl;
 import org.hornetq.core.transaction.impl.TransactionImpl;
 import org.hornetq.utils.ConcurrentHashSet;
 import org.hornetq.utils.FutureLatch;
+import org.hornetq.utils.IDSupplier;
 import org.hornetq.utils.LinkedListIterator;
 import org.hornetq.utils.PriorityLinkedList;
 import org.hornetq.utils.PriorityLinkedListImpl;
@@ -99,6 +100,14 @@ public class QueueImpl implements Queue
 
    public static final int DEFAULT_FLUSH_LIMIT = 500;
 
+   private static final IDSupplier<MessageReference> MESSAGE_ID_SUPPLIER = new IDSupplier<MessageReference>()
+   {
+      public long getID(final MessageReference ref)
+      {
+         return ref.getMessage().getMessageID();
+      }
+   };
+
    private final long id;
 
    private final SimpleString name;
@@ -125,7 +134,10 @@ public class QueueImpl implements Queue
    private final ConcurrentLinkedQueue<MessageReference> intermediateMessageReferences = new ConcurrentLinkedQueue<MessageReference>();
 
    // This is where messages are stored
-   private final PriorityLinkedList<MessageReference> messageReferences = new PriorityLinkedListImpl<MessageReference>(QueueImpl.NUM_PRIORITIES);
+   private final PriorityLinkedList<MessageReference> messageReferences;
+
+   // Only with selector partitions enabled, the partitions of messageReferences for each distinct consumer filter
+   private final Map<Object, SelectorPartition> selectorPartitions;
 
    // The quantity of pagedReferences on messageReferences priority list
    private final AtomicInteger pagedReferences = new AtomicInteger(0);
@@ -312,9 +324,20 @@ public class QueueImpl implements Queue
 
       scheduledDeliveryHandler = new ScheduledDeliveryHandlerImpl(scheduledExecutor);
 
+      boolean messageIDIndex = false;
+
+      boolean partitioned = false;
+
+      boolean compact = false;
+
       if (addressSettingsRepository != null)
       {
-         expiryAddress = addressSettingsRepository.getMatch(address.toString()).getExpiryAddress();
+         AddressSettings settings = addressSettingsRepository.getMatch(address.toString());
+         expiryAddress = settings.getExpiryAddress();
+         messageIDIndex = settings.isMessageIDIndex();
+         // last value queues replace the message of a reference in place, which would leave the partitions stale
+         partitioned = settings.isSelectorPartitions() && !(this instanceof LastValueQueue);
+         compact = settings.isCompactQueueStorage();
          addressSettingsRepositoryListener = new AddressSettingsRepositoryListener();
          addressSettingsRepository.registerListener(addressSettingsRepositoryListener);
       }
@@ -323,6 +346,15 @@ public class QueueImpl implements Queue
          expiryAddress = null;
       }
 
+      // The index and the storage are fixed for the lifetime of the queue, changing the settings will only affect new
+      // queues.
+      // The partitions need the index to take the references they deliver off messageReferences
+      IDSupplier<MessageReference> idSupplier = messageIDIndex || partitioned ? MESSAGE_ID_SUPPLIER : null;
+
+      messageReferences = new PriorityLinkedListImpl<MessageReference>(QueueImpl.NUM_PRIORITIES, idSupplier, compact);
+
+      selectorPartitions = partitioned ? new HashMap<Object, SelectorPartition>() : null;
+
       if (pageSubscription != null)
       {
          pageSubscription.setQueue(this);
@@ -664,7 +696,7 @@ public class QueueImpl implements Queue
 
          cancelRedistributor();
 
-         consumerList.add(new ConsumerHolder(consumer));
+         consumerList.add(new ConsumerHolder(consumer, acquirePartition(consumer.getFilter())));
 
          consumerSet.add(consumer);
 
@@ -687,6 +719,7 @@ public class QueueImpl implements Queue
                   if (holder.iter != null) {
                       holder.iter.close();
                   }
+                  releasePartition(holder.partition);
                   consumerList.remove(holder);
                   break;
               }
@@ -845,44 +878,24 @@ public class QueueImpl implements Queue
 
    public synchronized MessageReference removeReferenceWithID(final long id1) throws Exception
    {
-      LinkedListIterator<MessageReference> iterator = iterator();
+      MessageReference removed = actOnReference(id1, true, null);
 
-      try
+      if (removed == null)
       {
-
-         MessageReference removed = null;
-
-         while (iterator.hasNext())
-         {
-            MessageReference ref = iterator.next();
-
-            if (ref.getMessage().getMessageID() == id1)
-            {
-               iterator.remove();
-               refRemoved(ref);
-
-               removed = ref;
-
-               break;
-            }
-         }
-
-         if (removed == null)
-         {
-            // Look in scheduled deliveries
-            removed = scheduledDeliveryHandler.removeReferenceWithID(id1);
-         }
-
-         return removed;
-      }
-      finally
-      {
-         iterator.close();
+         // Look in scheduled deliveries
+         removed = scheduledDeliveryHandler.removeReferenceWithID(id1);
       }
+
+      return removed;
    }
 
    public synchronized MessageReference getReference(final long id1)
    {
+      if (messageReferences.isIndexed())
+      {
+         return messageReferences.getWithID(id1);
+      }
+
       LinkedListIterator<MessageReference> iterator = iterator();
 
       try
@@ -1302,36 +1315,21 @@ public class QueueImpl implements Queue
 
    public synchronized boolean deleteReference(final long messageID) throws Exception
    {
-      boolean deleted = false;
-
-      Transaction tx = new TransactionImpl(storageManager);
+      final Transaction tx = new TransactionImpl(storageManager);
 
-      LinkedListIterator<MessageReference> iter = iterator();
-      try
+      boolean deleted = actOnReference(messageID, false, new ReferenceAction()
       {
-
-         while (iter.hasNext())
+         @Override
+         public void actMessage(MessageReference ref) throws Exception
          {
-            MessageReference ref = iter.next();
-            if (ref.getMessage().getMessageID() == messageID)
-            {
-               incDelivering();
-               acknowledge(tx, ref);
-               iter.remove();
-               refRemoved(ref);
-               deleted = true;
-               break;
-            }
+            incDelivering();
+            acknowledge(tx, ref);
          }
+      }) != null;
 
-         tx.commit();
+      tx.commit();
 
-         return deleted;
-      }
-      finally
-      {
-         iter.close();
-      }
+      return deleted;
    }
 
    public void deleteQueue() throws Exception
@@ -1390,28 +1388,15 @@ public class QueueImpl implements Queue
          return false;
       }
 
-      LinkedListIterator<MessageReference> iter = iterator();
-      try
+      return actOnReference(messageID, false, new ReferenceAction()
       {
-
-         while (iter.hasNext())
+         @Override
+         public void actMessage(MessageReference ref) throws Exception
          {
-            MessageReference ref = iter.next();
-            if (ref.getMessage().getMessageID() == messageID)
-            {
-               incDelivering();
-               expire(ref);
-               iter.remove();
-               refRemoved(ref);
-               return true;
-            }
+            incDelivering();
+            expire(ref);
          }
-         return false;
-      }
-      finally
-      {
-         iter.close();
-      }
+      }) != null;
    }
 
    public synchronized int expireReferences(final Filter filter) throws Exception
@@ -1536,28 +1521,15 @@ public class QueueImpl implements Queue
 
    public synchronized boolean sendMessageToDeadLetterAddress(final long messageID) throws Exception
    {
-      LinkedListIterator<MessageReference> iter = iterator();
-
-      try
+      return actOnReference(messageID, false, new ReferenceAction()
       {
-         while (iter.hasNext())
+         @Override
+         public void actMessage(MessageReference ref) throws Exception
          {
-            MessageReference ref = iter.next();
-            if (ref.getMessage().getMessageID() == messageID)
-            {
-               incDelivering();
-               sendToDeadLetterAddress(ref);
-               iter.remove();
-               refRemoved(ref);
-               return true;
-            }
+            incDelivering();
+            sendToDeadLetterAddress(ref);
          }
-         return false;
-      }
-      finally
-      {
-         iter.close();
-      }
+      }) != null;
    }
 
    public synchronized int sendMessagesToDeadLetterAddress(Filter filter) throws Exception
@@ -1596,36 +1568,23 @@ public class QueueImpl implements Queue
                                              final SimpleString toAddress,
                                              final boolean rejectDuplicate) throws Exception
    {
-      LinkedListIterator<MessageReference> iter = iterator();
-
-      try
+      return actOnReference(messageID, true, new ReferenceAction()
       {
-         while (iter.hasNext())
+         @Override
+         public void actMessage(MessageReference ref) throws Exception
          {
-            MessageReference ref = iter.next();
-            if (ref.getMessage().getMessageID() == messageID)
+            incDelivering();
+            try
             {
-               iter.remove();
-               refRemoved(ref);
-               incDelivering();
-               try
-               {
-                  move(toAddress, ref, false, rejectDuplicate);
-               }
-               catch (Exception e)
-               {
-                  decDelivering();
-                  throw e;
-               }
-               return true;
+               move(toAddress, ref, false, rejectDuplicate);
+            }
+            catch (Exception e)
+            {
+               decDelivering();
+               throw e;
             }
          }
-         return false;
-      }
-      finally
-      {
-         iter.close();
-      }
+      }) != null;
    }
 
    public int moveReferences(final Filter filter, final SimpleString toAddress) throws Exception
@@ -1672,25 +1631,74 @@ public class QueueImpl implements Queue
 
    public synchronized boolean changeReferencePriority(final long messageID, final byte newPriority) throws Exception
    {
+      return actOnReference(messageID, true, new ReferenceAction()
+      {
+         @Override
+         public void actMessage(MessageReference ref) throws Exception
+         {
+            ref.getMessage().setPriority(newPriority);
+            addTail(ref, false);
+         }
+      }) != null;
+   }
+
+   /**
+    * Finds the reference for a message ID and takes it off the queue, applying the action either before or after
+    * the removal. The message-ID index is used when the queue has one, otherwise the queue is scanned.
+    * The caller must hold the queue lock.
+    *
+    * @param action may be null
+    * @return the reference found, or null if no message with that ID is on the queue
+    */
+   private MessageReference actOnReference(final long messageID,
+                                           final boolean removeFirst,
+                                           final ReferenceAction action) throws Exception
+   {
+      if (messageReferences.isIndexed())
+      {
+         MessageReference ref = messageReferences.getWithID(messageID);
+
+         if (ref != null)
+         {
+            if (!removeFirst && action != null)
+            {
+               action.actMessage(ref);
+            }
+            messageReferences.removeWithID(messageID);
+            refRemoved(ref);
+            if (removeFirst && action != null)
+            {
+               action.actMessage(ref);
+            }
+         }
+
+         return ref;
+      }
+
       LinkedListIterator<MessageReference> iter = iterator();
 
       try
       {
-
          while (iter.hasNext())
          {
             MessageReference ref = iter.next();
             if (ref.getMessage().getMessageID() == messageID)
             {
+               if (!removeFirst && action != null)
+               {
+                  action.actMessage(ref);
+               }
                iter.remove();
                refRemoved(ref);
-               ref.getMessage().setPriority(newPriority);
-               addTail(ref, false);
-               return true;
+               if (removeFirst && action != null)
+               {
+                  action.actMessage(ref);
+               }
+               return ref;
             }
          }
 
-         return false;
+         return null;
       }
       finally
       {
@@ -1816,6 +1824,7 @@ public class QueueImpl implements Queue
    {
       refAdded(ref);
       messageReferences.addTail(ref, ref.getMessage().getPriority());
+      addToPartitions(ref, false);
    }
 
    /**
@@ -1829,6 +1838,130 @@ public class QueueImpl implements Queue
       queueMemorySize.addAndGet(ref.getMessageMemoryEstimate());
       refAdded(ref);
       messageReferences.addHead(ref, ref.getMessage().getPriority());
+      addToPartitions(ref, true);
+   }
+
+   /**
+    * Returns the partition of the references matching a consumer filter, creating it from the references on the queue
+    * if no other consumer uses the same filter. The caller must hold the queue lock.
+    *
+    * @return null if the queue has no selector partitions or the consumer has no filter
+    */
+   private SelectorPartition acquirePartition(final Filter consumerFilter)
+   {
+      if (selectorPartitions == null || consumerFilter == null)
+      {
+         return null;
+      }
+
+      Object key = consumerFilter.getFilterString() != null ? consumerFilter.getFilterString() : consumerFilter;
+
+      SelectorPartition partition = selectorPartitions.get(key);
+
+      if (partition == null)
+      {
+         partition = new SelectorPartition(key, consumerFilter);
+
+         LinkedListIterator<MessageReference> iter = messageReferences.iterator();
+         try
+         {
+            while (iter.hasNext())
+            {
+               partition.add(iter.next(), false);
+            }
+         }
+         finally
+         {
+            iter.close();
+         }
+
+         selectorPartitions.put(key, partition);
+      }
+
+      partition.consumers++;
+
+      return partition;
+   }
+
+   private void releasePartition(final SelectorPartition partition)
+   {
+      if (partition != null && --partition.consumers == 0)
+      {
+         selectorPartitions.remove(partition.key);
+      }
+   }
+
+   private void addToPartitions(final MessageReference ref, final boolean head)
+   {
+      if (selectorPartitions != null)
+      {
+         for (SelectorPartition partition : selectorPartitions.values())
+         {
+            partition.add(ref, head);
+         }
+      }
+   }
+
+   /**
+    * Takes a reference leaving the queue off the partitions holding it, so they don't keep it until they come across
+    * it nor hold it twice if it is cancelled back to the queue.
+    */
+   private void removeFromPartitions(final MessageReference ref)
+   {
+      if (selectorPartitions != null)
+      {
+         for (SelectorPartition partition : selectorPartitions.values())
+         {
+            partition.remove(ref);
+         }
+      }
+   }
+
+   /**
+    * References taken off the queue are taken off the partitions as well, this only catches the ones removed on a path
+    * that doesn't go through {@link #refRemoved(MessageReference)}.
+    */
+   private boolean isOnQueue(final MessageReference ref)
+   {
+      return messageReferences.getWithID(ref.getMessage().getMessageID()) == ref;
+   }
+
+   /**
+    * @return the next reference for the consumer, from its partition if it has one, or null if there's none
+    */
+   private MessageReference nextReference(final ConsumerHolder holder)
+   {
+      if (holder.iter == null)
+      {
+         holder.iter = holder.partition == null ? messageReferences.iterator() : holder.partition.references.iterator();
+      }
+
+      while (holder.iter.hasNext())
+      {
+         MessageReference ref = holder.iter.next();
+
+         if (holder.partition == null || isOnQueue(ref))
+         {
+            return ref;
+         }
+
+         holder.iter.remove();
+      }
+
+      return null;
+   }
+
+   /**
+    * Takes the reference returned by {@link #nextReference(ConsumerHolder)} off the queue.
+    */
+   private void removeReference(final ConsumerHolder holder, final MessageReference ref)
+   {
+      holder.iter.remove();
+
+      if (holder.partition != null)
+      {
+         messageReferences.removeWithID(ref.getMessage().getMessageID());
+      }
    }
 
    private synchronized void doInternalPoll()
@@ -1937,19 +2070,8 @@ public class QueueImpl implements Queue
 
             Consumer consumer = holder.consumer;
 
-            if (holder.iter == null)
-            {
-               holder.iter = messageReferences.iterator();
-            }
+            ref = nextReference(holder);
 
-            if (holder.iter.hasNext())
-            {
-               ref = holder.iter.next();
-            }
-            else
-            {
-               ref = null;
-            }
             if (ref == null)
             {
                noDelivery++;
@@ -1962,7 +2084,7 @@ public class QueueImpl implements Queue
                   {
                      HornetQServerLogger.LOGGER.trace("Reference " + ref + " being expired");
                   }
-                  holder.iter.remove();
+                  removeReference(holder, ref);
 
                   refRemoved(ref);
 
@@ -2001,7 +2123,7 @@ public class QueueImpl implements Queue
 
                   handledconsumer = consumer;
 
-                  holder.iter.remove();
+                  removeReference(holder, ref);
 
                   refRemoved(ref);
 
@@ -2074,6 +2196,7 @@ public class QueueImpl implements Queue
     */
    protected void refRemoved(MessageReference ref)
    {
+      removeFromPartitions(ref);
       queueMemorySize.addAndGet(-ref.getMessageMemoryEstimate());
       if (ref.isPaged())
       {
@@ -2636,16 +2759,105 @@ public class QueueImpl implements Queue
    private static class ConsumerHolder
    {
       ConsumerHolder(final Consumer consumer)
+      {
+         this(consumer, null);
+      }
+
+      ConsumerHolder(final Consumer consumer, final SelectorPartition partition)
       {
          this.consumer = consumer;
+         this.partition = partition;
       }
 
       final Consumer consumer;
 
+      final SelectorPartition partition;
+
       LinkedListIterator<MessageReference> iter;
 
    }
 
+   /**
+    * The references of the queue matching a consumer filter, in the same order as on messageReferences. The filter is
+    * evaluated once when a reference is added to the queue, rather than each time a consumer with the filter skips
+    * over it.
+    */
+   private final class SelectorPartition
+   {
+      // above this many references more than on the queue, the references no longer on the queue are dropped, only
+      // references removed without going through refRemoved can be left behind
+      private static final int PURGE_THRESHOLD = 1000;
+
+      final Object key;
+
+      final Filter filter;
+
+      final PriorityLinkedList<MessageReference> references = new PriorityLinkedListImpl<MessageReference>(QueueImpl.NUM_PRIORITIES,
+                                                                                                           MESSAGE_ID_SUPPLIER);
+
+      int consumers;
+
+      SelectorPartition(final Object key, final Filter filter)
+      {
+         this.key = key;
+         this.filter = filter;
+      }
+
+      void add(final MessageReference ref, final boolean head)
+      {
+         if (!filter.match(ref.getMessage()) || contains(ref))
+         {
+            return;
+         }
+
+         if (head)
+         {
+            references.addHead(ref, ref.getMessage().getPriority());
+         }
+         else
+         {
+            references.addTail(ref, ref.getMessage().getPriority());
+         }
+
+         if (references.size() > messageReferences.size() + PURGE_THRESHOLD)
+         {
+            purge();
+         }
+      }
+
+      void remove(final MessageReference ref)
+      {
+         if (contains(ref))
+         {
+            references.removeWithID(ref.getMessage().getMessageID());
+         }
+      }
+
+      private boolean contains(final MessageReference ref)
+      {
+         return references.getWithID(ref.getMessage().getMessageID()) == ref;
+      }
+
+      private void purge()
+      {
+         LinkedListIterator<MessageReference> iter = references.iterator();
+         try
+         {
+            while (iter.hasNext())
+            {
+               if (!isOnQueue(iter.next()))
+               {
+                  iter.remove();
+               }
+            }
+         }
+         finally
+         {
+            iter.close();
+         }
+      }
+   }
+
    private final class RefsOperation extends TransactionOperationAbstract
    {
       List<MessageReference> refsToAck = new ArrayList<MessageReference>();
@@ -2845,11 +3057,22 @@ public class QueueImpl implements Queue
       public abstract void actMessage(Transaction tx, MessageReference ref) throws Exception;
    }
 
+   /**
+    * What {@link #actOnReference} does with the reference it finds for a message ID
+    */
+   interface ReferenceAction
+   {
+      void actMessage(MessageReference ref) throws Exception;
+   }
+
    /* For external use we need to use a synchronized version since the list is not thread safe */
    private class SynchronizedIterator implements LinkedListIterator<MessageReference>
    {
       private final LinkedListIterator<MessageReference> iter;
 
+      // the reference a remove takes off the queue, to take it off the partitions as well
+      private MessageReference last;
+
       SynchronizedIterator(LinkedListIterator<MessageReference> iter)
       {
          this.iter = iter;
@@ -2883,7 +3106,8 @@ public class QueueImpl implements Queue
       {
          synchronized (QueueImpl.this)
          {
-            return iter.next();
+            last = iter.next();
+            return last;
          }
       }
 
@@ -2892,6 +3116,10 @@ public class QueueImpl implements Queue
          synchronized (QueueImpl.this)
          {
             iter.remove();
+            if (last != null)
+            {
+               removeFromPartitions(last);
+            }
          }
       }
    }
@@ -15,10 +15,14 @@ package org.hornetq.core.server.impl;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 import org.hornetq.core.filter.Filter;
@@ -29,6 +33,11 @@ import org.hornetq.core.server.ScheduledDeliveryHandler;
 
 /**
  * Handles scheduling deliveries to a queue at the correct time.
+ * <p>
+ * The scheduled references are kept sorted by delivery time, with an index by message ID, and a single task on the
+ * scheduled executor fires when the earliest of them is due. References due at the same time are delivered in the
+ * order they would have had if they had been added to the queue straight away: references scheduled for the tail in
+ * the order they were scheduled, after the ones scheduled for the head, most recent first.
  *
  * @author <a href="mailto:tim.fox@jboss.com">Tim Fox</a>
  * @author <a href="ataylor@redhat.com">Andy Taylor</a>
@@ -43,7 +52,16 @@ public class ScheduledDeliveryHandlerImpl implements ScheduledDeliveryHandler
 
    private final Object lockDelivery = new Object();
 
-   private final LinkedList<MessageReference> scheduledReferences = new LinkedList<MessageReference>();
+   // sorted in the order the references will be delivered, guarded by itself
+   private final NavigableSet<ScheduledReference> scheduledReferences = new TreeSet<ScheduledReference>();
+
+   // the same message ID can be scheduled more than once, its references are kept in the order they were scheduled
+   private final Map<Long, LinkedList<ScheduledReference>> referencesByID = new HashMap<Long, LinkedList<ScheduledReference>>();
+
+   private long sequence;
+
+   // the task that will deliver the earliest reference, guarded by scheduledReferences
+   private ScheduledDeliveryRunnable runnable;
 
    public ScheduledDeliveryHandlerImpl(final ScheduledExecutorService scheduledExecutor)
    {
@@ -61,24 +79,23 @@ public class ScheduledDeliveryHandlerImpl implements ScheduledDeliveryHandler
             HornetQServerLogger.LOGGER.trace("Scheduling delivery for " + ref + " to occur at " + deliveryTime);
          }
 
-         ScheduledDeliveryRunnable runnable = new ScheduledDeliveryRunnable(ref.getScheduledDeliveryTime());
-
          synchronized (scheduledReferences)
          {
-            if (tail)
-            {
-               // We do the opposite what the parameter says as the Runnable will always add it to the head
-               scheduledReferences.addFirst(ref);
-            }
-            else
+            sequence++;
+
+            // references added to the head go before the ones added to the tail, the most recent first
+            ScheduledReference scheduled = new ScheduledReference(ref, deliveryTime, tail ? sequence : -sequence);
+
+            scheduledReferences.add(scheduled);
+
+            index(scheduled);
+
+            if (runnable == null || deliveryTime < runnable.scheduledTime)
             {
-               // We do the opposite what the parameter says as the Runnable will always add it to the head
-               scheduledReferences.add(ref);
+               scheduleDelivery(deliveryTime);
             }
          }
 
-         scheduleDelivery(runnable, deliveryTime);
-
          return true;
       }
       return false;
@@ -98,7 +115,10 @@ public class ScheduledDeliveryHandlerImpl implements ScheduledDeliveryHandler
 
       synchronized (scheduledReferences)
       {
-         refs.addAll(scheduledReferences);
+         for (ScheduledReference scheduled : scheduledReferences)
+         {
+            refs.add(scheduled.ref);
+         }
       }
       return refs;
    }
@@ -109,15 +129,16 @@ public class ScheduledDeliveryHandlerImpl implements ScheduledDeliveryHandler
 
       synchronized (scheduledReferences)
       {
-         Iterator<MessageReference> iter = scheduledReferences.iterator();
+         Iterator<ScheduledReference> iter = scheduledReferences.iterator();
 
          while (iter.hasNext())
          {
-            MessageReference ref = iter.next();
-            if (filter == null || filter.match(ref.getMessage()))
+            ScheduledReference scheduled = iter.next();
+            if (filter == null || filter.match(scheduled.ref.getMessage()))
             {
                iter.remove();
-               refs.add(ref);
+               unindex(scheduled);
+               refs.add(scheduled.ref);
             }
          }
       }
@@ -128,23 +149,89 @@ public class ScheduledDeliveryHandlerImpl implements ScheduledDeliveryHandler
    {
       synchronized (scheduledReferences)
       {
-         Iterator<MessageReference> iter = scheduledReferences.iterator();
-         while (iter.hasNext())
+         LinkedList<ScheduledReference> references = referencesByID.get(id);
+
+         if (references != null)
          {
-            MessageReference ref = iter.next();
-            if (ref.getMessage().getMessageID() == id)
+            ScheduledReference scheduled = references.removeFirst();
+
+            if (references.isEmpty())
             {
-               iter.remove();
-               return ref;
+               referencesByID.remove(id);
             }
+
+            scheduledReferences.remove(scheduled);
+
+            return scheduled.ref;
          }
       }
 
       return null;
    }
 
-   private void scheduleDelivery(final ScheduledDeliveryRunnable runnable, final long deliveryTime)
+   /**
+    * Must be called holding the lock on scheduledReferences.
+    */
+   private void index(final ScheduledReference scheduled)
    {
+      Long id = scheduled.ref.getMessage().getMessageID();
+
+      LinkedList<ScheduledReference> references = referencesByID.get(id);
+
+      if (references == null)
+      {
+         references = new LinkedList<ScheduledReference>();
+
+         referencesByID.put(id, references);
+      }
+
+      references.add(scheduled);
+   }
+
+   /**
+    * Takes off the index this very reference, not the others scheduled with the same message ID. Must be called
+    * holding the lock on scheduledReferences.
+    */
+   private void unindex(final ScheduledReference scheduled)
+   {
+      Long id = scheduled.ref.getMessage().getMessageID();
+
+      LinkedList<ScheduledReference> references = referencesByID.get(id);
+
+      if (references == null)
+      {
+         return;
+      }
+
+      Iterator<ScheduledReference> iter = references.iterator();
+
+      while (iter.hasNext())
+      {
+         if (iter.next() == scheduled)
+         {
+            iter.remove();
+
+            break;
+         }
+      }
+
+      if (references.isEmpty())
+      {
+         referencesByID.remove(id);
+      }
+   }
+
+   /**
+    * Replaces the pending task with one firing at <code>deliveryTime</code>. Must be called holding the lock on
+    * scheduledReferences.
+    */
+   private void scheduleDelivery(final long deliveryTime)
+   {
+      if (runnable != null)
+      {
+         runnable.future.cancel(false);
+      }
+
       long now = System.currentTimeMillis();
 
       long delay = deliveryTime - now;
@@ -154,13 +241,46 @@ public class ScheduledDeliveryHandlerImpl implements ScheduledDeliveryHandler
          delay = 0;
       }
 
-      scheduledExecutor.schedule(runnable, delay, TimeUnit.MILLISECONDS);
+      runnable = new ScheduledDeliveryRunnable(deliveryTime);
+
+      runnable.future = scheduledExecutor.schedule(runnable, delay, TimeUnit.MILLISECONDS);
+   }
+
+   private static final class ScheduledReference implements Comparable<ScheduledReference>
+   {
+      private final MessageReference ref;
+
+      private final long deliveryTime;
+
+      private final long sequence;
+
+      ScheduledReference(final MessageReference ref, final long deliveryTime, final long sequence)
+      {
+         this.ref = ref;
+         this.deliveryTime = deliveryTime;
+         this.sequence = sequence;
+      }
+
+      public int compareTo(final ScheduledReference other)
+      {
+         if (deliveryTime != other.deliveryTime)
+         {
+            return deliveryTime < other.deliveryTime ? -1 : 1;
+         }
+         if (sequence != other.sequence)
+         {
+            return sequence < other.sequence ? -1 : 1;
+         }
+         return 0;
+      }
    }
 
    private class ScheduledDeliveryRunnable implements Runnable
    {
       private final long scheduledTime;
 
+      private volatile ScheduledFuture<?> future;
+
       public ScheduledDeliveryRunnable(final long scheduledTime)
       {
          this.scheduledTime = scheduledTime;
@@ -168,32 +288,44 @@ public class ScheduledDeliveryHandlerImpl implements ScheduledDeliveryHandler
 
       public void run()
       {
-         HashMap<Queue, LinkedList<MessageReference>> refs = new HashMap<Queue, LinkedList<MessageReference>>();
+         Map<Queue, LinkedList<MessageReference>> refs = new LinkedHashMap<Queue, LinkedList<MessageReference>>();
 
          synchronized (lockDelivery)
          {
             synchronized (scheduledReferences)
             {
+               long deliverUntil = Math.max(scheduledTime, System.currentTimeMillis());
 
-               Iterator<MessageReference> iter = scheduledReferences.iterator();
-               while (iter.hasNext())
+               while (!scheduledReferences.isEmpty() && scheduledReferences.first().deliveryTime <= deliverUntil)
                {
-                  MessageReference reference = iter.next();
-                  if (reference.getScheduledDeliveryTime() <= this.scheduledTime)
-                  {
-                     iter.remove();
+                  ScheduledReference scheduled = scheduledReferences.pollFirst();
 
-                     reference.setScheduledDeliveryTime(0);
+                  unindex(scheduled);
 
-                     LinkedList<MessageReference> references = refs.get(reference.getQueue());
+                  MessageReference reference = scheduled.ref;
 
-                     if (references == null)
-                     {
-                        references = new LinkedList<MessageReference>();
-                        refs.put(reference.getQueue(), references);
-                     }
+                  reference.setScheduledDeliveryTime(0);
 
-                     references.add(reference);
+                  LinkedList<MessageReference> references = refs.get(reference.getQueue());
+
+                  if (references == null)
+                  {
+                     references = new LinkedList<MessageReference>();
+                     refs.put(reference.getQueue(), references);
+                  }
+
+                  // the queue adds each reference to its head, so the first to deliver has to be added last
+                  references.addFirst(reference);
+               }
+
+               // a task replaced by an earlier one may still run if it was cancelled too late
+               if (runnable == this)
+               {
+                  runnable = null;
+
+                  if (!scheduledReferences.isEmpty())
+                  {
+                     scheduleDelivery(scheduledReferences.first().deliveryTime);
                   }
                }
             }
@@ -302,6 +302,13 @@ public class ServerConsumerImpl implements ServerConsumer, ReadyListener
             }
             return HandleStatus.BUSY;
          }
+
+         if (!callback.isReadyForDelivery(this))
+         {
+            // readyForWriting will prompt the delivery again
+            return HandleStatus.BUSY;
+         }
+
          final ServerMessage message = ref.getMessage();
 
          if (filter != null && !filter.match(message))
@@ -798,6 +805,87 @@ public class ServerConsumerImpl implements ServerConsumer, ReadyListener
       }
    }
 
+   public void individualAcknowledge(final boolean autoCommitAcks, Transaction tx, final long[] messageIDs) throws Exception
+   {
+      if (browseOnly)
+      {
+         return;
+      }
+
+      if (messageIDs.length == 1)
+      {
+         // there is nothing to share a transaction with
+         individualAcknowledge(autoCommitAcks, tx, messageIDs[0]);
+         return;
+      }
+
+      // The whole batch goes on one transaction, so it takes a single commit record on the journal rather than a
+      // delete record per message
+
+      boolean startedTransaction = false;
+
+      if (tx == null || autoCommitAcks)
+      {
+         startedTransaction = true;
+         tx = new TransactionImpl(storageManager);
+      }
+
+      long notFound = -1;
+
+      try
+      {
+         for (long messageID : messageIDs)
+         {
+            MessageReference ref = removeReferenceByID(messageID);
+
+            if (ref == null)
+            {
+               // the rest of the batch is still acknowledged, as it would be if the messages were acked one by one
+               notFound = messageID;
+               continue;
+            }
+
+            ref.getQueue().acknowledge(tx, ref);
+         }
+
+         if (startedTransaction)
+         {
+            tx.commit();
+         }
+      }
+      catch (HornetQException e)
+      {
+         if (startedTransaction)
+         {
+            tx.rollback();
+         }
+         else
+         {
+            tx.markAsRollbackOnly(e);
+         }
+         throw e;
+      }
+      catch (Throwable e)
+      {
+         HornetQServerLogger.LOGGER.errorAckingMessage((Exception) e);
+         HornetQException hqex = new HornetQIllegalStateException(e.getMessage());
+         if (startedTransaction)
+         {
+            tx.rollback();
+         }
+         else
+         {
+            tx.markAsRollbackOnly(hqex);
+         }
+         throw hqex;
+      }
+
+      if (notFound != -1)
+      {
+         throw new IllegalStateException("Cannot find ref to ack " + notFound);
+      }
+   }
+
    public void individualCancel(final long messageID, boolean failed) throws Exception
    {
       if (browseOnly)
@@ -1016,6 +1104,12 @@ public class ServerConsumerImpl implements ServerConsumer, ReadyListener
                return false;
             }
 
+            if (!callback.isWritable(ServerConsumerImpl.this))
+            {
+               // readyForWriting will resume the delivery
+               return false;
+            }
+
             if (!sentInitialPacket)
             {
                context = largeMessage.getBodyEncoder();
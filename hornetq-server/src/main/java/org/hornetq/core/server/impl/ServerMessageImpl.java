@@ -128,6 +128,13 @@ public class ServerMessageImpl extends MessageImpl implements ServerMessage
       {
          if (count == 1)
          {
+            if (pagingStore.isMessageBodyOffHeap() && !isLargeMessage())
+            {
+               // the message is held in memory from now on, until its last reference is acknowledged
+               pagingStore.getPagingManager().addOffHeapSize(moveBuffer(pagingStore.getPagingManager()
+                                                                                   .getOffHeapAllocator()));
+            }
+
             pagingStore.addSize(getMemoryEstimate() + MessageReferenceImpl.getMemoryEstimate());
          }
          else
@@ -149,11 +156,8 @@ public class ServerMessageImpl extends MessageImpl implements ServerMessage
          {
             pagingStore.addSize(-getMemoryEstimate() - MessageReferenceImpl.getMemoryEstimate());
 
-            if (buffer != null)
-            {
-               // release the buffer now
-               buffer.byteBuf().release();
-            }
+            // release the buffer now, if it's off the heap
+            releaseBuffer();
          }
          else
          {
@@ -164,6 +168,22 @@ public class ServerMessageImpl extends MessageImpl implements ServerMessage
       return count;
    }
 
+   @Override
+   protected void bufferReleased(final int capacity)
+   {
+      if (pagingStore != null)
+      {
+         pagingStore.getPagingManager().addOffHeapSize(-capacity);
+      }
+   }
+
+   @Override
+   protected boolean isLazyPropertiesDecoding()
+   {
+      // most messages are routed by a few properties at most, if any
+      return true;
+   }
+
    public int incrementDurableRefCount()
    {
       return durableRefCount.incrementAndGet();
@@ -332,6 +352,8 @@ public class ServerMessageImpl extends MessageImpl implements ServerMessage
    public void encodeMessageIDToBuffer()
    {
       // We first set the message id - this needs to be set on the buffer since this buffer will be re-used
+      // the buffer may be shared with a copy of this message though
+      checkCopy();
 
       buffer.setLong(buffer.getInt(MessageImpl.BUFFER_HEADER_SPACE) + DataConstants.SIZE_INT, messageID);
    }
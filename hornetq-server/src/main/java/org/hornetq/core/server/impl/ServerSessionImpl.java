@@ -682,6 +682,33 @@ public class ServerSessionImpl implements ServerSession, FailureListener
 
    }
 
+   public void individualAcknowledge(final long consumerID, final long[] messageIDs) throws Exception
+   {
+      ServerConsumer consumer = consumers.get(consumerID);
+
+      if (consumer == null)
+      {
+         throw HornetQMessageBundle.BUNDLE.consumerDoesntExist(consumerID);
+      }
+
+      if (this.xa && tx == null)
+      {
+         throw new HornetQXAException(XAException.XAER_PROTO, "Invalid transaction state");
+      }
+
+      if (tx != null && tx.getState() == State.ROLLEDBACK)
+      {
+         // JBPAPP-8845 - same as individualAcknowledge(long, long), the messages are acked and rolled back
+         Transaction newTX = newTransaction();
+         consumer.individualAcknowledge(false, newTX, messageIDs);
+         newTX.rollback();
+      }
+      else
+      {
+         consumer.individualAcknowledge(autoCommitAcks, tx, messageIDs);
+      }
+   }
+
    public void individualCancel(final long consumerID, final long messageID, boolean failed) throws Exception
    {
       ServerConsumer consumer = consumers.get(consumerID);
@@ -59,6 +59,18 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
 
    public static final boolean DEFAULT_SEND_TO_DLA_ON_NO_ROUTE = false;
 
+   public static final boolean DEFAULT_MESSAGE_ID_INDEX = false;
+
+   public static final boolean DEFAULT_SELECTOR_PARTITIONS = false;
+
+   public static final long DEFAULT_PAGE_MAX_CACHE_BYTES = -1;
+
+   public static final int DEFAULT_PAGE_PREFETCH_SIZE = 1;
+
+   public static final boolean DEFAULT_MESSAGE_BODY_OFF_HEAP = false;
+
+   public static final boolean DEFAULT_COMPACT_QUEUE_STORAGE = false;
+
    private AddressFullMessagePolicy addressFullMessagePolicy = null;
 
    private Long maxSizeBytes = null;
@@ -91,6 +103,18 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
 
    private Boolean sendToDLAOnNoRoute = null;
 
+   private Boolean messageIDIndex = null;
+
+   private Boolean selectorPartitions = null;
+
+   private Long pageMaxCacheBytes = null;
+
+   private Integer pagePrefetchSize = null;
+
+   private Boolean messageBodyOffHeap = null;
+
+   private Boolean compactQueueStorage = null;
+
    public boolean isLastValueQueue()
    {
       return lastValueQueue != null ? lastValueQueue : AddressSettings.DEFAULT_LAST_VALUE_QUEUE;
@@ -245,6 +269,77 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
       this.redistributionDelay = redistributionDelay;
    }
 
+   public boolean isMessageIDIndex()
+   {
+      return messageIDIndex != null ? messageIDIndex : AddressSettings.DEFAULT_MESSAGE_ID_INDEX;
+   }
+
+   public void setMessageIDIndex(final boolean value)
+   {
+      messageIDIndex = value;
+   }
+
+   public boolean isSelectorPartitions()
+   {
+      return selectorPartitions != null ? selectorPartitions : AddressSettings.DEFAULT_SELECTOR_PARTITIONS;
+   }
+
+   public void setSelectorPartitions(final boolean value)
+   {
+      selectorPartitions = value;
+   }
+
+   /**
+    * @return the bytes the messages of the cached pages may take in memory, or -1 for
+    *         {@link #getPageCacheMaxSize()} times {@link #getPageSizeBytes()}
+    */
+   public long getPageCacheMaxBytes()
+   {
+      return pageMaxCacheBytes != null ? pageMaxCacheBytes : AddressSettings.DEFAULT_PAGE_MAX_CACHE_BYTES;
+   }
+
+   public void setPageCacheMaxBytes(final long pageMaxCacheBytes)
+   {
+      this.pageMaxCacheBytes = pageMaxCacheBytes;
+   }
+
+   /**
+    * @return the number of pages read ahead of the subscriptions with consumers, 0 to read pages only when they are
+    *         reached
+    */
+   public int getPagePrefetchSize()
+   {
+      return pagePrefetchSize != null ? pagePrefetchSize : AddressSettings.DEFAULT_PAGE_PREFETCH_SIZE;
+   }
+
+   public void setPagePrefetchSize(final int pagePrefetchSize)
+   {
+      this.pagePrefetchSize = pagePrefetchSize;
+   }
+
+   /**
+    * @return whether the messages held in memory keep their encoding off the heap, on buffers pooled by the broker
+    */
+   public boolean isMessageBodyOffHeap()
+   {
+      return messageBodyOffHeap != null ? messageBodyOffHeap : AddressSettings.DEFAULT_MESSAGE_BODY_OFF_HEAP;
+   }
+
+   public void setMessageBodyOffHeap(final boolean messageBodyOffHeap)
+   {
+      this.messageBodyOffHeap = messageBodyOffHeap;
+   }
+
+   public boolean isCompactQueueStorage()
+   {
+      return compactQueueStorage != null ? compactQueueStorage : AddressSettings.DEFAULT_COMPACT_QUEUE_STORAGE;
+   }
+
+   public void setCompactQueueStorage(final boolean compactQueueStorage)
+   {
+      this.compactQueueStorage = compactQueueStorage;
+   }
+
    /**
     * merge 2 objects in to 1
     * @param merged
@@ -307,6 +402,30 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
       {
          sendToDLAOnNoRoute = merged.sendToDLAOnNoRoute;
       }
+      if (messageIDIndex == null)
+      {
+         messageIDIndex = merged.messageIDIndex;
+      }
+      if (selectorPartitions == null)
+      {
+         selectorPartitions = merged.selectorPartitions;
+      }
+      if (pageMaxCacheBytes == null)
+      {
+         pageMaxCacheBytes = merged.pageMaxCacheBytes;
+      }
+      if (pagePrefetchSize == null)
+      {
+         pagePrefetchSize = merged.pagePrefetchSize;
+      }
+      if (messageBodyOffHeap == null)
+      {
+         messageBodyOffHeap = merged.messageBodyOffHeap;
+      }
+      if (compactQueueStorage == null)
+      {
+         compactQueueStorage = merged.compactQueueStorage;
+      }
       if (addressFullMessagePolicy == null)
       {
          addressFullMessagePolicy = merged.addressFullMessagePolicy;
@@ -356,6 +475,37 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
       redistributionDelay = BufferHelper.readNullableLong(buffer);
 
       sendToDLAOnNoRoute = BufferHelper.readNullableBoolean(buffer);
+
+      // fields added after the original encoding are only present on newer records
+      if (buffer.readable())
+      {
+         messageIDIndex = BufferHelper.readNullableBoolean(buffer);
+      }
+
+      if (buffer.readable())
+      {
+         selectorPartitions = BufferHelper.readNullableBoolean(buffer);
+      }
+
+      if (buffer.readable())
+      {
+         pageMaxCacheBytes = BufferHelper.readNullableLong(buffer);
+      }
+
+      if (buffer.readable())
+      {
+         pagePrefetchSize = BufferHelper.readNullableInteger(buffer);
+      }
+
+      if (buffer.readable())
+      {
+         messageBodyOffHeap = BufferHelper.readNullableBoolean(buffer);
+      }
+
+      if (buffer.readable())
+      {
+         compactQueueStorage = BufferHelper.readNullableBoolean(buffer);
+      }
    }
 
    @Override
@@ -377,7 +527,13 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
              BufferHelper.sizeOfNullableLong(expiryDelay) +
              BufferHelper.sizeOfNullableBoolean(lastValueQueue) +
              BufferHelper.sizeOfNullableLong(redistributionDelay) +
-             BufferHelper.sizeOfNullableBoolean(sendToDLAOnNoRoute);
+             BufferHelper.sizeOfNullableBoolean(sendToDLAOnNoRoute) +
+             BufferHelper.sizeOfNullableBoolean(messageIDIndex) +
+             BufferHelper.sizeOfNullableBoolean(selectorPartitions) +
+             BufferHelper.sizeOfNullableLong(pageMaxCacheBytes) +
+             BufferHelper.sizeOfNullableInteger(pagePrefetchSize) +
+             BufferHelper.sizeOfNullableBoolean(messageBodyOffHeap) +
+             BufferHelper.sizeOfNullableBoolean(compactQueueStorage);
    }
 
    @Override
@@ -415,6 +571,18 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
       BufferHelper.writeNullableLong(buffer, redistributionDelay);
 
       BufferHelper.writeNullableBoolean(buffer, sendToDLAOnNoRoute);
+
+      BufferHelper.writeNullableBoolean(buffer, messageIDIndex);
+
+      BufferHelper.writeNullableBoolean(buffer, selectorPartitions);
+
+      BufferHelper.writeNullableLong(buffer, pageMaxCacheBytes);
+
+      BufferHelper.writeNullableInteger(buffer, pagePrefetchSize);
+
+      BufferHelper.writeNullableBoolean(buffer, messageBodyOffHeap);
+
+      BufferHelper.writeNullableBoolean(buffer, compactQueueStorage);
    }
 
    /* (non-Javadoc)
@@ -442,6 +610,12 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
       result = prime * result + ((maxRedeliveryDelay == null) ? 0 : maxRedeliveryDelay.hashCode());
       result = prime * result + ((redistributionDelay == null) ? 0 : redistributionDelay.hashCode());
       result = prime * result + ((sendToDLAOnNoRoute == null) ? 0 : sendToDLAOnNoRoute.hashCode());
+      result = prime * result + ((messageIDIndex == null) ? 0 : messageIDIndex.hashCode());
+      result = prime * result + ((selectorPartitions == null) ? 0 : selectorPartitions.hashCode());
+      result = prime * result + ((pageMaxCacheBytes == null) ? 0 : pageMaxCacheBytes.hashCode());
+      result = prime * result + ((pagePrefetchSize == null) ? 0 : pagePrefetchSize.hashCode());
+      result = prime * result + ((messageBodyOffHeap == null) ? 0 : messageBodyOffHeap.hashCode());
+      result = prime * result + ((compactQueueStorage == null) ? 0 : compactQueueStorage.hashCode());
       return result;
    }
 
@@ -570,6 +744,48 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
       }
       else if (!sendToDLAOnNoRoute.equals(other.sendToDLAOnNoRoute))
          return false;
+      if (messageIDIndex == null)
+      {
+         if (other.messageIDIndex != null)
+            return false;
+      }
+      else if (!messageIDIndex.equals(other.messageIDIndex))
+         return false;
+      if (selectorPartitions == null)
+      {
+         if (other.selectorPartitions != null)
+            return false;
+      }
+      else if (!selectorPartitions.equals(other.selectorPartitions))
+         return false;
+      if (pageMaxCacheBytes == null)
+      {
+         if (other.pageMaxCacheBytes != null)
+            return false;
+      }
+      else if (!pageMaxCacheBytes.equals(other.pageMaxCacheBytes))
+         return false;
+      if (pagePrefetchSize == null)
+      {
+         if (other.pagePrefetchSize != null)
+            return false;
+      }
+      else if (!pagePrefetchSize.equals(other.pagePrefetchSize))
+         return false;
+      if (messageBodyOffHeap == null)
+      {
+         if (other.messageBodyOffHeap != null)
+            return false;
+      }
+      else if (!messageBodyOffHeap.equals(other.messageBodyOffHeap))
+         return false;
+      if (compactQueueStorage == null)
+      {
+         if (other.compactQueueStorage != null)
+            return false;
+      }
+      else if (!compactQueueStorage.equals(other.compactQueueStorage))
+         return false;
       return true;
    }
 
@@ -610,6 +826,18 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
              redistributionDelay +
              ", sendToDLAOnNoRoute=" +
              sendToDLAOnNoRoute +
+             ", messageIDIndex=" +
+             messageIDIndex +
+             ", selectorPartitions=" +
+             selectorPartitions +
+             ", pageMaxCacheBytes=" +
+             pageMaxCacheBytes +
+             ", pagePrefetchSize=" +
+             pagePrefetchSize +
+             ", messageBodyOffHeap=" +
+             messageBodyOffHeap +
+             ", compactQueueStorage=" +
+             compactQueueStorage +
              "]";
    }
 }
@@ -42,5 +42,17 @@ public interface SessionCallback
 
    void removeReadyListener(ReadyListener listener);
 
+   /**
+    * Whether the consumer behind the listener may send the next chunk of a large message. When it may not, the
+    * listener is told through {@link ReadyListener#readyForWriting(boolean)} once it's worth trying again.
+    */
+   boolean isWritable(ReadyListener listener);
+
+   /**
+    * Whether the consumer behind the listener may take another message. When it may not, the listener is told through
+    * {@link ReadyListener#readyForWriting(boolean)} once it's worth trying again.
+    */
+   boolean isReadyForDelivery(ReadyListener listener);
+
    void disconnect(long consumerId, String queueName);
 }
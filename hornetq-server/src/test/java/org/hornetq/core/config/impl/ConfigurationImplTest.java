@@ -88,11 +88,17 @@ public class ConfigurationImplTest extends UnitTestCase
       Assert.assertEquals(HornetQDefaultConfiguration.getDefaultPagingDir(), conf.getPagingDirectory());
       Assert.assertEquals(HornetQDefaultConfiguration.getDefaultLargeMessagesDir(), conf.getLargeMessagesDirectory());
       Assert.assertEquals(HornetQDefaultConfiguration.getDefaultJournalCompactPercentage(), conf.getJournalCompactPercentage());
+      Assert.assertEquals(HornetQDefaultConfiguration.getDefaultJournalLoadThreads(), conf.getJournalLoadThreads());
+      Assert.assertEquals(HornetQDefaultConfiguration.getDefaultJournalLoadReadAhead(), conf.getJournalLoadReadAhead());
       Assert.assertEquals(JournalConstants.DEFAULT_JOURNAL_BUFFER_TIMEOUT_AIO, conf.getJournalBufferTimeout_AIO());
       Assert.assertEquals(JournalConstants.DEFAULT_JOURNAL_BUFFER_TIMEOUT_NIO, conf.getJournalBufferTimeout_NIO());
       Assert.assertEquals(JournalConstants.DEFAULT_JOURNAL_BUFFER_SIZE_AIO, conf.getJournalBufferSize_AIO());
       Assert.assertEquals(JournalConstants.DEFAULT_JOURNAL_BUFFER_SIZE_NIO, conf.getJournalBufferSize_NIO());
       Assert.assertEquals(HornetQDefaultConfiguration.isDefaultJournalLogWriteRate(), conf.isLogJournalWriteRate());
+      Assert.assertEquals(HornetQDefaultConfiguration.isDefaultJournalBufferAdaptive(), conf.isJournalBufferAdaptive());
+      Assert.assertEquals(HornetQDefaultConfiguration.getDefaultReplicationBatchSize(), conf.getReplicationBatchSize());
+      Assert.assertEquals(HornetQDefaultConfiguration.getDefaultReplicationBatchTimeout(),
+                          conf.getReplicationBatchTimeout());
       Assert.assertEquals(HornetQDefaultConfiguration.getDefaultJournalPerfBlastPages(), conf.getJournalPerfBlastPages());
       Assert.assertEquals(HornetQDefaultConfiguration.isDefaultMessageCounterEnabled(), conf.isMessageCounterEnabled());
       Assert.assertEquals(HornetQDefaultConfiguration.getDefaultMessageCounterMaxDayHistory(),
@@ -243,6 +249,14 @@ public class ConfigurationImplTest extends UnitTestCase
          conf.setJournalCompactPercentage(i);
          Assert.assertEquals(i, conf.getJournalCompactPercentage());
 
+         i = RandomUtil.randomInt();
+         conf.setJournalLoadThreads(i);
+         Assert.assertEquals(i, conf.getJournalLoadThreads());
+
+         i = RandomUtil.randomInt();
+         conf.setJournalLoadReadAhead(i);
+         Assert.assertEquals(i, conf.getJournalLoadReadAhead());
+
          i = RandomUtil.randomInt();
          conf.setJournalBufferSize_AIO(i);
          Assert.assertEquals(i, conf.getJournalBufferSize_AIO());
@@ -263,6 +277,18 @@ public class ConfigurationImplTest extends UnitTestCase
          conf.setLogJournalWriteRate(b);
          Assert.assertEquals(b, conf.isLogJournalWriteRate());
 
+         b = RandomUtil.randomBoolean();
+         conf.setJournalBufferAdaptive(b);
+         Assert.assertEquals(b, conf.isJournalBufferAdaptive());
+
+         i = RandomUtil.randomInt();
+         conf.setReplicationBatchSize(i);
+         Assert.assertEquals(i, conf.getReplicationBatchSize());
+
+         i = RandomUtil.randomInt();
+         conf.setReplicationBatchTimeout(i);
+         Assert.assertEquals(i, conf.getReplicationBatchTimeout());
+
          i = RandomUtil.randomInt();
          conf.setJournalPerfBlastPages(i);
          Assert.assertEquals(i, conf.getJournalPerfBlastPages());
@@ -459,6 +485,14 @@ public class ConfigurationImplTest extends UnitTestCase
       conf.setJournalCompactPercentage(i);
       Assert.assertEquals(i, conf.getJournalCompactPercentage());
 
+      i = RandomUtil.randomInt();
+      conf.setJournalLoadThreads(i);
+      Assert.assertEquals(i, conf.getJournalLoadThreads());
+
+      i = RandomUtil.randomInt();
+      conf.setJournalLoadReadAhead(i);
+      Assert.assertEquals(i, conf.getJournalLoadReadAhead());
+
       i = RandomUtil.randomInt();
       conf.setJournalBufferSize_AIO(i);
       Assert.assertEquals(i, conf.getJournalBufferSize_AIO());
@@ -479,6 +513,18 @@ public class ConfigurationImplTest extends UnitTestCase
       conf.setLogJournalWriteRate(b);
       Assert.assertEquals(b, conf.isLogJournalWriteRate());
 
+      b = RandomUtil.randomBoolean();
+      conf.setJournalBufferAdaptive(b);
+      Assert.assertEquals(b, conf.isJournalBufferAdaptive());
+
+      i = RandomUtil.randomInt();
+      conf.setReplicationBatchSize(i);
+      Assert.assertEquals(i, conf.getReplicationBatchSize());
+
+      i = RandomUtil.randomInt();
+      conf.setReplicationBatchTimeout(i);
+      Assert.assertEquals(i, conf.getReplicationBatchTimeout());
+
       i = RandomUtil.randomInt();
       conf.setJournalPerfBlastPages(i);
       Assert.assertEquals(i, conf.getJournalPerfBlastPages());
@@ -12,6 +12,9 @@
  */
 
 package org.hornetq.core.filter.impl;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.junit.Before;
 
 import org.junit.Test;
@@ -711,8 +714,133 @@ public class FilterTest extends SilentTestCase
       parse.getNextToken();
    }
 
+   @Test
+   public void testNumericExpressions() throws Exception
+   {
+      message.putIntProperty(new SimpleString("anInt"), 10);
+      message.putLongProperty(new SimpleString("aLong"), 20L);
+      message.putDoubleProperty(new SimpleString("aDouble"), 2.5);
+      message.putShortProperty(new SimpleString("aShort"), (short)3);
+
+      Assert.assertTrue(FilterImpl.createFilter("anInt * 2 = aLong").match(message));
+      Assert.assertTrue(FilterImpl.createFilter("aLong / anInt = 2").match(message));
+      Assert.assertTrue(FilterImpl.createFilter("aDouble * 4 = anInt").match(message));
+      Assert.assertTrue(FilterImpl.createFilter("-aShort < 0 AND aShort + 1 >= 4").match(message));
+      Assert.assertTrue(FilterImpl.createFilter("anInt BETWEEN aShort AND aLong").match(message));
+      Assert.assertFalse(FilterImpl.createFilter("anInt NOT BETWEEN aShort AND aLong").match(message));
+      Assert.assertTrue(FilterImpl.createFilter("aDouble NOT BETWEEN 3 AND 4").match(message));
+
+      // unknown values propagate and never match
+      Assert.assertFalse(FilterImpl.createFilter("missing > 1").match(message));
+      Assert.assertFalse(FilterImpl.createFilter("NOT (missing > 1)").match(message));
+      Assert.assertTrue(FilterImpl.createFilter("missing > 1 OR anInt = 10").match(message));
+      Assert.assertFalse(FilterImpl.createFilter("missing > 1 AND anInt = 10").match(message));
+
+      // division by zero doesn't match
+      Assert.assertFalse(FilterImpl.createFilter("anInt / 0 = 1").match(message));
+   }
+
+   @Test
+   public void testConcurrentMatch() throws Exception
+   {
+      final Filter sharedFilter = FilterImpl.createFilter("color IN ('red', 'green') AND weight > 100");
+
+      final int threads = 10;
+      final int iterations = 10000;
+      final AtomicInteger errors = new AtomicInteger(0);
+      final CountDownLatch start = new CountDownLatch(1);
+
+      Thread[] workers = new Thread[threads];
+
+      for (int i = 0; i < threads; i++)
+      {
+         final int weight = 50 + i * 20;
+         workers[i] = new Thread()
+         {
+            @Override
+            public void run()
+            {
+               ServerMessage msg = new ServerMessageImpl(weight, 1000);
+               msg.putStringProperty(new SimpleString("color"), new SimpleString("red"));
+               msg.putIntProperty(new SimpleString("weight"), weight);
+               try
+               {
+                  start.await();
+                  for (int j = 0; j < iterations; j++)
+                  {
+                     if (sharedFilter.match(msg) != weight > 100)
+                     {
+                        errors.incrementAndGet();
+                     }
+                  }
+               }
+               catch (InterruptedException e)
+               {
+                  errors.incrementAndGet();
+               }
+            }
+         };
+         workers[i].start();
+      }
+
+      start.countDown();
+
+      for (Thread worker : workers)
+      {
+         worker.join();
+      }
+
+      Assert.assertEquals(0, errors.get());
+   }
+
+   @Test
+   public void testGuard() throws Exception
+   {
+      FilterGuard guard = getGuard("weight > 100 AND color = 'red'");
+      Assert.assertEquals(new SimpleString("color"), guard.getProperty());
+      Assert.assertFalse(guard.isRange());
+      Assert.assertTrue(guard.getKeys().contains(new SimpleString("red")));
+
+      guard = getGuard("region IN ('EU', 'US')");
+      Assert.assertEquals(2, guard.getKeys().size());
+
+      guard = getGuard("5 <= weight AND HQPriority = 4");
+      Assert.assertEquals(new SimpleString("weight"), guard.getProperty());
+      Assert.assertTrue(guard.isRange());
+      Assert.assertEquals(5d, guard.getLow(), 0);
+      Assert.assertEquals(Double.POSITIVE_INFINITY, guard.getHigh(), 0);
+
+      guard = getGuard("weight BETWEEN -1 AND 1.5");
+      Assert.assertEquals(-1d, guard.getLow(), 0);
+      Assert.assertEquals(1.5d, guard.getHigh(), 0);
+
+      Assert.assertNull(getGuard("color = 'red' OR weight > 100"));
+      Assert.assertNull(getGuard("NOT color = 'red'"));
+      Assert.assertNull(getGuard("HQPriority = 4"));
+      Assert.assertNull(getGuard("color LIKE 'r%'"));
+
+      message.putIntProperty(new SimpleString("weight"), 7);
+      message.putFloatProperty(new SimpleString("ratio"), 7f);
+      message.putBytesProperty(new SimpleString("bytes"), new byte[0]);
+      doPutStringProperty("color", "red");
+
+      Assert.assertEquals(Double.valueOf(7),
+                          FilterGuard.getKey(message, new SimpleString("weight")));
+      Assert.assertEquals(FilterGuard.getKey(message, new SimpleString("weight")),
+                          FilterGuard.getKey(message, new SimpleString("ratio")));
+      Assert.assertEquals(new SimpleString("red"), FilterGuard.getKey(message, new SimpleString("color")));
+      Assert.assertNull(FilterGuard.getKey(message, new SimpleString("bytes")));
+      Assert.assertNull(FilterGuard.getKey(message, new SimpleString("missing")));
+   }
+
    // Private -----------------------------------------------------------------------------------
 
+   private FilterGuard getGuard(final String filterString) throws Exception
+   {
+      return ((FilterImpl)FilterImpl.createFilter(filterString)).getGuard();
+   }
+
+
    private void doPutStringProperty(final String key, final String value)
    {
       message.putStringProperty(new SimpleString(key), new SimpleString(value));
@@ -20,6 +20,7 @@ import org.junit.Test;
 import org.junit.Assert;
 
 
+import org.hornetq.utils.IDSupplier;
 import org.hornetq.utils.LinkedListIterator;
 import org.hornetq.utils.PriorityLinkedListImpl;
 
@@ -896,6 +897,159 @@ public final class PriorityLinkedListTest extends Assert
       iter.remove();
    }
 
+   @Test
+   public void testGetAndRemoveWithID()
+   {
+      PriorityLinkedListImpl<Wibble> indexed = new PriorityLinkedListImpl<Wibble>(10, new WibbleIDSupplier());
+
+      assertTrue(indexed.isIndexed());
+      assertFalse(list.isIndexed());
+
+      indexed.addTail(a, 0);
+      indexed.addTail(b, 3);
+      indexed.addHead(c, 3);
+      indexed.addTail(d, 9);
+
+      assertEquals(4, indexed.size());
+      assertEquals(b, indexed.getWithID(b.id()));
+      assertNull(indexed.getWithID(e.id()));
+
+      assertEquals(d, indexed.removeWithID(d.id()));
+      assertNull(indexed.removeWithID(d.id()));
+      assertNull(indexed.getWithID(d.id()));
+      assertEquals(3, indexed.size());
+
+      assertEquals(c, indexed.removeWithID(c.id()));
+      assertEquals(2, indexed.size());
+
+      assertEquals(b, indexed.poll());
+      assertNull(indexed.getWithID(b.id()));
+      assertEquals(a, indexed.poll());
+      assertNull(indexed.poll());
+      assertEquals(0, indexed.size());
+
+      indexed.addTail(e, 5);
+      indexed.clear();
+      assertNull(indexed.getWithID(e.id()));
+   }
+
+   @Test
+   public void testRemoveWithIDMovesIterator()
+   {
+      PriorityLinkedListImpl<Wibble> indexed = new PriorityLinkedListImpl<Wibble>(10, new WibbleIDSupplier());
+
+      indexed.addTail(a, 4);
+      indexed.addTail(b, 4);
+      indexed.addTail(c, 4);
+
+      LinkedListIterator<Wibble> iter = indexed.iterator();
+
+      assertTrue(iter.hasNext());
+      assertEquals(a, iter.next());
+
+      assertEquals(b, indexed.removeWithID(b.id()));
+
+      assertTrue(iter.hasNext());
+      assertEquals(c, iter.next());
+      iter.remove();
+
+      assertNull(indexed.getWithID(c.id()));
+      assertEquals(a, indexed.getWithID(a.id()));
+      assertEquals(1, indexed.size());
+
+      iter.close();
+   }
+
+   @Test
+   public void testChunked()
+   {
+      PriorityLinkedListImpl<Wibble> chunked = new PriorityLinkedListImpl<Wibble>(10, new WibbleIDSupplier(), true);
+
+      assertTrue(chunked.isIndexed());
+
+      chunked.addTail(a, 0);
+      chunked.addTail(b, 3);
+      chunked.addHead(c, 3);
+      chunked.addTail(d, 9);
+      chunked.addTail(e, 3);
+
+      LinkedListIterator<Wibble> iter = chunked.iterator();
+
+      assertTrue(iter.hasNext());
+      assertEquals(d, iter.next());
+      assertTrue(iter.hasNext());
+      assertEquals(c, iter.next());
+      iter.remove();
+
+      assertEquals(b, chunked.removeWithID(b.id()));
+      assertTrue(iter.hasNext());
+      assertEquals(e, iter.next());
+      assertTrue(iter.hasNext());
+      assertEquals(a, iter.next());
+      assertFalse(iter.hasNext());
+
+      assertEquals(3, chunked.size());
+      assertEquals(d, chunked.poll());
+      assertEquals(e, chunked.poll());
+      assertEquals(a, chunked.poll());
+      assertNull(chunked.poll());
+
+      iter.close();
+   }
+
+   @Test
+   public void testDuplicateIDs()
+   {
+      testDuplicateIDs(false);
+   }
+
+   @Test
+   public void testDuplicateIDsChunked()
+   {
+      testDuplicateIDs(true);
+   }
+
+   private void testDuplicateIDs(final boolean chunked)
+   {
+      PriorityLinkedListImpl<Wibble> indexed = new PriorityLinkedListImpl<Wibble>(10, new WibbleIDSupplier(), chunked);
+
+      // same ID as a
+      Wibble a2 = new Wibble("a2");
+      Wibble a3 = new Wibble("a3");
+
+      indexed.addTail(a, 4);
+      indexed.addTail(b, 4);
+      indexed.addTail(a2, 4);
+      indexed.addHead(a3, 4);
+
+      assertEquals(a, indexed.removeWithID(a.id()));
+      assertEquals(a2, indexed.getWithID(a.id()));
+      assertEquals(a2, indexed.removeWithID(a.id()));
+      assertEquals(a3, indexed.getWithID(a.id()));
+
+      assertEquals(a3, indexed.poll());
+      assertNull(indexed.getWithID(a.id()));
+      assertNull(indexed.removeWithID(a.id()));
+      assertEquals(b, indexed.poll());
+      assertEquals(0, indexed.size());
+
+      indexed.addTail(a, 4);
+      indexed.addTail(a2, 4);
+      assertEquals(a, indexed.poll());
+      assertEquals(a2, indexed.getWithID(a.id()));
+
+      indexed.clear();
+      assertNull(indexed.getWithID(a.id()));
+   }
+
+   static class WibbleIDSupplier implements IDSupplier<Wibble>
+   {
+      public long getID(final Wibble wibble)
+      {
+         return wibble.id();
+      }
+   }
+
    static class Wibble
    {
       String s1;
@@ -905,6 +1059,11 @@ public final class PriorityLinkedListTest extends Assert
          this.s1 = s;
       }
 
+      long id()
+      {
+         return s1.charAt(0);
+      }
+
       @Override
       public String toString()
       {
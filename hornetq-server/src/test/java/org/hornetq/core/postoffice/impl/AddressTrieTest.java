@@ -0,0 +1,138 @@
+/*
+ * Copyright 2013 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.postoffice.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.postoffice.Address;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AddressTrieTest extends Assert
+{
+   private static final String[] ADDRESSES = {"a",
+                                              "a.b",
+                                              "a.b.c",
+                                              "a.b.c.d",
+                                              "a.b.x.e",
+                                              "a.b.c.d.e.f",
+                                              "a.b.c.x.e.f",
+                                              "a.b.c.d.e.x",
+                                              "usd.stock",
+                                              "eur.stock.x.y",
+                                              "b.a.b"};
+
+   private static final String[] WILDCARDS = {"#",
+                                              "*",
+                                              "a.*",
+                                              "a.#",
+                                              "#.b.#",
+                                              "a.#.b.#",
+                                              "a.b.c.*",
+                                              "a.b.*.d",
+                                              "a.b.*.d.*.f",
+                                              "a.#.c.d.e.f",
+                                              "a.#.c.d.e.*",
+                                              "a.#.c.d.*.f",
+                                              "a.b.c.#",
+                                              "*.stock.#",
+                                              "a.b.c.d.e.f.g.*",
+                                              "#a.b.c"};
+
+   private final AddressTrie addressTrie = new AddressTrie();
+
+   private final AddressTrie wildCardTrie = new AddressTrie();
+
+   private final List<Address> addresses = new ArrayList<Address>();
+
+   private final List<Address> wildCards = new ArrayList<Address>();
+
+   @Before
+   public void setUp()
+   {
+      for (String address : ADDRESSES)
+      {
+         Address add = new AddressImpl(new SimpleString(address));
+         addresses.add(add);
+         addressTrie.add(add);
+      }
+      for (String address : WILDCARDS)
+      {
+         Address add = new AddressImpl(new SimpleString(address));
+         wildCards.add(add);
+         wildCardTrie.add(add);
+      }
+   }
+
+   @Test
+   public void testMatchesSameAsAddressImpl()
+   {
+      for (Address wildCard : wildCards)
+      {
+         Set<Address> matched = addressTrie.getMatchedBy(wildCard);
+
+         for (Address address : addresses)
+         {
+            assertEquals(address.getAddress() + " matches " + wildCard.getAddress(), address.matches(wildCard), matched.contains(address));
+         }
+      }
+
+      for (Address address : addresses)
+      {
+         Set<Address> matching = wildCardTrie.getWildcardsMatching(address);
+
+         for (Address wildCard : wildCards)
+         {
+            assertEquals(address.getAddress() + " matches " + wildCard.getAddress(), address.matches(wildCard), matching.contains(wildCard));
+         }
+      }
+   }
+
+   @Test
+   public void testAnyWordsMatchesNoWord()
+   {
+      Address wildCard = new AddressImpl(new SimpleString("a.b.#.c.#"));
+      Address address = new AddressImpl(new SimpleString("a.b.c"));
+
+      wildCardTrie.add(wildCard);
+
+      assertTrue(wildCardTrie.getWildcardsMatching(address).contains(wildCard));
+      assertTrue(addressTrie.getMatchedBy(wildCard).contains(address));
+   }
+
+   @Test
+   public void testRemove()
+   {
+      Address wildCard = new AddressImpl(new SimpleString("a.b.*"));
+      Address address = new AddressImpl(new SimpleString("a.b.c"));
+
+      assertTrue(addressTrie.getMatchedBy(wildCard).contains(address));
+
+      addressTrie.remove(address);
+
+      assertTrue(addressTrie.getMatchedBy(wildCard).isEmpty());
+
+      // the addresses below the removed one are kept
+      Address below = new AddressImpl(new SimpleString("a.b.c.d"));
+      assertTrue(addressTrie.getMatchedBy(below).contains(below));
+
+      addressTrie.clear();
+
+      assertTrue(addressTrie.getMatchedBy(new AddressImpl(new SimpleString("#"))).isEmpty());
+   }
+}
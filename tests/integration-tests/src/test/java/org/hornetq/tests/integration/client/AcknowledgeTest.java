@@ -16,10 +16,12 @@ import org.junit.Test;
 
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Assert;
 
 import org.hornetq.api.core.HornetQException;
+import org.hornetq.api.core.Interceptor;
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.api.core.client.ClientConsumer;
 import org.hornetq.api.core.client.ClientMessage;
@@ -28,9 +30,13 @@ import org.hornetq.api.core.client.ClientSession;
 import org.hornetq.api.core.client.ClientSessionFactory;
 import org.hornetq.api.core.client.MessageHandler;
 import org.hornetq.api.core.client.ServerLocator;
+import org.hornetq.core.client.impl.ClientConsumerInternal;
 import org.hornetq.core.client.impl.ClientSessionInternal;
+import org.hornetq.core.protocol.core.Packet;
+import org.hornetq.core.protocol.core.impl.PacketImpl;
 import org.hornetq.core.server.HornetQServer;
 import org.hornetq.core.server.Queue;
+import org.hornetq.spi.core.protocol.RemotingConnection;
 import org.hornetq.tests.integration.IntegrationTestLogger;
 import org.hornetq.tests.util.ServiceTestBase;
 
@@ -318,4 +324,127 @@ public class AcknowledgeTest extends ServiceTestBase
          session.close();
    }
 
+   @Test
+   public void testIndividualAckBatch() throws Exception
+   {
+      HornetQServer server = createServer(true);
+      server.start();
+
+      final AtomicInteger singleAcks = new AtomicInteger();
+      final AtomicInteger batchAcks = new AtomicInteger();
+      server.getRemotingService().addIncomingInterceptor(new Interceptor()
+      {
+         public boolean intercept(final Packet packet, final RemotingConnection connection) throws HornetQException
+         {
+            if (packet.getType() == PacketImpl.SESS_INDIVIDUAL_ACKNOWLEDGE)
+            {
+               singleAcks.incrementAndGet();
+            }
+            else if (packet.getType() == PacketImpl.SESS_INDIVIDUAL_ACKNOWLEDGE_BATCH)
+            {
+               batchAcks.incrementAndGet();
+            }
+            return true;
+         }
+      });
+
+      ServerLocator locator = createInVMNonHALocator();
+      ClientSessionFactory cf = createSessionFactory(locator);
+      ClientSession sendSession = cf.createSession(false, true, true);
+      ClientSession session = cf.createSession(false, true, true);
+      sendSession.createQueue(addressA, queueA, true);
+      ClientProducer cp = sendSession.createProducer(addressA);
+      ClientConsumer cc = session.createConsumer(queueA);
+      int numMessages = 100;
+      for (int i = 0; i < numMessages; i++)
+      {
+         ClientMessage message = sendSession.createMessage(true);
+         message.putIntProperty("count", i);
+         cp.send(message);
+      }
+      session.start();
+
+      // the acks are only held back while there are more messages to consume
+      long timeout = System.currentTimeMillis() + 5000;
+      while (((ClientConsumerInternal)cc).getBufferSize() < numMessages && System.currentTimeMillis() < timeout)
+      {
+         Thread.sleep(10);
+      }
+
+      for (int i = 0; i < numMessages; i++)
+      {
+         ClientMessage cm = cc.receive(5000);
+         Assert.assertNotNull(cm);
+         if (i % 2 == 0)
+         {
+            cm.individualAcknowledge();
+         }
+      }
+      cc.close();
+
+      Assert.assertEquals(0, singleAcks.get());
+      Assert.assertTrue(batchAcks.get() > 0);
+      Assert.assertTrue(batchAcks.get() < numMessages / 2);
+
+      // only the messages not acknowledged are delivered again
+      cc = session.createConsumer(queueA);
+      for (int i = 1; i < numMessages; i += 2)
+      {
+         ClientMessage cm = cc.receive(5000);
+         Assert.assertNotNull(cm);
+         Assert.assertEquals(i, cm.getIntProperty("count").intValue());
+         cm.acknowledge();
+      }
+      Assert.assertNull(cc.receiveImmediate());
+
+      sendSession.close();
+      session.close();
+   }
+
+   @Test
+   public void testIndividualAckBatchFlushedByReceive() throws Exception
+   {
+      HornetQServer server = createServer(false);
+      server.start();
+      ServerLocator locator = createInVMNonHALocator();
+      ClientSessionFactory cf = createSessionFactory(locator);
+      ClientSession sendSession = cf.createSession(false, true, true);
+      ClientSession session = cf.createSession(false, true, true);
+      sendSession.createQueue(addressA, queueA, false);
+      ClientProducer cp = sendSession.createProducer(addressA);
+      ClientConsumer cc = session.createConsumer(queueA);
+      int numMessages = 10;
+      for (int i = 0; i < numMessages; i++)
+      {
+         cp.send(sendSession.createMessage(false));
+      }
+      session.start();
+
+      long timeout = System.currentTimeMillis() + 5000;
+      while (((ClientConsumerInternal)cc).getBufferSize() < numMessages && System.currentTimeMillis() < timeout)
+      {
+         Thread.sleep(10);
+      }
+
+      ClientMessage cm = cc.receive(5000);
+      Assert.assertNotNull(cm);
+      cm.individualAcknowledge();
+
+      // held back, there are more messages to acknowledge it with
+      Queue queue = server.locateQueue(queueA);
+      Thread.sleep(150);
+      Assert.assertEquals(numMessages, queue.getMessageCount());
+
+      // the next receive sends the acknowledgement that has waited too long
+      Assert.assertNotNull(cc.receive(5000));
+      timeout = System.currentTimeMillis() + 5000;
+      while (queue.getMessageCount() != numMessages - 1 && System.currentTimeMillis() < timeout)
+      {
+         Thread.sleep(10);
+      }
+      Assert.assertEquals(numMessages - 1, queue.getMessageCount());
+
+      sendSession.close();
+      session.close();
+   }
 }
@@ -610,6 +610,18 @@ public class HangConsumerTest extends ServiceTestBase
          targetCallback.removeReadyListener(listener);
       }
 
+      @Override
+      public boolean isWritable(ReadyListener listener)
+      {
+         return targetCallback.isWritable(listener);
+      }
+
+      @Override
+      public boolean isReadyForDelivery(ReadyListener listener)
+      {
+         return targetCallback.isReadyForDelivery(listener);
+      }
+
       @Override
       public void disconnect(long consumerId, String queueName)
       {
@@ -18,17 +18,27 @@ import org.junit.Test;
 
 import org.junit.Assert;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.util.IllegalReferenceCountException;
+import org.hornetq.api.core.HornetQBuffer;
+import org.hornetq.api.core.SimpleString;
 import org.hornetq.api.core.client.ClientConsumer;
 import org.hornetq.api.core.client.ClientMessage;
 import org.hornetq.api.core.client.ClientProducer;
 import org.hornetq.api.core.client.ClientSession;
 import org.hornetq.api.core.client.ClientSessionFactory;
 import org.hornetq.api.core.client.ServerLocator;
+import org.hornetq.core.paging.PagingManager;
 import org.hornetq.core.protocol.core.impl.PacketImpl;
 import org.hornetq.core.server.HornetQServer;
+import org.hornetq.core.server.MessageReference;
+import org.hornetq.core.server.Queue;
+import org.hornetq.core.server.ServerMessage;
+import org.hornetq.core.settings.impl.AddressSettings;
 import org.hornetq.tests.util.RandomUtil;
 import org.hornetq.tests.util.ServiceTestBase;
 import org.hornetq.utils.DataConstants;
+import org.hornetq.utils.LinkedListIterator;
 
 public class InVMNonPersistentMessageBufferTest extends ServiceTestBase
 {
@@ -211,6 +221,118 @@ public class InVMNonPersistentMessageBufferTest extends ServiceTestBase
 
    }
 
+   @Test
+   public void testMessageBodyOffHeap() throws Exception
+   {
+      AddressSettings settings = new AddressSettings();
+      settings.setMessageBodyOffHeap(true);
+      server.getAddressSettingsRepository().addMatch(InVMNonPersistentMessageBufferTest.address, settings);
+
+      PagingManager pagingManager = server.getPagingManager();
+
+      final int numberOfMessages = 20;
+
+      for (int i = 0; i < numberOfMessages; i++)
+      {
+         ClientMessage message = session.createMessage(isPersistent());
+         message.putIntProperty("count", i);
+         message.getBodyBuffer().writeString("body " + i);
+         producer.send(message);
+      }
+
+      ClientMessage[] received = new ClientMessage[numberOfMessages];
+
+      for (int i = 0; i < numberOfMessages; i++)
+      {
+         received[i] = consumer.receive(10000);
+
+         Assert.assertNotNull(received[i]);
+         Assert.assertEquals(i, received[i].getIntProperty("count").intValue());
+         Assert.assertEquals("body " + i, received[i].getBodyBuffer().readString());
+      }
+
+      Assert.assertTrue(pagingManager.getOffHeapSize() > 0);
+
+      for (ClientMessage receivedMessage : received)
+      {
+         receivedMessage.acknowledge();
+      }
+
+      // flushes the acknowledgements
+      consumer.close();
+
+      long timeout = System.currentTimeMillis() + 5000;
+      while (pagingManager.getOffHeapSize() != 0 && System.currentTimeMillis() < timeout)
+      {
+         Thread.sleep(10);
+      }
+
+      Assert.assertEquals(0, pagingManager.getOffHeapSize());
+   }
+
+   @Test
+   public void testMessageBodyOffHeapReleased() throws Exception
+   {
+      AddressSettings settings = new AddressSettings();
+      settings.setMessageBodyOffHeap(true);
+      server.getAddressSettingsRepository().addMatch(InVMNonPersistentMessageBufferTest.address, settings);
+
+      // kept on the queue, to be taken from there
+      session.stop();
+
+      ClientMessage message = session.createMessage(isPersistent());
+      message.getBodyBuffer().writeString("body");
+      producer.send(message);
+
+      Queue queue = server.locateQueue(new SimpleString(InVMNonPersistentMessageBufferTest.queueName));
+      long timeout = System.currentTimeMillis() + 5000;
+      while (queue.getMessageCount() == 0 && System.currentTimeMillis() < timeout)
+      {
+         Thread.sleep(10);
+      }
+      queue.flushExecutor();
+
+      LinkedListIterator<MessageReference> iterator = queue.iterator();
+      Assert.assertTrue(iterator.hasNext());
+      ServerMessage serverMessage = iterator.next().getMessage();
+      iterator.close();
+
+      HornetQBuffer body = serverMessage.getBodyBuffer();
+      Assert.assertEquals("body", body.readString());
+
+      // acknowledges its last reference, releasing its buffer
+      queue.deleteAllReferences();
+
+      Assert.assertEquals(0, server.getPagingManager().getOffHeapSize());
+
+      // the memory of the message, and the pooled buffer that held it, are handed out again
+      ByteBuf reused = server.getPagingManager().getOffHeapAllocator().directBuffer(1024);
+      try
+      {
+         try
+         {
+            serverMessage.getBodyBuffer().readString();
+            Assert.fail("the buffer of the message was released");
+         }
+         catch (IllegalReferenceCountException expected)
+         {
+         }
+
+         try
+         {
+            body.getByte(0);
+            Assert.fail("the buffer of the message was released");
+         }
+         catch (IllegalReferenceCountException expected)
+         {
+         }
+      }
+      finally
+      {
+         reused.release();
+      }
+   }
+
    protected ServerLocator createFactory() throws Exception
    {
       if (isNetty())
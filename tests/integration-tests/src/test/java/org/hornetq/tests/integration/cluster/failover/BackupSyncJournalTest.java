@@ -293,6 +293,41 @@ public class BackupSyncJournalTest extends FailoverTestBase
       assertNoMoreMessages();
    }
 
+   /**
+    * A restarted backup only gets the blocks of the files it's missing or that changed since its data was moved away.
+    */
+   @Test
+   public void testResyncRestartedBackup() throws Exception
+   {
+      createProducerSendSomeMessages();
+      JournalImpl messageJournal = getMessageJournalFromServer(liveServer);
+      for (int i = 0; i < 5; i++)
+      {
+         messageJournal.forceMoveNextFile();
+         sendMessages(session, producer, n_msgs);
+      }
+      startBackupFinishSyncing();
+
+      backupServer.stop();
+      receiveMsgsInRange(0, n_msgs);
+      messageJournal.forceMoveNextFile();
+      sendMessages(session, producer, n_msgs);
+
+      liveServer.removeInterceptor(syncDelay);
+      backupServer.start();
+      waitForRemoteBackup(sessionFactory, BACKUP_WAIT_TIME, true, backupServer.getServer());
+      assertTrue("backup data should have been moved away",
+                 new File(backupConfig.getJournalDirectory() + "1").isDirectory());
+
+      crash(session);
+      assertTrue("backup initialized", backupServer.getServer().waitForActivation(5, TimeUnit.SECONDS));
+      for (int i = 0; i < 6; i++)
+      {
+         receiveMsgsInRange(0, n_msgs);
+      }
+      assertNoMoreMessages();
+   }
+
    @Test
    public void testMessageSync() throws Exception
    {
@@ -0,0 +1,27 @@
+/*
+ * Copyright 2013 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.tests.integration.cluster.failover;
+
+/**
+ * Replicates the journal operations of the live gathered on frames.
+ */
+public class BatchedReplicationBackupSyncJournalTest extends BackupSyncJournalTest
+{
+   @Override
+   protected void createConfigs() throws Exception
+   {
+      super.createConfigs();
+      liveConfig.setReplicationBatchSize(16 * 1024);
+   }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2013 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.tests.integration.journal;
+
+import java.nio.ByteBuffer;
+
+import org.hornetq.core.journal.SequentialFile;
+import org.hornetq.core.journal.SequentialFileFactory;
+import org.hornetq.core.journal.impl.MappedSequentialFileFactory;
+import org.hornetq.tests.unit.core.journal.impl.SequentialFileFactoryTestBase;
+import org.junit.Test;
+
+public class MappedSequentialFileFactoryTest extends SequentialFileFactoryTestBase
+{
+
+   @Override
+   protected SequentialFileFactory createFactory()
+   {
+      return new MappedSequentialFileFactory(getTestDir(), true);
+   }
+
+   @Test
+   public void testAppendPastEndOfFile() throws Exception
+   {
+      SequentialFile file = factory.createSequentialFile("append.hq", 1);
+
+      file.open();
+
+      try
+      {
+         file.fill(0, 10, (byte)0);
+
+         file.position(10);
+
+         // the first write fits in the mapping, the others grow the file
+         for (int i = 0; i < 3; i++)
+         {
+            ByteBuffer bytes = factory.newBuffer(10);
+            for (int j = 0; j < 10; j++)
+            {
+               bytes.put((byte)(i + 1));
+            }
+            bytes.rewind();
+            file.writeDirect(bytes, true);
+         }
+
+         assertEquals(40, file.size());
+
+         file.position(0);
+
+         ByteBuffer read = factory.newBuffer(100);
+
+         assertEquals(40, file.read(read));
+
+         for (int i = 0; i < 40; i++)
+         {
+            assertEquals(i / 10, read.get(i));
+         }
+
+         read = factory.newBuffer(10);
+
+         assertEquals(-1, file.read(read));
+      }
+      finally
+      {
+         file.close();
+      }
+
+      file.open();
+
+      try
+      {
+         assertEquals(40, file.size());
+      }
+      finally
+      {
+         file.close();
+      }
+   }
+}
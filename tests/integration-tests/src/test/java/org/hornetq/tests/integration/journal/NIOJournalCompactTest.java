@@ -1266,6 +1266,98 @@ public class NIOJournalCompactTest extends JournalImplTestBase
 
    }
 
+   @Test
+   public void testCompactFailureRestoresJournal() throws Exception
+   {
+      setup(2, 60 * 1024, false);
+
+      final AtomicBoolean failCompact = new AtomicBoolean(true);
+
+      journal = new JournalImpl(fileSize, minFiles, 0, 0, fileFactory, filePrefix, fileExtension, maxAIO)
+      {
+         @Override
+         public void onCompactDone()
+         {
+            if (failCompact.get())
+            {
+               try
+               {
+                  // updates, deletes, commits and rollbacks that happened while compacting
+                  NIOJournalCompactTest.this.update(0);
+                  NIOJournalCompactTest.this.delete(1);
+                  NIOJournalCompactTest.this.add(1000);
+                  NIOJournalCompactTest.this.updateTx(10, 2);
+                  NIOJournalCompactTest.this.commit(10);
+                  NIOJournalCompactTest.this.commit(1);
+                  NIOJournalCompactTest.this.rollback(2);
+               }
+               catch (Exception e)
+               {
+                  throw new RuntimeException(e);
+               }
+
+               throw new IllegalStateException("Simulating a failure while compacting");
+            }
+         }
+      };
+
+      startJournal();
+      load();
+
+      for (int i = 0; i < 100; i++)
+      {
+         add(i);
+         if (i % 10 == 0)
+         {
+            journal.forceMoveNextFile();
+         }
+         if (i % 2 == 0)
+         {
+            update(i);
+         }
+      }
+
+      addTx(1, 200);
+      updateTx(1, 3);
+      addTx(2, 201);
+      addTx(3, 202);
+
+      journal.forceMoveNextFile();
+
+      int files = journal.getDataFilesCount();
+
+      try
+      {
+         journal.testCompact();
+         Assert.fail("Compacting was supposed to fail");
+      }
+      catch (RuntimeException expected)
+      {
+      }
+
+      Assert.assertTrue(journal.getDataFilesCount() >= files);
+
+      // the records compacting was working on are still known to the journal
+      update(2);
+      update(200);
+      delete(3);
+      delete(1000);
+      commit(3);
+      update(202);
+
+      failCompact.set(false);
+
+      journal.testCompact();
+
+      update(4);
+      delete(200);
+
+      stopJournal();
+      createJournal();
+      startJournal();
+      loadAndCheck();
+   }
+
    @Test
    public void testLiveSize() throws Exception
    {
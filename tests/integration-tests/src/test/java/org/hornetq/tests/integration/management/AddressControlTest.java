@@ -27,6 +27,7 @@ import org.junit.Assert;
 import org.hornetq.api.config.HornetQDefaultConfiguration;
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.api.core.TransportConfiguration;
+import org.hornetq.api.core.client.ClientConsumer;
 import org.hornetq.api.core.client.ClientMessage;
 import org.hornetq.api.core.client.ClientProducer;
 import org.hornetq.api.core.client.ClientSession;
@@ -276,6 +277,63 @@ public class AddressControlTest extends ManagementTestBase
       Assert.assertEquals(serverQueue.getPageSubscription().getPagingStore().getAddressSize(), addressControl.getAddressSize());
    }
 
+   @Test
+   public void testGetPageCacheMetrics() throws Exception
+   {
+      session.close();
+      server.stop();
+      server.getConfiguration().setPersistenceEnabled(true);
+
+      SimpleString address = RandomUtil.randomSimpleString();
+
+      AddressSettings addressSettings = new AddressSettings();
+      addressSettings.setPageSizeBytes(1024);
+      addressSettings.setMaxSizeBytes(10 * 1024);
+      addressSettings.setPageCacheMaxSize(1);
+      final int NUMBER_OF_MESSAGES = 50;
+
+      server.getAddressSettingsRepository().addMatch(address.toString(), addressSettings);
+      server.start();
+      ServerLocator locator2 =
+               HornetQClient.createServerLocatorWithoutHA(new TransportConfiguration(
+                                                                                     UnitTestCase.INVM_CONNECTOR_FACTORY));
+      addServerLocator(locator2);
+      ClientSessionFactory sf2 = createSessionFactory(locator2);
+
+      session = sf2.createSession(false, true, false);
+      session.start();
+      session.createQueue(address, address, true);
+
+      ClientProducer producer = session.createProducer(address);
+
+      for (int i = 0; i < NUMBER_OF_MESSAGES; i++)
+      {
+         ClientMessage msg = session.createMessage(true);
+         msg.getBodyBuffer().writeBytes(new byte[512]);
+         producer.send(msg);
+      }
+      session.commit();
+
+      AddressControl addressControl = createManagementControl(address);
+      Assert.assertTrue(addressControl.getNumberOfPages() > 1);
+      Assert.assertEquals(0, addressControl.getPageCacheMisses());
+
+      ClientConsumer consumer = session.createConsumer(address);
+      for (int i = 0; i < NUMBER_OF_MESSAGES; i++)
+      {
+         ClientMessage msg = consumer.receive(5000);
+         Assert.assertNotNull(msg);
+         msg.acknowledge();
+      }
+      session.commit();
+      consumer.close();
+
+      Assert.assertTrue(addressControl.getPageCacheMisses() > 0);
+      Assert.assertTrue(addressControl.getPageCacheHits() > 0);
+      Assert.assertTrue(addressControl.getPageCacheEvictions() > 0);
+      Assert.assertTrue(addressControl.getPageCacheMemorySize() >= 0);
+   }
+
    @Test
    public void testGetNumberOfBytesPerPage() throws Exception
    {
@@ -70,6 +70,7 @@ import org.hornetq.core.persistence.StorageManager;
 import org.hornetq.core.persistence.impl.journal.JournalStorageManager;
 import org.hornetq.core.persistence.impl.journal.OperationContextImpl;
 import org.hornetq.core.protocol.core.Packet;
+import org.hornetq.core.protocol.core.impl.PacketImpl;
 import org.hornetq.core.replication.ReplicatedJournal;
 import org.hornetq.core.replication.ReplicationManager;
 import org.hornetq.core.server.HornetQComponent;
@@ -105,6 +106,7 @@ public final class ReplicationTest extends ServiceTestBase
    private ServerLocator locator;
 
    private ReplicationManager manager;
+   private int replicationBatchSize;
    private static final SimpleString ADDRESS = new SimpleString("foobar123");
 
 
@@ -119,6 +121,7 @@ public final class ReplicationTest extends ServiceTestBase
       Configuration liveConfig = createDefaultConfig();
 
       backupConfig.setBackup(backup);
+      liveConfig.setReplicationBatchSize(replicationBatchSize);
 
       final String suffix = "_backup";
       backupConfig.setBindingsDirectory(backupConfig.getBindingsDirectory() + suffix);
@@ -280,6 +283,62 @@ public final class ReplicationTest extends ServiceTestBase
       Assert.assertEquals(0, store.getNumberOfPages());
    }
 
+   @Test
+   public void testSendBatchedPackets() throws Exception
+   {
+      replicationBatchSize = 4096;
+      setupServer(true);
+
+      StorageManager storage = getStorage();
+
+      manager = liveServer.getReplicationManager();
+      waitForComponent(manager);
+
+      final AtomicInteger batches = new AtomicInteger();
+      liveServer.getRemotingService().addOutgoingInterceptor(new Interceptor()
+      {
+         public boolean intercept(final Packet packet, final RemotingConnection connection) throws HornetQException
+         {
+            if (packet.getType() == PacketImpl.REPLICATION_BATCH)
+            {
+               batches.incrementAndGet();
+            }
+            return true;
+         }
+      });
+
+      Journal replicatedJournal = new ReplicatedJournal((byte)1, new FakeJournal(), manager);
+
+      // sent once the batch timeout expires
+      replicatedJournal.appendAddRecord(1, (byte)1, new FakeData(), false);
+
+      blockOnReplication(storage, manager);
+
+      Assert.assertEquals(1, batches.get());
+
+      ServerMessage msg = new ServerMessageImpl(1, 1024);
+      msg.setAddress(new SimpleString("dummy"));
+      PagedMessage pgmsg = new PagedMessageImpl(msg, new long[0]);
+
+      final int numberOfOperations = 1000;
+      for (int i = 0; i < numberOfOperations; i++)
+      {
+         replicatedJournal.appendAddRecordTransactional(i, i, (byte)1, new FakeData());
+         replicatedJournal.appendCommitRecord(i, false);
+         if (i % 100 == 0)
+         {
+            // sends the pending frame first
+            manager.pageWrite(pgmsg, i / 100 + 1);
+         }
+      }
+
+      blockOnReplication(storage, manager);
+
+      Assert.assertTrue("Expecting no active tokens:" + manager.getActiveTokens(), manager.getActiveTokens().isEmpty());
+      Assert.assertTrue("operations should have been gathered on frames: " + batches.get(),
+                        batches.get() < numberOfOperations / 10);
+   }
+
    @Test
    public void testSendPacketsWithFailure() throws Exception
    {
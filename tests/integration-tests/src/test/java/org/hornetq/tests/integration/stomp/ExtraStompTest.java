@@ -676,6 +676,239 @@ public class ExtraStompTest extends StompTestBase
       }
    }
 
+   //stomp sender -> large -> stomp receiver, acknowledging streamed messages and the regular ones sent meanwhile
+   @Test
+   public void testClientAckLargeMessagesInterleavedWithRegularOnes() throws Exception
+   {
+      try
+      {
+         server = createPersistentServerWithStompMinLargeSize(2048);
+         server.start();
+
+         setUpAfterServer();
+
+         String frame = "CONNECT\n" + "login: brianm\n"
+               + "passcode: wombats\n\n" + Stomp.NULL;
+         sendFrame(frame);
+         frame = receiveFrame(10000);
+
+         Assert.assertTrue(frame.startsWith("CONNECTED"));
+
+         int szBody = 1024 * 1024;
+         char[] contents = new char[szBody];
+         for (int i = 0; i < szBody; i++)
+         {
+            contents[i] = 'A';
+         }
+         String[] bodies = new String[] { new String(contents), "small", new String(contents) };
+
+         for (String body : bodies)
+         {
+            frame = "SEND\n" + "destination:" + getQueuePrefix() + getQueueName() + "\n"
+                  + "persistent:true\n"
+                  + "\n" + body + Stomp.NULL;
+            sendFrame(frame);
+         }
+
+         frame = "SUBSCRIBE\n" + "destination:" + getQueuePrefix() + getQueueName() + "\n" + "ack:client\n\n" + Stomp.NULL;
+         sendFrame(frame);
+
+         for (String body : bodies)
+         {
+            frame = receiveFrame(60000);
+            Assert.assertNotNull(frame);
+            Assert.assertTrue(frame.startsWith("MESSAGE"));
+            Assert.assertTrue(frame.endsWith("\n\n" + body));
+
+            int start = frame.indexOf("message-id:") + "message-id:".length();
+            String messageID = frame.substring(start, frame.indexOf('\n', start));
+
+            frame = "ACK\n" + "message-id:" + messageID + "\n\n" + Stomp.NULL;
+            sendFrame(frame);
+         }
+
+         long timeout = System.currentTimeMillis() + 5000;
+         while (getMessageCount(server.getHornetQServer(), getQueuePrefix() + getQueueName()) != 0 &&
+                System.currentTimeMillis() < timeout)
+         {
+            Thread.sleep(10);
+         }
+
+         Assert.assertEquals(0, getMessageCount(server.getHornetQServer(), getQueuePrefix() + getQueueName()));
+
+         frame = "DISCONNECT\n" + "\n\n" + Stomp.NULL;
+         sendFrame(frame);
+      }
+      finally
+      {
+         cleanUp();
+         server.stop();
+      }
+   }
+
+   @Test
+   public void testAutoAckBatch() throws Exception
+   {
+      try
+      {
+         server = createServerWithAutoAckBatch(5, 200);
+         server.start();
+
+         setUpAfterServer();
+
+         subscribeAutoAck();
+
+         for (int i = 0; i < 7; i++)
+         {
+            sendMessage("Hello World " + i);
+         }
+
+         for (int i = 0; i < 7; i++)
+         {
+            String frame = receiveFrame(10000);
+            Assert.assertTrue(frame.startsWith("MESSAGE"));
+            Assert.assertTrue(frame.indexOf("Hello World " + i) > 0);
+         }
+
+         // the first five deliveries are committed as a batch, the last two once the batch times out
+         long timeout = System.currentTimeMillis() + 5000;
+         while (getMessageCount(server.getHornetQServer(), getQueuePrefix() + getQueueName()) != 0 &&
+                System.currentTimeMillis() < timeout)
+         {
+            Thread.sleep(10);
+         }
+
+         Assert.assertEquals(0, getMessageCount(server.getHornetQServer(), getQueuePrefix() + getQueueName()));
+      }
+      finally
+      {
+         cleanUp();
+         server.stop();
+      }
+   }
+
+   @Test
+   public void testAutoAckBatchRedeliveredOnConnectionFailure() throws Exception
+   {
+      try
+      {
+         server = createServerWithAutoAckBatch(100, 60000);
+         server.start();
+
+         setUpAfterServer();
+
+         subscribeAutoAck();
+
+         for (int i = 0; i < 3; i++)
+         {
+            sendMessage("Hello World " + i);
+         }
+
+         for (int i = 0; i < 3; i++)
+         {
+            String frame = receiveFrame(10000);
+            Assert.assertTrue(frame.startsWith("MESSAGE"));
+         }
+
+         // the deliveries were never committed, so they go back to the queue with the connection
+         reconnect();
+
+         MessageConsumer consumer = session.createConsumer(queue);
+
+         for (int i = 0; i < 3; i++)
+         {
+            TextMessage message = (TextMessage)consumer.receive(5000);
+            Assert.assertNotNull(message);
+            Assert.assertEquals("Hello World " + i, message.getText());
+         }
+
+         Assert.assertNull(consumer.receiveNoWait());
+      }
+      finally
+      {
+         cleanUp();
+         server.stop();
+      }
+   }
+
+   @Test
+   public void testAutoAckBatchCommittedOnDisconnect() throws Exception
+   {
+      try
+      {
+         server = createServerWithAutoAckBatch(100, 60000);
+         server.start();
+
+         setUpAfterServer();
+
+         subscribeAutoAck();
+
+         for (int i = 0; i < 3; i++)
+         {
+            sendMessage("Hello World " + i);
+         }
+
+         for (int i = 0; i < 3; i++)
+         {
+            String frame = receiveFrame(10000);
+            Assert.assertTrue(frame.startsWith("MESSAGE"));
+         }
+
+         // the client received the messages and closed cleanly, they must not come back
+         String frame = "DISCONNECT\n" + "receipt: 1234\n\n" + Stomp.NULL;
+         sendFrame(frame);
+         frame = receiveFrame(10000);
+         Assert.assertTrue(frame.startsWith("RECEIPT"));
+
+         MessageConsumer consumer = session.createConsumer(queue);
+
+         Assert.assertNull(consumer.receive(1000));
+         Assert.assertEquals(0, getMessageCount(server.getHornetQServer(), getQueuePrefix() + getQueueName()));
+      }
+      finally
+      {
+         cleanUp();
+         server.stop();
+      }
+   }
+
+   private void subscribeAutoAck() throws Exception
+   {
+      String frame = "CONNECT\n" + "login: brianm\n" + "passcode: wombats\n\n" + Stomp.NULL;
+      sendFrame(frame);
+      frame = receiveFrame(10000);
+      Assert.assertTrue(frame.startsWith("CONNECTED"));
+
+      frame = "SUBSCRIBE\n" + "destination:" + getQueuePrefix() + getQueueName() + "\n" + "ack:auto\n\n" + Stomp.NULL;
+      sendFrame(frame);
+   }
+
+   protected JMSServerManager createServerWithAutoAckBatch(int batchSize, long batchTimeout) throws Exception
+   {
+      Configuration config = createBasicConfig();
+      config.setSecurityEnabled(false);
+      config.setPersistenceEnabled(false);
+
+      Map<String, Object> params = new HashMap<String, Object>();
+      params.put(TransportConstants.PROTOCOL_PROP_NAME, StompProtocolManagerFactory.STOMP_PROTOCOL_NAME);
+      params.put(TransportConstants.PORT_PROP_NAME, TransportConstants.DEFAULT_STOMP_PORT);
+      params.put(TransportConstants.STOMP_CONSUMERS_CREDIT, "-1");
+      params.put(TransportConstants.STOMP_AUTO_ACK_BATCH_SIZE, batchSize);
+      params.put(TransportConstants.STOMP_AUTO_ACK_BATCH_TIMEOUT, batchTimeout);
+      TransportConfiguration stompTransport = new TransportConfiguration(NETTY_ACCEPTOR_FACTORY, params);
+      config.getAcceptorConfigurations().add(stompTransport);
+      config.getAcceptorConfigurations().add(new TransportConfiguration(INVM_ACCEPTOR_FACTORY));
+      HornetQServer hornetQServer = addServer(HornetQServers.newHornetQServer(config, defUser, defPass));
+
+      JMSConfiguration jmsConfig = new JMSConfigurationImpl();
+      jmsConfig.getQueueConfigurations()
+               .add(new JMSQueueConfigurationImpl(getQueueName(), null, false, getQueueName()));
+      jmsConfig.getTopicConfigurations().add(new TopicConfigurationImpl(getTopicName(), getTopicName()));
+      server = new JMSServerManagerImpl(hornetQServer, jmsConfig);
+      server.setContext(new InVMNamingContext());
+      return server;
+   }
+
    protected JMSServerManager createPersistentServerWithStompMinLargeSize(int sz) throws Exception
    {
       Configuration config = createBasicConfig();
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2013 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.tests.performance.journal;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.hornetq.tests.util.UnitTestCase;
+import org.hornetq.utils.ConcurrentLongHashMap;
+import org.junit.Test;
+
+/**
+ * Compares the time and the heap taken by the index of live records of the journal, kept on a
+ * {@link ConcurrentLongHashMap}, with a ConcurrentHashMap of boxed IDs as the journal used before.
+ * <p>
+ * All the records share the same value, so only the footprint of the index itself is measured.
+ */
+public class JournalRecordsMapPerfTest extends UnitTestCase
+{
+   private static final int RECORDS = 10 * 1000 * 1000;
+
+   private static final int ITERATIONS = 3;
+
+   private static final Object VALUE = new Object();
+
+   @Test
+   public void testRecordsIndex() throws Exception
+   {
+      for (int i = 0; i < ITERATIONS; i++)
+      {
+         long before = usedMemory();
+         long start = System.currentTimeMillis();
+
+         ConcurrentLongHashMap<Object> longMap = new ConcurrentLongHashMap<Object>();
+         for (long id = 0; id < RECORDS; id++)
+         {
+            longMap.put(id, VALUE);
+         }
+         long putTime = System.currentTimeMillis() - start;
+         long footprint = usedMemory() - before;
+
+         start = System.currentTimeMillis();
+         for (long id = 0; id < RECORDS; id++)
+         {
+            assertNotNull(longMap.get(id));
+         }
+         long getTime = System.currentTimeMillis() - start;
+
+         start = System.currentTimeMillis();
+         for (long id = 0; id < RECORDS; id++)
+         {
+            longMap.remove(id);
+         }
+         long removeTime = System.currentTimeMillis() - start;
+
+         print("ConcurrentLongHashMap", putTime, getTime, removeTime, footprint);
+
+         longMap = null;
+
+         before = usedMemory();
+         start = System.currentTimeMillis();
+
+         ConcurrentHashMap<Long, Object> boxedMap = new ConcurrentHashMap<Long, Object>();
+         for (long id = 0; id < RECORDS; id++)
+         {
+            boxedMap.put(id, VALUE);
+         }
+         putTime = System.currentTimeMillis() - start;
+         footprint = usedMemory() - before;
+
+         start = System.currentTimeMillis();
+         for (long id = 0; id < RECORDS; id++)
+         {
+            assertNotNull(boxedMap.get(id));
+         }
+         getTime = System.currentTimeMillis() - start;
+
+         start = System.currentTimeMillis();
+         for (long id = 0; id < RECORDS; id++)
+         {
+            boxedMap.remove(id);
+         }
+         removeTime = System.currentTimeMillis() - start;
+
+         print("ConcurrentHashMap<Long>", putTime, getTime, removeTime, footprint);
+      }
+   }
+
+   private static void print(final String name,
+                             final long putTime,
+                             final long getTime,
+                             final long removeTime,
+                             final long footprint)
+   {
+      System.out.println(name + " with " +
+                         RECORDS +
+                         " records: put " +
+                         putTime +
+                         " ms, get " +
+                         getTime +
+                         " ms, remove " +
+                         removeTime +
+                         " ms, heap " +
+                         footprint /
+                         (1024 * 1024) +
+                         " MiB");
+   }
+
+   private static long usedMemory()
+   {
+      Runtime runtime = Runtime.getRuntime();
+      for (int i = 0; i < 3; i++)
+      {
+         System.gc();
+      }
+      return runtime.totalMemory() - runtime.freeMemory();
+   }
+}
@@ -12,11 +12,14 @@
  */
 
 package org.hornetq.tests.performance.paging;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
 import java.util.HashMap;
 import java.util.concurrent.CountDownLatch;
 
 import org.hornetq.api.core.HornetQException;
 import org.hornetq.api.core.SimpleString;
+import org.hornetq.api.core.client.ClientConsumer;
 import org.hornetq.api.core.client.ClientMessage;
 import org.hornetq.api.core.client.ClientProducer;
 import org.hornetq.api.core.client.ClientSession;
@@ -171,6 +174,84 @@ public class MeasurePagingMultiThreadTest extends ServiceTestBase
 
    }
 
+   /**
+    * Leaves one message unacked every so often on many subscriptions of a paged address, so no page is ever complete
+    * and every subscription keeps track of what was acked on each page, then measures the heap retained and the GC
+    * time spent while acking.
+    */
+   @Test
+   public void testPagingAckTracking() throws Throwable
+   {
+      final int NUMBER_OF_QUEUES = 20;
+      final int NUMBER_OF_MESSAGES = 20000;
+      final int UNACKED_EVERY = 20;
+
+      Configuration config = createDefaultConfig();
+
+      HashMap<String, AddressSettings> settings = new HashMap<String, AddressSettings>();
+
+      HornetQServer messagingService = createServer(true, config, 10 * 1024, 20 * 1024, settings);
+      messagingService.start();
+      ServerLocator locator = createInVMNonHALocator();
+      try
+      {
+         final ClientSessionFactory factory = createSessionFactory(locator);
+         final SimpleString adr = new SimpleString("test-adr");
+
+         ClientSession session = factory.createSession(false, true, true);
+
+         for (int i = 0; i < NUMBER_OF_QUEUES; i++)
+         {
+            session.createQueue(adr, adr.concat("-" + i), null, true);
+         }
+
+         sendInitialBatch(adr, NUMBER_OF_MESSAGES, 10, factory);
+
+         session.start();
+
+         long heapBefore = usedMemory();
+         long gcTimeBefore = gcTime();
+         long start = System.currentTimeMillis();
+
+         for (int i = 0; i < NUMBER_OF_QUEUES; i++)
+         {
+            ClientConsumer consumer = session.createConsumer(adr.concat("-" + i));
+            for (int m = 0; m < NUMBER_OF_MESSAGES; m++)
+            {
+               ClientMessage message = consumer.receive(5000);
+               assertNotNull(message);
+               if (m % UNACKED_EVERY != 0)
+               {
+                  message.individualAcknowledge();
+               }
+            }
+         }
+
+         long time = System.currentTimeMillis() - start;
+         long gcTime = gcTime() - gcTimeBefore;
+         long heap = usedMemory() - heapBefore;
+
+         System.out.println("Acked " + NUMBER_OF_QUEUES * NUMBER_OF_MESSAGES * (UNACKED_EVERY - 1) / UNACKED_EVERY +
+                            " paged messages on " +
+                            NUMBER_OF_QUEUES +
+                            " subscriptions in " +
+                            time +
+                            " milliseconds, GC time " +
+                            gcTime +
+                            " milliseconds, heap retained " +
+                            heap /
+                            1024 +
+                            " KiB");
+
+         session.close();
+      }
+      finally
+      {
+         locator.close();
+         messagingService.stop();
+      }
+   }
+
    // Package protected ---------------------------------------------
 
    // Protected -----------------------------------------------------
@@ -212,6 +293,26 @@ public class MeasurePagingMultiThreadTest extends ServiceTestBase
       }
    }
 
+   private static long usedMemory()
+   {
+      Runtime runtime = Runtime.getRuntime();
+      for (int i = 0; i < 3; i++)
+      {
+         System.gc();
+      }
+      return runtime.totalMemory() - runtime.freeMemory();
+   }
+
+   private static long gcTime()
+   {
+      long time = 0;
+      for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+      {
+         time += gc.getCollectionTime();
+      }
+      return time;
+   }
+
    /**
     * @param factory
     * @param adr
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2013 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.tests.performance.postoffice;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.filter.Filter;
+import org.hornetq.core.postoffice.Address;
+import org.hornetq.core.postoffice.Binding;
+import org.hornetq.core.postoffice.BindingType;
+import org.hornetq.core.postoffice.Bindings;
+import org.hornetq.core.postoffice.BindingsFactory;
+import org.hornetq.core.postoffice.impl.AddressImpl;
+import org.hornetq.core.postoffice.impl.BindingsImpl;
+import org.hornetq.core.postoffice.impl.WildcardAddressManager;
+import org.hornetq.core.server.Bindable;
+import org.hornetq.core.server.RoutingContext;
+import org.hornetq.core.server.ServerMessage;
+import org.hornetq.tests.util.UnitTestCase;
+import org.junit.Test;
+
+/**
+ * Measures how long it takes to register addresses on a {@link WildcardAddressManager} that already has many
+ * addresses, compared to linking them by matching every new address against every existing one.
+ */
+public class WildcardAddressManagerPerfTest extends UnitTestCase
+{
+   private static final int ADDRESSES = 20000;
+
+   private static final int WILDCARDS = 2000;
+
+   private static final int ITERATIONS = 3;
+
+   @Test
+   public void testRegisterAddresses() throws Exception
+   {
+      long trieTime = 0;
+      long scanTime = 0;
+
+      // the first iterations warm up the JIT and are not counted
+      for (int i = 0; i < ITERATIONS * 2; i++)
+      {
+         long trie = registerOnManager();
+         long scan = registerByScanning();
+
+         if (i >= ITERATIONS)
+         {
+            trieTime += trie;
+            scanTime += scan;
+         }
+      }
+
+      System.out.println("Registering " + ADDRESSES +
+                         " addresses and " +
+                         WILDCARDS +
+                         " wildcards took " +
+                         trieTime / ITERATIONS +
+                         " ms on WildcardAddressManager and " +
+                         scanTime / ITERATIONS +
+                         " ms matching every pair of addresses");
+   }
+
+   private long registerOnManager() throws Exception
+   {
+      WildcardAddressManager manager = new WildcardAddressManager(new BindingsFactory()
+      {
+         public Bindings createBindings(final SimpleString address) throws Exception
+         {
+            return new BindingsImpl(address, null, null);
+         }
+      });
+
+      long start = System.currentTimeMillis();
+
+      for (int i = 0; i < WILDCARDS; i++)
+      {
+         manager.addBinding(new FakeBinding(wildcard(i), i));
+      }
+      for (int i = 0; i < ADDRESSES; i++)
+      {
+         manager.addBinding(new FakeBinding(address(i), WILDCARDS + i));
+      }
+
+      return System.currentTimeMillis() - start;
+   }
+
+   private long registerByScanning()
+   {
+      List<Address> wildcards = new ArrayList<Address>();
+      List<Address> addresses = new ArrayList<Address>();
+
+      long start = System.currentTimeMillis();
+
+      for (int i = 0; i < WILDCARDS; i++)
+      {
+         Address wildcard = new AddressImpl(wildcard(i));
+         for (Address address : addresses)
+         {
+            if (address.matches(wildcard))
+            {
+               address.addLinkedAddress(wildcard);
+               wildcard.addLinkedAddress(address);
+            }
+         }
+         wildcards.add(wildcard);
+      }
+      for (int i = 0; i < ADDRESSES; i++)
+      {
+         Address address = new AddressImpl(address(i));
+         for (Address wildcard : wildcards)
+         {
+            if (address.matches(wildcard))
+            {
+               address.addLinkedAddress(wildcard);
+               wildcard.addLinkedAddress(address);
+            }
+         }
+         addresses.add(address);
+      }
+
+      return System.currentTimeMillis() - start;
+   }
+
+   private static SimpleString address(final int i)
+   {
+      return new SimpleString("jms.topic.region" + i % WILDCARDS + ".symbol" + i);
+   }
+
+   private static SimpleString wildcard(final int i)
+   {
+      return new SimpleString(i % 2 == 0 ? "jms.topic.region" + i + ".*" : "jms.topic.#.symbol" + i);
+   }
+
+   private static final class FakeBinding implements Binding
+   {
+      private final SimpleString address;
+
+      private final SimpleString name;
+
+      private final long id;
+
+      FakeBinding(final SimpleString address, final long id)
+      {
+         this.address = address;
+         this.id = id;
+         name = new SimpleString("binding" + id);
+      }
+
+      public SimpleString getAddress()
+      {
+         return address;
+      }
+
+      public Bindable getBindable()
+      {
+         return null;
+      }
+
+      public BindingType getType()
+      {
+         return BindingType.LOCAL_QUEUE;
+      }
+
+      public SimpleString getUniqueName()
+      {
+         return name;
+      }
+
+      public SimpleString getRoutingName()
+      {
+         return name;
+      }
+
+      public SimpleString getClusterName()
+      {
+         return name;
+      }
+
+      public Filter getFilter()
+      {
+         return null;
+      }
+
+      public boolean isHighAcceptPriority(final ServerMessage message)
+      {
+         return true;
+      }
+
+      public boolean isExclusive()
+      {
+         return false;
+      }
+
+      public long getID()
+      {
+         return id;
+      }
+
+      public int getDistance()
+      {
+         return 0;
+      }
+
+      public void route(final ServerMessage message, final RoutingContext context) throws Exception
+      {
+      }
+
+      public void close() throws Exception
+      {
+      }
+
+      public String toManagementString()
+      {
+         return name.toString();
+      }
+   }
+}
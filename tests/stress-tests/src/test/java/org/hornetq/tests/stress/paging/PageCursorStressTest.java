@@ -111,6 +111,49 @@ public class PageCursorStressTest extends ServiceTestBase
       System.out.println("Cache size = " + cursorProvider.getCacheSize());
    }
 
+   @Test
+   public void testPrefetch() throws Exception
+   {
+      final int NUM_MESSAGES = 100;
+
+      int numberOfPages = addMessages(NUM_MESSAGES, 1024 * 1024);
+
+      assertTrue(numberOfPages > 7);
+
+      PageCursorProviderImpl cursorProvider = new PageCursorProviderImpl(lookupPageStore(ADDRESS),
+                                                                         server.getStorageManager(),
+                                                                         server.getExecutorFactory().getExecutor(),
+                                                                         server.getExecutorFactory().getExecutor(),
+                                                                         5,
+                                                                         -1);
+
+      cursorProvider.prefetch(1);
+      cursorProvider.flushExecutors();
+      assertEquals("nothing is prefetched by default", 0, cursorProvider.getCacheSize());
+
+      cursorProvider.setPrefetchSize(2);
+      cursorProvider.prefetch(1);
+      cursorProvider.flushExecutors();
+
+      assertEquals(2, cursorProvider.getCacheSize());
+      assertEquals(2, cursorProvider.getCacheMisses());
+
+      assertNotNull(cursorProvider.getPageCache(2));
+      assertNotNull(cursorProvider.getPageCache(3));
+      assertEquals(2, cursorProvider.getCacheHits());
+      assertEquals(2, cursorProvider.getCacheMisses());
+
+      // never prefetches more than the cache can hold along with the page being read
+      cursorProvider.setPrefetchSize(10);
+      cursorProvider.prefetch(3);
+      cursorProvider.flushExecutors();
+
+      assertEquals(6, cursorProvider.getCacheMisses());
+      assertEquals(5, cursorProvider.getCacheSize());
+      assertNotNull(cursorProvider.getPageCache(7));
+      assertEquals(6, cursorProvider.getCacheMisses());
+   }
+
    @Test
    public void testSimpleCursor() throws Exception
    {
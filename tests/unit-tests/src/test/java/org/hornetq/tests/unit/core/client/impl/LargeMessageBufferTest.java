@@ -860,6 +860,10 @@ public class LargeMessageBufferTest extends UnitTestCase
       {
       }
 
+      public void flushIndividualAcks() throws HornetQException
+      {
+      }
+
       public int getBufferSize()
       {
 
@@ -3208,6 +3208,57 @@ public abstract class JournalImplTestUnit extends JournalImplTestBase
       Assert.assertEquals(0, journal.getDataFilesCount());
    }
 
+   @Test
+   public void testLoadFilesInParallel() throws Exception
+   {
+      setup(2, 10 * 1024, true);
+
+      createJournal();
+      startJournal();
+      load();
+
+      EncodingSupport xid = new SimpleEncoding(10, (byte)0);
+
+      for (int i = 0; i < 200; i++)
+      {
+         add(i);
+         if (i % 10 == 0)
+         {
+            // transactions spanning several files
+            addTx(1000 + i, 1000 + i);
+            journal.forceMoveNextFile();
+            updateTx(1000 + i, i);
+         }
+         if (i % 20 == 0)
+         {
+            commit(1000 + i);
+         }
+         else if (i % 10 == 0)
+         {
+            prepare(1000 + i, xid);
+         }
+         if (i % 3 == 0)
+         {
+            update(i);
+         }
+         if (i > 50 && i % 5 == 0)
+         {
+            delete(i - 50);
+         }
+      }
+
+      stopJournal(false);
+
+      for (int threads = 1; threads <= 8; threads *= 2)
+      {
+         createJournal();
+         journal.setLoadThreads(threads);
+         startJournal();
+         loadAndCheck();
+         stopJournal(false);
+      }
+   }
+
    @Test
    public void testAddTexThenUpdate() throws Exception
    {
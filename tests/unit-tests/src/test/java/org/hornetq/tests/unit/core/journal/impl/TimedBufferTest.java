@@ -19,6 +19,8 @@ import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -403,4 +405,166 @@ public class TimedBufferTest extends UnitTestCase
          timedBuffer.stop();
       }
    }
+
+   @Test
+   public void testAdaptiveFlushesSingleSyncRightAway() throws Exception
+   {
+      final CountDownLatch flushed = new CountDownLatch(1);
+      class TestObserver implements TimedBufferObserver
+      {
+         public void flushBuffer(final ByteBuffer buffer, final boolean sync, final List<IOAsyncTask> callbacks)
+         {
+            for (IOAsyncTask callback : callbacks)
+            {
+               callback.done();
+            }
+            flushed.countDown();
+         }
+
+         public ByteBuffer newBuffer(final int minSize, final int maxSize)
+         {
+            return ByteBuffer.allocate(maxSize);
+         }
+
+         public int getRemainingBytes()
+         {
+            return 1024 * 1024;
+         }
+      }
+
+      // a static buffer would wait ten seconds for the sync
+      TimedBuffer timedBuffer = new TimedBuffer(100, TimedBufferTest.ONE_SECOND_IN_NANOS * 10, false, true);
+
+      timedBuffer.start();
+
+      try
+      {
+         timedBuffer.setObserver(new TestObserver());
+
+         timedBuffer.checkSize(10);
+         timedBuffer.addBytes(HornetQBuffers.wrappedBuffer(new byte[10]), true, dummyCallback);
+
+         assertTrue(flushed.await(5, TimeUnit.SECONDS));
+      }
+      finally
+      {
+         timedBuffer.stop();
+      }
+   }
+
+   @Test
+   public void testAdaptiveGroupsConcurrentSyncs() throws Exception
+   {
+      final int producers = 8;
+      final int syncsPerProducer = 20;
+
+      final AtomicInteger flushTimes = new AtomicInteger(0);
+      final ExecutorService disk = Executors.newSingleThreadExecutor();
+      class TestObserver implements TimedBufferObserver
+      {
+         public void flushBuffer(final ByteBuffer buffer, final boolean sync, final List<IOAsyncTask> callbacks)
+         {
+            flushTimes.incrementAndGet();
+            disk.execute(new Runnable()
+            {
+               public void run()
+               {
+                  try
+                  {
+                     // a slow sync
+                     Thread.sleep(10);
+                  }
+                  catch (InterruptedException e)
+                  {
+                     return;
+                  }
+                  for (IOAsyncTask callback : callbacks)
+                  {
+                     callback.done();
+                  }
+               }
+            });
+         }
+
+         public ByteBuffer newBuffer(final int minSize, final int maxSize)
+         {
+            return ByteBuffer.allocate(maxSize);
+         }
+
+         public int getRemainingBytes()
+         {
+            return 1024 * 1024;
+         }
+      }
+
+      final TimedBuffer timedBuffer = new TimedBuffer(10 * 1024, TimedBufferTest.ONE_SECOND_IN_NANOS / 10, false, true);
+
+      timedBuffer.start();
+
+      try
+      {
+         timedBuffer.setObserver(new TestObserver());
+
+         final CountDownLatch done = new CountDownLatch(producers);
+         final AtomicInteger errors = new AtomicInteger(0);
+
+         for (int i = 0; i < producers; i++)
+         {
+            new Thread()
+            {
+               @Override
+               public void run()
+               {
+                  try
+                  {
+                     for (int j = 0; j < syncsPerProducer; j++)
+                     {
+                        final CountDownLatch synced = new CountDownLatch(1);
+                        synchronized (timedBuffer)
+                        {
+                           timedBuffer.checkSize(10);
+                           timedBuffer.addBytes(HornetQBuffers.wrappedBuffer(new byte[10]), true, new IOAsyncTask()
+                           {
+                              public void done()
+                              {
+                                 synced.countDown();
+                              }
+
+                              public void onError(final int errorCode, final String errorMessage)
+                              {
+                              }
+                           });
+                        }
+                        if (!synced.await(10, TimeUnit.SECONDS))
+                        {
+                           errors.incrementAndGet();
+                        }
+                     }
+                  }
+                  catch (Exception e)
+                  {
+                     errors.incrementAndGet();
+                  }
+                  finally
+                  {
+                     done.countDown();
+                  }
+               }
+            }.start();
+         }
+
+         assertTrue(done.await(60, TimeUnit.SECONDS));
+         assertEquals(0, errors.get());
+
+         assertTrue(timedBuffer.getSyncLatency() > 0);
+
+         // the producers share the syncs instead of each of them waiting for a sync of its own
+         assertTrue("flushes: " + flushTimes.get(), flushTimes.get() <= producers * syncsPerProducer / 2);
+      }
+      finally
+      {
+         timedBuffer.stop();
+         disk.shutdown();
+      }
+   }
 }
@@ -14,11 +14,13 @@
 package org.hornetq.tests.unit.core.message.impl;
 
 import org.hornetq.api.core.HornetQBuffer;
+import org.hornetq.core.protocol.core.impl.wireformat.SessionReceiveMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.SessionSendMessage;
 import org.hornetq.core.server.impl.ServerMessageImpl;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -231,6 +233,66 @@ public class MessageImplTest extends UnitTestCase
       }
    }
 
+   @Test
+   public void testEncodedBufferSharedByDeliveries() throws Exception
+   {
+      ServerMessageImpl msg = new ServerMessageImpl(123, 1024);
+      msg.setAddress(new SimpleString("address"));
+      msg.getBodyBuffer().writeBytes(RandomUtil.randomBytes(512));
+      msg.encodeMessageIDToBuffer();
+
+      HornetQBuffer first = new SessionReceiveMessage(1, msg, 1).encode(null);
+      byte[] firstBytes = readBytes(first);
+
+      // the following deliveries share the bytes of the message, but not the fields written after it
+      HornetQBuffer second = new SessionReceiveMessage(2, msg, 2).encode(null);
+      byte[] secondBytes = readBytes(second);
+
+      int endOfMessage = msg.getEndOfMessagePosition();
+      Assert.assertEquals(firstBytes.length, secondBytes.length);
+      for (int i = 0; i < endOfMessage; i++)
+      {
+         Assert.assertEquals(firstBytes[i], secondBytes[i]);
+      }
+      Assert.assertEquals(1, first.getLong(endOfMessage));
+      Assert.assertEquals(2, second.getLong(endOfMessage));
+      Assert.assertEquals(2, second.getInt(endOfMessage + 8));
+   }
+
+   @Test
+   public void testCopySharesBufferUntilChanged() throws Exception
+   {
+      ServerMessageImpl msg = new ServerMessageImpl(123, 1024);
+      msg.setAddress(new SimpleString("address"));
+      msg.getBodyBuffer().writeBytes(RandomUtil.randomBytes(512));
+
+      byte[] original = readBytes(new SessionReceiveMessage(1, msg, 1).encode(null));
+
+      ServerMessageImpl copy = (ServerMessageImpl)msg.copy();
+      copy.putStringProperty("prop", "value");
+      copy.setMessageID(456);
+      copy.encodeMessageIDToBuffer();
+
+      Assert.assertTrue(readBytes(new SessionReceiveMessage(1, copy, 1).encode(null)).length > original.length);
+      Assert.assertTrue(Arrays.equals(original, readBytes(new SessionReceiveMessage(1, msg, 1).encode(null))));
+
+      ServerMessageImpl secondCopy = (ServerMessageImpl)msg.copy();
+      byte[] secondCopyBody = readBytes(secondCopy.getBodyBuffer());
+
+      msg.getBodyBuffer().writeBytes(new byte[10]);
+
+      Assert.assertTrue(Arrays.equals(secondCopyBody, readBytes(secondCopy.getBodyBuffer())));
+      Assert.assertEquals(new SimpleString("value"), copy.getSimpleStringProperty("prop"));
+      Assert.assertFalse(msg.containsProperty("prop"));
+   }
+
+   private static byte[] readBytes(final HornetQBuffer buffer)
+   {
+      byte[] bytes = new byte[buffer.readableBytes()];
+      buffer.getBytes(buffer.readerIndex(), bytes);
+      return bytes;
+   }
+
    @Test
    public void testMessageCopyIssue() throws Exception
    {
@@ -79,6 +79,135 @@ public class PageTest extends UnitTestCase
       testDamagedPage(new FakeSequentialFileFactory(1, false), 100);
    }
 
+   @Test
+   public void testIndexWithNIO() throws Exception
+   {
+      recreateDirectory(getTestDir());
+      testIndex(new NIOSequentialFileFactory(getTestDir()), 1000);
+   }
+
+   @Test
+   public void testIndexFake() throws Exception
+   {
+      testIndex(new FakeSequentialFileFactory(1, false), 100);
+   }
+
+   @Test
+   public void testMessagesLargerThanReadBuffer() throws Exception
+   {
+      recreateDirectory(getTestDir());
+
+      SequentialFileFactory factory = new NIOSequentialFileFactory(getTestDir());
+
+      SequentialFile file = factory.createSequentialFile("00010.page", 1);
+
+      Page impl = new Page(new SimpleString("something"), new NullStorageManager(), factory, file, 10);
+
+      impl.open();
+
+      int[] encodeSizes = new int[10];
+
+      for (int i = 0; i < 10; i++)
+      {
+         ServerMessage msg = new ServerMessageImpl(i, 100);
+         // every other message is bigger than the buffer used to read the page
+         msg.getBodyBuffer().writeBytes(new byte[i % 2 == 0 ? 10 : 100 * 1024]);
+         msg.setAddress(new SimpleString("Test"));
+         encodeSizes[i] = msg.getEncodeSize();
+         impl.write(new PagedMessageImpl(msg, new long[0]));
+      }
+
+      impl.writeIndex();
+      impl.close();
+
+      file = factory.createSequentialFile("00010.page", 1);
+      file.open();
+      impl = new Page(new SimpleString("something"), new NullStorageManager(), factory, file, 10);
+
+      List<PagedMessage> msgs = impl.read(new NullStorageManager());
+
+      Assert.assertEquals(10, msgs.size());
+
+      for (int i = 0; i < 10; i++)
+      {
+         Assert.assertEquals(i, msgs.get(i).getMessage().getMessageID());
+         Assert.assertEquals(i, impl.read(new NullStorageManager(), i).getMessage().getMessageID());
+         Assert.assertEquals(encodeSizes[i], msgs.get(i).getMessage().getEncodeSize());
+      }
+
+      impl.delete(null);
+   }
+
+   /** Validate messages are read through the index, and that a page indexed and written again is still read */
+   protected void testIndex(final SequentialFileFactory factory, final int numberOfElements) throws Exception
+   {
+      SequentialFile file = factory.createSequentialFile("00010.page", 1);
+
+      Page impl = new Page(new SimpleString("something"), new NullStorageManager(), factory, file, 10);
+
+      impl.open();
+
+      SimpleString simpleDestination = new SimpleString("Test");
+
+      ArrayList<HornetQBuffer> buffers = addPageElements(simpleDestination, impl, numberOfElements);
+
+      impl.writeIndex();
+      impl.close();
+
+      file = factory.createSequentialFile("00010.page", 1);
+      file.open();
+      impl = new Page(new SimpleString("something"), new NullStorageManager(), factory, file, 10);
+
+      Assert.assertEquals(numberOfElements, impl.readNumberOfMessages(new NullStorageManager()));
+
+      for (int i = numberOfElements - 1; i >= 0; i -= 7)
+      {
+         PagedMessage msg = impl.read(new NullStorageManager(), i);
+         Assert.assertEquals(i, msg.getMessage().getMessageID());
+         UnitTestCase.assertEqualsByteArrays(buffers.get(i).toByteBuffer().array(), msg.getMessage()
+                                                                                      .getBodyBuffer()
+                                                                                      .toByteBuffer()
+                                                                                      .array());
+      }
+
+      Assert.assertNull(impl.read(new NullStorageManager(), numberOfElements));
+
+      // the page is reopened to be written after it was indexed, as the last page is when the server restarts
+      Assert.assertEquals(numberOfElements, impl.read(new NullStorageManager()).size());
+
+      buffers.addAll(addPageElements(simpleDestination, impl, 10));
+
+      impl.close();
+
+      file = factory.createSequentialFile("00010.page", 1);
+      file.open();
+      impl = new Page(new SimpleString("something"), new NullStorageManager(), factory, file, 10);
+
+      Assert.assertEquals(numberOfElements + 10, impl.readNumberOfMessages(new NullStorageManager()));
+      // addPageElements numbers the messages from 0 again
+      Assert.assertEquals(5, impl.read(new NullStorageManager(), numberOfElements + 5).getMessage().getMessageID());
+
+      impl.writeIndex();
+
+      List<PagedMessage> msgs = impl.read(new NullStorageManager());
+
+      Assert.assertEquals(numberOfElements + 10, msgs.size());
+
+      for (int i = 0; i < msgs.size(); i++)
+      {
+         UnitTestCase.assertEqualsByteArrays(buffers.get(i).toByteBuffer().array(), msgs.get(i)
+                                                                                        .getMessage()
+                                                                                        .getBodyBuffer()
+                                                                                        .toByteBuffer()
+                                                                                        .array());
+      }
+
+      impl.delete(null);
+
+      Assert.assertEquals(0, factory.listFiles("page").size());
+      Assert.assertEquals(0, factory.listFiles("invalidPage").size());
+   }
+
    /** Validate if everything we add is recovered */
    protected void testAdd(final SequentialFileFactory factory, final int numberOfElements) throws Exception
    {
@@ -298,4 +298,30 @@ public class AddressImplTest extends UnitTestCase
       Assert.assertFalse(a1.matches(w));
    }
 
+   @Test
+   public void testV()
+   {
+      SimpleString s1 = new SimpleString("b.a.b");
+      SimpleString s2 = new SimpleString("b.a.c");
+      SimpleString s3 = new SimpleString("#.b.#");
+      Address a1 = new AddressImpl(s1);
+      Address a2 = new AddressImpl(s2);
+      Address w = new AddressImpl(s3);
+      Assert.assertTrue(a1.matches(w));
+      Assert.assertTrue(a2.matches(w));
+   }
+
+   @Test
+   public void testW()
+   {
+      SimpleString s1 = new SimpleString("a.b.c");
+      SimpleString s2 = new SimpleString("a.b.c.x");
+      SimpleString s3 = new SimpleString("#.c.x.#");
+      Address a1 = new AddressImpl(s1);
+      Address a2 = new AddressImpl(s2);
+      Address w = new AddressImpl(s3);
+      Assert.assertFalse(a1.matches(w));
+      Assert.assertTrue(a2.matches(w));
+   }
+
 }
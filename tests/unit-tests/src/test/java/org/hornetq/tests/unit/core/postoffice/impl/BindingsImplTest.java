@@ -15,6 +15,7 @@ package org.hornetq.tests.unit.core.postoffice.impl;
 
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
@@ -24,6 +25,7 @@ import javax.transaction.xa.Xid;
 import org.hornetq.api.core.HornetQException;
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.core.filter.Filter;
+import org.hornetq.core.filter.impl.FilterImpl;
 import org.hornetq.core.postoffice.Binding;
 import org.hornetq.core.postoffice.BindingType;
 import org.hornetq.core.postoffice.Bindings;
@@ -79,6 +81,94 @@ public class BindingsImplTest extends UnitTestCase
       }
    }
 
+   @Test
+   public void testRouteWithIndexedFilters() throws Exception
+   {
+      final Bindings bind = new BindingsImpl(null, null, null);
+
+      FakeBinding red = new FakeBinding(new SimpleString("red"), FilterImpl.createFilter("color = 'red'"));
+      FakeBinding blue = new FakeBinding(new SimpleString("blue"), FilterImpl.createFilter("color = 'blue'"));
+      FakeBinding heavy = new FakeBinding(new SimpleString("heavy"), FilterImpl.createFilter("weight > 100"));
+      FakeBinding light = new FakeBinding(new SimpleString("light"),
+                                          FilterImpl.createFilter("weight BETWEEN 0 AND 100 AND color <> 'blue'"));
+      FakeBinding all = new FakeBinding(new SimpleString("all"), null);
+
+      bind.addBinding(red);
+      bind.addBinding(blue);
+      bind.addBinding(heavy);
+      bind.addBinding(light);
+      bind.addBinding(all);
+
+      ServerMessage message = new ServerMessageImpl(1, 100);
+      message.putStringProperty(new SimpleString("color"), new SimpleString("red"));
+      message.putIntProperty(new SimpleString("weight"), 50);
+
+      bind.route(message, new RoutingContextImpl(new FakeTransaction()));
+
+      assertEquals(1, red.routed);
+      assertEquals(0, blue.routed);
+      assertEquals(0, heavy.routed);
+      assertEquals(1, light.routed);
+      assertEquals(1, all.routed);
+
+      bind.removeBinding(red);
+      bind.removeBinding(light);
+
+      bind.route(message, new RoutingContextImpl(new FakeTransaction()));
+
+      assertEquals(1, red.routed);
+      assertEquals(1, light.routed);
+      assertEquals(2, all.routed);
+   }
+
+   @Test
+   public void testRouteWithIndexedRanges() throws Exception
+   {
+      final Bindings bind = new BindingsImpl(null, null, null);
+
+      List<FakeBinding> ranges = new ArrayList<FakeBinding>();
+
+      // overlapping and nested ranges
+      for (int i = 0; i < 50; i++)
+      {
+         FakeBinding range = new FakeBinding(new SimpleString("range" + i),
+                                             FilterImpl.createFilter("weight BETWEEN " + i + " AND " + (i + 10)));
+         ranges.add(range);
+         bind.addBinding(range);
+      }
+
+      FakeBinding wide = new FakeBinding(new SimpleString("wide"), FilterImpl.createFilter("weight BETWEEN -100 AND 100"));
+      bind.addBinding(wide);
+
+      // the same routing name with and without an indexed filter is only routed to once
+      FakeBinding shared = new FakeBinding(new SimpleString("shared"), FilterImpl.createFilter("weight BETWEEN 20 AND 30"));
+      FakeBinding sharedAll = new FakeBinding(new SimpleString("shared"), null);
+      bind.addBinding(shared);
+      bind.addBinding(sharedAll);
+
+      ServerMessage message = new ServerMessageImpl(1, 100);
+      message.putIntProperty(new SimpleString("weight"), 25);
+
+      bind.route(message, new RoutingContextImpl(new FakeTransaction()));
+
+      for (int i = 0; i < 50; i++)
+      {
+         assertEquals("range" + i, i >= 15 && i <= 25 ? 1 : 0, ranges.get(i).routed);
+      }
+
+      assertEquals(1, wide.routed);
+      assertEquals(1, shared.routed + sharedAll.routed);
+
+      bind.removeBinding(ranges.get(20));
+      bind.removeBinding(wide);
+
+      bind.route(message, new RoutingContextImpl(new FakeTransaction()));
+
+      assertEquals(1, ranges.get(20).routed);
+      assertEquals(2, ranges.get(21).routed);
+      assertEquals(1, wide.routed);
+   }
+
    private void internalTest(final boolean route) throws Exception
    {
       final FakeBinding fake = new FakeBinding(new SimpleString("a"));
@@ -288,9 +378,19 @@ public class BindingsImplTest extends UnitTestCase
 
       final SimpleString name;
 
+      final Filter filter;
+
+      int routed;
+
       FakeBinding(final SimpleString name)
+      {
+         this(name, new FakeFilter());
+      }
+
+      FakeBinding(final SimpleString name, final Filter filter)
       {
          this.name = name;
+         this.filter = filter;
       }
 
       public SimpleString getAddress()
@@ -329,7 +429,7 @@ public class BindingsImplTest extends UnitTestCase
        */
       public Filter getFilter()
       {
-         return new FakeFilter();
+         return filter;
       }
 
       public long getID()
@@ -374,7 +474,7 @@ public class BindingsImplTest extends UnitTestCase
 
       public void route(final ServerMessage message, final RoutingContext context) throws Exception
       {
-
+         routed++;
       }
 
       /* (non-Javadoc)
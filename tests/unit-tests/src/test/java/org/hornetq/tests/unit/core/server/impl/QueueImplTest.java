@@ -36,6 +36,9 @@ import org.hornetq.core.server.HandleStatus;
 import org.hornetq.core.server.MessageReference;
 import org.hornetq.core.server.ServerMessage;
 import org.hornetq.core.server.impl.QueueImpl;
+import org.hornetq.core.settings.HierarchicalRepository;
+import org.hornetq.core.settings.impl.AddressSettings;
+import org.hornetq.core.settings.impl.HierarchicalObjectRepository;
 import org.hornetq.tests.unit.core.server.impl.fakes.FakeConsumer;
 import org.hornetq.tests.unit.core.server.impl.fakes.FakeFilter;
 import org.hornetq.tests.unit.core.server.impl.fakes.FakePostOffice;
@@ -1173,8 +1176,184 @@ public class QueueImplTest extends UnitTestCase
       Assert.assertEquals(20, queue.getDeliveringCount());
    }
 
+   @Test
+   public void testCompactQueueStorage() throws Exception
+   {
+      AddressSettings settings = new AddressSettings();
+      settings.setCompactQueueStorage(true);
+      settings.setMessageIDIndex(true);
+      QueueImpl queue = createQueue(settings);
+
+      // enough messages to fill several chunks
+      final int numMessages = 1000;
+
+      List<MessageReference> refs = new ArrayList<MessageReference>();
+
+      for (int i = 0; i < numMessages; i++)
+      {
+         MessageReference ref = generateReference(queue, i);
+         queue.addTail(ref);
+         if (i % 10 != 0)
+         {
+            refs.add(ref);
+         }
+      }
+
+      queue.flushExecutor();
+
+      for (int i = 0; i < numMessages; i += 10)
+      {
+         Assert.assertNotNull(queue.getReference(i));
+         Assert.assertNotNull(queue.removeReferenceWithID(i));
+         Assert.assertNull(queue.getReference(i));
+      }
+
+      Assert.assertEquals(refs.size(), queue.getMessageCount());
+
+      FakeConsumer consumer = new FakeConsumer();
+      consumer.setStatusImmediate(HandleStatus.BUSY);
+      queue.addConsumer(consumer);
+      queue.deliverNow();
+
+      Assert.assertTrue(consumer.getReferences().isEmpty());
+
+      consumer.setStatusImmediate(HandleStatus.HANDLED);
+      queue.deliverNow();
+
+      assertRefListsIdenticalRefs(refs, consumer.getReferences());
+      Assert.assertEquals(refs.size(), queue.getDeliveringCount());
+   }
+
+   @Test
+   public void testConsumersWithSelectorPartitions() throws Exception
+   {
+      AddressSettings settings = new AddressSettings();
+      settings.setSelectorPartitions(true);
+      QueueImpl queue = createQueue(settings);
+
+      String[] colors = new String[]{"red", "green", "blue"};
+      List<MessageReference> greenRefs = new ArrayList<MessageReference>();
+      List<MessageReference> redRefs = new ArrayList<MessageReference>();
+
+      for (int i = 0; i < 30; i++)
+      {
+         MessageReference ref = generateReference(queue, i);
+         ref.getMessage().putStringProperty("color", colors[i % 3]);
+         if (i % 3 == 0)
+         {
+            redRefs.add(ref);
+         }
+         else if (i % 3 == 1)
+         {
+            greenRefs.add(ref);
+         }
+         queue.addTail(ref);
+      }
+
+      // the green partition is built from the messages already on the queue, the red one as well
+      FakeConsumer greenConsumer = new FakeConsumer(FilterImpl.createFilter("color = 'green'"));
+      FakeConsumer redConsumer = new FakeConsumer(FilterImpl.createFilter("color = 'red'"));
+      queue.addConsumer(greenConsumer);
+      queue.addConsumer(redConsumer);
+
+      queue.deliverNow();
+
+      assertRefListsIdenticalRefs(greenRefs, greenConsumer.getReferences());
+      assertRefListsIdenticalRefs(redRefs, redConsumer.getReferences());
+      Assert.assertEquals(30, queue.getMessageCount());
+      Assert.assertEquals(20, queue.getDeliveringCount());
+
+      // green messages taken by another consumer must not be delivered again from the partition
+      greenConsumer.setStatusImmediate(HandleStatus.BUSY);
+
+      for (int i = 30; i < 36; i++)
+      {
+         MessageReference ref = generateReference(queue, i);
+         ref.getMessage().putStringProperty("color", "green");
+         queue.addTail(ref);
+      }
+
+      FakeConsumer consumer = new FakeConsumer();
+      queue.addConsumer(consumer);
+      queue.deliverNow();
+      queue.removeConsumer(consumer);
+
+      Assert.assertEquals(16, consumer.getReferences().size());
+
+      greenConsumer.setStatusImmediate(HandleStatus.HANDLED);
+
+      MessageReference ref = generateReference(queue, 36);
+      ref.getMessage().putStringProperty("color", "green");
+      greenRefs.add(ref);
+      queue.addTail(ref);
+
+      queue.deliverNow();
+
+      assertRefListsIdenticalRefs(greenRefs, greenConsumer.getReferences());
+      Assert.assertEquals(37, queue.getDeliveringCount());
+      Assert.assertEquals(37, queue.getMessageCount());
+   }
+
+   @Test
+   public void testSelectorPartitionsWithCancelledReferences() throws Exception
+   {
+      AddressSettings settings = new AddressSettings();
+      settings.setSelectorPartitions(true);
+      QueueImpl queue = createQueue(settings);
+
+      FakeConsumer greenConsumer = new FakeConsumer(FilterImpl.createFilter("color = 'green'"));
+      greenConsumer.setStatusImmediate(HandleStatus.BUSY);
+      queue.addConsumer(greenConsumer);
+
+      List<MessageReference> greenRefs = new ArrayList<MessageReference>();
+      for (int i = 0; i < 10; i++)
+      {
+         MessageReference ref = generateReference(queue, i);
+         ref.getMessage().putStringProperty("color", "green");
+         greenRefs.add(ref);
+         queue.addTail(ref);
+      }
+
+      // another consumer takes them while the green one is busy, and they come back to the queue
+      FakeConsumer consumer = new FakeConsumer();
+      queue.addConsumer(consumer);
+      queue.deliverNow();
+      queue.removeConsumer(consumer);
+
+      Assert.assertEquals(10, consumer.getReferences().size());
+
+      for (int i = consumer.getReferences().size() - 1; i >= 0; i--)
+      {
+         queue.cancel(consumer.getReferences().get(i), System.currentTimeMillis());
+      }
+
+      greenConsumer.setStatusImmediate(HandleStatus.HANDLED);
+      queue.deliverNow();
+
+      // each of them once, the partition doesn't keep the ones taken away besides the ones cancelled back
+      assertRefListsIdenticalRefs(greenRefs, greenConsumer.getReferences());
+   }
+
    // Private ------------------------------------------------------------------------------
 
+   private QueueImpl createQueue(final AddressSettings settings)
+   {
+      HierarchicalRepository<AddressSettings> repository = new HierarchicalObjectRepository<AddressSettings>();
+      repository.addMatch(QueueImplTest.address1.toString(), settings);
+
+      return new QueueImpl(1,
+                           QueueImplTest.address1,
+                           QueueImplTest.queue1,
+                           null,
+                           false,
+                           true,
+                           scheduledExecutor,
+                           new FakePostOffice(),
+                           null,
+                           repository,
+                           executor);
+   }
+
    private void testConsumerWithFilters(final boolean direct) throws Exception
    {
       QueueImpl queue = new QueueImpl(1,
@@ -1378,6 +1557,51 @@ public class QueueImplTest extends UnitTestCase
 
    }
 
+   @Test
+   public void testIndexedGetAndRemoveReference() throws Exception
+   {
+      AddressSettings settings = new AddressSettings();
+      settings.setMessageIDIndex(true);
+
+      QueueImpl queue = createQueue(settings);
+
+      List<MessageReference> refs = new ArrayList<MessageReference>();
+
+      for (int i = 0; i < 10; i++)
+      {
+         MessageReference ref = generateReference(queue, i);
+         queue.addTail(ref);
+         refs.add(ref);
+      }
+
+      queue.flushExecutor();
+
+      for (int i = 0; i < 10; i++)
+      {
+         Assert.assertSame(refs.get(i), queue.getReference(i));
+      }
+
+      Assert.assertNull(queue.getReference(10));
+
+      Assert.assertSame(refs.get(3), queue.removeReferenceWithID(3));
+      Assert.assertNull(queue.getReference(3));
+      Assert.assertNull(queue.removeReferenceWithID(3));
+
+      // a reference put back at the head is found again
+      queue.addHead(refs.get(3));
+      Assert.assertSame(refs.get(3), queue.getReference(3));
+
+      Assert.assertEquals(10, queue.getMessageCount());
+
+      FakeConsumer consumer = new FakeConsumer();
+      queue.addConsumer(consumer);
+      queue.deliverNow();
+
+      Assert.assertEquals(10, consumer.getReferences().size());
+      Assert.assertNull(queue.getReference(5));
+      Assert.assertNull(queue.removeReferenceWithID(5));
+   }
+
    /**
     * Test the paused and resumed states with async deliveries.
     * @throws Exception
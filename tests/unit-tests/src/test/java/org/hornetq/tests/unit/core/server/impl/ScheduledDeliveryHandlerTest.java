@@ -0,0 +1,221 @@
+/*
+ * Copyright 2013 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.tests.unit.core.server.impl;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.server.MessageReference;
+import org.hornetq.core.server.impl.ScheduledDeliveryHandlerImpl;
+import org.hornetq.core.server.impl.ServerMessageImpl;
+import org.hornetq.tests.unit.core.postoffice.impl.FakeQueue;
+import org.hornetq.tests.util.UnitTestCase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ScheduledDeliveryHandlerTest extends UnitTestCase
+{
+   private ScheduledThreadPoolExecutor executor;
+
+   private ScheduledDeliveryHandlerImpl handler;
+
+   private DeliveryQueue queue;
+
+   @Override
+   @Before
+   public void setUp() throws Exception
+   {
+      super.setUp();
+      executor = new ScheduledThreadPoolExecutor(1);
+      executor.setRemoveOnCancelPolicy(true);
+      handler = new ScheduledDeliveryHandlerImpl(executor);
+      queue = new DeliveryQueue();
+   }
+
+   @Override
+   @After
+   public void tearDown() throws Exception
+   {
+      executor.shutdownNow();
+      super.tearDown();
+   }
+
+   @Test
+   public void testOrderForSameDeliveryTime() throws Exception
+   {
+      long deliveryTime = System.currentTimeMillis() + 500;
+
+      queue.expect(5);
+
+      schedule(1, deliveryTime, true);
+      schedule(2, deliveryTime, true);
+      schedule(3, deliveryTime, false);
+      schedule(4, deliveryTime, false);
+      schedule(5, deliveryTime, true);
+
+      assertEquals(5, handler.getScheduledCount());
+      assertIDs(handler.getScheduledReferences(), 4, 3, 1, 2, 5);
+
+      assertTrue(queue.await());
+
+      // the order a consumer gets them once each reference has been added to the head of the queue
+      assertIDs(queue.consumerOrder, 4, 3, 1, 2, 5);
+      assertEquals(0, handler.getScheduledCount());
+      assertEquals(0, queue.consumerOrder.getFirst().getScheduledDeliveryTime());
+   }
+
+   @Test
+   public void testEarlierReferenceIsDeliveredFirst() throws Exception
+   {
+      long now = System.currentTimeMillis();
+
+      queue.expect(2);
+
+      schedule(1, now + 600, true);
+      schedule(2, now + 200, true);
+
+      assertTrue(queue.await());
+
+      assertIDs(queue.delivered, 2, 1);
+   }
+
+   @Test
+   public void testSingleTimer() throws Exception
+   {
+      long now = System.currentTimeMillis();
+
+      for (int i = 0; i < 1000; i++)
+      {
+         schedule(i, now + 100000 - i, true);
+      }
+
+      assertEquals(1, executor.getQueue().size());
+   }
+
+   @Test
+   public void testRemoveReferenceWithID() throws Exception
+   {
+      long now = System.currentTimeMillis();
+
+      for (int i = 0; i < 1000; i++)
+      {
+         schedule(i, now + 100000 + i, i % 2 == 0);
+      }
+
+      MessageReference removed = handler.removeReferenceWithID(500);
+
+      assertNotNull(removed);
+      assertEquals(500, removed.getMessage().getMessageID());
+      assertNull(handler.removeReferenceWithID(500));
+      assertEquals(999, handler.getScheduledCount());
+
+      assertEquals(999, handler.cancel(null).size());
+      assertEquals(0, handler.getScheduledCount());
+      assertNull(handler.removeReferenceWithID(501));
+   }
+
+   @Test
+   public void testDuplicateIDs() throws Exception
+   {
+      long now = System.currentTimeMillis();
+
+      MessageReference first = schedule(7, now + 100000, true);
+      MessageReference second = schedule(7, now + 50000, true);
+
+      // the one scheduled first, whatever their delivery times
+      assertSame(first, handler.removeReferenceWithID(7));
+      assertSame(second, handler.removeReferenceWithID(7));
+      assertNull(handler.removeReferenceWithID(7));
+
+      queue.expect(1);
+
+      MessageReference delivered = schedule(8, now + 200, true);
+      MessageReference pending = schedule(8, now + 100000, true);
+
+      assertTrue(queue.await());
+      assertIDs(queue.delivered, 8);
+      assertSame(delivered, queue.delivered.get(0));
+
+      // delivering the first one leaves the other reachable
+      assertSame(pending, handler.removeReferenceWithID(8));
+      assertNull(handler.removeReferenceWithID(8));
+      assertEquals(0, handler.getScheduledCount());
+   }
+
+   private MessageReference schedule(final long id, final long deliveryTime, final boolean tail)
+   {
+      MessageReference ref = new ServerMessageImpl(id, 100).createReference(queue);
+      ref.setScheduledDeliveryTime(deliveryTime);
+      assertTrue(handler.checkAndSchedule(ref, tail));
+      return ref;
+   }
+
+   private static void assertIDs(final List<MessageReference> refs, final long... ids)
+   {
+      List<Long> actual = new ArrayList<Long>();
+      for (MessageReference ref : refs)
+      {
+         actual.add(ref.getMessage().getMessageID());
+      }
+      List<Long> expected = new ArrayList<Long>();
+      for (long id : ids)
+      {
+         expected.add(id);
+      }
+      assertEquals(expected, actual);
+   }
+
+   private static final class DeliveryQueue extends FakeQueue
+   {
+      // the references in the order addHead was called with them
+      final List<MessageReference> delivered = new ArrayList<MessageReference>();
+
+      // the references in the order they would be consumed
+      final LinkedList<MessageReference> consumerOrder = new LinkedList<MessageReference>();
+
+      private CountDownLatch latch;
+
+      DeliveryQueue()
+      {
+         super(new SimpleString("queue"));
+      }
+
+      void expect(final int count)
+      {
+         latch = new CountDownLatch(count);
+      }
+
+      boolean await() throws InterruptedException
+      {
+         return latch.await(10, TimeUnit.SECONDS);
+      }
+
+      @Override
+      public synchronized void addHead(final List<MessageReference> refs)
+      {
+         for (MessageReference ref : refs)
+         {
+            delivered.add(ref);
+            consumerOrder.addFirst(ref);
+            latch.countDown();
+         }
+      }
+   }
+}
@@ -0,0 +1,602 @@
+/*
+ * Copyright 2013 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.tests.unit.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import org.hornetq.tests.util.UnitTestCase;
+import org.hornetq.utils.ChunkedLinkedListImpl;
+import org.hornetq.utils.IDSupplier;
+import org.hornetq.utils.LinkedListImpl;
+import org.hornetq.utils.LinkedListIterator;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Runs a {@link ChunkedLinkedListImpl} with small chunks, so most operations cross chunk boundaries.
+ */
+public class ChunkedLinkedListTest extends UnitTestCase
+{
+   private static final int CHUNK_SIZE = 4;
+
+   private static final IDSupplier<Integer> ID_SUPPLIER = new IDSupplier<Integer>()
+   {
+      public long getID(final Integer e)
+      {
+         return e;
+      }
+   };
+
+   // elements ending with the same digit share their ID
+   private static final IDSupplier<Integer> MOD_10_ID_SUPPLIER = new IDSupplier<Integer>()
+   {
+      public long getID(final Integer e)
+      {
+         return e % 10;
+      }
+   };
+
+   private ChunkedLinkedListImpl<Integer> list;
+
+   @Override
+   @Before
+   public void setUp() throws Exception
+   {
+      super.setUp();
+
+      list = new ChunkedLinkedListImpl<Integer>(CHUNK_SIZE, ID_SUPPLIER);
+   }
+
+   @Test
+   public void testAddHeadAndTail()
+   {
+      for (int i = 10; i < 20; i++)
+      {
+         list.addTail(i);
+      }
+
+      for (int i = 9; i >= 0; i--)
+      {
+         list.addHead(i);
+      }
+
+      assertEquals(20, list.size());
+
+      assertContents(0, 20);
+
+      for (int i = 0; i < 20; i++)
+      {
+         assertEquals(i, list.poll().intValue());
+      }
+
+      assertNull(list.poll());
+
+      assertEquals(0, list.size());
+   }
+
+   @Test
+   public void testIterateThenAddMore()
+   {
+      LinkedListIterator<Integer> iter = list.iterator();
+
+      assertFalse(iter.hasNext());
+
+      for (int i = 0; i < 6; i++)
+      {
+         list.addTail(i);
+
+         assertTrue(iter.hasNext());
+
+         assertEquals(i, iter.next().intValue());
+
+         assertFalse(iter.hasNext());
+      }
+
+      try
+      {
+         iter.next();
+
+         fail("Should throw NoSuchElementException");
+      }
+      catch (NoSuchElementException e)
+      {
+         // OK
+      }
+
+      iter.close();
+
+      assertEquals(0, list.numIters());
+   }
+
+   @Test
+   public void testRemoveThroughIterator()
+   {
+      for (int i = 0; i < 20; i++)
+      {
+         list.addTail(i);
+      }
+
+      LinkedListIterator<Integer> iter = list.iterator();
+
+      while (iter.hasNext())
+      {
+         if (iter.next() % 2 == 1)
+         {
+            iter.remove();
+
+            try
+            {
+               iter.remove();
+
+               fail("Should throw NoSuchElementException");
+            }
+            catch (NoSuchElementException e)
+            {
+               // OK
+            }
+         }
+      }
+
+      assertEquals(10, list.size());
+
+      for (int i = 0; i < 20; i += 2)
+      {
+         assertEquals(i, list.poll().intValue());
+      }
+
+      assertEquals(0, list.size());
+   }
+
+   @Test
+   public void testRepeat()
+   {
+      for (int i = 0; i < 6; i++)
+      {
+         list.addTail(i);
+      }
+
+      LinkedListIterator<Integer> iter = list.iterator();
+
+      assertEquals(0, iter.next().intValue());
+
+      iter.repeat();
+
+      assertTrue(iter.hasNext());
+
+      assertEquals(0, iter.next().intValue());
+
+      assertEquals(1, iter.next().intValue());
+
+      iter.remove();
+
+      // the element to repeat is gone, so the iterator goes on
+      iter.repeat();
+
+      assertEquals(2, iter.next().intValue());
+   }
+
+   @Test
+   public void testIteratorsMoveOnWhenTheirElementIsRemoved()
+   {
+      for (int i = 0; i < 12; i++)
+      {
+         list.addTail(i);
+      }
+
+      LinkedListIterator<Integer> iter1 = list.iterator();
+
+      LinkedListIterator<Integer> iter2 = list.iterator();
+
+      for (int i = 0; i < 6; i++)
+      {
+         assertEquals(i, iter1.next().intValue());
+      }
+
+      // removes the chunk both iterators are on, and the one before it
+      for (int i = 0; i < 8; i++)
+      {
+         assertEquals(i, iter2.next().intValue());
+
+         iter2.remove();
+      }
+
+      assertEquals(8, iter1.next().intValue());
+
+      assertEquals(8, iter2.next().intValue());
+
+      // an iterator on the last element left goes back to the head of the list once it's removed
+      LinkedListIterator<Integer> iter3 = list.iterator();
+
+      assertEquals(8, iter3.next().intValue());
+
+      for (int i = 0; i < 4; i++)
+      {
+         list.poll();
+      }
+
+      list.addTail(100);
+
+      assertEquals(100, iter3.next().intValue());
+
+      assertEquals(3, list.numIters());
+   }
+
+   @Test
+   public void testIteratorGoesBackWhenItsElementIsRemovedLast()
+   {
+      LinkedListIterator<Integer> iter = list.iterator();
+
+      list.addTail(0);
+
+      assertEquals(0, iter.next().intValue());
+
+      list.addTail(1);
+
+      assertEquals(1, iter.next().intValue());
+
+      iter.remove();
+
+      // as on LinkedListImpl, the iterator is back on the previous element
+      assertTrue(iter.hasNext());
+
+      assertEquals(0, iter.next().intValue());
+   }
+
+   @Test
+   public void testIteratorSeesHeadOnTheSameChunk()
+   {
+      LinkedListIterator<Integer> iter = list.iterator();
+
+      list.addHead(0);
+
+      assertEquals(0, iter.next().intValue());
+
+      list.addHead(1);
+
+      assertEquals(0, list.removeWithID(0).intValue());
+
+      assertTrue(iter.hasNext());
+
+      assertEquals(1, iter.next().intValue());
+   }
+
+   @Test
+   public void testDuplicateIDsFoundInTheOrderTheyWereAdded()
+   {
+      ChunkedLinkedListImpl<Integer> duplicates = new ChunkedLinkedListImpl<Integer>(CHUNK_SIZE, MOD_10_ID_SUPPLIER);
+
+      // all on the same chunk, the ones added to the head before the one added first
+      duplicates.addHead(10);
+      duplicates.addHead(20);
+      duplicates.addHead(30);
+
+      assertEquals(10, duplicates.getWithID(0).intValue());
+      assertEquals(10, duplicates.removeWithID(0).intValue());
+      assertEquals(20, duplicates.removeWithID(0).intValue());
+      assertEquals(30, duplicates.getWithID(0).intValue());
+      assertEquals(30, duplicates.removeWithID(0).intValue());
+      assertNull(duplicates.getWithID(0));
+      assertEquals(0, duplicates.size());
+   }
+
+   /**
+    * Runs random operations on a {@link LinkedListImpl} and a {@link ChunkedLinkedListImpl} holding elements sharing
+    * their IDs, with several iterators on each, expecting the same results from both.
+    */
+   @Test
+   public void testDifferentialAgainstLinkedListImpl()
+   {
+      for (long seed = 0; seed < 20; seed++)
+      {
+         runDifferential(new Random(seed), 3000);
+      }
+   }
+
+   private void runDifferential(final Random random, final int operations)
+   {
+      LinkedListImpl<Integer> reference = new LinkedListImpl<Integer>(MOD_10_ID_SUPPLIER);
+
+      ChunkedLinkedListImpl<Integer> chunked = new ChunkedLinkedListImpl<Integer>(CHUNK_SIZE, MOD_10_ID_SUPPLIER);
+
+      List<LinkedListIterator<Integer>> referenceIters = new ArrayList<LinkedListIterator<Integer>>();
+
+      List<LinkedListIterator<Integer>> chunkedIters = new ArrayList<LinkedListIterator<Integer>>();
+
+      int next = 0;
+
+      for (int i = 0; i < operations; i++)
+      {
+         String op = null;
+
+         Object expected = null;
+
+         Object actual = null;
+
+         int which = referenceIters.isEmpty() ? 0 : random.nextInt(referenceIters.size());
+
+         switch (random.nextInt(11))
+         {
+            case 0:
+            case 1:
+               op = "addTail " + next;
+               reference.addTail(next);
+               chunked.addTail(next++);
+               break;
+            case 2:
+               op = "addHead " + next;
+               reference.addHead(next);
+               chunked.addHead(next++);
+               break;
+            case 3:
+               op = "poll";
+               expected = reference.poll();
+               actual = chunked.poll();
+               break;
+            case 4:
+            {
+               long id = random.nextInt(10);
+               op = "removeWithID " + id;
+               expected = reference.removeWithID(id);
+               actual = chunked.removeWithID(id);
+               break;
+            }
+            case 5:
+            {
+               long id = random.nextInt(10);
+               op = "getWithID " + id;
+               expected = reference.getWithID(id);
+               actual = chunked.getWithID(id);
+               break;
+            }
+            case 6:
+               if (referenceIters.size() < 3)
+               {
+                  op = "iterator";
+                  referenceIters.add(reference.iterator());
+                  chunkedIters.add(chunked.iterator());
+               }
+               break;
+            case 7:
+               if (!referenceIters.isEmpty())
+               {
+                  op = "hasNext " + which;
+                  expected = referenceIters.get(which).hasNext();
+                  actual = chunkedIters.get(which).hasNext();
+               }
+               break;
+            case 8:
+               if (!referenceIters.isEmpty())
+               {
+                  op = "next " + which;
+                  expected = callNext(referenceIters.get(which));
+                  actual = callNext(chunkedIters.get(which));
+               }
+               break;
+            case 9:
+               if (!referenceIters.isEmpty())
+               {
+                  op = "remove " + which;
+                  expected = callRemove(referenceIters.get(which));
+                  actual = callRemove(chunkedIters.get(which));
+               }
+               break;
+            default:
+               if (!referenceIters.isEmpty())
+               {
+                  op = "repeat " + which;
+                  referenceIters.get(which).repeat();
+                  chunkedIters.get(which).repeat();
+               }
+               break;
+         }
+
+         assertEquals("operation " + i + ": " + op, expected, actual);
+
+         assertEquals("operation " + i + ": " + op, reference.size(), chunked.size());
+      }
+
+      // drained through a fresh iterator, both lists hold the same elements in the same order
+      LinkedListIterator<Integer> referenceIter = reference.iterator();
+
+      LinkedListIterator<Integer> chunkedIter = chunked.iterator();
+
+      while (referenceIter.hasNext())
+      {
+         assertTrue(chunkedIter.hasNext());
+
+         assertEquals(referenceIter.next(), chunkedIter.next());
+      }
+
+      assertFalse(chunkedIter.hasNext());
+   }
+
+   private static Object callNext(final LinkedListIterator<Integer> iter)
+   {
+      try
+      {
+         return iter.next();
+      }
+      catch (NoSuchElementException e)
+      {
+         return "NoSuchElementException";
+      }
+   }
+
+   private static Object callRemove(final LinkedListIterator<Integer> iter)
+   {
+      try
+      {
+         iter.remove();
+
+         return "removed";
+      }
+      catch (NoSuchElementException e)
+      {
+         return "NoSuchElementException";
+      }
+   }
+
+   @Test
+   public void testClear()
+   {
+      for (int i = 0; i < 10; i++)
+      {
+         list.addTail(i);
+      }
+
+      LinkedListIterator<Integer> iter = list.iterator();
+
+      assertEquals(0, iter.next().intValue());
+
+      list.clear();
+
+      assertEquals(0, list.size());
+
+      assertNull(list.getWithID(5));
+
+      assertFalse(iter.hasNext());
+
+      list.addTail(20);
+
+      assertEquals(20, iter.next().intValue());
+   }
+
+   @Test
+   public void testWithID()
+   {
+      for (int i = 0; i < 20; i++)
+      {
+         list.addTail(i);
+      }
+
+      assertTrue(list.isIndexed());
+
+      assertEquals(7, list.getWithID(7).intValue());
+
+      assertNull(list.getWithID(100));
+
+      LinkedListIterator<Integer> iter = list.iterator();
+
+      assertEquals(0, iter.next().intValue());
+
+      for (int i = 1; i < 20; i += 2)
+      {
+         assertEquals(i, list.removeWithID(i).intValue());
+
+         assertNull(list.getWithID(i));
+
+         assertNull(list.removeWithID(i));
+      }
+
+      for (int i = 2; i < 20; i += 2)
+      {
+         assertEquals(i, iter.next().intValue());
+      }
+
+      assertFalse(iter.hasNext());
+
+      assertEquals(10, list.size());
+   }
+
+   @Test
+   public void testNotIndexed()
+   {
+      ChunkedLinkedListImpl<Integer> notIndexed = new ChunkedLinkedListImpl<Integer>();
+
+      assertFalse(notIndexed.isIndexed());
+
+      try
+      {
+         notIndexed.getWithID(1);
+
+         fail("Should throw IllegalStateException");
+      }
+      catch (IllegalStateException e)
+      {
+         // OK
+      }
+   }
+
+   @Test
+   public void testRandomOperations()
+   {
+      Random random = new Random(1234);
+
+      List<Integer> expected = new ArrayList<Integer>();
+
+      int nextTail = 0;
+
+      int nextHead = -1;
+
+      for (int i = 0; i < 20000; i++)
+      {
+         int op = random.nextInt(5);
+
+         if (op <= 1)
+         {
+            list.addTail(nextTail);
+
+            expected.add(nextTail++);
+         }
+         else if (op == 2)
+         {
+            list.addHead(nextHead);
+
+            expected.add(0, nextHead--);
+         }
+         else if (op == 3)
+         {
+            assertEquals(expected.isEmpty() ? null : expected.remove(0), list.poll());
+         }
+         else if (!expected.isEmpty())
+         {
+            Integer id = expected.remove(random.nextInt(expected.size()));
+
+            assertEquals(id, list.removeWithID(id));
+         }
+
+         assertEquals(expected.size(), list.size());
+      }
+
+      LinkedListIterator<Integer> iter = list.iterator();
+
+      for (Integer e : expected)
+      {
+         assertEquals(e, list.getWithID(e));
+
+         assertEquals(e, iter.next());
+      }
+
+      assertFalse(iter.hasNext());
+   }
+
+   private void assertContents(final int from, final int to)
+   {
+      LinkedListIterator<Integer> iter = list.iterator();
+
+      for (int i = from; i < to; i++)
+      {
+         assertTrue(iter.hasNext());
+
+         assertEquals(i, iter.next().intValue());
+      }
+
+      assertFalse(iter.hasNext());
+
+      iter.close();
+   }
+}
@@ -3,6 +3,7 @@ package org.hornetq.tests.unit.util;
 import java.util.Collection;
 import java.util.Map;
 
+import io.netty.buffer.ByteBufAllocator;
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.core.paging.PageTransactionInfo;
 import org.hornetq.core.paging.PagingManager;
@@ -160,6 +161,20 @@ public final class FakePagingManager implements PagingManager
    {
    }
 
+   public ByteBufAllocator getOffHeapAllocator()
+   {
+      return null;
+   }
+
+   public void addOffHeapSize(final long size)
+   {
+   }
+
+   public long getOffHeapSize()
+   {
+      return 0;
+   }
+
    /*
     * (non-Javadoc)
     * @see org.hornetq.core.settings.HierarchicalRepositoryChangeListener#onChange()